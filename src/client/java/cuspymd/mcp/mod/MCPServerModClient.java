@@ -2,15 +2,20 @@ package cuspymd.mcp.mod;
 
 import net.fabricmc.api.ClientModInitializer;
 import cuspymd.mcp.mod.bridge.HTTPMCPServer;
+import cuspymd.mcp.mod.command.CommandJournal;
+import cuspymd.mcp.mod.command.ICommandExecutor;
+import cuspymd.mcp.mod.command.JournalingCommandExecutor;
 import cuspymd.mcp.mod.config.MCPConfig;
 import cuspymd.mcp.mod.utils.ScreenshotUtils;
 import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+import net.fabricmc.loader.api.FabricLoader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class MCPServerModClient implements ClientModInitializer {
 	public static final Logger LOGGER = LoggerFactory.getLogger("mcp-server-mod");
 	private HTTPMCPServer httpServer;
+	private CommandJournal journal;
 	
 	@Override
 	public void onInitializeClient() {
@@ -25,12 +30,25 @@ public class MCPServerModClient implements ClientModInitializer {
 				String transport = config.getServer().getTransport();
 				
 				if ("http".equals(transport)) {
+					ICommandExecutor commandExecutor = new cuspymd.mcp.mod.command.CommandExecutor(config);
+					if (config.getServer().isJournalEnabled()) {
+						try {
+							journal = CommandJournal.open(
+								FabricLoader.getInstance().getGameDir().resolve(config.getServer().getJournalFile()),
+								config.getServer().getJournalFsyncIntervalMs());
+							commandExecutor = new JournalingCommandExecutor(commandExecutor, journal);
+							LOGGER.info("Journaling command batches to {}", journal.getPath());
+						} catch (Exception e) {
+							LOGGER.error("Failed to open command journal; continuing without it", e);
+						}
+					}
 					httpServer = new HTTPMCPServer(config,
-						new cuspymd.mcp.mod.command.CommandExecutor(config),
+						commandExecutor,
 						new cuspymd.mcp.mod.utils.PlayerInfoProvider(),
 						new cuspymd.mcp.mod.utils.BlockScanner(),
 						new cuspymd.mcp.mod.utils.ScreenshotUtils(),
-						true
+						true,
+						new cuspymd.mcp.mod.utils.WorldEditor(config)
 					);
 					httpServer.start();
 					LOGGER.info("HTTP MCP Server started on port {}", httpServer.getPort());
@@ -48,5 +66,9 @@ public class MCPServerModClient implements ClientModInitializer {
 			httpServer.stop();
 			LOGGER.info("HTTP MCP Server stopped");
 		}
+		if (journal != null) {
+			journal.close();
+			journal = null;
+		}
 	}
 }
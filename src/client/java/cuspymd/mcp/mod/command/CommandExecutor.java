@@ -34,21 +34,42 @@ public class CommandExecutor implements cuspymd.mcp.mod.command.ICommandExecutor
     
     private final MCPConfig config;
     private final SafetyValidator safetyValidator;
+    // Shared across batches so the learned rate carries over
+    private final CommandRatePacer pacer;
     
     public CommandExecutor(MCPConfig config) {
         this.config = config;
         this.safetyValidator = new SafetyValidator(config);
+        MCPConfig.ClientConfig client = config.getClient();
+        this.pacer = new CommandRatePacer(client.getInitialCommandsPerSecond(), client.getMinCommandsPerSecond(),
+            client.getMaxCommandsPerSecond(), client.getCommandBurst());
     }
     
     public JsonObject executeCommands(JsonObject arguments) {
         try {
+            // The client sends commands to the server as chat packets, so it cannot simulate them
+            if (arguments.has("dry_run") && arguments.get("dry_run").getAsBoolean()) {
+                return MCPProtocol.createErrorResponse("dry_run is only supported on a dedicated server", null);
+            }
+            // Section versions live on the server's chunks, which the client cannot read
+            if (arguments.has("if_versions")) {
+                return MCPProtocol.createErrorResponse("if_versions is only supported on a dedicated server", null);
+            }
+
             JsonArray commandsArray = arguments.getAsJsonArray("commands");
             boolean validateSafety = !arguments.has("validate_safety") || 
                                    arguments.get("validate_safety").getAsBoolean();
             
             List<String> commands = new ArrayList<>();
-            for (int i = 0; i < commandsArray.size(); i++) {
-                commands.add(commandsArray.get(i).getAsString());
+            try {
+                // Commands go out as one packet each, so templates are simply expanded in place
+                List<CommandTemplate> templates =
+                    CommandTemplate.parseAll(commandsArray, config.getSafety().getMaxExpandedCommands());
+                for (String command : CommandTemplate.expandAll(commandsArray, templates)) {
+                    commands.add(command);
+                }
+            } catch (IllegalArgumentException e) {
+                return MCPProtocol.createErrorResponse("Invalid command template: " + e.getMessage(), null);
             }
             
             if (validateSafety) {
@@ -62,7 +83,14 @@ public class CommandExecutor implements cuspymd.mcp.mod.command.ICommandExecutor
                 }
             }
             
-            return executeCommandsSequentially(commands);
+            boolean optimize = arguments.has("optimize") && arguments.get("optimize").getAsBoolean();
+            if (optimize) {
+                CommandBatchOptimizer.Result optimized =
+                    CommandBatchOptimizer.optimize(commands, config.getSafety().getMaxBlocksPerCommand());
+                return executeCommandsSequentially(optimized.getCommands(), optimized);
+            }
+            
+            return executeCommandsSequentially(commands, null);
             
         } catch (Exception e) {
             LOGGER.error("Error executing commands", e);
@@ -70,7 +98,7 @@ public class CommandExecutor implements cuspymd.mcp.mod.command.ICommandExecutor
         }
     }
     
-    private JsonObject executeCommandsSequentially(List<String> commands) {
+    private JsonObject executeCommandsSequentially(List<String> commands, CommandBatchOptimizer.Result optimization) {
         Minecraft client = Minecraft.getInstance();
         if (client.player == null || client.level == null) {
             return MCPProtocol.createErrorResponse("Player or world is not available", null);
@@ -79,12 +107,24 @@ public class CommandExecutor implements cuspymd.mcp.mod.command.ICommandExecutor
         List<CommandResult> results = new ArrayList<>();
         List<String> allCapturedMessages = new ArrayList<>();
         
+        // The integrated server's owner is exempt from spam kicks, so only remote servers are paced
+        boolean paced = config.getClient().isPaceCommands() && !client.hasSingleplayerServer();
+        int throttleEventsBefore = pacer.getThrottleEvents();
+
         ChatMessageCapture capture = ChatMessageCapture.getInstance();
         capture.startCapturing();
         
         try {
             capture.drainAvailableCapturedMessages();
             for (String command : commands) {
+                if (paced) {
+                    try {
+                        pacer.acquire();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
                 capture.drainAvailableCapturedMessages();
                 long commandStartedAt = System.currentTimeMillis();
                 CommandResult executionResult = executeCommandWithTimeout(command);
@@ -98,9 +138,27 @@ public class CommandExecutor implements cuspymd.mcp.mod.command.ICommandExecutor
                 CommandResult analyzedResult =
                     applyOutcomeAnalysis(executionResult, analysisMessages, commandMessages);
                 results.add(analyzedResult);
+
+                if (paced) {
+                    if (isThrottleSignal(analyzedResult, commandWindowMessages, client.getConnection() == null)) {
+                        pacer.onThrottled();
+                        LOGGER.warn("Command rate throttled; pacing at {} commands/s", String.format(Locale.ROOT, "%.2f", pacer.getRate()));
+                    } else if (analyzedResult.isAccepted()) {
+                        pacer.onAccepted();
+                    }
+                }
             }
 
             JsonObject responseJson = buildExecuteCommandsResponse(commands.size(), results, allCapturedMessages);
+            if (optimization != null) {
+                optimization.annotate(responseJson);
+            }
+            if (paced) {
+                JsonObject pacing = new JsonObject();
+                pacing.addProperty("commandsPerSecond", Math.round(pacer.getRate() * 100) / 100.0);
+                pacing.addProperty("throttleEvents", pacer.getThrottleEvents() - throttleEventsBefore);
+                responseJson.add("pacing", pacing);
+            }
             return MCPProtocol.createSuccessResponse(responseJson.toString());
             
         } finally {
@@ -108,6 +166,24 @@ public class CommandExecutor implements cuspymd.mcp.mod.command.ICommandExecutor
         }
     }
     
+    static boolean isThrottleSignal(
+        CommandResult result,
+        List<ChatMessageCapture.CapturedMessage> messages,
+        boolean connectionLost
+    ) {
+        if (connectionLost || "timed_out".equals(result.getStatus())) {
+            return true;
+        }
+        for (ChatMessageCapture.CapturedMessage message : messages) {
+            // Other players talking about spam must not slow the build down
+            if (message != null && message.source() != ChatMessageCapture.MessageSource.PLAYER_CHAT
+                && CommandRatePacer.isThrottleMessage(message.text())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     CompletableFuture<CommandResult> executeOneCommand(String command) {
         long startTime = System.currentTimeMillis();
         CompletableFuture<CommandResult> resultFuture = new CompletableFuture<>();
@@ -436,22 +512,11 @@ public class CommandExecutor implements cuspymd.mcp.mod.command.ICommandExecutor
     }
 
     private static String extractCommandVerb(String command) {
-        if (command == null) {
-            return "";
-        }
-
-        String trimmed = command.trim();
-        if (trimmed.isEmpty()) {
+        CommandTokenizer tokens = new CommandTokenizer(command, false).skipLeadingSlash();
+        if (!tokens.next()) {
             return "";
         }
-
-        if (trimmed.startsWith("/")) {
-            trimmed = trimmed.substring(1);
-        }
-
-        int spaceIndex = trimmed.indexOf(' ');
-        String verb = spaceIndex >= 0 ? trimmed.substring(0, spaceIndex) : trimmed;
-        return verb.toLowerCase(Locale.ROOT);
+        return tokens.text().toLowerCase(Locale.ROOT);
     }
 
     static JsonObject buildExecuteCommandsResponse(int totalCommands, List<CommandResult> results, List<String> capturedMessages) {
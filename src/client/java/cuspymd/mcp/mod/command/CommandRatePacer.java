@@ -0,0 +1,110 @@
+package cuspymd.mcp.mod.command;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket in front of the command packets the client sends to a remote server. The refill
+ * rate adapts AIMD-style: every accepted command nudges it up by roughly one command per second
+ * per second of sending, and a throttle signal (a spam warning in chat, a lost connection or a
+ * timed-out command) halves it. The rate a throttle happened at is remembered, and probing above
+ * it afterwards is ten times slower, so the pacer settles just under the server's limit.
+ */
+public class CommandRatePacer {
+    private static final double DECREASE_FACTOR = 0.5;
+    private static final double PROBE_SLOWDOWN = 0.1;
+    private static final List<String> THROTTLE_MARKERS = List.of(
+        "too fast", "too quickly", "slow down", "spamming", "rate limit", "too many commands", "too many packets"
+    );
+
+    private final double minRate;
+    private final double maxRate;
+    private final int burst;
+    private final LongSupplier clock;
+
+    private double rate;
+    private double ceiling = Double.MAX_VALUE;
+    private double tokens;
+    private long lastRefillNanos;
+    private int throttleEvents;
+
+    public CommandRatePacer(double initialRate, double minRate, double maxRate, int burst) {
+        this(initialRate, minRate, maxRate, burst, System::nanoTime);
+    }
+
+    CommandRatePacer(double initialRate, double minRate, double maxRate, int burst, LongSupplier clock) {
+        this.minRate = Math.max(minRate, 0.01);
+        this.maxRate = Math.max(maxRate, this.minRate);
+        this.burst = Math.max(burst, 1);
+        this.clock = clock;
+        this.rate = Math.min(Math.max(initialRate, this.minRate), this.maxRate);
+        this.tokens = this.burst;
+        this.lastRefillNanos = clock.getAsLong();
+    }
+
+    /** Blocks until the next command may be sent. */
+    public void acquire() throws InterruptedException {
+        long waitNanos = reserve();
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /** Takes a token, going into debt if none is left, and returns how long to wait before sending. */
+    synchronized long reserve() {
+        refill();
+        tokens -= 1;
+        if (tokens >= 0) {
+            return 0;
+        }
+        return (long) (-tokens / rate * 1_000_000_000L);
+    }
+
+    public synchronized void onAccepted() {
+        // Additive increase: about +1/s for each second of sending at the current rate
+        double step = 1.0 / rate;
+        if (rate >= ceiling) {
+            step *= PROBE_SLOWDOWN;
+        }
+        refill();
+        rate = Math.min(maxRate, rate + step);
+    }
+
+    public synchronized void onThrottled() {
+        refill();
+        ceiling = rate;
+        rate = Math.max(minRate, rate * DECREASE_FACTOR);
+        // Spend the burst too; whatever tripped the limit is still counted on the server side
+        tokens = Math.min(tokens, 0);
+        throttleEvents++;
+    }
+
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    public synchronized int getThrottleEvents() {
+        return throttleEvents;
+    }
+
+    private void refill() {
+        long now = clock.getAsLong();
+        tokens = Math.min(burst, tokens + (now - lastRefillNanos) / 1_000_000_000.0 * rate);
+        lastRefillNanos = now;
+    }
+
+    static boolean isThrottleMessage(String message) {
+        if (message == null || message.isBlank()) {
+            return false;
+        }
+        String normalized = message.toLowerCase(Locale.ROOT);
+        for (String marker : THROTTLE_MARKERS) {
+            if (normalized.contains(marker)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,14 +1,13 @@
 package cuspymd.mcp.mod.utils;
 
+import cuspymd.mcp.mod.command.CommandTokenizer;
+
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class CommandParser {
     
-    private static final Pattern QUOTED_ARGS_PATTERN = Pattern.compile("\"([^\"]*)\"|'([^']*)'|(\\S+)");
-    private static final Pattern COORDINATE_PATTERN = Pattern.compile("(~?-?\\d+(?:\\.\\d+)?|\\^-?\\d+(?:\\.\\d+)?)");
     private static final Pattern SELECTOR_PATTERN = Pattern.compile("@[aeprs](?:\\[([^\\]]+)\\])?");
     
     public static class ParsedCommand {
@@ -61,23 +60,17 @@ public class CommandParser {
     
     public static List<String> parseArguments(String input) {
         List<String> arguments = new ArrayList<>();
-        Matcher matcher = QUOTED_ARGS_PATTERN.matcher(input);
-        
-        while (matcher.find()) {
-            if (matcher.group(1) != null) {
-                arguments.add(matcher.group(1));
-            } else if (matcher.group(2) != null) {
-                arguments.add(matcher.group(2));
-            } else if (matcher.group(3) != null) {
-                arguments.add(matcher.group(3));
-            }
+        CommandTokenizer tokens = new CommandTokenizer(input);
+        
+        while (tokens.next()) {
+            arguments.add(tokens.text());
         }
         
         return arguments;
     }
     
     public static boolean isCoordinate(String arg) {
-        return COORDINATE_PATTERN.matcher(arg).matches();
+        return CommandTokenizer.isCoordinate(arg, 0, arg.length());
     }
     
     public static boolean isSelector(String arg) {
@@ -0,0 +1,128 @@
+package cuspymd.mcp.mod.utils;
+
+import com.google.gson.JsonObject;
+import cuspymd.mcp.mod.config.MCPConfig;
+import cuspymd.mcp.mod.server.tools.ServerWorldEditor;
+import net.minecraft.client.Minecraft;
+import net.minecraft.server.MinecraftServer;
+
+public class WorldEditor implements IWorldEditor {
+    private final MCPConfig config;
+    private MinecraftServer delegateServer;
+    private ServerWorldEditor delegate;
+
+    public WorldEditor(MCPConfig config) {
+        this.config = config;
+    }
+
+    @Override
+    public JsonObject placeBlocks(JsonObject arguments) {
+        ServerWorldEditor editor = delegate();
+        if (editor == null) {
+            return unavailable("place_blocks");
+        }
+        return editor.placeBlocks(arguments);
+    }
+
+    @Override
+    public JsonObject placeShape(JsonObject arguments) {
+        ServerWorldEditor editor = delegate();
+        if (editor == null) {
+            return unavailable("place_shape");
+        }
+        return editor.placeShape(arguments);
+    }
+
+    @Override
+    public JsonObject copyRegion(JsonObject arguments) {
+        ServerWorldEditor editor = delegate();
+        if (editor == null) {
+            return unavailable("copy_region");
+        }
+        return editor.copyRegion(arguments);
+    }
+
+    @Override
+    public JsonObject pasteRegion(JsonObject arguments) {
+        ServerWorldEditor editor = delegate();
+        if (editor == null) {
+            return unavailable("paste_region");
+        }
+        return editor.pasteRegion(arguments);
+    }
+
+    @Override
+    public JsonObject exportStructure(JsonObject arguments) {
+        ServerWorldEditor editor = delegate();
+        if (editor == null) {
+            return unavailable("export_structure");
+        }
+        return editor.exportStructure(arguments);
+    }
+
+    @Override
+    public JsonObject importStructure(JsonObject arguments) {
+        ServerWorldEditor editor = delegate();
+        if (editor == null) {
+            return unavailable("import_structure");
+        }
+        return editor.importStructure(arguments);
+    }
+
+    @Override
+    public JsonObject undoBatch(JsonObject arguments) {
+        ServerWorldEditor editor = delegate();
+        if (editor == null) {
+            return unavailable("undo_batch");
+        }
+        return editor.undoBatch(arguments);
+    }
+
+    @Override
+    public JsonObject startFillJob(JsonObject arguments) {
+        ServerWorldEditor editor = delegate();
+        if (editor == null) {
+            return unavailable("start_fill_job");
+        }
+        return editor.startFillJob(arguments);
+    }
+
+    @Override
+    public JsonObject getJobStatus(JsonObject arguments) {
+        ServerWorldEditor editor = delegate();
+        if (editor == null) {
+            return unavailable("get_job_status");
+        }
+        return editor.getJobStatus(arguments);
+    }
+
+    @Override
+    public JsonObject cancelJob(JsonObject arguments) {
+        ServerWorldEditor editor = delegate();
+        if (editor == null) {
+            return unavailable("cancel_job");
+        }
+        return editor.cancelJob(arguments);
+    }
+
+    // World edits bypass the command path, so they need direct access to the integrated server
+    private synchronized ServerWorldEditor delegate() {
+        MinecraftServer server = Minecraft.getInstance().getSingleplayerServer();
+        if (server == null) {
+            delegateServer = null;
+            delegate = null;
+            return null;
+        }
+        if (server != delegateServer) {
+            delegateServer = server;
+            delegate = new ServerWorldEditor(config, server);
+        }
+        return delegate;
+    }
+
+    private static JsonObject unavailable(String toolName) {
+        JsonObject error = new JsonObject();
+        error.addProperty("error", toolName + " requires a dedicated server or a singleplayer world");
+        return error;
+    }
+}
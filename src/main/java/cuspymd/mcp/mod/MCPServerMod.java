@@ -1,6 +1,14 @@
 package cuspymd.mcp.mod;
 
+import cuspymd.mcp.mod.server.build.BuildJobScheduler;
+import cuspymd.mcp.mod.server.build.ChunkPreloader;
+import cuspymd.mcp.mod.server.tools.ScanSessionScheduler;
 import net.fabricmc.api.ModInitializer;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.minecraft.core.Registry;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.resources.Identifier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,6 +27,16 @@ public class MCPServerMod implements ModInitializer {
 		// However, some things (like resources) may still be uninitialized.
 		// Proceed with mild caution.
 
+		// Chunks held loaded while a request's server-thread work reads or writes them
+		Registry.register(BuiltInRegistries.TICKET_TYPE, Identifier.fromNamespaceAndPath(MOD_ID, "preload"), ChunkPreloader.TICKET);
+
+		// Long-running world edits advance at the end of every tick on both dedicated and integrated servers
+		ServerTickEvents.END_SERVER_TICK.register(BuildJobScheduler::onEndTick);
+		ServerLifecycleEvents.SERVER_STOPPING.register(BuildJobScheduler::onServerStopping);
+		// Paginated scans read their pages in the same end-of-tick slot
+		ServerTickEvents.END_SERVER_TICK.register(ScanSessionScheduler::onEndTick);
+		ServerLifecycleEvents.SERVER_STOPPING.register(ScanSessionScheduler::onServerStopping);
+
 		LOGGER.info("MCP Server Mod initialized");
 	}
 }
\ No newline at end of file
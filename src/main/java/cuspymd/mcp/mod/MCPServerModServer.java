@@ -2,14 +2,22 @@ package cuspymd.mcp.mod;
 
 import net.fabricmc.api.DedicatedServerModInitializer;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.loader.api.FabricLoader;
 import cuspymd.mcp.mod.bridge.HTTPMCPServer;
+import cuspymd.mcp.mod.command.CommandJournal;
+import cuspymd.mcp.mod.command.ICommandExecutor;
+import cuspymd.mcp.mod.command.JournalingCommandExecutor;
+import cuspymd.mcp.mod.command.JournalingWorldEditor;
 import cuspymd.mcp.mod.config.MCPConfig;
+import cuspymd.mcp.mod.server.build.UndoHistory;
+import cuspymd.mcp.mod.utils.IWorldEditor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class MCPServerModServer implements DedicatedServerModInitializer {
     public static final Logger LOGGER = LoggerFactory.getLogger("mcp-server-mod");
     private HTTPMCPServer httpServer;
+    private CommandJournal journal;
 
     @Override
     public void onInitializeServer() {
@@ -22,12 +30,31 @@ public class MCPServerModServer implements DedicatedServerModInitializer {
                     String transport = config.getServer().getTransport();
 
                     if ("http".equals(transport)) {
+                        // Commands and world edits share one undo history so either can be rolled back with undo_batch
+                        UndoHistory undoHistory = new UndoHistory(config.getSafety().getMaxUndoSections());
+                        ICommandExecutor commandExecutor = new cuspymd.mcp.mod.server.tools.ServerCommandExecutor(config, server, undoHistory);
+                        IWorldEditor worldEditor = new cuspymd.mcp.mod.server.tools.ServerWorldEditor(config, server, undoHistory);
+                        if (config.getServer().isJournalEnabled()) {
+                            try {
+                                journal = CommandJournal.open(
+                                    FabricLoader.getInstance().getGameDir().resolve(config.getServer().getJournalFile()),
+                                    config.getServer().getJournalFsyncIntervalMs());
+                                JournalingCommandExecutor journaling = new JournalingCommandExecutor(commandExecutor, worldEditor::undoBatch, journal);
+                                commandExecutor = journaling;
+                                // Undos are journaled so that a replay rolls back what the recorded session rolled back
+                                worldEditor = new JournalingWorldEditor(worldEditor, journaling);
+                                LOGGER.info("Journaling command batches to {}", journal.getPath());
+                            } catch (Exception e) {
+                                LOGGER.error("Failed to open command journal; continuing without it", e);
+                            }
+                        }
                         httpServer = new HTTPMCPServer(config,
-                            new cuspymd.mcp.mod.server.tools.ServerCommandExecutor(config, server),
+                            commandExecutor,
                             new cuspymd.mcp.mod.server.tools.ServerPlayerInfoProvider(server),
-                            new cuspymd.mcp.mod.server.tools.ServerBlockScanner(server),
+                            new cuspymd.mcp.mod.server.tools.ServerBlockScanner(config, server),
                             new cuspymd.mcp.mod.server.tools.ServerScreenshotUtils(),
-                            false
+                            false,
+                            worldEditor
                         );
                         httpServer.start();
                         LOGGER.info("HTTP MCP Server started on port {}", httpServer.getPort());
@@ -45,6 +72,10 @@ public class MCPServerModServer implements DedicatedServerModInitializer {
                 httpServer.stop();
                 LOGGER.info("HTTP MCP Server stopped");
             }
+            if (journal != null) {
+                journal.close();
+                journal = null;
+            }
         });
     }
 }
@@ -12,6 +12,7 @@ import cuspymd.mcp.mod.server.MCPProtocol;
 import cuspymd.mcp.mod.utils.IPlayerInfoProvider;
 import cuspymd.mcp.mod.utils.IBlockScanner;
 import cuspymd.mcp.mod.utils.IScreenshotUtils;
+import cuspymd.mcp.mod.utils.IWorldEditor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,6 +26,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.UnaryOperator;
 
 public class HTTPMCPServer {
     private static final Logger LOGGER = LoggerFactory.getLogger(HTTPMCPServer.class);
@@ -36,6 +38,7 @@ public class HTTPMCPServer {
     private final IBlockScanner blockScanner;
     private final IScreenshotUtils screenshotUtils;
     private final boolean screenshotToolEnabled;
+    private final IWorldEditor worldEditor;
     private final AtomicBoolean running = new AtomicBoolean(false);
     private HttpServer httpServer;
     private ExecutorService executor;
@@ -51,6 +54,18 @@ public class HTTPMCPServer {
         IBlockScanner blockScanner,
         IScreenshotUtils screenshotUtils,
         boolean screenshotToolEnabled
+    ) {
+        this(config, commandExecutor, playerInfoProvider, blockScanner, screenshotUtils, screenshotToolEnabled, null);
+    }
+
+    public HTTPMCPServer(
+        MCPConfig config,
+        ICommandExecutor commandExecutor,
+        IPlayerInfoProvider playerInfoProvider,
+        IBlockScanner blockScanner,
+        IScreenshotUtils screenshotUtils,
+        boolean screenshotToolEnabled,
+        IWorldEditor worldEditor
     ) {
         this.config = config;
         this.commandExecutor = commandExecutor;
@@ -58,6 +73,7 @@ public class HTTPMCPServer {
         this.blockScanner = blockScanner;
         this.screenshotUtils = screenshotUtils;
         this.screenshotToolEnabled = screenshotToolEnabled;
+        this.worldEditor = worldEditor;
     }
     
     public void start() throws IOException {
@@ -307,12 +323,51 @@ public class HTTPMCPServer {
                 case "execute_commands" -> {
                     return commandExecutor.executeCommands(arguments);
                 }
+                case "compile_batch" -> {
+                    return commandExecutor.compileBatch(arguments);
+                }
+                case "run_compiled_batch" -> {
+                    return commandExecutor.runCompiledBatch(arguments);
+                }
+                case "replay_journal" -> {
+                    return commandExecutor.replayJournal(arguments);
+                }
                 case "get_player_info" -> {
                     return handleGetPlayerInfo();
                 }
                 case "get_blocks_in_area" -> {
                     return handleGetBlocksInArea(arguments);
                 }
+                case "place_blocks" -> {
+                    return handleWorldEdit("place_blocks", arguments, worldEditor == null ? null : worldEditor::placeBlocks);
+                }
+                case "place_shape" -> {
+                    return handleWorldEdit("place_shape", arguments, worldEditor == null ? null : worldEditor::placeShape);
+                }
+                case "copy_region" -> {
+                    return handleWorldEdit("copy_region", arguments, worldEditor == null ? null : worldEditor::copyRegion);
+                }
+                case "paste_region" -> {
+                    return handleWorldEdit("paste_region", arguments, worldEditor == null ? null : worldEditor::pasteRegion);
+                }
+                case "export_structure" -> {
+                    return handleWorldEdit("export_structure", arguments, worldEditor == null ? null : worldEditor::exportStructure);
+                }
+                case "import_structure" -> {
+                    return handleWorldEdit("import_structure", arguments, worldEditor == null ? null : worldEditor::importStructure);
+                }
+                case "undo_batch" -> {
+                    return handleWorldEdit("undo_batch", arguments, worldEditor == null ? null : worldEditor::undoBatch);
+                }
+                case "start_fill_job" -> {
+                    return handleWorldEdit("start_fill_job", arguments, worldEditor == null ? null : worldEditor::startFillJob);
+                }
+                case "get_job_status" -> {
+                    return handleWorldEdit("get_job_status", arguments, worldEditor == null ? null : worldEditor::getJobStatus);
+                }
+                case "cancel_job" -> {
+                    return handleWorldEdit("cancel_job", arguments, worldEditor == null ? null : worldEditor::cancelJob);
+                }
                 case "take_screenshot" -> {
                     if (!screenshotToolEnabled) {
                         return MCPProtocol.createErrorResponse("Tool not available in dedicated server mode", null);
@@ -355,21 +410,24 @@ public class HTTPMCPServer {
     
     private JsonObject handleGetBlocksInArea(JsonObject arguments) {
         try {
-            if (!arguments.has("from") || !arguments.has("to")) {
-                return MCPProtocol.createErrorResponse("Missing required parameters: 'from' and 'to' positions", null);
-            }
-            
-            JsonObject fromPos = arguments.getAsJsonObject("from");
-            JsonObject toPos = arguments.getAsJsonObject("to");
-            
-            // Validate position objects have required coordinates
-            if (!fromPos.has("x") || !fromPos.has("y") || !fromPos.has("z") ||
-                !toPos.has("x") || !toPos.has("y") || !toPos.has("z")) {
-                return MCPProtocol.createErrorResponse("Position objects must contain x, y, z coordinates", null);
+            // A cursor continues a paginated scan whose area was given on its first page; boxes are checked by the scanner
+            if (!arguments.has("cursor") && !arguments.has("boxes")) {
+                if (!arguments.has("from") || !arguments.has("to")) {
+                    return MCPProtocol.createErrorResponse("Missing required parameters: 'from' and 'to' positions", null);
+                }
+
+                JsonObject fromPos = arguments.getAsJsonObject("from");
+                JsonObject toPos = arguments.getAsJsonObject("to");
+
+                // Validate position objects have required coordinates
+                if (!fromPos.has("x") || !fromPos.has("y") || !fromPos.has("z") ||
+                    !toPos.has("x") || !toPos.has("y") || !toPos.has("z")) {
+                    return MCPProtocol.createErrorResponse("Position objects must contain x, y, z coordinates", null);
+                }
             }
             
             int maxAreaSize = config.getServer().getMaxAreaSize();
-            JsonObject result = blockScanner.scanBlocksInArea(fromPos, toPos, maxAreaSize);
+            JsonObject result = blockScanner.scanBlocksInArea(arguments, maxAreaSize);
             
             // Check if there was an error scanning blocks
             if (result.has("error")) {
@@ -385,6 +443,22 @@ public class HTTPMCPServer {
         }
     }
 
+    private JsonObject handleWorldEdit(String toolName, JsonObject arguments, UnaryOperator<JsonObject> operation) {
+        if (operation == null) {
+            return MCPProtocol.createErrorResponse("Tool not available: " + toolName, null);
+        }
+        try {
+            JsonObject result = operation.apply(arguments == null ? new JsonObject() : arguments);
+            if (result.has("error")) {
+                return MCPProtocol.createErrorResponse(result.get("error").getAsString(), null);
+            }
+            return MCPProtocol.createSuccessResponse(result.toString());
+        } catch (Exception e) {
+            LOGGER.error("Error handling {}: {}", toolName, e.getMessage());
+            return MCPProtocol.createErrorResponse("Failed to run " + toolName + ": " + e.getMessage(), null);
+        }
+    }
+
     private JsonObject handleTakeScreenshot(JsonObject arguments) {
         CompletableFuture<String> future;
         try {
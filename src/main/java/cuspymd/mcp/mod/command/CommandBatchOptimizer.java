@@ -0,0 +1,362 @@
+package cuspymd.mcp.mod.command;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Optional pre-execution pass over a command batch. Within each run of consecutive
+ * absolute-coordinate {@code setblock}/{@code fill} writes it drops writes that later writes
+ * completely overwrite and merges consecutive same-state {@code setblock}s into {@code fill} boxes.
+ * Any other command is a barrier: nothing is moved across it.
+ *
+ * <p>Surviving writes keep their relative order. Placement and neighbor updates depend on what
+ * was written before, so only writes of the same state that follow one another are merged.</p>
+ */
+public final class CommandBatchOptimizer {
+    // Default commandModificationBlockLimit; vanilla fill refuses larger boxes
+    public static final int VANILLA_FILL_LIMIT = 32768;
+    // Fills up to this volume are checked cell by cell against the union of later writes
+    private static final int CELL_COVERAGE_CHECK_LIMIT = 4096;
+
+    private CommandBatchOptimizer() {
+    }
+
+    public static Result optimize(List<String> commands, int maxFillVolume) {
+        int fillLimit = Math.max(1, Math.min(maxFillVolume, VANILLA_FILL_LIMIT));
+        List<String> optimized = new ArrayList<>();
+        List<int[]> sources = new ArrayList<>();
+        List<Integer> eliminated = new ArrayList<>();
+        List<Write> run = new ArrayList<>();
+
+        for (int i = 0; i < commands.size(); i++) {
+            Write write = parseWrite(i, commands.get(i));
+            if (write != null) {
+                run.add(write);
+                continue;
+            }
+            flushRun(run, commands, fillLimit, optimized, sources, eliminated);
+            optimized.add(commands.get(i));
+            sources.add(new int[] {i});
+        }
+        flushRun(run, commands, fillLimit, optimized, sources, eliminated);
+
+        Collections.sort(eliminated);
+        return new Result(commands.size(), optimized, sources, eliminated);
+    }
+
+    private static void flushRun(
+        List<Write> run,
+        List<String> commands,
+        int fillLimit,
+        List<String> optimized,
+        List<int[]> sources,
+        List<Integer> eliminated
+    ) {
+        if (run.isEmpty()) {
+            return;
+        }
+
+        // Dead-write elimination, newest first
+        Set<Cell> laterPoints = new HashSet<>();
+        List<Write> laterBoxes = new ArrayList<>();
+        boolean[] dead = new boolean[run.size()];
+        for (int i = run.size() - 1; i >= 0; i--) {
+            Write write = run.get(i);
+            if (isShadowed(write, laterPoints, laterBoxes)) {
+                dead[i] = true;
+                eliminated.add(write.index);
+                continue;
+            }
+            if (write.isSingleBlock()) {
+                laterPoints.add(new Cell(write.minX, write.minY, write.minZ));
+            } else {
+                laterBoxes.add(write);
+            }
+        }
+
+        // Consecutive surviving setblocks of one state, keyed by position
+        Map<Cell, Write> points = new LinkedHashMap<>();
+        String pointsState = null;
+        for (int i = 0; i < run.size(); i++) {
+            Write write = run.get(i);
+            if (dead[i]) {
+                continue;
+            }
+            if (write.isSingleBlock() && write.stateKey.equals(pointsState)) {
+                points.put(new Cell(write.minX, write.minY, write.minZ), write);
+                continue;
+            }
+            if (!points.isEmpty()) {
+                mergePoints(points, commands, fillLimit, optimized, sources);
+                points.clear();
+            }
+            if (write.isSingleBlock()) {
+                pointsState = write.stateKey;
+                points.put(new Cell(write.minX, write.minY, write.minZ), write);
+            } else {
+                pointsState = null;
+                optimized.add(commands.get(write.index));
+                sources.add(new int[] {write.index});
+            }
+        }
+        if (!points.isEmpty()) {
+            mergePoints(points, commands, fillLimit, optimized, sources);
+        }
+        run.clear();
+    }
+
+    private static boolean isShadowed(Write write, Set<Cell> laterPoints, List<Write> laterBoxes) {
+        for (Write box : laterBoxes) {
+            if (box.contains(write)) {
+                return true;
+            }
+        }
+        if (write.isSingleBlock()) {
+            return laterPoints.contains(new Cell(write.minX, write.minY, write.minZ));
+        }
+        if (write.volume() > CELL_COVERAGE_CHECK_LIMIT) {
+            return false;
+        }
+        for (int y = write.minY; y <= write.maxY; y++) {
+            for (int z = write.minZ; z <= write.maxZ; z++) {
+                for (int x = write.minX; x <= write.maxX; x++) {
+                    if (!isCovered(x, y, z, laterPoints, laterBoxes)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean isCovered(int x, int y, int z, Set<Cell> laterPoints, List<Write> laterBoxes) {
+        if (laterPoints.contains(new Cell(x, y, z))) {
+            return true;
+        }
+        for (Write box : laterBoxes) {
+            if (box.contains(x, y, z)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Greedy box growth along x, then z, then y over the remaining points of one state
+    private static void mergePoints(
+        Map<Cell, Write> points,
+        List<String> commands,
+        int fillLimit,
+        List<String> optimized,
+        List<int[]> sources
+    ) {
+        List<Write> ordered = new ArrayList<>(points.values());
+        ordered.sort(Comparator.<Write>comparingInt(w -> w.minY)
+            .thenComparingInt(w -> w.minZ)
+            .thenComparingInt(w -> w.minX));
+        Set<Cell> remaining = new HashSet<>(points.keySet());
+
+        for (Write origin : ordered) {
+            if (!remaining.contains(new Cell(origin.minX, origin.minY, origin.minZ))) {
+                continue;
+            }
+            int x0 = origin.minX, y0 = origin.minY, z0 = origin.minZ;
+            int x1 = x0, y1 = y0, z1 = z0;
+
+            while (volume(x0, y0, z0, x1 + 1, y1, z1) <= fillLimit && allRemaining(remaining, x1 + 1, x1 + 1, y0, y1, z0, z1)) {
+                x1++;
+            }
+            while (volume(x0, y0, z0, x1, y1, z1 + 1) <= fillLimit && allRemaining(remaining, x0, x1, y0, y1, z1 + 1, z1 + 1)) {
+                z1++;
+            }
+            while (volume(x0, y0, z0, x1, y1 + 1, z1) <= fillLimit && allRemaining(remaining, x0, x1, y1 + 1, y1 + 1, z0, z1)) {
+                y1++;
+            }
+
+            List<Integer> indices = new ArrayList<>();
+            for (int y = y0; y <= y1; y++) {
+                for (int z = z0; z <= z1; z++) {
+                    for (int x = x0; x <= x1; x++) {
+                        Cell key = new Cell(x, y, z);
+                        remaining.remove(key);
+                        indices.add(points.get(key).index);
+                    }
+                }
+            }
+            Collections.sort(indices);
+
+            if (indices.size() == 1) {
+                optimized.add(commands.get(origin.index));
+            } else {
+                optimized.add("fill " + x0 + " " + y0 + " " + z0 + " " + x1 + " " + y1 + " " + z1 + " " + origin.state);
+            }
+            sources.add(indices.stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    private static boolean allRemaining(Set<Cell> remaining, int minX, int maxX, int minY, int maxY, int minZ, int maxZ) {
+        for (int y = minY; y <= maxY; y++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                for (int x = minX; x <= maxX; x++) {
+                    if (!remaining.contains(new Cell(x, y, z))) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private static long volume(int x0, int y0, int z0, int x1, int y1, int z1) {
+        return (long) (x1 - x0 + 1) * (y1 - y0 + 1) * (z1 - z0 + 1);
+    }
+
+    // Full coordinates: nothing upstream rejects positions outside the world, so a packed key could alias two of them
+    record Cell(int x, int y, int z) {
+    }
+
+    // setblock x y z <state> [replace] | fill x1 y1 z1 x2 y2 z2 <state> [replace]
+    static Write parseWrite(int index, String command) {
+        if (command == null) {
+            return null;
+        }
+        CommandTokenizer tokens = new CommandTokenizer(command, false).skipLeadingSlash();
+        if (!tokens.next()) {
+            return null;
+        }
+        int coordinateCount;
+        if (tokens.equalsIgnoreCase("setblock")) {
+            coordinateCount = 3;
+        } else if (tokens.equalsIgnoreCase("fill")) {
+            coordinateCount = 6;
+        } else {
+            return null;
+        }
+
+        int[] coordinates = new int[6];
+        for (int i = 0; i < coordinateCount; i++) {
+            if (!tokens.next() || !tokens.isInteger()) {
+                return null;
+            }
+            coordinates[i] = tokens.intValue();
+        }
+        if (coordinateCount == 3) {
+            coordinates[3] = coordinates[0];
+            coordinates[4] = coordinates[1];
+            coordinates[5] = coordinates[2];
+        }
+
+        if (!tokens.next()) {
+            return null;
+        }
+        String state = tokens.text();
+        if (tokens.next() && (!tokens.equalsIgnoreCase("replace") || tokens.next())) {
+            // destroy/keep/hollow/outline modes and replace filters depend on existing blocks
+            return null;
+        }
+
+        return new Write(index, coordinates, state);
+    }
+
+    private static String stateKey(String state) {
+        int idEnd = state.length();
+        for (int i = 0; i < state.length(); i++) {
+            char c = state.charAt(i);
+            if (c == '[' || c == '{') {
+                idEnd = i;
+                break;
+            }
+        }
+        String id = state.substring(0, idEnd);
+        return id.indexOf(':') >= 0 ? state : "minecraft:" + state;
+    }
+
+    static final class Write {
+        final int index;
+        final int minX, minY, minZ;
+        final int maxX, maxY, maxZ;
+        final String state;
+        final String stateKey;
+
+        Write(int index, int[] c, String state) {
+            this.index = index;
+            this.minX = Math.min(c[0], c[3]);
+            this.minY = Math.min(c[1], c[4]);
+            this.minZ = Math.min(c[2], c[5]);
+            this.maxX = Math.max(c[0], c[3]);
+            this.maxY = Math.max(c[1], c[4]);
+            this.maxZ = Math.max(c[2], c[5]);
+            this.state = state;
+            this.stateKey = stateKey(state);
+        }
+
+        boolean isSingleBlock() {
+            return minX == maxX && minY == maxY && minZ == maxZ;
+        }
+
+        long volume() {
+            return CommandBatchOptimizer.volume(minX, minY, minZ, maxX, maxY, maxZ);
+        }
+
+        boolean contains(int x, int y, int z) {
+            return x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ;
+        }
+
+        boolean contains(Write other) {
+            return other.minX >= minX && other.maxX <= maxX
+                && other.minY >= minY && other.maxY <= maxY
+                && other.minZ >= minZ && other.maxZ <= maxZ;
+        }
+    }
+
+    public static final class Result {
+        private final int originalCount;
+        private final List<String> commands;
+        private final List<int[]> sourceIndices;
+        private final List<Integer> eliminatedIndices;
+
+        private Result(int originalCount, List<String> commands, List<int[]> sourceIndices, List<Integer> eliminatedIndices) {
+            this.originalCount = originalCount;
+            this.commands = List.copyOf(commands);
+            this.sourceIndices = List.copyOf(sourceIndices);
+            this.eliminatedIndices = List.copyOf(eliminatedIndices);
+        }
+
+        public int getOriginalCount() { return originalCount; }
+        public List<String> getCommands() { return commands; }
+        public int[] getSourceIndices(int optimizedIndex) { return sourceIndices.get(optimizedIndex).clone(); }
+        public List<Integer> getEliminatedIndices() { return eliminatedIndices; }
+
+        /** Adds per-result {@code sourceIndices} and a top-level {@code optimization} summary. */
+        public void annotate(JsonObject responseJson) {
+            if (responseJson.has("results")) {
+                JsonArray results = responseJson.getAsJsonArray("results");
+                for (int i = 0; i < results.size() && i < sourceIndices.size(); i++) {
+                    JsonArray indices = new JsonArray();
+                    for (int index : sourceIndices.get(i)) {
+                        indices.add(index);
+                    }
+                    results.get(i).getAsJsonObject().add("sourceIndices", indices);
+                }
+            }
+
+            JsonObject optimization = new JsonObject();
+            optimization.addProperty("originalCommands", originalCount);
+            optimization.addProperty("optimizedCommands", commands.size());
+            JsonArray eliminated = new JsonArray();
+            for (int index : eliminatedIndices) {
+                eliminated.add(index);
+            }
+            optimization.add("eliminatedIndices", eliminated);
+            responseJson.add("optimization", optimization);
+        }
+    }
+}
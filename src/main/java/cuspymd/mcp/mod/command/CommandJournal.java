@@ -0,0 +1,318 @@
+package cuspymd.mcp.mod.command;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary journal of executed batches and their results. Records are encoded on the
+ * calling thread and written by a background thread, which forces the file to disk at most once
+ * per fsync interval however many records arrived in between. Each record carries a CRC, so a
+ * record torn by a crash is detected; it and anything after it are cut off when the journal is
+ * opened again.
+ */
+public final class CommandJournal implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CommandJournal.class);
+    static final int MAGIC = 0x4D43504A; // "MCPJ"
+    static final short VERSION = 1;
+    static final int HEADER_BYTES = 6;
+    // Arguments and results of one batch; anything larger is a corrupt length field
+    static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+    private static final int QUEUE_CAPACITY = 4096;
+
+    public enum Kind {
+        // New kinds go at the end: records store the ordinal
+        EXECUTE, COMPILE, RUN_COMPILED, UNDO
+    }
+
+    public record Entry(Kind kind, long timestampMillis, long durationMicros, String arguments, String result) {
+    }
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long fsyncIntervalNanos;
+    private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writer;
+    private volatile boolean running = true;
+    private volatile IOException failure;
+    // Only the writer thread updates it
+    private volatile long records;
+
+    private CommandJournal(Path path, FileChannel channel, long fsyncIntervalMillis) {
+        this.path = path;
+        this.channel = channel;
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, fsyncIntervalMillis));
+        this.writer = new Thread(this::writeLoop, "MCP-Command-Journal");
+        this.writer.setDaemon(true);
+    }
+
+    /**
+     * Opens the journal for appending, creating it if needed. A torn or corrupt tail left by a
+     * crash is truncated so that new records follow the last intact one.
+     */
+    public static CommandJournal open(Path path, long fsyncIntervalMillis) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        // A file shorter than the header was cut off while being created
+        long validLength = Files.exists(path) && Files.size(path) >= HEADER_BYTES ? scanValidLength(path) : 0;
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            if (validLength == 0) {
+                channel.truncate(0);
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putShort(VERSION).flip();
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                channel.force(true);
+                validLength = HEADER_BYTES;
+            } else if (validLength < channel.size()) {
+                LOGGER.warn("Truncating torn command journal tail at {} of {} bytes in {}", validLength, channel.size(), path);
+                channel.truncate(validLength);
+                channel.force(true);
+            }
+            channel.position(validLength);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        CommandJournal journal = new CommandJournal(path, channel, fsyncIntervalMillis);
+        journal.writer.start();
+        return journal;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Queues one record. Blocks only when the writer has fallen {@code QUEUE_CAPACITY} records
+     * behind, so a slow disk slows callers down instead of growing memory without bound.
+     */
+    public void append(Kind kind, long timestampMillis, long durationMicros, String arguments, String result) {
+        if (!running) {
+            return;
+        }
+        try {
+            queue.put(encode(new Entry(kind, timestampMillis, durationMicros, arguments, result)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        List<byte[]> pending = new ArrayList<>();
+        boolean dirty = false;
+        long lastForce = System.nanoTime();
+        while (running || !queue.isEmpty()) {
+            try {
+                byte[] first = queue.poll(Math.max(1, TimeUnit.NANOSECONDS.toMillis(fsyncIntervalNanos)), TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    pending.add(first);
+                    queue.drainTo(pending);
+                    for (byte[] record : pending) {
+                        ByteBuffer buffer = ByteBuffer.wrap(record);
+                        while (buffer.hasRemaining()) {
+                            channel.write(buffer);
+                        }
+                    }
+                    records += pending.size();
+                    pending.clear();
+                    dirty = true;
+                }
+                long now = System.nanoTime();
+                // Under steady load this forces once per interval; when idle, right after the last write
+                if (dirty && (first == null || now - lastForce >= fsyncIntervalNanos)) {
+                    channel.force(false);
+                    dirty = false;
+                    lastForce = now;
+                }
+            } catch (InterruptedException e) {
+                // close() stops the loop through the running flag
+            } catch (IOException e) {
+                failure = e;
+                running = false;
+                queue.clear();
+                LOGGER.error("Command journal {} stopped after a write error", path, e);
+            }
+        }
+        if (dirty && failure == null) {
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                LOGGER.error("Failed to force command journal {}", path, e);
+            }
+        }
+    }
+
+    public long getRecordsWritten() {
+        return records;
+    }
+
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /** Writes and forces everything queued, then closes the file. */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.error("Failed to close command journal {}", path, e);
+        }
+    }
+
+    static byte[] encode(Entry entry) {
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+        try (DataOutputStream payload = new DataOutputStream(payloadBytes)) {
+            payload.writeByte(entry.kind().ordinal());
+            payload.writeLong(entry.timestampMillis());
+            payload.writeLong(entry.durationMicros());
+            writeString(payload, entry.arguments());
+            writeString(payload, entry.result());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] body = payloadBytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return ByteBuffer.allocate(8 + body.length).putInt(body.length).putInt((int) crc.getValue()).put(body).array();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        // writeUTF caps strings at 64 KiB, which large batches exceed
+        byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static long scanValidLength(Path path) throws IOException {
+        try (Reader reader = new Reader(path)) {
+            while (reader.next() != null) {
+                // Only the offset of the last intact record matters
+            }
+            return reader.validLength;
+        } catch (IOException e) {
+            throw new IOException("Not a command journal: " + path, e);
+        }
+    }
+
+    /**
+     * Streams the records of a journal in order. {@link #next()} returns null at the end of the
+     * file or at the first torn or corrupt record; {@link #isTruncated()} tells them apart.
+     */
+    public static final class Reader implements AutoCloseable {
+        private final DataInputStream in;
+        private long validLength = HEADER_BYTES;
+        private boolean truncated;
+
+        public Reader(Path path) throws IOException {
+            InputStream stream = new BufferedInputStream(Files.newInputStream(path), 1 << 16);
+            this.in = new DataInputStream(stream);
+            try {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException("Bad journal header");
+                }
+                short version = in.readShort();
+                if (version != VERSION) {
+                    throw new IOException("Unsupported journal version " + version);
+                }
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+
+        public Entry next() throws IOException {
+            if (truncated) {
+                return null;
+            }
+            int length;
+            try {
+                length = in.readInt();
+            } catch (EOFException e) {
+                return null;
+            }
+            try {
+                int expectedCrc = in.readInt();
+                if (length < 0 || length > MAX_RECORD_BYTES) {
+                    truncated = true;
+                    return null;
+                }
+                byte[] body = new byte[length];
+                in.readFully(body);
+                CRC32 crc = new CRC32();
+                crc.update(body);
+                if ((int) crc.getValue() != expectedCrc) {
+                    truncated = true;
+                    return null;
+                }
+                Entry entry = decode(body);
+                validLength += 8 + length;
+                return entry;
+            } catch (EOFException | IllegalArgumentException e) {
+                truncated = true;
+                return null;
+            }
+        }
+
+        /** True if reading stopped at a torn or corrupt record rather than a clean end of file. */
+        public boolean isTruncated() {
+            return truncated;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private static Entry decode(byte[] body) throws IOException {
+            DataInputStream payload = new DataInputStream(new ByteArrayInputStream(body));
+            int kind = payload.readUnsignedByte();
+            if (kind >= Kind.values().length) {
+                throw new IllegalArgumentException("Unknown record kind " + kind);
+            }
+            long timestamp = payload.readLong();
+            long duration = payload.readLong();
+            return new Entry(Kind.values()[kind], timestamp, duration, readString(payload), readString(payload));
+        }
+
+        private static String readString(DataInputStream in) throws IOException {
+            int length = in.readInt();
+            if (length < 0 || length > in.available()) {
+                throw new IllegalArgumentException("Bad string length " + length);
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package cuspymd.mcp.mod.command;
+
+import cuspymd.mcp.mod.utils.CoordinateUtils;
+import net.minecraft.core.BlockPos;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Works out which blocks a command can change from its text alone. {@code fill}, {@code setblock},
+ * {@code clone} and {@code summon} resolve to bounding boxes, with {@code ~} coordinates taken
+ * relative to the executing source's position. Commands that only touch players, chat or global
+ * state resolve to an empty list. Anything that cannot be bounded ({@code execute}, functions,
+ * local {@code ^} coordinates, other dimensions) resolves to null, meaning "possibly anywhere".
+ */
+public final class CommandRegionResolver {
+    private static final Set<String> REGIONLESS_VERBS = Set.of(
+        "tp", "teleport", "give", "gamemode", "effect", "enchant", "weather", "time",
+        "say", "tell", "msg", "w", "title", "tellraw", "xp", "experience"
+    );
+
+    private CommandRegionResolver() {
+    }
+
+    public static List<CoordinateUtils.BoundingBox> resolve(String command, BlockPos origin) {
+        CommandTokenizer tokens = new CommandTokenizer(command, false).skipLeadingSlash();
+        if (!tokens.next()) {
+            return List.of();
+        }
+        String verb = tokens.text().toLowerCase(Locale.ROOT);
+        if (verb.startsWith("minecraft:")) {
+            verb = verb.substring("minecraft:".length());
+        }
+
+        try {
+            switch (verb) {
+                case "fill" -> {
+                    BlockPos from = readPos(tokens, origin);
+                    BlockPos to = from == null ? null : readPos(tokens, origin);
+                    return to == null ? null : List.of(box(from, to));
+                }
+                case "setblock" -> {
+                    BlockPos pos = readPos(tokens, origin);
+                    return pos == null ? null : List.of(box(pos, pos));
+                }
+                case "clone" -> {
+                    BlockPos begin = readPos(tokens, origin);
+                    BlockPos end = begin == null ? null : readPos(tokens, origin);
+                    BlockPos destination = end == null ? null : readPos(tokens, origin);
+                    if (destination == null) {
+                        return null;
+                    }
+                    // Both ends count: the source is read and may be cleared by "move"
+                    CoordinateUtils.BoundingBox source = box(begin, end);
+                    CoordinateUtils.BoundingBox target = new CoordinateUtils.BoundingBox(
+                        destination.getX(), destination.getY(), destination.getZ(),
+                        destination.getX() + source.getWidth() - 1,
+                        destination.getY() + source.getHeight() - 1,
+                        destination.getZ() + source.getDepth() - 1);
+                    return List.of(source, target);
+                }
+                case "summon" -> {
+                    if (!tokens.next()) {
+                        return null;
+                    }
+                    BlockPos pos = readPos(tokens, origin);
+                    // Without coordinates the entity spawns at the source
+                    return List.of(box(pos == null ? origin : pos, pos == null ? origin : pos));
+                }
+                default -> {
+                    return REGIONLESS_VERBS.contains(verb) ? List.of() : null;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /** Reads three coordinate tokens, or returns null if the next tokens are not a position. */
+    private static BlockPos readPos(CommandTokenizer tokens, BlockPos origin) {
+        String[] axes = new String[3];
+        for (int i = 0; i < 3; i++) {
+            if (!tokens.next() || !(tokens.isCoordinate() || (tokens.length() == 1 && tokens.charAt(0) == '~'))) {
+                return null;
+            }
+            axes[i] = tokens.text();
+        }
+        return CoordinateUtils.parseBlockPos(axes[0], axes[1], axes[2], origin);
+    }
+
+    private static CoordinateUtils.BoundingBox box(BlockPos a, BlockPos b) {
+        return new CoordinateUtils.BoundingBox(a.getX(), a.getY(), a.getZ(), b.getX(), b.getY(), b.getZ());
+    }
+}
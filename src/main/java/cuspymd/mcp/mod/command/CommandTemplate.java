@@ -0,0 +1,414 @@
+package cuspymd.mcp.mod.command;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * A command with {@code ${...}} placeholders that expands to one command per combination of its
+ * variables. Each variable is an integer range or a list of values; the first variable declared
+ * is the outermost loop. Placeholders hold integer arithmetic over the variables
+ * ({@code + - * / %}, parentheses; division rounds down), or a bare variable name for list
+ * values. Expansion is lazy: commands are rendered one at a time as the iterator is advanced.
+ *
+ * <pre>{"template": "setblock ${x} ${64 + x/2} 10 oak_stairs[facing=east]", "vars": {"x": {"from": 0, "to": 31}}}</pre>
+ */
+public final class CommandTemplate implements Iterable<String> {
+    private final String text;
+    private final List<Variable> variables;
+    private final List<Object> segments;
+    private final long size;
+
+    private CommandTemplate(String text, List<Variable> variables, List<Object> segments, long size) {
+        this.text = text;
+        this.variables = variables;
+        this.segments = segments;
+        this.size = size;
+    }
+
+    public static boolean isTemplate(JsonElement element) {
+        return element != null && element.isJsonObject() && element.getAsJsonObject().has("template");
+    }
+
+    /**
+     * Parses every template in a command batch. The result is aligned with the array and holds
+     * null for plain entries. Throws IllegalArgumentException naming the offending entry when a
+     * template is malformed or the batch would expand past {@code maxCommands}.
+     */
+    public static List<CommandTemplate> parseAll(JsonArray commands, long maxCommands) {
+        List<CommandTemplate> templates = new ArrayList<>(commands.size());
+        long total = 0;
+        for (int i = 0; i < commands.size(); i++) {
+            JsonElement element = commands.get(i);
+            if (!isTemplate(element)) {
+                templates.add(null);
+                total++;
+                continue;
+            }
+            CommandTemplate template;
+            try {
+                template = parse(element.getAsJsonObject());
+            } catch (RuntimeException e) {
+                // Covers malformed JSON shapes and ranges too large to count as well as bad syntax
+                throw new IllegalArgumentException("Command " + i + ": " + e.getMessage());
+            }
+            total += template.size();
+            if (total > maxCommands) {
+                throw new IllegalArgumentException("Batch expands to more than " + maxCommands + " commands");
+            }
+            templates.add(template);
+        }
+        return templates;
+    }
+
+    public static CommandTemplate parse(JsonObject spec) {
+        String text = spec.get("template").getAsString();
+        Map<String, Variable> declared = new LinkedHashMap<>();
+        if (spec.has("vars")) {
+            for (Map.Entry<String, JsonElement> entry : spec.getAsJsonObject("vars").entrySet()) {
+                if (!entry.getKey().matches("[A-Za-z_][A-Za-z0-9_]*")) {
+                    throw new IllegalArgumentException("Invalid variable name: " + entry.getKey());
+                }
+                declared.put(entry.getKey(), Variable.parse(entry.getKey(), entry.getValue()));
+            }
+        }
+        List<String> names = List.copyOf(declared.keySet());
+        List<Variable> variables = List.copyOf(declared.values());
+
+        long size = 1;
+        for (Variable variable : variables) {
+            size = Math.multiplyExact(size, variable.length());
+        }
+
+        List<Object> segments = new ArrayList<>();
+        int pos = 0;
+        while (pos < text.length()) {
+            int start = text.indexOf("${", pos);
+            if (start < 0) {
+                segments.add(text.substring(pos));
+                break;
+            }
+            int end = text.indexOf('}', start);
+            if (end < 0) {
+                throw new IllegalArgumentException("Unclosed ${ in template");
+            }
+            if (start > pos) {
+                segments.add(text.substring(pos, start));
+            }
+            String source = text.substring(start + 2, end).trim();
+            int bare = names.indexOf(source);
+            if (bare >= 0) {
+                segments.add(bare);
+            } else {
+                Expression expression = new ExpressionParser(source, names).parse();
+                expression.checkNumeric(variables);
+                segments.add(expression);
+            }
+            pos = end + 1;
+        }
+        return new CommandTemplate(text, variables, Collections.unmodifiableList(segments), size);
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /** Number of commands the template expands to. */
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<>() {
+            private final int[] indices = new int[variables.size()];
+            private long produced;
+
+            @Override
+            public boolean hasNext() {
+                return produced < size;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String command = render(indices);
+                produced++;
+                // Odometer: the last variable turns fastest
+                for (int v = indices.length - 1; v >= 0; v--) {
+                    if (++indices[v] < variables.get(v).length()) {
+                        break;
+                    }
+                    indices[v] = 0;
+                }
+                return command;
+            }
+        };
+    }
+
+    private String render(int[] indices) {
+        StringBuilder command = new StringBuilder(text.length() + 16);
+        for (Object segment : segments) {
+            if (segment instanceof String literal) {
+                command.append(literal);
+            } else if (segment instanceof Integer variable) {
+                command.append(variables.get(variable).valueAt(indices[variable]));
+            } else {
+                command.append(((Expression) segment).evaluate(variables, indices));
+            }
+        }
+        return command.toString();
+    }
+
+    /**
+     * Expands a whole batch lazily: plain string entries pass through, templates are rendered on
+     * demand and non-string entries are skipped.
+     */
+    public static Iterable<String> expandAll(JsonArray commands, List<CommandTemplate> templates) {
+        return () -> new Iterator<>() {
+            private int index;
+            private Iterator<String> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext()) {
+                    if (index >= commands.size()) {
+                        return false;
+                    }
+                    CommandTemplate template = templates.get(index);
+                    JsonElement element = commands.get(index++);
+                    if (template != null) {
+                        current = template.iterator();
+                    } else if (element.isJsonPrimitive() && element.getAsJsonPrimitive().isString()) {
+                        current = List.of(element.getAsString()).iterator();
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+
+    private record Variable(long from, long step, long length, List<String> values) {
+        static Variable parse(String name, JsonElement spec) {
+            if (spec.isJsonArray()) {
+                JsonArray array = spec.getAsJsonArray();
+                if (array.isEmpty()) {
+                    throw new IllegalArgumentException("Variable " + name + " has no values");
+                }
+                List<String> values = new ArrayList<>(array.size());
+                for (JsonElement value : array) {
+                    values.add(value.getAsString());
+                }
+                return new Variable(0, 0, values.size(), List.copyOf(values));
+            }
+            JsonObject range = spec.getAsJsonObject();
+            if (!range.has("from") || !range.has("to")) {
+                throw new IllegalArgumentException("Variable " + name + " needs from and to, or a list of values");
+            }
+            long from = range.get("from").getAsLong();
+            long to = range.get("to").getAsLong();
+            long step = range.has("step") ? range.get("step").getAsLong() : (to >= from ? 1 : -1);
+            if (step == 0 || (to - from) / step < 0) {
+                throw new IllegalArgumentException("Variable " + name + " never reaches " + to + " with step " + step);
+            }
+            return new Variable(from, step, (to - from) / step + 1, null);
+        }
+
+        boolean numeric() {
+            return values == null;
+        }
+
+        Object valueAt(int index) {
+            return values != null ? values.get(index) : from + step * index;
+        }
+
+        long numberAt(int index, String name) {
+            if (values == null) {
+                return from + step * index;
+            }
+            try {
+                return Long.parseLong(values.get(index));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Variable " + name + " value " + values.get(index) + " is not an integer");
+            }
+        }
+    }
+
+    private interface Expression {
+        long evaluate(List<Variable> variables, int[] indices);
+
+        default void checkNumeric(List<Variable> variables) {
+        }
+    }
+
+    /** Recursive descent over {@code expr := term (('+'|'-') term)*}, {@code term := unary (('*'|'/'|'%') unary)*}. */
+    private static final class ExpressionParser {
+        private final String source;
+        private final List<String> names;
+        private int pos;
+
+        ExpressionParser(String source, List<String> names) {
+            this.source = source;
+            this.names = names;
+        }
+
+        Expression parse() {
+            if (source.isEmpty()) {
+                throw new IllegalArgumentException("Empty ${} in template");
+            }
+            Expression expression = parseSum();
+            skipSpaces();
+            if (pos < source.length()) {
+                throw error();
+            }
+            return expression;
+        }
+
+        private Expression parseSum() {
+            Expression left = parseProduct();
+            while (true) {
+                skipSpaces();
+                if (pos >= source.length() || (source.charAt(pos) != '+' && source.charAt(pos) != '-')) {
+                    return left;
+                }
+                char op = source.charAt(pos++);
+                Expression a = left;
+                Expression b = parseProduct();
+                left = binary(a, b, op);
+            }
+        }
+
+        private Expression parseProduct() {
+            Expression left = parseUnary();
+            while (true) {
+                skipSpaces();
+                if (pos >= source.length() || "*/%".indexOf(source.charAt(pos)) < 0) {
+                    return left;
+                }
+                char op = source.charAt(pos++);
+                Expression a = left;
+                Expression b = parseUnary();
+                left = binary(a, b, op);
+            }
+        }
+
+        private Expression parseUnary() {
+            skipSpaces();
+            if (pos >= source.length()) {
+                throw error();
+            }
+            char c = source.charAt(pos);
+            if (c == '-') {
+                pos++;
+                Expression operand = parseUnary();
+                return binary((v, i) -> 0, operand, '-');
+            }
+            if (c == '(') {
+                pos++;
+                Expression inner = parseSum();
+                skipSpaces();
+                if (pos >= source.length() || source.charAt(pos) != ')') {
+                    throw error();
+                }
+                pos++;
+                return inner;
+            }
+            if (Character.isDigit(c)) {
+                int start = pos;
+                while (pos < source.length() && Character.isDigit(source.charAt(pos))) {
+                    pos++;
+                }
+                long value = Long.parseLong(source.substring(start, pos));
+                return (v, i) -> value;
+            }
+            if (Character.isLetter(c) || c == '_') {
+                int start = pos;
+                while (pos < source.length() && (Character.isLetterOrDigit(source.charAt(pos)) || source.charAt(pos) == '_')) {
+                    pos++;
+                }
+                String name = source.substring(start, pos);
+                int variable = names.indexOf(name);
+                if (variable < 0) {
+                    throw new IllegalArgumentException("Unknown variable " + name + " in ${" + source + "}");
+                }
+                return new Expression() {
+                    @Override
+                    public long evaluate(List<Variable> variables, int[] indices) {
+                        return variables.get(variable).numberAt(indices[variable], name);
+                    }
+
+                    @Override
+                    public void checkNumeric(List<Variable> variables) {
+                        // Lists of integers may take part in arithmetic; reject anything else up front
+                        Variable declared = variables.get(variable);
+                        for (int k = 0; !declared.numeric() && k < declared.length(); k++) {
+                            declared.numberAt(k, name);
+                        }
+                    }
+                };
+            }
+            throw error();
+        }
+
+        private static Expression binary(Expression a, Expression b, char op) {
+            return new Expression() {
+                @Override
+                public long evaluate(List<Variable> variables, int[] indices) {
+                    long x = a.evaluate(variables, indices);
+                    long y = b.evaluate(variables, indices);
+                    return switch (op) {
+                        case '+' -> x + y;
+                        case '-' -> x - y;
+                        case '*' -> x * y;
+                        case '/' -> {
+                            if (y == 0) {
+                                throw new IllegalArgumentException("Division by zero in template");
+                            }
+                            yield Math.floorDiv(x, y);
+                        }
+                        default -> {
+                            if (y == 0) {
+                                throw new IllegalArgumentException("Division by zero in template");
+                            }
+                            yield Math.floorMod(x, y);
+                        }
+                    };
+                }
+
+                @Override
+                public void checkNumeric(List<Variable> variables) {
+                    a.checkNumeric(variables);
+                    b.checkNumeric(variables);
+                }
+            };
+        }
+
+        private void skipSpaces() {
+            while (pos < source.length() && source.charAt(pos) == ' ') {
+                pos++;
+            }
+        }
+
+        private IllegalArgumentException error() {
+            return new IllegalArgumentException("Cannot parse ${" + source + "} at position " + pos);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package cuspymd.mcp.mod.command;
+
+/**
+ * Hand-written lexer that walks a command as a sequence of token spans over the original
+ * {@link CharSequence}. Callers inspect the current span in place instead of allocating
+ * substrings, lowercased copies or split arrays.
+ *
+ * <p>With quote recognition enabled a token that starts with {@code "} or {@code '} and has a
+ * matching closing quote spans the text between the quotes; otherwise a token is a run of
+ * non-whitespace characters.</p>
+ */
+public final class CommandTokenizer {
+    private final boolean recognizeQuotes;
+    private CharSequence input;
+    private int position;
+    private int limit;
+    private int tokenStart;
+    private int tokenEnd;
+    private boolean quoted;
+
+    public CommandTokenizer(CharSequence input) {
+        this(input, true);
+    }
+
+    public CommandTokenizer(CharSequence input, boolean recognizeQuotes) {
+        this.recognizeQuotes = recognizeQuotes;
+        reset(input);
+    }
+
+    public CommandTokenizer reset(CharSequence input) {
+        this.input = input == null ? "" : input;
+        this.position = 0;
+        this.limit = this.input.length();
+        this.tokenStart = 0;
+        this.tokenEnd = 0;
+        this.quoted = false;
+        return this;
+    }
+
+    /** Skips leading whitespace and a single leading slash, as typed in chat. */
+    public CommandTokenizer skipLeadingSlash() {
+        skipWhitespace();
+        if (position < limit && input.charAt(position) == '/') {
+            position++;
+        }
+        return this;
+    }
+
+    /** Advances to the next token. Returns false once the input is exhausted. */
+    public boolean next() {
+        skipWhitespace();
+        if (position >= limit) {
+            tokenStart = limit;
+            tokenEnd = limit;
+            quoted = false;
+            return false;
+        }
+
+        char first = input.charAt(position);
+        if (recognizeQuotes && (first == '"' || first == '\'')) {
+            int close = indexOf(first, position + 1);
+            if (close >= 0) {
+                tokenStart = position + 1;
+                tokenEnd = close;
+                position = close + 1;
+                quoted = true;
+                return true;
+            }
+        }
+
+        tokenStart = position;
+        while (position < limit && !isWhitespace(input.charAt(position))) {
+            position++;
+        }
+        tokenEnd = position;
+        quoted = false;
+        return true;
+    }
+
+    public CharSequence input() { return input; }
+    public int start() { return tokenStart; }
+    public int end() { return tokenEnd; }
+    public int length() { return tokenEnd - tokenStart; }
+    public boolean isQuoted() { return quoted; }
+
+    public char charAt(int offset) {
+        return input.charAt(tokenStart + offset);
+    }
+
+    public String text() {
+        return input.subSequence(tokenStart, tokenEnd).toString();
+    }
+
+    /** Compares the token against an already-lowercase literal, ignoring the token's case. */
+    public boolean equalsIgnoreCase(String lowercase) {
+        return length() == lowercase.length() && regionMatchesLowercase(tokenStart, lowercase);
+    }
+
+    public boolean startsWithIgnoreCase(String lowercase) {
+        return length() >= lowercase.length() && regionMatchesLowercase(tokenStart, lowercase);
+    }
+
+    public boolean endsWithIgnoreCase(String lowercase) {
+        return length() >= lowercase.length() && regionMatchesLowercase(tokenEnd - lowercase.length(), lowercase);
+    }
+
+    public boolean isInteger() {
+        return isInteger(input, tokenStart, tokenEnd);
+    }
+
+    public int intValue() {
+        return parseInt(input, tokenStart, tokenEnd);
+    }
+
+    public boolean isCoordinate() {
+        return isCoordinate(input, tokenStart, tokenEnd);
+    }
+
+    private boolean regionMatchesLowercase(int from, String lowercase) {
+        for (int i = 0; i < lowercase.length(); i++) {
+            if (Character.toLowerCase(input.charAt(from + i)) != lowercase.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void skipWhitespace() {
+        while (position < limit && isWhitespace(input.charAt(position))) {
+            position++;
+        }
+    }
+
+    private int indexOf(char c, int from) {
+        for (int i = from; i < limit; i++) {
+            if (input.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Same character class as the regex \s the previous parsers used
+    public static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /** Accepts {@code -?\d+} that fits in an int. */
+    public static boolean isInteger(CharSequence s, int start, int end) {
+        int i = start;
+        if (i < end && s.charAt(i) == '-') {
+            i++;
+        }
+        if (i >= end) {
+            return false;
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+            value = value * 10 + (c - '0');
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                return false;
+            }
+        }
+        return s.charAt(start) == '-' || value <= Integer.MAX_VALUE;
+    }
+
+    /** Parses {@code -?\d+} without creating an intermediate string. */
+    public static int parseInt(CharSequence s, int start, int end) {
+        if (!isInteger(s, start, end)) {
+            throw new NumberFormatException("Not an integer: \"" + s.subSequence(start, end) + "\"");
+        }
+        boolean negative = s.charAt(start) == '-';
+        long value = 0;
+        for (int i = negative ? start + 1 : start; i < end; i++) {
+            value = value * 10 + (s.charAt(i) - '0');
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    /** Matches {@code ~?-?\d+(\.\d+)?} or {@code \^-?\d+(\.\d+)?}. */
+    public static boolean isCoordinate(CharSequence s, int start, int end) {
+        int i = start;
+        if (i < end && (s.charAt(i) == '~' || s.charAt(i) == '^')) {
+            i++;
+        }
+        if (i < end && s.charAt(i) == '-') {
+            i++;
+        }
+        int digits = i;
+        while (i < end && isDigit(s.charAt(i))) {
+            i++;
+        }
+        if (i == digits) {
+            return false;
+        }
+        if (i == end) {
+            return true;
+        }
+        if (s.charAt(i) != '.') {
+            return false;
+        }
+        int fraction = ++i;
+        while (i < end && isDigit(s.charAt(i))) {
+            i++;
+        }
+        return i > fraction && i == end;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -1,7 +1,20 @@
 package cuspymd.mcp.mod.command;
 
 import com.google.gson.JsonObject;
+import cuspymd.mcp.mod.server.MCPProtocol;
 
 public interface ICommandExecutor {
     JsonObject executeCommands(JsonObject arguments);
+
+    default JsonObject compileBatch(JsonObject arguments) {
+        return MCPProtocol.createErrorResponse("compile_batch is only supported on a dedicated server", null);
+    }
+
+    default JsonObject runCompiledBatch(JsonObject arguments) {
+        return MCPProtocol.createErrorResponse("run_compiled_batch is only supported on a dedicated server", null);
+    }
+
+    default JsonObject replayJournal(JsonObject arguments) {
+        return MCPProtocol.createErrorResponse("replay_journal requires server.journal_enabled in the config", null);
+    }
 }
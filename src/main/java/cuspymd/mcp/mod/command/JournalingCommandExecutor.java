@@ -0,0 +1,199 @@
+package cuspymd.mcp.mod.command;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import cuspymd.mcp.mod.server.MCPProtocol;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Records every batch the wrapped executor runs, with its result, in a {@link CommandJournal}.
+ * Dry runs change nothing and are not recorded. {@code undo_batch} calls are recorded too, through
+ * {@link JournalingWorldEditor}; the other world-edit tools are not. {@code replay_journal} feeds a
+ * journal back through the wrapped executor as fast as it accepts batches, so replays are not
+ * recorded again.
+ */
+public class JournalingCommandExecutor implements ICommandExecutor {
+    private final ICommandExecutor delegate;
+    // Returns a world-edit result, with an "error" key on failure; null when undo is unavailable
+    private final UnaryOperator<JsonObject> undo;
+    private final CommandJournal journal;
+
+    public JournalingCommandExecutor(ICommandExecutor delegate, CommandJournal journal) {
+        this(delegate, null, journal);
+    }
+
+    public JournalingCommandExecutor(ICommandExecutor delegate, UnaryOperator<JsonObject> undo, CommandJournal journal) {
+        this.delegate = delegate;
+        this.undo = undo;
+        this.journal = journal;
+    }
+
+    @Override
+    public JsonObject executeCommands(JsonObject arguments) {
+        boolean dryRun = arguments.has("dry_run") && arguments.get("dry_run").getAsBoolean();
+        return dryRun ? delegate.executeCommands(arguments) : record(CommandJournal.Kind.EXECUTE, arguments);
+    }
+
+    @Override
+    public JsonObject compileBatch(JsonObject arguments) {
+        // Recorded so that a replay can compile the batches that later run_compiled_batch calls use
+        return record(CommandJournal.Kind.COMPILE, arguments);
+    }
+
+    @Override
+    public JsonObject runCompiledBatch(JsonObject arguments) {
+        return record(CommandJournal.Kind.RUN_COMPILED, arguments);
+    }
+
+    /** Rolls back a batch and records the call. Returns the world-edit result, not a tool response. */
+    public JsonObject undoBatch(JsonObject arguments) {
+        return record(CommandJournal.Kind.UNDO, arguments);
+    }
+
+    private JsonObject record(CommandJournal.Kind kind, JsonObject arguments) {
+        long timestamp = System.currentTimeMillis();
+        long start = System.nanoTime();
+        JsonObject result = dispatch(kind, arguments);
+        long durationMicros = (System.nanoTime() - start) / 1000;
+        journal.append(kind, timestamp, durationMicros, arguments.toString(), result.toString());
+        return result;
+    }
+
+    private JsonObject dispatch(CommandJournal.Kind kind, JsonObject arguments) {
+        return switch (kind) {
+            case EXECUTE -> delegate.executeCommands(arguments);
+            case COMPILE -> delegate.compileBatch(arguments);
+            case RUN_COMPILED -> delegate.runCompiledBatch(arguments);
+            case UNDO -> {
+                if (undo != null) {
+                    yield undo.apply(arguments);
+                }
+                JsonObject error = new JsonObject();
+                error.addProperty("error", "Tool not available: undo_batch");
+                yield error;
+            }
+        };
+    }
+
+    @Override
+    public JsonObject replayJournal(JsonObject arguments) {
+        Path path = journal.getPath();
+        if (arguments.has("file")) {
+            String file = arguments.get("file").getAsString();
+            // Only journals next to the configured one can be replayed
+            if (file.isEmpty() || file.contains("/") || file.contains("\\") || file.equals("..")) {
+                return MCPProtocol.createErrorResponse("file must be a file name in the journal directory", null);
+            }
+            path = path.resolveSibling(file);
+        }
+        if (!Files.isRegularFile(path)) {
+            return MCPProtocol.createErrorResponse("Journal not found: " + path.getFileName(), null);
+        }
+        long maxBatches = arguments.has("max_batches") ? arguments.get("max_batches").getAsLong() : Long.MAX_VALUE;
+
+        int batches = 0;
+        long commands = 0;
+        int failedBatches = 0;
+        int divergedBatches = 0;
+        int skippedUndos = 0;
+        long recordedMicros = 0;
+        Map<String, Integer> compiledSizes = new HashMap<>();
+        // Batch ids are handed out in order per server run, so a replay usually gets different ones
+        Map<String, String> batchIds = new HashMap<>();
+        boolean truncated;
+        long start = System.nanoTime();
+        try (CommandJournal.Reader reader = new CommandJournal.Reader(path)) {
+            CommandJournal.Entry entry;
+            while (batches < maxBatches && (entry = reader.next()) != null) {
+                JsonObject recordedArguments = JsonParser.parseString(entry.arguments()).getAsJsonObject();
+                JsonObject recordedResult = JsonParser.parseString(entry.result()).getAsJsonObject();
+                if (entry.kind() == CommandJournal.Kind.UNDO) {
+                    String replayedId = recordedArguments.has("batch_id") ? batchIds.remove(recordedArguments.get("batch_id").getAsString()) : null;
+                    if (replayedId == null) {
+                        // The batch was recorded by a tool the journal does not cover, or was not replayed;
+                        // passing the recorded id on could roll back an unrelated batch
+                        skippedUndos++;
+                        continue;
+                    }
+                    recordedArguments.addProperty("batch_id", replayedId);
+                }
+                JsonObject result = dispatch(entry.kind(), recordedArguments);
+                boolean failed = isError(result);
+                if (failed != isError(recordedResult)) {
+                    divergedBatches++;
+                }
+                String recordedId = batchId(recordedResult);
+                String replayedId = batchId(result);
+                if (recordedId != null && replayedId != null) {
+                    batchIds.put(recordedId, replayedId);
+                }
+                if (entry.kind() == CommandJournal.Kind.COMPILE) {
+                    // Hashes depend only on the commands, so the replayed hash matches the recorded one
+                    JsonObject payload = payload(result);
+                    if (payload != null && payload.has("batchHash")) {
+                        compiledSizes.put(payload.get("batchHash").getAsString(), payload.get("commandCount").getAsInt());
+                    }
+                    continue;
+                }
+                batches++;
+                recordedMicros += entry.durationMicros();
+                if (failed) {
+                    failedBatches++;
+                }
+                if (entry.kind() == CommandJournal.Kind.EXECUTE) {
+                    commands += recordedArguments.has("commands") ? recordedArguments.getAsJsonArray("commands").size() : 0;
+                } else if (recordedArguments.has("batch_hash")) {
+                    commands += compiledSizes.getOrDefault(recordedArguments.get("batch_hash").getAsString(), 0);
+                }
+            }
+            truncated = reader.isTruncated();
+        } catch (IOException e) {
+            return MCPProtocol.createErrorResponse("Failed to read journal: " + e.getMessage(), null);
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        JsonObject response = new JsonObject();
+        response.addProperty("file", path.getFileName().toString());
+        response.addProperty("batches", batches);
+        response.addProperty("commands", commands);
+        response.addProperty("failedBatches", failedBatches);
+        response.addProperty("divergedBatches", divergedBatches);
+        response.addProperty("skippedUndos", skippedUndos);
+        response.addProperty("truncated", truncated);
+        response.addProperty("elapsedMs", elapsedNanos / 1_000_000);
+        response.addProperty("recordedMs", recordedMicros / 1000);
+        double seconds = Math.max(elapsedNanos, 1) / 1e9;
+        response.addProperty("batchesPerSecond", Math.round(batches / seconds * 10) / 10.0);
+        response.addProperty("commandsPerSecond", Math.round(commands / seconds * 10) / 10.0);
+        if (divergedBatches > 0) {
+            response.addProperty("hint", "divergedBatches counts batches that failed now but succeeded when recorded, or the reverse. The world may not be in the state the journal started from.");
+        }
+        return MCPProtocol.createSuccessResponse(response.toString());
+    }
+
+    private static boolean isError(JsonObject result) {
+        // Undo records hold world-edit results, which carry an error message instead of the flag
+        return result.has("isError") ? result.get("isError").getAsBoolean() : result.has("error");
+    }
+
+    private static String batchId(JsonObject result) {
+        JsonObject payload = payload(result);
+        return payload != null && payload.has("batchId") ? payload.get("batchId").getAsString() : null;
+    }
+
+    private static JsonObject payload(JsonObject result) {
+        try {
+            JsonElement text = result.getAsJsonArray("content").get(0).getAsJsonObject().get("text");
+            return JsonParser.parseString(text.getAsString()).getAsJsonObject();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
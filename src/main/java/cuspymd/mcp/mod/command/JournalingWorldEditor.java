@@ -0,0 +1,69 @@
+package cuspymd.mcp.mod.command;
+
+import com.google.gson.JsonObject;
+import cuspymd.mcp.mod.utils.IWorldEditor;
+
+/**
+ * Sends {@code undo_batch} through a {@link JournalingCommandExecutor} so that a replay rolls back
+ * the same batches the recorded session did. The other world-edit tools pass straight through
+ * and are not journaled.
+ */
+public class JournalingWorldEditor implements IWorldEditor {
+    private final IWorldEditor delegate;
+    private final JournalingCommandExecutor journaling;
+
+    public JournalingWorldEditor(IWorldEditor delegate, JournalingCommandExecutor journaling) {
+        this.delegate = delegate;
+        this.journaling = journaling;
+    }
+
+    @Override
+    public JsonObject placeBlocks(JsonObject arguments) {
+        return delegate.placeBlocks(arguments);
+    }
+
+    @Override
+    public JsonObject placeShape(JsonObject arguments) {
+        return delegate.placeShape(arguments);
+    }
+
+    @Override
+    public JsonObject copyRegion(JsonObject arguments) {
+        return delegate.copyRegion(arguments);
+    }
+
+    @Override
+    public JsonObject pasteRegion(JsonObject arguments) {
+        return delegate.pasteRegion(arguments);
+    }
+
+    @Override
+    public JsonObject exportStructure(JsonObject arguments) {
+        return delegate.exportStructure(arguments);
+    }
+
+    @Override
+    public JsonObject importStructure(JsonObject arguments) {
+        return delegate.importStructure(arguments);
+    }
+
+    @Override
+    public JsonObject undoBatch(JsonObject arguments) {
+        return journaling.undoBatch(arguments);
+    }
+
+    @Override
+    public JsonObject startFillJob(JsonObject arguments) {
+        return delegate.startFillJob(arguments);
+    }
+
+    @Override
+    public JsonObject getJobStatus(JsonObject arguments) {
+        return delegate.getJobStatus(arguments);
+    }
+
+    @Override
+    public JsonObject cancelJob(JsonObject arguments) {
+        return delegate.cancelJob(arguments);
+    }
+}
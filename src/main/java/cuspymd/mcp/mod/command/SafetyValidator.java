@@ -4,17 +4,15 @@ import cuspymd.mcp.mod.config.MCPConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.regex.Pattern;
+import java.util.Locale;
 
 public class SafetyValidator {
     private static final Logger LOGGER = LoggerFactory.getLogger(SafetyValidator.class);
     
     private final MCPConfig config;
     
-    private static final Pattern KILL_ALL_PATTERN = Pattern.compile("kill\\s+@[ae]");
-    private static final Pattern CREATIVE_ALL_PATTERN = Pattern.compile("gamemode\\s+creative\\s+@a");
-    private static final Pattern LARGE_COUNT_PATTERN = Pattern.compile("Count:(\\d+)");
-    private static final Pattern FILL_COORDINATES_PATTERN = Pattern.compile("fill\\s+(-?\\d+)\\s+(-?\\d+)\\s+(-?\\d+)\\s+(-?\\d+)\\s+(-?\\d+)\\s+(-?\\d+)");
+    private static final ValidationResult SUCCESS = new ValidationResult(true, null);
+    private static final String COUNT_MARKER = "Count:";
     
     public SafetyValidator(MCPConfig config) {
         this.config = config;
@@ -25,66 +23,138 @@ public class SafetyValidator {
             return ValidationResult.success();
         }
         
-        String normalizedCommand = command.toLowerCase().trim();
-        
-        if (normalizedCommand.startsWith("/")) {
-            normalizedCommand = normalizedCommand.substring(1);
+        // Whitespace-delimited tokens, matching what the game sees before Brigadier parsing
+        CommandTokenizer tokens = new CommandTokenizer(command, false).skipLeadingSlash();
+        if (!tokens.next()) {
+            return ValidationResult.failure("Empty command");
         }
         
-        String[] parts = normalizedCommand.split("\\s+");
-        if (parts.length == 0) {
-            return ValidationResult.failure("Empty command");
+        if (!isAllowedCommand(tokens)) {
+            return ValidationResult.failure("Command '" + tokens.text().toLowerCase(Locale.ROOT) + "' is not allowed");
         }
         
-        String commandName = parts[0];
+        boolean isFill = tokens.equalsIgnoreCase("fill");
+        boolean killsAll = false;
+        boolean creativeForAll = false;
+        boolean afterKill = false;
+        boolean afterGamemode = false;
+        boolean afterGamemodeCreative = false;
+        int fillCoordinates = 0;
+        int x1 = 0, y1 = 0, z1 = 0, x2 = 0, y2 = 0, z2 = 0;
+        int index = 0;
         
-        if (!config.getServer().getAllowedCommands().contains(commandName)) {
-            return ValidationResult.failure("Command '" + commandName + "' is not allowed");
-        }
+        do {
+            if (afterKill && (tokens.startsWithIgnoreCase("@a") || tokens.startsWithIgnoreCase("@e"))) {
+                killsAll = true;
+            }
+            if (afterGamemodeCreative && tokens.startsWithIgnoreCase("@a")) {
+                creativeForAll = true;
+            }
+            afterGamemodeCreative = afterGamemode && tokens.equalsIgnoreCase("creative");
+            afterKill = tokens.endsWithIgnoreCase("kill");
+            afterGamemode = tokens.endsWithIgnoreCase("gamemode");
+            
+            if (isFill && index >= 1 && index <= 6 && fillCoordinates == index - 1 && tokens.isInteger()) {
+                int value = tokens.intValue();
+                switch (index) {
+                    case 1 -> x1 = value;
+                    case 2 -> y1 = value;
+                    case 3 -> z1 = value;
+                    case 4 -> x2 = value;
+                    case 5 -> y2 = value;
+                    default -> z2 = value;
+                }
+                fillCoordinates++;
+            }
+            index++;
+        } while (tokens.next());
         
-        if (KILL_ALL_PATTERN.matcher(normalizedCommand).find()) {
+        if (killsAll) {
             return ValidationResult.failure("Potentially destructive pattern detected: mass entity killing");
         }
         
-        if (CREATIVE_ALL_PATTERN.matcher(normalizedCommand).find() && 
-            config.getSafety().isBlockCreativeForAll()) {
+        if (creativeForAll && config.getSafety().isBlockCreativeForAll()) {
             return ValidationResult.failure("Setting creative mode for all players is not allowed");
         }
         
-        var matcher = LARGE_COUNT_PATTERN.matcher(command);
-        if (matcher.find()) {
-            int count = Integer.parseInt(matcher.group(1));
-            if (count > config.getSafety().getMaxEntitiesPerCommand()) {
-                return ValidationResult.failure("Item/entity count (" + count + ") exceeds maximum allowed (" + 
-                    config.getSafety().getMaxEntitiesPerCommand() + ")");
-            }
+        long count = findCount(command);
+        if (count > config.getSafety().getMaxEntitiesPerCommand()) {
+            return ValidationResult.failure("Item/entity count (" + count + ") exceeds maximum allowed (" + 
+                config.getSafety().getMaxEntitiesPerCommand() + ")");
         }
         
-        if ("fill".equals(commandName)) {
-            var fillMatcher = FILL_COORDINATES_PATTERN.matcher(command);
-            if (fillMatcher.find()) {
-                try {
-                    int x1 = Integer.parseInt(fillMatcher.group(1));
-                    int y1 = Integer.parseInt(fillMatcher.group(2));
-                    int z1 = Integer.parseInt(fillMatcher.group(3));
-                    int x2 = Integer.parseInt(fillMatcher.group(4));
-                    int y2 = Integer.parseInt(fillMatcher.group(5));
-                    int z2 = Integer.parseInt(fillMatcher.group(6));
-                    
-                    long volume = Math.abs((long)(x2 - x1 + 1) * (y2 - y1 + 1) * (z2 - z1 + 1));
-                    if (volume > config.getSafety().getMaxBlocksPerCommand()) {
-                        return ValidationResult.failure("Fill area volume (" + volume + ") exceeds maximum allowed (" + 
-                            config.getSafety().getMaxBlocksPerCommand() + ")");
-                    }
-                } catch (NumberFormatException e) {
-                    LOGGER.debug("Could not parse fill coordinates for validation", e);
-                }
+        if (isFill && fillCoordinates == 6) {
+            long volume = ((long) Math.abs(x2 - x1) + 1) * ((long) Math.abs(y2 - y1) + 1) * ((long) Math.abs(z2 - z1) + 1);
+            if (volume > config.getSafety().getMaxBlocksPerCommand()) {
+                return ValidationResult.failure("Fill area volume (" + volume + ") exceeds maximum allowed (" + 
+                    config.getSafety().getMaxBlocksPerCommand() + ")");
             }
+        } else if (isFill) {
+            LOGGER.debug("Could not parse fill coordinates for validation: {}", command);
         }
         
         return ValidationResult.success();
     }
     
+    /**
+     * Applies the same policy to a tool that edits blocks without running a command. The vanilla
+     * command doing the same job must be allowed, and an edit applied within a single tick may not
+     * touch more blocks than one fill command could.
+     */
+    public ValidationResult validateEdit(String equivalentCommand, long blocks, boolean singleTick) {
+        if (!config.getServer().isEnableSafety()) {
+            return ValidationResult.success();
+        }
+        CommandTokenizer name = new CommandTokenizer(equivalentCommand, false);
+        if (!name.next() || !isAllowedCommand(name)) {
+            return ValidationResult.failure("Command '" + equivalentCommand + "' is not allowed, so neither is this edit");
+        }
+        if (singleTick && blocks > config.getSafety().getMaxBlocksPerCommand()) {
+            return ValidationResult.failure("Edit volume (" + blocks + ") exceeds maximum allowed ("
+                + config.getSafety().getMaxBlocksPerCommand() + ")");
+        }
+        return ValidationResult.success();
+    }
+
+    private boolean isAllowedCommand(CommandTokenizer commandName) {
+        for (String allowed : config.getServer().getAllowedCommands()) {
+            if (allowed != null && commandName.equalsIgnoreCase(allowed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    // First "Count:<digits>" occurrence, or -1. Values past Long.MAX_VALUE saturate instead of throwing.
+    static long findCount(CharSequence command) {
+        int limit = command.length() - COUNT_MARKER.length();
+        for (int i = 0; i < limit; i++) {
+            if (!regionMatches(command, i, COUNT_MARKER)) {
+                continue;
+            }
+            int digit = i + COUNT_MARKER.length();
+            long value = 0;
+            int end = digit;
+            while (end < command.length() && command.charAt(end) >= '0' && command.charAt(end) <= '9') {
+                value = value > (Long.MAX_VALUE - 9) / 10 ? Long.MAX_VALUE : value * 10 + (command.charAt(end) - '0');
+                end++;
+            }
+            if (end > digit) {
+                return value;
+            }
+        }
+        return -1;
+    }
+    
+    private static boolean regionMatches(CharSequence s, int offset, String literal) {
+        for (int i = 0; i < literal.length(); i++) {
+            if (s.charAt(offset + i) != literal.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
     public static class ValidationResult {
         private final boolean valid;
         private final String errorMessage;
@@ -95,7 +165,7 @@ public class SafetyValidator {
         }
         
         public static ValidationResult success() {
-            return new ValidationResult(true, null);
+            return SUCCESS;
         }
         
         public static ValidationResult failure(String message) {
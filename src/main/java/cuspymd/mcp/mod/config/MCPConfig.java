@@ -79,6 +79,12 @@ public class MCPConfig {
         private int maxAreaSize = 10;
         private List<String> allowedCommands = DEFAULT_ALLOWED_COMMANDS;
         private int requestTimeoutMs = 30000;
+        private int maxCompiledBatches = 64;
+        private int fillJobTickBudgetMicros = 5000;
+        private boolean journalEnabled = false;
+        private String journalFile = "mcp-journal.bin";
+        private int journalFsyncIntervalMs = 100;
+        private String structureDirectory = "mcp-structures";
         private boolean autoStart = true;
         
         public String getTransport() { return transport; }
@@ -88,6 +94,12 @@ public class MCPConfig {
         public int getMaxAreaSize() { return maxAreaSize; }
         public List<String> getAllowedCommands() { return allowedCommands; }
         public int getRequestTimeoutMs() { return requestTimeoutMs; }
+        public int getMaxCompiledBatches() { return maxCompiledBatches; }
+        public int getFillJobTickBudgetMicros() { return fillJobTickBudgetMicros; }
+        public boolean isJournalEnabled() { return journalEnabled; }
+        public String getJournalFile() { return journalFile; }
+        public int getJournalFsyncIntervalMs() { return journalFsyncIntervalMs; }
+        public String getStructureDirectory() { return structureDirectory; }
         public boolean isAutoStart() { return autoStart; }
     }
     
@@ -96,21 +108,41 @@ public class MCPConfig {
         private String logLevel = "INFO";
         private boolean logCommands = false;
         private boolean saveScreenshotsForDebug = false;
+        private boolean paceCommands = true;
+        // Vanilla adds 20 to a non-op player's spam counter per command, decays it by 1 per tick and kicks above 200,
+        // so about 1/s is all such a player can sustain; faster rates are left for the pacer to discover
+        private double initialCommandsPerSecond = 1.0;
+        private double minCommandsPerSecond = 0.5;
+        private double maxCommandsPerSecond = 20.0;
+        private int commandBurst = 4;
         
         public boolean isShowNotifications() { return showNotifications; }
         public String getLogLevel() { return logLevel; }
         public boolean isLogCommands() { return logCommands; }
         public boolean isSaveScreenshotsForDebug() { return saveScreenshotsForDebug; }
+        public boolean isPaceCommands() { return paceCommands; }
+        public double getInitialCommandsPerSecond() { return initialCommandsPerSecond; }
+        public double getMinCommandsPerSecond() { return minCommandsPerSecond; }
+        public double getMaxCommandsPerSecond() { return maxCommandsPerSecond; }
+        public int getCommandBurst() { return commandBurst; }
     }
     
     public static class SafetyConfig {
         private int maxEntitiesPerCommand = 10;
         private int maxBlocksPerCommand = 125000;
+        private int maxBlocksPerEdit = 1000000;
+        private int maxUndoSections = 4096;
+        private long maxBlocksPerFillJob = 16777216;
+        private int maxExpandedCommands = 65536;
         private boolean blockCreativeForAll = true;
         private boolean requireOpForAdminCommands = true;
         
         public int getMaxEntitiesPerCommand() { return maxEntitiesPerCommand; }
         public int getMaxBlocksPerCommand() { return maxBlocksPerCommand; }
+        public int getMaxBlocksPerEdit() { return maxBlocksPerEdit; }
+        public int getMaxUndoSections() { return maxUndoSections; }
+        public long getMaxBlocksPerFillJob() { return maxBlocksPerFillJob; }
+        public int getMaxExpandedCommands() { return maxExpandedCommands; }
         public boolean isBlockCreativeForAll() { return blockCreativeForAll; }
         public boolean isRequireOpForAdminCommands() { return requireOpForAdminCommands; }
     }
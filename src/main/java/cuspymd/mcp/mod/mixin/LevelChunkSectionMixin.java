@@ -0,0 +1,58 @@
+package cuspymd.mcp.mod.mixin;
+
+import cuspymd.mcp.mod.server.build.SectionHashes;
+import cuspymd.mcp.mod.server.build.SectionVersions;
+import cuspymd.mcp.mod.server.build.VersionedSection;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+@Mixin(LevelChunkSection.class)
+public class LevelChunkSectionMixin implements VersionedSection {
+	// A change only marks the section dirty; the next read stamps a fresh version, so the hot path is one field write
+	@Unique
+	private boolean mcp$dirty = true;
+	@Unique
+	private long mcp$version;
+	// Computed on first read, then adjusted per change so it never needs a rescan
+	@Unique
+	private boolean mcp$hashValid;
+	@Unique
+	private long mcp$hash;
+
+	@Inject(
+		method = "setBlockState(IIILnet/minecraft/world/level/block/state/BlockState;Z)Lnet/minecraft/world/level/block/state/BlockState;",
+		at = @At("RETURN")
+	)
+	private void mcp$markChanged(int x, int y, int z, BlockState state, boolean useLocks, CallbackInfoReturnable<BlockState> cir) {
+		BlockState previous = cir.getReturnValue();
+		if (previous != state) {
+			mcp$dirty = true;
+			if (mcp$hashValid) {
+				mcp$hash += SectionHashes.cell(x, y, z, state) - SectionHashes.cell(x, y, z, previous);
+			}
+		}
+	}
+
+	@Override
+	public long mcp$getVersion() {
+		if (mcp$dirty) {
+			mcp$dirty = false;
+			mcp$version = SectionVersions.next();
+		}
+		return mcp$version;
+	}
+
+	@Override
+	public long mcp$getContentHash() {
+		if (!mcp$hashValid) {
+			mcp$hash = SectionHashes.compute((LevelChunkSection) (Object) this);
+			mcp$hashValid = true;
+		}
+		return mcp$hash;
+	}
+}
@@ -0,0 +1,44 @@
+package cuspymd.mcp.mod.mixin;
+
+import cuspymd.mcp.mod.server.build.BlockChangeHooks;
+import cuspymd.mcp.mod.server.build.BuildSession;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.state.BlockState;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.ModifyVariable;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+@Mixin(Level.class)
+public class LevelMixin {
+	@ModifyVariable(
+		method = "setBlock(Lnet/minecraft/core/BlockPos;Lnet/minecraft/world/level/block/state/BlockState;II)Z",
+		at = @At("HEAD"),
+		argsOnly = true,
+		ordinal = 0
+	)
+	private int mcp$adjustBuildSessionFlags(int flags, BlockPos pos, BlockState state) {
+		return BuildSession.adjustFlags((Level) (Object) this, pos, flags);
+	}
+
+	@Inject(
+		method = "setBlock(Lnet/minecraft/core/BlockPos;Lnet/minecraft/world/level/block/state/BlockState;II)Z",
+		at = @At("HEAD")
+	)
+	private void mcp$beforeSetBlock(BlockPos pos, BlockState state, int flags, int maxUpdateDepth, CallbackInfoReturnable<Boolean> cir) {
+		BlockChangeHooks.beforeSetBlock((Level) (Object) this, pos);
+	}
+
+	@Inject(
+		method = "setBlock(Lnet/minecraft/core/BlockPos;Lnet/minecraft/world/level/block/state/BlockState;II)Z",
+		at = @At("RETURN")
+	)
+	private void mcp$afterSetBlock(BlockPos pos, BlockState state, int flags, int maxUpdateDepth, CallbackInfoReturnable<Boolean> cir) {
+		// setBlock returns false when nothing changed
+		if (cir.getReturnValueZ()) {
+			BlockChangeHooks.afterSetBlock((Level) (Object) this, pos);
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package cuspymd.mcp.mod.mixin;
+
+import cuspymd.mcp.mod.server.build.BuildSession;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.redstone.Orientation;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(ServerLevel.class)
+public class ServerLevelMixin {
+	// Commands such as fill and setblock notify neighbors explicitly after placing
+	@Inject(
+		method = "updateNeighborsAt(Lnet/minecraft/core/BlockPos;Lnet/minecraft/world/level/block/Block;Lnet/minecraft/world/level/redstone/Orientation;)V",
+		at = @At("HEAD"),
+		cancellable = true
+	)
+	private void mcp$deferNeighborUpdates(BlockPos pos, Block block, Orientation orientation, CallbackInfo ci) {
+		if (BuildSession.suppressesNeighborUpdates((ServerLevel) (Object) this)) {
+			ci.cancel();
+		}
+	}
+}
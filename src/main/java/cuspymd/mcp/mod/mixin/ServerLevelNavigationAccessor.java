@@ -0,0 +1,19 @@
+package cuspymd.mcp.mod.mixin;
+
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.Mob;
+import net.minecraft.world.level.pathfinder.PathTypeCache;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Accessor;
+
+import java.util.Set;
+
+// What ServerLevel.sendBlockUpdated touches besides the client packet, for writes made without UPDATE_CLIENTS
+@Mixin(ServerLevel.class)
+public interface ServerLevelNavigationAccessor {
+	@Accessor("navigatingMobs")
+	Set<Mob> mcp$getNavigatingMobs();
+
+	@Accessor("pathTypesByPosCache")
+	PathTypeCache mcp$getPathTypesByPosCache();
+}
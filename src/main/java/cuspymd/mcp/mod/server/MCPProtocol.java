@@ -70,11 +70,20 @@ public class MCPProtocol {
 
         JsonObject commandsProperty = new JsonObject();
         commandsProperty.addProperty("type", "array");
-        commandsProperty.addProperty("description", "Array of Minecraft commands to execute without leading slash. Each command is executed sequentially. Per-command results include status, accepted/applied booleans, summary, and command-scoped chat messages.");
+        commandsProperty.addProperty("description", "Array of Minecraft commands to execute without leading slash. Each command is executed sequentially. Per-command results include status, accepted/applied booleans, summary, and command-scoped chat messages. " +
+            "An entry may instead be a template that expands server-side into many commands, e.g. a staircase: " +
+            "{\"template\": \"setblock ${100 + i} ${64 + i} 20 oak_stairs[facing=east]\", \"vars\": {\"i\": {\"from\": 0, \"to\": 15}}}. " +
+            "${...} holds integer arithmetic (+ - * / % and parentheses) over the vars, or a bare var name. " +
+            "A template yields one result with status success, partial or failed, expandedCommands, appliedCommands and up to 5 failures.");
         commandsProperty.addProperty("minItems", 1);
         
         JsonObject commandsItems = new JsonObject();
-        commandsItems.addProperty("type", "string");
+        JsonArray commandsItemTypes = new JsonArray();
+        JsonObject commandItem = new JsonObject();
+        commandItem.addProperty("type", "string");
+        commandsItemTypes.add(commandItem);
+        commandsItemTypes.add(commandTemplateSchema());
+        commandsItems.add("oneOf", commandsItemTypes);
         commandsProperty.add("items", commandsItems);
         
         JsonObject validateSafetyProperty = new JsonObject();
@@ -82,8 +91,22 @@ public class MCPProtocol {
         validateSafetyProperty.addProperty("description", "Whether to validate command safety (default: true)");
         validateSafetyProperty.addProperty("default", true);
         
+        JsonObject optimizeProperty = new JsonObject();
+        optimizeProperty.addProperty("type", "boolean");
+        optimizeProperty.addProperty("description", "Merge consecutive same-state setblocks into fills (other writes keep their order) and drop writes fully overwritten later in the batch before executing (default: false). Results then describe the optimized commands; each has sourceIndices pointing back to the submitted commands.");
+        optimizeProperty.addProperty("default", false);
+        
         properties.add("commands", commandsProperty);
         properties.add("validate_safety", validateSafetyProperty);
+        properties.add("optimize", optimizeProperty);
+        properties.add("suppress_updates", suppressUpdatesSchema());
+        properties.add("record_undo", recordUndoSchema());
+        JsonObject dryRunProperty = new JsonObject();
+        dryRunProperty.addProperty("type", "boolean");
+        dryRunProperty.addProperty("description", "Preview the batch without changing the world (default: false). Plain setblock and fill commands are interpreted against a copy of the affected chunk sections; other commands are reported as skipped. Returns the resulting block changes as 'deltas' in the get_blocks_in_area format, which place_blocks accepts as 'blocks'. Dedicated server only.");
+        dryRunProperty.addProperty("default", false);
+        properties.add("dry_run", dryRunProperty);
+        properties.add("if_versions", ifVersionsSchema());
         inputSchema.add("properties", properties);
         
         JsonArray required = new JsonArray();
@@ -132,7 +155,12 @@ public class MCPProtocol {
             "- Doors have both upper and lower halves\n" +
             "- Roof is fully covered\n" +
             "- Windows are placed correctly\n" +
-            "If you find errors, use execute_commands to fix them."
+            "If you find errors, use execute_commands to fix them.\n\n" +
+            "To survey a larger area first, pass 'resolution' N: the area is summarized in NxNxN cubes, each with its most common block and how full it is, " +
+            "and may then span up to " + maxAreaSize + " x N blocks per axis. Zoom in on interesting cubes with full-resolution scans.\n\n" +
+            "To find specific blocks, pass 'include' (and/or 'exclude'); chunk sections that cannot contain a match are skipped without being read.\n\n" +
+            "To read a whole large area, pass 'paginate': true and follow 'cursor' until a page comes back without one.\n\n" +
+            "To check several parts of a build at once, pass 'boxes' instead of 'from' and 'to'."
         );
         
         JsonObject blocksInputSchema = new JsonObject();
@@ -143,7 +171,7 @@ public class MCPProtocol {
         // From position
         JsonObject fromProperty = new JsonObject();
         fromProperty.addProperty("type", "object");
-        fromProperty.addProperty("description", "Starting position of the area to scan");
+        fromProperty.addProperty("description", "Starting position of the area to scan (required unless 'cursor' or 'boxes' is given)");
         JsonObject fromPosProperties = new JsonObject();
         JsonObject xProp = new JsonObject();
         xProp.addProperty("type", "integer");
@@ -164,7 +192,7 @@ public class MCPProtocol {
         // To position
         JsonObject toProperty = new JsonObject();
         toProperty.addProperty("type", "object");
-        toProperty.addProperty("description", "Ending position of the area to scan");
+        toProperty.addProperty("description", "Ending position of the area to scan (required unless 'cursor' or 'boxes' is given)");
         JsonObject toPosProperties = new JsonObject();
         toPosProperties.add("x", xProp);
         toPosProperties.add("y", yProp);
@@ -178,16 +206,458 @@ public class MCPProtocol {
         
         blocksProperties.add("from", fromProperty);
         blocksProperties.add("to", toProperty);
+        blocksProperties.add("fail_fast", failFastSchema());
+        JsonObject ifNoneMatchProperty = new JsonObject();
+        JsonArray ifNoneMatchTypes = new JsonArray();
+        ifNoneMatchTypes.add("string");
+        ifNoneMatchTypes.add("object");
+        ifNoneMatchProperty.add("type", ifNoneMatchTypes);
+        ifNoneMatchProperty.addProperty("description", "Cheap change check for the same area. Pass the 'hash' of an earlier scan to get {\"unchanged\": true} instead of the blocks when nothing changed since; otherwise the full scan is returned. Pass its 'sectionHashes' instead to get blocks only from the chunk sections that changed, listed in 'changedSections'. Dedicated server only.");
+        blocksProperties.add("if_none_match", ifNoneMatchProperty);
+        JsonObject includeHashesProperty = new JsonObject();
+        includeHashesProperty.addProperty("type", "boolean");
+        includeHashesProperty.addProperty("description", "Also return 'hash' and 'sectionHashes' for a later if_none_match (default: false). The first hash of a section reads all its blocks, so only ask when you mean to re-check the area. Implied by if_none_match. Dedicated server only.");
+        includeHashesProperty.addProperty("default", false);
+        blocksProperties.add("include_hashes", includeHashesProperty);
+        JsonObject resolutionProperty = new JsonObject();
+        resolutionProperty.addProperty("type", "integer");
+        resolutionProperty.addProperty("minimum", 1);
+        resolutionProperty.addProperty("maximum", 64);
+        resolutionProperty.addProperty("description", "Cube edge for a downsampled overview (default: 1, full detail). Returns 'lod' with 'palette' and 'cells' as [cx, cy, cz, paletteIndex, fill]: cube coordinates from the area's minimum corner, the most common non-air block, and the non-air fraction. Dedicated server only.");
+        resolutionProperty.addProperty("default", 1);
+        blocksProperties.add("resolution", resolutionProperty);
+        blocksProperties.add("include", blockFilterSchema("Only return blocks matching any of these blocks, block states or #tags, e.g. [\"minecraft:diamond_ore\", \"#minecraft:logs\"]. "
+            + "A filtered scan larger than " + maxAreaSize + " per axis is read in pages as with 'paginate'; otherwise it stops after " + maxAreaSize + "^3 matches with 'truncated'. Dedicated server only."));
+        blocksProperties.add("exclude", blockFilterSchema("Leave out blocks matching any of these blocks, block states or #tags, e.g. [\"minecraft:stone\", \"minecraft:dirt\"]. Dedicated server only."));
+        JsonObject paginateProperty = new JsonObject();
+        paginateProperty.addProperty("type", "boolean");
+        paginateProperty.addProperty("description", "Scan an area of any size up to the fill job volume limit one page at a time (default: false). Each page holds up to " + maxAreaSize + "^3 blocks and is read in small per-tick slices; pass the returned 'cursor' to get the next page. Dedicated server only.");
+        paginateProperty.addProperty("default", false);
+        blocksProperties.add("paginate", paginateProperty);
+        JsonObject cursorProperty = new JsonObject();
+        cursorProperty.addProperty("type", "string");
+        cursorProperty.addProperty("description", "The 'cursor' of the previous page of a paginated scan; all other arguments are then ignored. A cursor expires after 5 minutes without a request");
+        blocksProperties.add("cursor", cursorProperty);
+        JsonObject boxesProperty = new JsonObject();
+        boxesProperty.addProperty("type", "array");
+        boxesProperty.addProperty("description", "Scan up to 64 boxes in one call instead of 'from'/'to', e.g. the walls, roof and door of a build. Each box is limited like a single scan and the results come back in 'boxes' in the same order. Combines with 'include', 'exclude' and 'fail_fast'. Dedicated server only.");
+        JsonObject boxItem = new JsonObject();
+        boxItem.addProperty("type", "object");
+        JsonObject boxItemProperties = new JsonObject();
+        boxItemProperties.add("from", positionSchema("Starting position of the box"));
+        boxItemProperties.add("to", positionSchema("Ending position of the box"));
+        boxItem.add("properties", boxItemProperties);
+        JsonArray boxItemRequired = new JsonArray();
+        boxItemRequired.add("from");
+        boxItemRequired.add("to");
+        boxItem.add("required", boxItemRequired);
+        boxesProperty.add("items", boxItem);
+        blocksProperties.add("boxes", boxesProperty);
+        JsonObject encodingProperty = new JsonObject();
+        encodingProperty.addProperty("type", "string");
+        JsonArray encodings = new JsonArray();
+        encodings.add("blocks");
+        encodings.add("voxel");
+        encodingProperty.add("enum", encodings);
+        encodingProperty.addProperty("description", "'voxel' returns the area as 'palette' (full block states) and base64 'data' of (runLength, value) varint pairs, value 0 for air and k for palette[k-1], in the same format place_blocks accepts. Much smaller than 'blocks' for dense or varied areas. Up to " + maxAreaSize + "^3 cells. Dedicated server only.");
+        encodingProperty.addProperty("default", "blocks");
+        blocksProperties.add("encoding", encodingProperty);
+        JsonObject orderProperty = new JsonObject();
+        orderProperty.addProperty("type", "string");
+        orderProperty.addProperty("description", "Cell order of voxel 'data', axes fastest first (default: \"xzy\", the order place_blocks uses). Put the axis with the longest runs of identical blocks first, e.g. \"yxz\" for walls and pillars.");
+        orderProperty.addProperty("default", "xzy");
+        blocksProperties.add("order", orderProperty);
         blocksInputSchema.add("properties", blocksProperties);
         
-        JsonArray blocksRequiredFields = new JsonArray();
-        blocksRequiredFields.add("from");
-        blocksRequiredFields.add("to");
-        blocksInputSchema.add("required", blocksRequiredFields);
-        
         getBlocksInAreaTool.add("inputSchema", blocksInputSchema);
         tools.add(getBlocksInAreaTool);
 
+        // Place blocks tool
+        JsonObject placeBlocksTool = new JsonObject();
+        placeBlocksTool.addProperty("name", "place_blocks");
+        long maxBlocksPerEdit = config != null ? config.getSafety().getMaxBlocksPerEdit() : 1000000;
+        placeBlocksTool.addProperty("description",
+            "Place many blocks in one call without going through commands. Much faster than execute_commands for large or detailed builds.\n\n" +
+            "Two input formats:\n" +
+            "1. Voxel array: 'origin', 'size', 'palette' (block states such as \"minecraft:oak_stairs[facing=east]\") and 'data'. " +
+            "'data' is base64 of (runLength, value) varint pairs over the size.x * size.y * size.z cells, x fastest, then z, then y. " +
+            "Value 0 leaves the cell untouched, value k places palette[k-1].\n" +
+            "2. The 'blocks' array returned by get_blocks_in_area, optionally moved by 'offset'.\n\n" +
+            "Maximum " + maxBlocksPerEdit + " blocks per call. Cells that already hold the requested state are skipped."
+        );
+
+        JsonObject placeInputSchema = new JsonObject();
+        placeInputSchema.addProperty("type", "object");
+        JsonObject placeProperties = new JsonObject();
+        placeProperties.add("origin", positionSchema("Minimum corner of the voxel array"));
+        placeProperties.add("size", positionSchema("Voxel array dimensions"));
+        JsonObject paletteProperty = new JsonObject();
+        paletteProperty.addProperty("type", "array");
+        paletteProperty.addProperty("description", "Block states referenced by 'data' (1-based)");
+        JsonObject paletteItems = new JsonObject();
+        paletteItems.addProperty("type", "string");
+        paletteProperty.add("items", paletteItems);
+        placeProperties.add("palette", paletteProperty);
+        JsonObject dataProperty = new JsonObject();
+        dataProperty.addProperty("type", "string");
+        dataProperty.addProperty("description", "Base64 run-length encoded palette indices");
+        placeProperties.add("data", dataProperty);
+        JsonObject compressedBlocksProperty = new JsonObject();
+        compressedBlocksProperty.addProperty("type", "array");
+        compressedBlocksProperty.addProperty("description", "Blocks in the get_blocks_in_area format: [{blockType, regions, singleBlocks}]");
+        JsonObject compressedBlocksItems = new JsonObject();
+        compressedBlocksItems.addProperty("type", "object");
+        compressedBlocksProperty.add("items", compressedBlocksItems);
+        placeProperties.add("blocks", compressedBlocksProperty);
+        placeProperties.add("offset", positionSchema("Optional translation applied to 'blocks'"));
+        placeProperties.add("suppress_updates", suppressUpdatesSchema());
+        placeProperties.add("record_undo", recordUndoSchema());
+        placeProperties.add("fail_fast", failFastSchema());
+        placeInputSchema.add("properties", placeProperties);
+
+        placeBlocksTool.add("inputSchema", placeInputSchema);
+        tools.add(placeBlocksTool);
+
+        // Place shape tool
+        JsonObject placeShapeTool = new JsonObject();
+        placeShapeTool.addProperty("name", "place_shape");
+        placeShapeTool.addProperty("description",
+            "Place a sphere, cylinder, line or box of one block state in a single call, rasterized on the server. " +
+            "Use this instead of hundreds of setblock or fill commands for round or diagonal shapes.\n\n" +
+            "- sphere: 'center', 'radius'\n" +
+            "- cylinder: 'center' (middle of the base), 'radius', 'height', 'axis' (x, y or z; default y). It extends from the base in the + direction\n" +
+            "- line: 'from', 'to' (one block thick, both ends included)\n" +
+            "- box: 'from', 'to' (opposite corners)\n\n" +
+            "A cell is inside a sphere or cylinder when its center is within radius + 0.5 of the center, so radius 0 is one block. " +
+            "'hollow' keeps only the outer shell; a hollow cylinder is a tube with open ends. " +
+            "Maximum " + maxBlocksPerEdit + " blocks per call. Returns the same counts as place_blocks."
+        );
+        JsonObject shapeInputSchema = new JsonObject();
+        shapeInputSchema.addProperty("type", "object");
+        JsonObject shapeProperties = new JsonObject();
+        JsonObject shapeProperty = new JsonObject();
+        shapeProperty.addProperty("type", "string");
+        JsonArray shapeKinds = new JsonArray();
+        shapeKinds.add("sphere");
+        shapeKinds.add("cylinder");
+        shapeKinds.add("line");
+        shapeKinds.add("box");
+        shapeProperty.add("enum", shapeKinds);
+        shapeProperties.add("shape", shapeProperty);
+        JsonObject shapeBlockProperty = new JsonObject();
+        shapeBlockProperty.addProperty("type", "string");
+        shapeBlockProperty.addProperty("description", "Block state to place, e.g. \"minecraft:glass\" or \"minecraft:oak_log[axis=x]\"");
+        shapeProperties.add("block", shapeBlockProperty);
+        shapeProperties.add("center", positionSchema("Sphere center, or the middle of a cylinder's base"));
+        JsonObject radiusProperty = new JsonObject();
+        radiusProperty.addProperty("type", "number");
+        radiusProperty.addProperty("minimum", 0);
+        radiusProperty.addProperty("description", "Sphere or cylinder radius in blocks");
+        shapeProperties.add("radius", radiusProperty);
+        JsonObject heightProperty = new JsonObject();
+        heightProperty.addProperty("type", "integer");
+        heightProperty.addProperty("minimum", 1);
+        heightProperty.addProperty("description", "Cylinder length along its axis");
+        shapeProperties.add("height", heightProperty);
+        JsonObject axisProperty = new JsonObject();
+        axisProperty.addProperty("type", "string");
+        JsonArray axes = new JsonArray();
+        axes.add("x");
+        axes.add("y");
+        axes.add("z");
+        axisProperty.add("enum", axes);
+        axisProperty.addProperty("description", "Cylinder axis (default: y)");
+        shapeProperties.add("axis", axisProperty);
+        shapeProperties.add("from", positionSchema("Line start or box corner"));
+        shapeProperties.add("to", positionSchema("Line end or opposite box corner"));
+        JsonObject hollowProperty = new JsonObject();
+        hollowProperty.addProperty("type", "boolean");
+        hollowProperty.addProperty("description", "Place only the outer shell of a sphere, cylinder or box (default: false). Interior blocks are left as they are");
+        hollowProperty.addProperty("default", false);
+        shapeProperties.add("hollow", hollowProperty);
+        shapeProperties.add("suppress_updates", suppressUpdatesSchema());
+        shapeProperties.add("record_undo", recordUndoSchema());
+        shapeProperties.add("fail_fast", failFastSchema());
+        shapeInputSchema.add("properties", shapeProperties);
+        JsonArray shapeRequired = new JsonArray();
+        shapeRequired.add("shape");
+        shapeRequired.add("block");
+        shapeInputSchema.add("required", shapeRequired);
+        placeShapeTool.add("inputSchema", shapeInputSchema);
+        tools.add(placeShapeTool);
+
+        // Copy region tool
+        // With safety on, paste_region places a clipboard in one tick, which max_blocks_per_command caps
+        long maxBlocksPerCopy = config != null && config.getServer().isEnableSafety()
+            ? Math.min(maxBlocksPerEdit, config.getSafety().getMaxBlocksPerCommand()) : maxBlocksPerEdit;
+        JsonObject copyRegionTool = new JsonObject();
+        copyRegionTool.addProperty("name", "copy_region");
+        copyRegionTool.addProperty("description",
+            "Copy the block states in a box into a named clipboard held in server memory. " +
+            "Nothing is sent back to the client; paste it with paste_region. " +
+            "Block entity contents (chest items, sign text) are not copied. " +
+            "Maximum " + maxBlocksPerCopy + " blocks per copy, the most paste_region accepts. " +
+            "Clipboards are shared by every client of this server, so use a distinctive name when several agents build at once."
+        );
+        JsonObject copyInputSchema = new JsonObject();
+        copyInputSchema.addProperty("type", "object");
+        JsonObject copyProperties = new JsonObject();
+        copyProperties.add("from", positionSchema("First corner of the box"));
+        copyProperties.add("to", positionSchema("Opposite corner of the box"));
+        copyProperties.add("clipboard", clipboardSchema());
+        copyProperties.add("fail_fast", failFastSchema());
+        copyInputSchema.add("properties", copyProperties);
+        JsonArray copyRequired = new JsonArray();
+        copyRequired.add("from");
+        copyRequired.add("to");
+        copyInputSchema.add("required", copyRequired);
+        copyRegionTool.add("inputSchema", copyInputSchema);
+        tools.add(copyRegionTool);
+
+        // Paste region tool
+        JsonObject pasteRegionTool = new JsonObject();
+        pasteRegionTool.addProperty("name", "paste_region");
+        pasteRegionTool.addProperty("description",
+            "Paste a clipboard made by copy_region, optionally rotated and mirrored. " +
+            "The mirror is applied first, then the clockwise rotation; directional blocks such as stairs, logs and doors turn with it. " +
+            "'origin' is the minimum corner of the pasted box whatever the transform. " +
+            "Returns the same counts as place_blocks."
+        );
+        JsonObject pasteInputSchema = new JsonObject();
+        pasteInputSchema.addProperty("type", "object");
+        JsonObject pasteProperties = new JsonObject();
+        pasteProperties.add("clipboard", clipboardSchema());
+        pasteProperties.add("origin", positionSchema("Minimum corner of the pasted box"));
+        JsonObject rotateProperty = new JsonObject();
+        rotateProperty.addProperty("type", "integer");
+        JsonArray rotations = new JsonArray();
+        rotations.add(0);
+        rotations.add(90);
+        rotations.add(180);
+        rotations.add(270);
+        rotateProperty.add("enum", rotations);
+        rotateProperty.addProperty("description", "Clockwise rotation seen from above, in degrees (default: 0)");
+        pasteProperties.add("rotate", rotateProperty);
+        JsonObject mirrorProperty = new JsonObject();
+        mirrorProperty.addProperty("type", "string");
+        JsonArray mirrors = new JsonArray();
+        mirrors.add("none");
+        mirrors.add("x");
+        mirrors.add("z");
+        mirrorProperty.add("enum", mirrors);
+        mirrorProperty.addProperty("description", "Flip along x (east-west) or z (north-south) before rotating (default: none)");
+        pasteProperties.add("mirror", mirrorProperty);
+        JsonObject skipAirProperty = new JsonObject();
+        skipAirProperty.addProperty("type", "boolean");
+        skipAirProperty.addProperty("description", "Leave the target's blocks where the clipboard has air (default: false)");
+        skipAirProperty.addProperty("default", false);
+        pasteProperties.add("skip_air", skipAirProperty);
+        pasteProperties.add("suppress_updates", suppressUpdatesSchema());
+        pasteProperties.add("record_undo", recordUndoSchema());
+        pasteProperties.add("fail_fast", failFastSchema());
+        pasteInputSchema.add("properties", pasteProperties);
+        JsonArray pasteRequired = new JsonArray();
+        pasteRequired.add("origin");
+        pasteInputSchema.add("required", pasteRequired);
+        pasteRegionTool.add("inputSchema", pasteInputSchema);
+        tools.add(pasteRegionTool);
+
+        // Export structure tool
+        JsonObject exportStructureTool = new JsonObject();
+        exportStructureTool.addProperty("name", "export_structure");
+        exportStructureTool.addProperty("description",
+            "Save the block states in a box to a gzip-compressed NBT schematic file on the server and return its handle. " +
+            "The blocks never pass through this connection; use it instead of get_blocks_in_area when the geometry only needs to be moved or duplicated. " +
+            "Files use the Sponge schematic format that WorldEdit loads. Block entity contents are not saved. " +
+            "Maximum " + maxBlocksPerEdit + " blocks per export."
+        );
+        JsonObject exportInputSchema = new JsonObject();
+        exportInputSchema.addProperty("type", "object");
+        JsonObject exportProperties = new JsonObject();
+        exportProperties.add("from", positionSchema("First corner of the box"));
+        exportProperties.add("to", positionSchema("Opposite corner of the box"));
+        JsonObject structureNameProperty = new JsonObject();
+        structureNameProperty.addProperty("type", "string");
+        structureNameProperty.addProperty("pattern", "^[A-Za-z0-9_-]{1,64}$");
+        structureNameProperty.addProperty("description", "Handle to save under; an existing file with the same handle is replaced (default: generated)");
+        exportProperties.add("name", structureNameProperty);
+        exportProperties.add("fail_fast", failFastSchema());
+        exportInputSchema.add("properties", exportProperties);
+        JsonArray exportRequired = new JsonArray();
+        exportRequired.add("from");
+        exportRequired.add("to");
+        exportInputSchema.add("required", exportRequired);
+        exportStructureTool.add("inputSchema", exportInputSchema);
+        tools.add(exportStructureTool);
+
+        // Import structure tool
+        JsonObject importStructureTool = new JsonObject();
+        importStructureTool.addProperty("name", "import_structure");
+        importStructureTool.addProperty("description",
+            "Paste a schematic saved by export_structure as a background job, a few chunk sections per tick, like start_fill_job. " +
+            "Returns a jobId; poll get_job_status until state is done, or stop it with cancel_job."
+        );
+        JsonObject importInputSchema = new JsonObject();
+        importInputSchema.addProperty("type", "object");
+        JsonObject importProperties = new JsonObject();
+        JsonObject handleProperty = new JsonObject();
+        handleProperty.addProperty("type", "string");
+        handleProperty.addProperty("description", "Handle returned by export_structure");
+        importProperties.add("handle", handleProperty);
+        importProperties.add("origin", positionSchema("Minimum corner of the pasted box"));
+        JsonObject importSkipAirProperty = new JsonObject();
+        importSkipAirProperty.addProperty("type", "boolean");
+        importSkipAirProperty.addProperty("description", "Leave the target's blocks where the structure has air (default: false)");
+        importSkipAirProperty.addProperty("default", false);
+        importProperties.add("skip_air", importSkipAirProperty);
+        importInputSchema.add("properties", importProperties);
+        JsonArray importRequired = new JsonArray();
+        importRequired.add("handle");
+        importRequired.add("origin");
+        importInputSchema.add("required", importRequired);
+        importStructureTool.add("inputSchema", importInputSchema);
+        tools.add(importStructureTool);
+
+        // Compile batch tool
+        JsonObject compileBatchTool = new JsonObject();
+        compileBatchTool.addProperty("name", "compile_batch");
+        compileBatchTool.addProperty("description",
+            "Parse and safety-check a command batch once and cache it on the server (dedicated server only). " +
+            "Returns a batchHash (SHA-256 of the commands) for run_compiled_batch. Compiling the same commands again returns the cached entry. " +
+            "Write coordinates relative with '~' so the batch can be replayed at any origin; absolute coordinates do not move."
+        );
+        JsonObject compileInputSchema = new JsonObject();
+        compileInputSchema.addProperty("type", "object");
+        JsonObject compileProperties = new JsonObject();
+        JsonObject compileCommandsProperty = new JsonObject();
+        compileCommandsProperty.addProperty("type", "array");
+        JsonObject compileCommandItems = new JsonObject();
+        compileCommandItems.addProperty("type", "string");
+        compileCommandsProperty.add("items", compileCommandItems);
+        compileCommandsProperty.addProperty("description", "Commands to compile, in execution order");
+        compileProperties.add("commands", compileCommandsProperty);
+        JsonObject compileValidateProperty = new JsonObject();
+        compileValidateProperty.addProperty("type", "boolean");
+        compileValidateProperty.addProperty("description", "Validate commands against safety rules at compile time (default: true)");
+        compileValidateProperty.addProperty("default", true);
+        compileProperties.add("validate_safety", compileValidateProperty);
+        compileInputSchema.add("properties", compileProperties);
+        JsonArray compileRequired = new JsonArray();
+        compileRequired.add("commands");
+        compileInputSchema.add("required", compileRequired);
+        compileBatchTool.add("inputSchema", compileInputSchema);
+        tools.add(compileBatchTool);
+
+        // Run compiled batch tool
+        JsonObject runCompiledTool = new JsonObject();
+        runCompiledTool.addProperty("name", "run_compiled_batch");
+        runCompiledTool.addProperty("description",
+            "Execute a batch compiled with compile_batch without re-parsing or re-validating it (dedicated server only). " +
+            "Relative '~' coordinates resolve against 'origin'. Returns the same result format as execute_commands."
+        );
+        JsonObject runCompiledInputSchema = new JsonObject();
+        runCompiledInputSchema.addProperty("type", "object");
+        JsonObject runCompiledProperties = new JsonObject();
+        JsonObject batchHashProperty = new JsonObject();
+        batchHashProperty.addProperty("type", "string");
+        batchHashProperty.addProperty("description", "The batchHash returned by compile_batch");
+        runCompiledProperties.add("batch_hash", batchHashProperty);
+        runCompiledProperties.add("origin", positionSchema("Position that '~' coordinates are relative to (default: 0 0 0)"));
+        runCompiledProperties.add("suppress_updates", suppressUpdatesSchema());
+        runCompiledProperties.add("record_undo", recordUndoSchema());
+        runCompiledProperties.add("if_versions", ifVersionsSchema());
+        runCompiledInputSchema.add("properties", runCompiledProperties);
+        JsonArray runCompiledRequired = new JsonArray();
+        runCompiledRequired.add("batch_hash");
+        runCompiledInputSchema.add("required", runCompiledRequired);
+        runCompiledTool.add("inputSchema", runCompiledInputSchema);
+        tools.add(runCompiledTool);
+
+        // Undo batch tool
+        JsonObject undoBatchTool = new JsonObject();
+        undoBatchTool.addProperty("name", "undo_batch");
+        undoBatchTool.addProperty("description",
+            "Roll back an execute_commands or place_blocks call that was run with record_undo: true. " +
+            "Every block the batch wrote is restored to its previous state in one pass; blocks it did not touch are left alone. " +
+            "Block entity contents (chest items, sign text) are not restored. Each batch can be undone once, and old batches expire as new ones are recorded."
+        );
+        JsonObject undoInputSchema = new JsonObject();
+        undoInputSchema.addProperty("type", "object");
+        JsonObject undoProperties = new JsonObject();
+        JsonObject batchIdProperty = new JsonObject();
+        batchIdProperty.addProperty("type", "string");
+        batchIdProperty.addProperty("description", "The batchId returned by the call to undo");
+        undoProperties.add("batch_id", batchIdProperty);
+        undoInputSchema.add("properties", undoProperties);
+        JsonArray undoRequired = new JsonArray();
+        undoRequired.add("batch_id");
+        undoInputSchema.add("required", undoRequired);
+        undoBatchTool.add("inputSchema", undoInputSchema);
+        tools.add(undoBatchTool);
+
+        // Start fill job tool
+        JsonObject startFillJobTool = new JsonObject();
+        startFillJobTool.addProperty("name", "start_fill_job");
+        startFillJobTool.addProperty("description",
+            "Fill a box that is too large for a single fill command. The box is split into 16x16x16 chunk sections and filled in the background, " +
+            "a few sections per server tick within a fixed time budget, so the server keeps ticking normally. " +
+            "Returns a jobId immediately; poll get_job_status for progress and use cancel_job to stop early (sections already filled stay filled)."
+        );
+        JsonObject fillJobInputSchema = new JsonObject();
+        fillJobInputSchema.addProperty("type", "object");
+        JsonObject fillJobProperties = new JsonObject();
+        fillJobProperties.add("from", positionSchema("One corner of the box"));
+        fillJobProperties.add("to", positionSchema("The opposite corner of the box"));
+        JsonObject fillBlockProperty = new JsonObject();
+        fillBlockProperty.addProperty("type", "string");
+        fillBlockProperty.addProperty("description", "Block state to fill with, e.g. \"minecraft:stone\" or \"minecraft:oak_log[axis=x]\"");
+        fillJobProperties.add("block", fillBlockProperty);
+        JsonObject fillReplaceProperty = new JsonObject();
+        fillReplaceProperty.addProperty("type", "string");
+        fillReplaceProperty.addProperty("description", "Optional: only replace blocks matching this block, block state or #tag, e.g. \"minecraft:air\" or \"#minecraft:logs\"");
+        fillJobProperties.add("replace", fillReplaceProperty);
+        fillJobProperties.add("fail_fast", failFastSchema());
+        fillJobInputSchema.add("properties", fillJobProperties);
+        JsonArray fillJobRequired = new JsonArray();
+        fillJobRequired.add("from");
+        fillJobRequired.add("to");
+        fillJobRequired.add("block");
+        fillJobInputSchema.add("required", fillJobRequired);
+        startFillJobTool.add("inputSchema", fillJobInputSchema);
+        tools.add(startFillJobTool);
+
+        // Job status and cancel tools
+        tools.add(jobTool("get_job_status",
+            "Report progress of a job started with start_fill_job: state (queued, running, done, cancelled, failed), processed and changed block counts, percent and elapsed time."));
+        tools.add(jobTool("cancel_job",
+            "Stop a running fill job after the section it is currently filling. Blocks already written are kept; use get_job_status to see how far it got."));
+
+        if (config != null && config.getServer().isJournalEnabled()) {
+            // Replay journal tool
+            JsonObject replayTool = new JsonObject();
+            replayTool.addProperty("name", "replay_journal");
+            replayTool.addProperty("description",
+                "Re-execute the batches recorded in the command journal, in order and without pacing, and report throughput. " +
+                "Useful for rebuilding after a crash or as a repeatable benchmark. The world is changed exactly as the recorded batches would change it now. " +
+                "Only execute_commands, compile_batch, run_compiled_batch and undo_batch are journaled; place_blocks, place_shape, paste_region, import_structure and start_fill_job edits are not replayed."
+            );
+            JsonObject replayInputSchema = new JsonObject();
+            replayInputSchema.addProperty("type", "object");
+            JsonObject replayProperties = new JsonObject();
+            JsonObject fileProperty = new JsonObject();
+            fileProperty.addProperty("type", "string");
+            fileProperty.addProperty("description", "Optional: name of a journal file in the same directory as the configured journal (default: the configured journal)");
+            replayProperties.add("file", fileProperty);
+            JsonObject maxBatchesProperty = new JsonObject();
+            maxBatchesProperty.addProperty("type", "integer");
+            maxBatchesProperty.addProperty("description", "Optional: stop after this many batches");
+            maxBatchesProperty.addProperty("minimum", 1);
+            replayProperties.add("max_batches", maxBatchesProperty);
+            replayInputSchema.add("properties", replayProperties);
+            replayTool.add("inputSchema", replayInputSchema);
+            tools.add(replayTool);
+        }
+
         if (includeScreenshotTool) {
             // Take screenshot tool (client-only)
             JsonObject takeScreenshotTool = new JsonObject();
@@ -285,6 +755,113 @@ public class MCPProtocol {
         return response;
     }
 
+    private static JsonObject suppressUpdatesSchema() {
+        JsonObject suppressUpdatesProperty = new JsonObject();
+        suppressUpdatesProperty.addProperty("type", "boolean");
+        suppressUpdatesProperty.addProperty("description", "Build mode: place blocks without neighbor updates, then notify only the outer faces of the edited volume once per chunk and schedule fluid ticks when the call finishes. Stops half-built redstone, sand and water from reacting mid-build and reduces lag for large builds. Only neighbor updates are deferred: lighting is recomputed for every changed block as usual (default: false). Dedicated server only for execute_commands.");
+        suppressUpdatesProperty.addProperty("default", false);
+        return suppressUpdatesProperty;
+    }
+
+    private static JsonObject ifVersionsSchema() {
+        JsonObject ifVersionsProperty = new JsonObject();
+        ifVersionsProperty.addProperty("type", "object");
+        ifVersionsProperty.addProperty("description", "Optimistic precondition: the 'sectionVersions' map from get_blocks_in_area (or a subset of it). If any listed chunk section changed since, the whole batch is rejected without running and the error lists the stale sections; rescan and retry. Keys name their dimension; commands run in the overworld, so keys from another dimension are rejected. On success the response returns the new 'sectionVersions' for the same keys. Dedicated server only.");
+        JsonObject additional = new JsonObject();
+        additional.addProperty("type", "integer");
+        ifVersionsProperty.add("additionalProperties", additional);
+        return ifVersionsProperty;
+    }
+
+    private static JsonObject commandTemplateSchema() {
+        JsonObject template = new JsonObject();
+        template.addProperty("type", "object");
+        JsonObject properties = new JsonObject();
+        JsonObject text = new JsonObject();
+        text.addProperty("type", "string");
+        text.addProperty("description", "Command with ${expr} placeholders");
+        properties.add("template", text);
+        JsonObject vars = new JsonObject();
+        vars.addProperty("type", "object");
+        vars.addProperty("description", "Loop variables, outermost first. Each is {from, to, step?} (inclusive, step defaults to 1 or -1) or an array of values, e.g. [\"oak_planks\", \"spruce_planks\"]");
+        properties.add("vars", vars);
+        template.add("properties", properties);
+        JsonArray required = new JsonArray();
+        required.add("template");
+        template.add("required", required);
+        return template;
+    }
+
+    private static JsonObject failFastSchema() {
+        JsonObject failFastProperty = new JsonObject();
+        failFastProperty.addProperty("type", "boolean");
+        failFastProperty.addProperty("description", "Return an error instead of loading or generating chunks that are not already loaded (default: false). Without it, missing chunks are loaded in the background before the server thread touches them. Dedicated server or singleplayer only.");
+        failFastProperty.addProperty("default", false);
+        return failFastProperty;
+    }
+
+    private static JsonObject blockFilterSchema(String description) {
+        JsonObject filterProperty = new JsonObject();
+        filterProperty.addProperty("type", "array");
+        filterProperty.addProperty("description", description);
+        JsonObject filterItems = new JsonObject();
+        filterItems.addProperty("type", "string");
+        filterProperty.add("items", filterItems);
+        return filterProperty;
+    }
+
+    private static JsonObject jobTool(String name, String description) {
+        JsonObject tool = new JsonObject();
+        tool.addProperty("name", name);
+        tool.addProperty("description", description);
+        JsonObject inputSchema = new JsonObject();
+        inputSchema.addProperty("type", "object");
+        JsonObject properties = new JsonObject();
+        JsonObject jobIdProperty = new JsonObject();
+        jobIdProperty.addProperty("type", "string");
+        jobIdProperty.addProperty("description", "The jobId returned by start_fill_job");
+        properties.add("job_id", jobIdProperty);
+        inputSchema.add("properties", properties);
+        JsonArray required = new JsonArray();
+        required.add("job_id");
+        inputSchema.add("required", required);
+        tool.add("inputSchema", inputSchema);
+        return tool;
+    }
+
+    private static JsonObject recordUndoSchema() {
+        JsonObject recordUndoProperty = new JsonObject();
+        recordUndoProperty.addProperty("type", "boolean");
+        recordUndoProperty.addProperty("description", "Record the original state of every cell this call writes to and return a batchId that undo_batch can roll back (default: false). Dedicated server only for execute_commands.");
+        recordUndoProperty.addProperty("default", false);
+        return recordUndoProperty;
+    }
+
+    private static JsonObject clipboardSchema() {
+        JsonObject clipboard = new JsonObject();
+        clipboard.addProperty("type", "string");
+        clipboard.addProperty("description", "Clipboard name (default: \"default\"). Names are shared by all clients; the server keeps the 8 most recently used clipboards");
+        clipboard.addProperty("default", "default");
+        return clipboard;
+    }
+
+    private static JsonObject positionSchema(String description) {
+        JsonObject position = new JsonObject();
+        position.addProperty("type", "object");
+        position.addProperty("description", description);
+        JsonObject properties = new JsonObject();
+        JsonArray required = new JsonArray();
+        for (String axis : new String[] {"x", "y", "z"}) {
+            JsonObject axisProperty = new JsonObject();
+            axisProperty.addProperty("type", "integer");
+            properties.add(axis, axisProperty);
+            required.add(axis);
+        }
+        position.add("properties", properties);
+        position.add("required", required);
+        return position;
+    }
+
     private static List<String> filterAllowedCommandsForDescription(List<String> configuredAllowedCommands) {
         LinkedHashSet<String> filtered = new LinkedHashSet<>();
         for (String command : configuredAllowedCommands) {
@@ -0,0 +1,58 @@
+package cuspymd.mcp.mod.server.build;
+
+import com.google.gson.JsonObject;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+
+/**
+ * Counts the distinct positions whose block state actually changed while it was installed, and
+ * their bounding box. Side effects that happen during the same call, such as the other half of a
+ * door, are included; later ticks such as spreading fluids are not.
+ */
+public final class BlockChangeCounter implements BlockChangeListener {
+    private final LongOpenHashSet positions = new LongOpenHashSet();
+    private int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+    private int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+
+    @Override
+    public void beforeChange(ServerLevel level, BlockPos pos) {
+    }
+
+    @Override
+    public void afterChange(ServerLevel level, BlockPos pos) {
+        if (!positions.add(pos.asLong())) {
+            return;
+        }
+        minX = Math.min(minX, pos.getX());
+        minY = Math.min(minY, pos.getY());
+        minZ = Math.min(minZ, pos.getZ());
+        maxX = Math.max(maxX, pos.getX());
+        maxY = Math.max(maxY, pos.getY());
+        maxZ = Math.max(maxZ, pos.getZ());
+    }
+
+    public int getChangedBlocks() {
+        return positions.size();
+    }
+
+    /** Adds {@code changedBlocks} and, when anything changed, {@code changedBounds}. */
+    public void addTo(JsonObject json) {
+        json.addProperty("changedBlocks", positions.size());
+        if (positions.isEmpty()) {
+            return;
+        }
+        JsonObject bounds = new JsonObject();
+        bounds.add("from", position(minX, minY, minZ));
+        bounds.add("to", position(maxX, maxY, maxZ));
+        json.add("changedBounds", bounds);
+    }
+
+    private static JsonObject position(int x, int y, int z) {
+        JsonObject position = new JsonObject();
+        position.addProperty("x", x);
+        position.addProperty("y", y);
+        position.addProperty("z", z);
+        return position;
+    }
+}
@@ -0,0 +1,53 @@
+package cuspymd.mcp.mod.server.build;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.Level;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Scoped listeners for {@code Level.setBlock} on server levels, fed by {@code LevelMixin}.
+ * Listeners are only installed while the server thread runs the wrapped work, so the mixin costs
+ * a single volatile read the rest of the time.
+ */
+public final class BlockChangeHooks {
+    private static final BlockChangeListener[] NONE = new BlockChangeListener[0];
+    private static volatile BlockChangeListener[] listeners = NONE;
+
+    private BlockChangeHooks() {
+    }
+
+    public static <T> T withListener(BlockChangeListener listener, Supplier<T> work) {
+        BlockChangeListener[] previous = listeners;
+        BlockChangeListener[] next = Arrays.copyOf(previous, previous.length + 1);
+        next[previous.length] = listener;
+        listeners = next;
+        try {
+            return work.get();
+        } finally {
+            listeners = previous;
+        }
+    }
+
+    public static void beforeSetBlock(Level level, BlockPos pos) {
+        BlockChangeListener[] current = listeners;
+        if (current.length == 0 || !(level instanceof ServerLevel serverLevel) || !serverLevel.getServer().isSameThread()) {
+            return;
+        }
+        for (BlockChangeListener listener : current) {
+            listener.beforeChange(serverLevel, pos);
+        }
+    }
+
+    public static void afterSetBlock(Level level, BlockPos pos) {
+        BlockChangeListener[] current = listeners;
+        if (current.length == 0 || !(level instanceof ServerLevel serverLevel) || !serverLevel.getServer().isSameThread()) {
+            return;
+        }
+        for (BlockChangeListener listener : current) {
+            listener.afterChange(serverLevel, pos);
+        }
+    }
+}
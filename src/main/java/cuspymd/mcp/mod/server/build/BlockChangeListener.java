@@ -0,0 +1,12 @@
+package cuspymd.mcp.mod.server.build;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+
+public interface BlockChangeListener {
+    void beforeChange(ServerLevel level, BlockPos pos);
+
+    /** Called only when the block state actually changed. */
+    default void afterChange(ServerLevel level, BlockPos pos) {
+    }
+}
@@ -0,0 +1,78 @@
+package cuspymd.mcp.mod.server.build;
+
+import cuspymd.mcp.mod.utils.BlockCompressor;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.commands.arguments.blocks.BlockStateParser;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.PalettedContainer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Copy-on-write view of a level's block states. The first write into a section clones its
+ * paletted container; reads fall through to the live level for untouched sections. The live
+ * level is never modified.
+ */
+public final class BlockOverlay {
+    private final ServerLevel level;
+    private final Long2ObjectOpenHashMap<PalettedContainer<BlockState>> sections = new Long2ObjectOpenHashMap<>();
+    // State before the first overlay write, per position, in write order
+    private final Long2ObjectLinkedOpenHashMap<BlockState> originals = new Long2ObjectLinkedOpenHashMap<>();
+
+    public BlockOverlay(ServerLevel level) {
+        this.level = level;
+    }
+
+    public ServerLevel getLevel() {
+        return level;
+    }
+
+    public BlockState getBlockState(BlockPos pos) {
+        PalettedContainer<BlockState> states = sections.get(SectionPos.asLong(pos));
+        if (states == null) {
+            return level.getBlockState(pos);
+        }
+        return states.get(pos.getX() & 15, pos.getY() & 15, pos.getZ() & 15);
+    }
+
+    /** Returns false when the position is outside the build height. */
+    public boolean setBlockState(BlockPos pos, BlockState state) {
+        if (level.isOutsideBuildHeight(pos)) {
+            return false;
+        }
+        long sectionKey = SectionPos.asLong(pos);
+        PalettedContainer<BlockState> states = sections.get(sectionKey);
+        if (states == null) {
+            LevelChunk chunk = level.getChunkAt(pos);
+            states = chunk.getSection(chunk.getSectionIndex(pos.getY())).getStates().copy();
+            sections.put(sectionKey, states);
+        }
+        BlockState previous = states.getAndSet(pos.getX() & 15, pos.getY() & 15, pos.getZ() & 15, state);
+        originals.putIfAbsent(pos.asLong(), previous);
+        return true;
+    }
+
+    public int getSectionCount() {
+        return sections.size();
+    }
+
+    /** Positions whose overlay state differs from the live level, labelled with the full block state. */
+    public List<BlockCompressor.BlockData> getDeltas() {
+        List<BlockCompressor.BlockData> deltas = new ArrayList<>();
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        for (Long2ObjectLinkedOpenHashMap.Entry<BlockState> entry : originals.long2ObjectEntrySet()) {
+            pos.set(entry.getLongKey());
+            BlockState current = getBlockState(pos);
+            if (current != entry.getValue()) {
+                deltas.add(new BlockCompressor.BlockData(pos.getX(), pos.getY(), pos.getZ(), BlockStateParser.serialize(current)));
+            }
+        }
+        return deltas;
+    }
+}
@@ -0,0 +1,41 @@
+package cuspymd.mcp.mod.server.build;
+
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import net.minecraft.commands.arguments.blocks.BlockStateParser;
+import net.minecraft.core.HolderLookup;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.block.state.properties.Property;
+
+import java.util.Map;
+import java.util.function.Predicate;
+
+/** Block state predicates in command syntax: {@code minecraft:stone}, {@code oak_stairs[facing=east]} or {@code #minecraft:logs}. */
+public final class BlockStateFilter {
+
+    private BlockStateFilter() {
+    }
+
+    public static Predicate<BlockState> parse(HolderLookup<Block> blocks, String text) throws CommandSyntaxException {
+        return BlockStateParser.parseForTesting(blocks, text, false).map(
+            BlockStateFilter::matchingBlock,
+            tag -> state -> state.is(tag.tag())
+        );
+    }
+
+    private static Predicate<BlockState> matchingBlock(BlockStateParser.BlockResult result) {
+        Block block = result.blockState().getBlock();
+        Map<Property<?>, Comparable<?>> properties = result.properties();
+        return state -> {
+            if (!state.is(block)) {
+                return false;
+            }
+            for (Map.Entry<Property<?>, Comparable<?>> property : properties.entrySet()) {
+                if (!state.getValue(property.getKey()).equals(property.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        };
+    }
+}
@@ -0,0 +1,101 @@
+package cuspymd.mcp.mod.server.build;
+
+import net.minecraft.server.MinecraftServer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs {@link FillJob}s at the end of each server tick, first-in first-out, within the head job's
+ * per-tick time budget. One scheduler exists per running server.
+ */
+public final class BuildJobScheduler {
+    static final int MAX_RETAINED_FINISHED = 32;
+
+    private static final Map<MinecraftServer, BuildJobScheduler> SCHEDULERS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final LinkedHashMap<String, FillJob> jobs = new LinkedHashMap<>();
+
+    private BuildJobScheduler() {
+    }
+
+    public static BuildJobScheduler forServer(MinecraftServer server) {
+        return SCHEDULERS.computeIfAbsent(server, k -> new BuildJobScheduler());
+    }
+
+    public static void onEndTick(MinecraftServer server) {
+        BuildJobScheduler scheduler = SCHEDULERS.get(server);
+        if (scheduler != null) {
+            scheduler.tick();
+        }
+    }
+
+    public static void onServerStopping(MinecraftServer server) {
+        BuildJobScheduler scheduler = SCHEDULERS.remove(server);
+        if (scheduler != null) {
+            scheduler.cancelAll();
+        }
+    }
+
+    public String nextJobId() {
+        return "job-" + nextId.getAndIncrement();
+    }
+
+    public synchronized void submit(FillJob job) {
+        jobs.put(job.getId(), job);
+    }
+
+    public synchronized FillJob get(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    private void tick() {
+        FillJob head = nextUnfinished();
+        if (head == null) {
+            return;
+        }
+        long deadline = System.nanoTime() + head.getTickBudgetNanos();
+        while (head != null && head.step(deadline) && System.nanoTime() < deadline) {
+            head = nextUnfinished();
+        }
+        pruneFinished();
+    }
+
+    private synchronized FillJob nextUnfinished() {
+        for (FillJob job : jobs.values()) {
+            if (!job.isFinished()) {
+                return job;
+            }
+        }
+        return null;
+    }
+
+    private synchronized void pruneFinished() {
+        List<String> finished = new ArrayList<>();
+        for (FillJob job : jobs.values()) {
+            if (job.isFinished()) {
+                finished.add(job.getId());
+            }
+        }
+        Iterator<String> oldest = finished.iterator();
+        for (int excess = finished.size() - MAX_RETAINED_FINISHED; excess > 0; excess--) {
+            jobs.remove(oldest.next());
+        }
+    }
+
+    private synchronized void cancelAll() {
+        // Runs on the server thread while stopping; these jobs never step again, so drop their tickets here
+        for (FillJob job : jobs.values()) {
+            job.cancel();
+            job.releaseChunks();
+        }
+        jobs.clear();
+    }
+}
@@ -0,0 +1,141 @@
+package cuspymd.mcp.mod.server.build;
+
+import com.google.gson.JsonObject;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.material.FluidState;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Update-suppressed build mode. While work runs inside {@link #run(Supplier)}, block writes on
+ * server levels drop {@link Block#UPDATE_NEIGHBORS} and explicit neighbor updates are swallowed
+ * (see {@code LevelMixin} and {@code ServerLevelMixin}); the touched positions are remembered.
+ * {@link #flush()} then replays neighbor updates once per chunk, only on the outer faces of the
+ * edited volume, and schedules fluid ticks that the suppressed updates would have triggered.
+ *
+ * <p>Shape updates are kept so connecting blocks (fences, panes, stairs) still resolve their
+ * final states. Lighting is not deferred or batched: every write still queues its own light
+ * check, so this mode does not reduce lighting cost.</p>
+ */
+public final class BuildSession {
+    // Only non-null while the server thread is running session work
+    private static volatile BuildSession active;
+
+    private final Map<ServerLevel, Long2ObjectLinkedOpenHashMap<LongOpenHashSet>> changes = new IdentityHashMap<>();
+    private long recorded;
+
+    public <T> T run(Supplier<T> work) {
+        BuildSession previous = active;
+        active = this;
+        try {
+            return work.get();
+        } finally {
+            active = previous;
+        }
+    }
+
+    public long getRecorded() {
+        return recorded;
+    }
+
+    public static int adjustFlags(Level level, BlockPos pos, int flags) {
+        BuildSession session = active;
+        if (session == null || !(level instanceof ServerLevel serverLevel) || !serverLevel.getServer().isSameThread()) {
+            return flags;
+        }
+        session.record(serverLevel, pos.asLong());
+        return flags & ~Block.UPDATE_NEIGHBORS;
+    }
+
+    public static boolean suppressesNeighborUpdates(ServerLevel level) {
+        return active != null && level.getServer().isSameThread();
+    }
+
+    private void record(ServerLevel level, long pos) {
+        long chunkKey = ChunkPos.asLong(BlockPos.getX(pos) >> 4, BlockPos.getZ(pos) >> 4);
+        LongOpenHashSet positions = changes
+            .computeIfAbsent(level, k -> new Long2ObjectLinkedOpenHashMap<>())
+            .computeIfAbsent(chunkKey, k -> new LongOpenHashSet());
+        if (positions.add(pos)) {
+            recorded++;
+        }
+    }
+
+    /** Replays the deferred work. Must run on the server thread, outside {@link #run}. */
+    public FlushResult flush() {
+        if (active == this) {
+            throw new IllegalStateException("Cannot flush a build session while it is running");
+        }
+
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        int chunks = 0;
+        long neighborUpdates = 0;
+        long fluidTicks = 0;
+
+        for (Map.Entry<ServerLevel, Long2ObjectLinkedOpenHashMap<LongOpenHashSet>> levelEntry : changes.entrySet()) {
+            ServerLevel level = levelEntry.getKey();
+            Long2ObjectLinkedOpenHashMap<LongOpenHashSet> byChunk = levelEntry.getValue();
+
+            for (LongOpenHashSet positions : byChunk.values()) {
+                chunks++;
+                LongIterator iterator = positions.iterator();
+                while (iterator.hasNext()) {
+                    long packed = iterator.nextLong();
+                    pos.set(packed);
+                    BlockState state = level.getBlockState(pos);
+
+                    FluidState fluid = state.getFluidState();
+                    if (!fluid.isEmpty()) {
+                        level.scheduleTick(pos.immutable(), fluid.getType(), fluid.getType().getTickDelay(level));
+                        fluidTicks++;
+                    }
+
+                    // Interior cells only border other edited cells, whose states were placed explicitly
+                    if (isBoundary(byChunk, packed)) {
+                        level.updateNeighborsAt(pos.immutable(), state.getBlock());
+                        neighborUpdates++;
+                    }
+                }
+            }
+        }
+
+        FlushResult result = new FlushResult(recorded, chunks, neighborUpdates, fluidTicks);
+        changes.clear();
+        recorded = 0;
+        return result;
+    }
+
+    private static boolean isBoundary(Long2ObjectLinkedOpenHashMap<LongOpenHashSet> byChunk, long packed) {
+        for (Direction direction : Direction.values()) {
+            long neighbor = BlockPos.offset(packed, direction);
+            long chunkKey = ChunkPos.asLong(BlockPos.getX(neighbor) >> 4, BlockPos.getZ(neighbor) >> 4);
+            LongOpenHashSet positions = byChunk.get(chunkKey);
+            if (positions == null || !positions.contains(neighbor)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public record FlushResult(long positions, int chunks, long neighborUpdates, long fluidTicks) {
+        public JsonObject toJson() {
+            JsonObject json = new JsonObject();
+            json.addProperty("changedPositions", positions);
+            json.addProperty("chunks", chunks);
+            json.addProperty("neighborUpdates", neighborUpdates);
+            json.addProperty("fluidTicks", fluidTicks);
+            return json;
+        }
+    }
+}
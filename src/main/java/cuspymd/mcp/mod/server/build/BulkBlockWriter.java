@@ -0,0 +1,153 @@
+package cuspymd.mcp.mod.server.build;
+
+import cuspymd.mcp.mod.mixin.ServerLevelNavigationAccessor;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.Clearable;
+import net.minecraft.world.entity.Mob;
+import net.minecraft.world.entity.ai.navigation.PathNavigation;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.pathfinder.PathTypeCache;
+import net.minecraft.world.phys.shapes.BooleanOp;
+import net.minecraft.world.phys.shapes.Shapes;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Collects block writes grouped by chunk and applies them in one server-thread pass.
+ * Queuing is safe off the server thread; {@link #apply()} must run on it.
+ *
+ * <p>Writes go through {@link ServerLevel#setBlock} so heightmaps, block entities, light
+ * checks and POI bookkeeping stay consistent, but each chunk is resolved once and unchanged
+ * cells are skipped without touching the level. Client updates are left to
+ * {@link SectionChangeBroadcaster}, which hands sections below its resend threshold to the
+ * chunk holder's usual per-tick coalescing. The rest of {@code ServerLevel.sendBlockUpdated}
+ * is replayed here: cached path types are invalidated, and mobs whose path crosses a cell
+ * whose collision shape changed recompute it once after the batch.</p>
+ */
+public class BulkBlockWriter {
+    // Everything in UPDATE_ALL except the per-block client notification
+    private static final int FLAGS = Block.UPDATE_NEIGHBORS;
+
+    private final ServerLevel level;
+    private final Map<Long, ChunkBatch> chunks = new LinkedHashMap<>();
+    private long queued;
+    private long outsideBuildHeight;
+
+    public BulkBlockWriter(ServerLevel level) {
+        this.level = level;
+    }
+
+    public void set(int x, int y, int z, BlockState state) {
+        if (level.isOutsideBuildHeight(y)) {
+            outsideBuildHeight++;
+            return;
+        }
+        long chunkKey = ChunkPos.asLong(x >> 4, z >> 4);
+        chunks.computeIfAbsent(chunkKey, k -> new ChunkBatch()).add(BlockPos.asLong(x, y, z), state);
+        queued++;
+    }
+
+    public long getQueued() {
+        return queued;
+    }
+
+    /** Packed {@link ChunkPos} keys of every chunk with a queued write. */
+    public LongSet getChunkKeys() {
+        return new LongLinkedOpenHashSet(chunks.keySet());
+    }
+
+    public Result apply() {
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        SectionChangeBroadcaster broadcaster = new SectionChangeBroadcaster(level);
+        ServerLevelNavigationAccessor navigation = (ServerLevelNavigationAccessor) level;
+        Set<Mob> navigatingMobs = navigation.mcp$getNavigatingMobs();
+        PathTypeCache pathTypes = navigation.mcp$getPathTypesByPosCache();
+        Set<PathNavigation> stalePaths = Collections.newSetFromMap(new IdentityHashMap<>());
+        long changed = 0;
+        long unchanged = 0;
+        int chunkCount = chunks.size();
+
+        for (Map.Entry<Long, ChunkBatch> entry : chunks.entrySet()) {
+            long chunkKey = entry.getKey();
+            ChunkBatch batch = entry.getValue();
+            LevelChunk chunk = level.getChunk(ChunkPos.getX(chunkKey), ChunkPos.getZ(chunkKey));
+
+            for (int i = 0; i < batch.size; i++) {
+                pos.set(batch.positions[i]);
+                BlockState state = batch.states[i];
+                BlockState previous = chunk.getBlockState(pos);
+                if (previous == state) {
+                    unchanged++;
+                    continue;
+                }
+                // Same as vanilla setblock/fill: replaced containers do not spill their contents
+                if (previous.hasBlockEntity()) {
+                    Clearable.tryClear(level.getBlockEntity(pos));
+                }
+                if (level.setBlock(pos, state, FLAGS)) {
+                    broadcaster.changed(pos);
+                    pathTypes.invalidate(pos);
+                    if (!navigatingMobs.isEmpty()) {
+                        collectStalePaths(navigatingMobs, pos, previous, state, stalePaths);
+                    }
+                    changed++;
+                } else {
+                    unchanged++;
+                }
+            }
+        }
+
+        for (PathNavigation path : stalePaths) {
+            path.recomputePath();
+        }
+        SectionChangeBroadcaster.Result broadcast = broadcaster.broadcast();
+        Result result = new Result(changed, unchanged, chunkCount, outsideBuildHeight, broadcast.resentChunks());
+        chunks.clear();
+        queued = 0;
+        outsideBuildHeight = 0;
+        return result;
+    }
+
+    // Same test as ServerLevel.sendBlockUpdated; each path is recomputed once per batch rather than once per cell
+    private void collectStalePaths(Set<Mob> mobs, BlockPos pos, BlockState previous, BlockState state, Set<PathNavigation> stale) {
+        if (!Shapes.joinIsNotEmpty(previous.getCollisionShape(level, pos), state.getCollisionShape(level, pos), BooleanOp.NOT_SAME)) {
+            return;
+        }
+        for (Mob mob : mobs) {
+            PathNavigation path = mob.getNavigation();
+            if (path.shouldRecomputePath(pos)) {
+                stale.add(path);
+            }
+        }
+    }
+
+    private static final class ChunkBatch {
+        private long[] positions = new long[64];
+        private BlockState[] states = new BlockState[64];
+        private int size;
+
+        void add(long position, BlockState state) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+                states = Arrays.copyOf(states, size * 2);
+            }
+            positions[size] = position;
+            states[size] = state;
+            size++;
+        }
+    }
+
+    public record Result(long changed, long unchanged, int chunks, long outsideBuildHeight, int resentChunks) {
+    }
+}
@@ -0,0 +1,144 @@
+package cuspymd.mcp.mod.server.build;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerChunkCache;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.TicketType;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.chunk.status.ChunkStatus;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Loads the chunks a request needs before its server-thread work is scheduled, and keeps them
+ * loaded until that work is done. Each chunk gets a {@link #TICKET} ticket, so the chunk workers
+ * read or generate it and it cannot be unloaded in between; the request thread waits for the loads
+ * instead of the tick thread loading each chunk synchronously on first access.
+ */
+public final class ChunkPreloader {
+    /** Registered by {@code MCPServerMod}. Never expires; holders remove it themselves. */
+    public static final TicketType TICKET = new TicketType(TicketType.NO_TIMEOUT, TicketType.FLAG_LOADING);
+
+    private ChunkPreloader() {
+    }
+
+    /** Packed {@link ChunkPos} keys covering the block columns from min to max inclusive. */
+    public static LongSet chunksIn(int minX, int minZ, int maxX, int maxZ) {
+        LongSet chunks = new LongLinkedOpenHashSet();
+        for (int cx = SectionPos.blockToSectionCoord(minX); cx <= SectionPos.blockToSectionCoord(maxX); cx++) {
+            for (int cz = SectionPos.blockToSectionCoord(minZ); cz <= SectionPos.blockToSectionCoord(maxZ); cz++) {
+                chunks.add(ChunkPos.asLong(cx, cz));
+            }
+        }
+        return chunks;
+    }
+
+    /** Must run on the server thread. */
+    public static LongList unloaded(ServerLevel level, LongCollection chunks) {
+        ServerChunkCache source = level.getChunkSource();
+        LongList missing = new LongArrayList();
+        for (long chunk : chunks) {
+            if (!source.hasChunk(ChunkPos.getX(chunk), ChunkPos.getZ(chunk))) {
+                missing.add(chunk);
+            }
+        }
+        return missing;
+    }
+
+    /** Server thread only. Adds a {@link #TICKET} ticket to each chunk; pair with {@link #release}. */
+    public static void hold(ServerLevel level, LongCollection chunks) {
+        ServerChunkCache source = level.getChunkSource();
+        for (long chunk : chunks) {
+            source.addTicketWithRadius(TICKET, new ChunkPos(chunk), 0);
+        }
+    }
+
+    /** Server thread only. */
+    public static void release(ServerLevel level, LongCollection chunks) {
+        ServerChunkCache source = level.getChunkSource();
+        for (long chunk : chunks) {
+            source.removeTicketWithRadius(TICKET, new ChunkPos(chunk), 0);
+        }
+    }
+
+    /** Safe from any thread. Completes once every chunk has finished loading, successfully or not. */
+    public static CompletableFuture<Void> load(ServerLevel level, LongCollection chunks) {
+        ServerChunkCache source = level.getChunkSource();
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[chunks.size()];
+        int i = 0;
+        for (long chunk : chunks) {
+            futures[i++] = source.getChunkFuture(ChunkPos.getX(chunk), ChunkPos.getZ(chunk), ChunkStatus.FULL, true);
+        }
+        return CompletableFuture.allOf(futures);
+    }
+
+    /**
+     * Blocks the calling thread, which must not be the server thread, until the chunks are loaded.
+     * Unless {@link Loaded#getFailure()} explains why the request should not proceed, the chunks
+     * stay ticketed until the returned handle is closed, which must happen after the server-thread
+     * work that reads them.
+     */
+    public static Loaded ensureLoaded(MinecraftServer server, ServerLevel level, LongCollection chunks,
+                                      boolean failFast, long timeoutMillis)
+            throws InterruptedException, ExecutionException {
+        LongList missing = server.submit(() -> {
+            LongList unloaded = unloaded(level, chunks);
+            if (!failFast || unloaded.isEmpty()) {
+                hold(level, chunks);
+            }
+            return unloaded;
+        }).get();
+        if (missing.isEmpty()) {
+            return new Loaded(level, chunks, null);
+        }
+        if (failFast) {
+            return new Loaded(level, LongList.of(), missing.size() + " of " + chunks.size() + " chunk(s) needed by this request are not loaded and fail_fast is set");
+        }
+        Loaded loaded = new Loaded(level, chunks, null);
+        try {
+            load(level, missing).get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            loaded.close();
+            return new Loaded(level, LongList.of(), "Timed out after " + timeoutMillis + " ms waiting for " + missing.size() + " chunk(s) to load");
+        } catch (InterruptedException | ExecutionException | RuntimeException e) {
+            // The tickets never expire, so nobody else would remove them
+            loaded.close();
+            throw e;
+        }
+        return loaded;
+    }
+
+    /** Chunks held by {@link #ensureLoaded}. Closing it from any thread queues the ticket removal on the server thread. */
+    public static final class Loaded implements AutoCloseable {
+        private final ServerLevel level;
+        private final LongCollection chunks;
+        private final String failure;
+
+        private Loaded(ServerLevel level, LongCollection chunks, String failure) {
+            this.level = level;
+            this.chunks = chunks;
+            this.failure = failure;
+        }
+
+        /** Null when the request can proceed. */
+        public String getFailure() {
+            return failure;
+        }
+
+        @Override
+        public void close() {
+            if (!chunks.isEmpty()) {
+                level.getServer().execute(() -> release(level, chunks));
+            }
+        }
+    }
+}
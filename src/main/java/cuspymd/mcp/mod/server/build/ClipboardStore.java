@@ -0,0 +1,40 @@
+package cuspymd.mcp.mod.server.build;
+
+import net.minecraft.server.MinecraftServer;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Named clipboards for {@code copy_region} and {@code paste_region}, kept in memory for the
+ * lifetime of a server. Only the most recently used few are kept. They are shared by every
+ * client: the HTTP transport has no session to scope them to, so callers keep apart by name.
+ */
+public final class ClipboardStore {
+    private static final int MAX_CLIPBOARDS = 8;
+    private static final Map<MinecraftServer, ClipboardStore> STORES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final Map<String, RegionClipboard> clipboards = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, RegionClipboard> eldest) {
+            return size() > MAX_CLIPBOARDS;
+        }
+    };
+
+    private ClipboardStore() {
+    }
+
+    public static ClipboardStore forServer(MinecraftServer server) {
+        return STORES.computeIfAbsent(server, k -> new ClipboardStore());
+    }
+
+    public synchronized void put(String name, RegionClipboard clipboard) {
+        clipboards.put(name, clipboard);
+    }
+
+    public synchronized RegionClipboard get(String name) {
+        return clipboards.get(name);
+    }
+}
@@ -0,0 +1,197 @@
+package cuspymd.mcp.mod.server.build;
+
+import com.google.gson.JsonObject;
+import com.mojang.brigadier.ParseResults;
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.context.ParsedCommandNode;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import com.mojang.brigadier.exceptions.Dynamic2CommandExceptionType;
+import com.mojang.brigadier.tree.LiteralCommandNode;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.commands.arguments.blocks.BlockPredicateArgument;
+import net.minecraft.commands.arguments.blocks.BlockStateArgument;
+import net.minecraft.commands.arguments.coordinates.BlockPosArgument;
+import net.minecraft.core.BlockPos;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.level.GameRules;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.block.state.pattern.BlockInWorld;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Interprets {@code setblock} and {@code fill} against a {@link BlockOverlay} instead of the live
+ * level. Commands are parsed by the real dispatcher, so coordinates, block states and filters
+ * resolve exactly as they would for execution. Anything else is reported as skipped.
+ *
+ * <p>Block entity NBT and the neighbor shape adjustment done on placement are not simulated.</p>
+ */
+public final class DryRunSimulator {
+    // Same message as FillCommand, whose exception type is private
+    private static final Dynamic2CommandExceptionType FILL_TOO_LARGE = new Dynamic2CommandExceptionType(
+        (max, count) -> Component.translatableEscape("commands.fill.toobig", max, count));
+
+    private final MinecraftServer server;
+    private BlockOverlay overlay;
+
+    public DryRunSimulator(MinecraftServer server) {
+        this.server = server;
+    }
+
+    public BlockOverlay getOverlay() {
+        return overlay;
+    }
+
+    /** Must run on the server thread. */
+    public JsonObject simulate(String command, CommandSourceStack source) {
+        JsonObject outcome = new JsonObject();
+        try {
+            ParseResults<CommandSourceStack> parse = server.getCommands().getDispatcher().parse(command, source);
+            CommandSyntaxException parseError = Commands.getParseException(parse);
+            if (parseError != null) {
+                throw parseError;
+            }
+            CommandContext<CommandSourceStack> context = parse.getContext().build(command);
+            if (context.getChild() != null || context.getNodes().isEmpty()) {
+                return skipped(outcome);
+            }
+
+            if (overlay == null) {
+                overlay = new BlockOverlay(source.getLevel());
+            } else if (overlay.getLevel() != source.getLevel()) {
+                return skipped(outcome);
+            }
+
+            Set<String> literals = new HashSet<>();
+            for (ParsedCommandNode<CommandSourceStack> node : context.getNodes()) {
+                if (node.getNode() instanceof LiteralCommandNode<?> literal) {
+                    literals.add(literal.getLiteral());
+                }
+            }
+
+            int changed;
+            if (literals.contains("fill")) {
+                changed = fill(context, literals);
+                if (changed == 0) {
+                    return failed(outcome, "No blocks would be filled");
+                }
+            } else if (literals.contains("setblock")) {
+                changed = setBlock(context, literals);
+                if (changed == 0) {
+                    return failed(outcome, "Could not set the block");
+                }
+            } else {
+                return skipped(outcome);
+            }
+
+            outcome.addProperty("status", "simulated");
+            outcome.addProperty("changedBlocks", changed);
+            outcome.addProperty("summary", "Would change " + changed + " block(s).");
+        } catch (CommandSyntaxException e) {
+            return failed(outcome, e.getMessage());
+        }
+        return outcome;
+    }
+
+    private int fill(CommandContext<CommandSourceStack> context, Set<String> modes) throws CommandSyntaxException {
+        BlockPos from = BlockPosArgument.getLoadedBlockPos(context, "from");
+        BlockPos to = BlockPosArgument.getLoadedBlockPos(context, "to");
+        BlockState block = BlockStateArgument.getBlock(context, "block").getState();
+        Predicate<BlockInWorld> filter = hasArgument(context, "filter")
+            ? BlockPredicateArgument.getBlockPredicate(context, "filter") : null;
+        boolean hollow = modes.contains("hollow");
+        boolean outline = modes.contains("outline");
+        boolean keep = modes.contains("keep");
+
+        int minX = Math.min(from.getX(), to.getX());
+        int minY = Math.min(from.getY(), to.getY());
+        int minZ = Math.min(from.getZ(), to.getZ());
+        int maxX = Math.max(from.getX(), to.getX());
+        int maxY = Math.max(from.getY(), to.getY());
+        int maxZ = Math.max(from.getZ(), to.getZ());
+
+        // Checked before anything is read, as the real fill does, so an oversized box never loads chunks
+        long volume = ((long) maxX - minX + 1) * ((long) maxY - minY + 1) * ((long) maxZ - minZ + 1);
+        int limit = context.getSource().getLevel().getGameRules().getInt(GameRules.RULE_COMMAND_MODIFICATION_BLOCK_LIMIT);
+        if (volume > limit) {
+            throw FILL_TOO_LARGE.create(limit, volume);
+        }
+
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        int changed = 0;
+        for (int y = minY; y <= maxY; y++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                for (int x = minX; x <= maxX; x++) {
+                    boolean shell = x == minX || x == maxX || y == minY || y == maxY || z == minZ || z == maxZ;
+                    if (outline && !shell) {
+                        continue;
+                    }
+                    BlockState target = hollow && !shell ? Blocks.AIR.defaultBlockState() : block;
+                    pos.set(x, y, z);
+                    if (place(pos, target, keep, filter)) {
+                        changed++;
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
+    private int setBlock(CommandContext<CommandSourceStack> context, Set<String> modes) throws CommandSyntaxException {
+        BlockPos pos = BlockPosArgument.getLoadedBlockPos(context, "pos");
+        BlockState block = BlockStateArgument.getBlock(context, "block").getState();
+        return place(pos, block, modes.contains("keep"), null) ? 1 : 0;
+    }
+
+    private boolean place(BlockPos pos, BlockState target, boolean keep, Predicate<BlockInWorld> filter) {
+        BlockState current = overlay.getBlockState(pos);
+        if (keep && !current.isAir()) {
+            return false;
+        }
+        if (filter != null && !filter.test(new OverlayBlockInWorld(overlay, pos.immutable()))) {
+            return false;
+        }
+        return current != target && overlay.setBlockState(pos, target);
+    }
+
+    private static boolean hasArgument(CommandContext<CommandSourceStack> context, String name) {
+        for (ParsedCommandNode<CommandSourceStack> node : context.getNodes()) {
+            if (name.equals(node.getNode().getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static JsonObject skipped(JsonObject outcome) {
+        outcome.addProperty("status", "skipped");
+        outcome.addProperty("summary", "Not simulated: dry_run only interprets plain setblock and fill commands.");
+        return outcome;
+    }
+
+    private static JsonObject failed(JsonObject outcome, String message) {
+        outcome.addProperty("status", "failed");
+        outcome.addProperty("summary", "Command would fail: " + message);
+        return outcome;
+    }
+
+    // Filters see overlay states so earlier commands in the batch are visible to later ones
+    private static final class OverlayBlockInWorld extends BlockInWorld {
+        private final BlockOverlay overlay;
+
+        OverlayBlockInWorld(BlockOverlay overlay, BlockPos pos) {
+            super(overlay.getLevel(), pos, true);
+            this.overlay = overlay;
+        }
+
+        @Override
+        public BlockState getState() {
+            return overlay.getBlockState(getPos());
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package cuspymd.mcp.mod.server.build;
+
+import com.google.gson.JsonObject;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.status.ChunkStatus;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+
+/**
+ * A fill too large for one command, or an imported structure, applied one chunk section at a time
+ * by {@link BuildJobScheduler}.
+ * Sections are visited column by column so each chunk is finished before the next is loaded.
+ * Unloaded columns are requested asynchronously and the job yields until they arrive, so the
+ * tick thread never blocks on chunk IO or generation. A column it loads keeps a
+ * {@link ChunkPreloader#TICKET} ticket until the job has moved past it or ended.
+ */
+public final class FillJob {
+    public enum State { QUEUED, RUNNING, DONE, CANCELLED, FAILED }
+
+    /** The state to write at a world position, or null to leave the cell alone. */
+    @FunctionalInterface
+    public interface BlockSource {
+        BlockState at(int x, int y, int z);
+    }
+
+    private final String id;
+    private final ServerLevel level;
+    private final int minX, minY, minZ, maxX, maxY, maxZ;
+    private final BlockSource source;
+    private final Predicate<BlockState> replaceFilter;
+    private final long tickBudgetNanos;
+
+    private final int minSectionX, minSectionY, minSectionZ;
+    private final int sectionsX, sectionsY, sectionsZ;
+    private final long totalBlocks;
+
+    private volatile State state = State.QUEUED;
+    private volatile boolean cancelRequested;
+    private volatile int sectionsDone;
+    private volatile long processedBlocks;
+    private volatile long changedBlocks;
+    private volatile long startedNanos;
+    private volatile long finishedNanos;
+    private volatile String error;
+
+    // Written on the server thread only
+    private volatile CompletableFuture<?> loading;
+    private volatile int loadingColumn = -1;
+    private int retriedColumn = -1;
+    // Columns this job put a ticket on, ascending
+    private final IntArrayList ticketed = new IntArrayList();
+
+    public FillJob(String id, ServerLevel level, BlockPos from, BlockPos to, BlockState block,
+                   Predicate<BlockState> replaceFilter, long tickBudgetNanos) {
+        this(id, level, from, to, (x, y, z) -> block, replaceFilter, tickBudgetNanos);
+    }
+
+    public FillJob(String id, ServerLevel level, BlockPos from, BlockPos to, BlockSource source,
+                   Predicate<BlockState> replaceFilter, long tickBudgetNanos) {
+        this.id = id;
+        this.level = level;
+        this.minX = Math.min(from.getX(), to.getX());
+        this.minZ = Math.min(from.getZ(), to.getZ());
+        this.maxX = Math.max(from.getX(), to.getX());
+        this.maxZ = Math.max(from.getZ(), to.getZ());
+        // Clip to the build height; the rest of the box is unreachable anyway
+        this.minY = Math.max(Math.min(from.getY(), to.getY()), level.getMinY());
+        this.maxY = Math.min(Math.max(from.getY(), to.getY()), level.getMaxY());
+        this.source = source;
+        this.replaceFilter = replaceFilter;
+        this.tickBudgetNanos = tickBudgetNanos;
+
+        this.minSectionX = SectionPos.blockToSectionCoord(minX);
+        this.minSectionY = SectionPos.blockToSectionCoord(minY);
+        this.minSectionZ = SectionPos.blockToSectionCoord(minZ);
+        this.sectionsX = SectionPos.blockToSectionCoord(maxX) - minSectionX + 1;
+        this.sectionsY = maxY < minY ? 0 : SectionPos.blockToSectionCoord(maxY) - minSectionY + 1;
+        this.sectionsZ = SectionPos.blockToSectionCoord(maxZ) - minSectionZ + 1;
+        this.totalBlocks = maxY < minY ? 0 : (long) (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1);
+    }
+
+    public static long volume(BlockPos from, BlockPos to) {
+        return (Math.abs((long) from.getX() - to.getX()) + 1)
+            * (Math.abs((long) from.getY() - to.getY()) + 1)
+            * (Math.abs((long) from.getZ() - to.getZ()) + 1);
+    }
+
+    public String getId() { return id; }
+    public State getState() { return state; }
+    public long getTickBudgetNanos() { return tickBudgetNanos; }
+    public int getTotalSections() { return sectionsX * sectionsY * sectionsZ; }
+
+    public boolean isFinished() {
+        State current = state;
+        return current == State.DONE || current == State.CANCELLED || current == State.FAILED;
+    }
+
+    public void cancel() {
+        cancelRequested = true;
+    }
+
+    /** Runs whole sections until the deadline passes. Returns true once the job has finished. */
+    boolean step(long deadlineNanos) {
+        if (isFinished()) {
+            return true;
+        }
+        if (state == State.QUEUED) {
+            state = State.RUNNING;
+            startedNanos = System.nanoTime();
+        }
+
+        try {
+            while (sectionsDone < getTotalSections()) {
+                if (cancelRequested) {
+                    finish(State.CANCELLED);
+                    return true;
+                }
+                int column = sectionsDone / sectionsY;
+                if (!columnReady(column)) {
+                    break;
+                }
+                releaseBefore(column);
+                fillSection(sectionsDone);
+                sectionsDone++;
+                if (System.nanoTime() >= deadlineNanos) {
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            error = e.getMessage();
+            finish(State.FAILED);
+            return true;
+        }
+
+        if (sectionsDone >= getTotalSections()) {
+            finish(State.DONE);
+            return true;
+        }
+        return false;
+    }
+
+    private boolean columnReady(int column) {
+        if (column == loadingColumn) {
+            if (!loading.isDone()) {
+                return false;
+            }
+            // Finished but gone again: ask once more; a load that keeps failing falls through to the synchronous load in setBlock
+            if (!isLoaded(column) && retriedColumn != column) {
+                retriedColumn = column;
+                requestLoad(column);
+                return false;
+            }
+        } else if (!isLoaded(column)) {
+            requestLoad(column);
+            return false;
+        }
+        int columns = sectionsX * sectionsZ;
+        if (column + 1 < columns && loadingColumn != column + 1 && !isLoaded(column + 1)) {
+            requestLoad(column + 1);
+        }
+        return true;
+    }
+
+    private boolean isLoaded(int column) {
+        return level.getChunkSource().hasChunk(minSectionX + column / sectionsZ, minSectionZ + column % sectionsZ);
+    }
+
+    private void requestLoad(int column) {
+        loadingColumn = column;
+        long chunk = columnChunk(column);
+        if (!ticketed.contains(column)) {
+            ticketed.add(column);
+            ChunkPreloader.hold(level, LongList.of(chunk));
+        }
+        loading = level.getChunkSource().getChunkFuture(ChunkPos.getX(chunk), ChunkPos.getZ(chunk), ChunkStatus.FULL, true);
+    }
+
+    private long columnChunk(int column) {
+        return ChunkPos.asLong(minSectionX + column / sectionsZ, minSectionZ + column % sectionsZ);
+    }
+
+    // Columns are filled in order, so a ticket on an earlier column is no longer needed
+    private void releaseBefore(int column) {
+        int done = 0;
+        while (done < ticketed.size() && ticketed.getInt(done) < column) {
+            done++;
+        }
+        if (done > 0) {
+            LongArrayList chunks = new LongArrayList(done);
+            for (int i = 0; i < done; i++) {
+                chunks.add(columnChunk(ticketed.getInt(i)));
+            }
+            ChunkPreloader.release(level, chunks);
+            ticketed.removeElements(0, done);
+        }
+    }
+
+    /** Server thread only. Drops every ticket the job still holds; called when it ends or is discarded. */
+    void releaseChunks() {
+        releaseBefore(Integer.MAX_VALUE);
+    }
+
+    private void fillSection(int index) {
+        // y is innermost so one chunk column is completed before moving on
+        int sectionY = minSectionY + index % sectionsY;
+        int column = index / sectionsY;
+        int sectionZ = minSectionZ + column % sectionsZ;
+        int sectionX = minSectionX + column / sectionsZ;
+
+        int x0 = Math.max(minX, SectionPos.sectionToBlockCoord(sectionX));
+        int y0 = Math.max(minY, SectionPos.sectionToBlockCoord(sectionY));
+        int z0 = Math.max(minZ, SectionPos.sectionToBlockCoord(sectionZ));
+        int x1 = Math.min(maxX, SectionPos.sectionToBlockCoord(sectionX) + 15);
+        int y1 = Math.min(maxY, SectionPos.sectionToBlockCoord(sectionY) + 15);
+        int z1 = Math.min(maxZ, SectionPos.sectionToBlockCoord(sectionZ) + 15);
+
+        BulkBlockWriter writer = new BulkBlockWriter(level);
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        for (int y = y0; y <= y1; y++) {
+            for (int z = z0; z <= z1; z++) {
+                for (int x = x0; x <= x1; x++) {
+                    BlockState block = source.at(x, y, z);
+                    if (block == null || replaceFilter != null && !replaceFilter.test(level.getBlockState(pos.set(x, y, z)))) {
+                        continue;
+                    }
+                    writer.set(x, y, z, block);
+                }
+            }
+        }
+        BulkBlockWriter.Result result = writer.apply();
+        processedBlocks += (long) (x1 - x0 + 1) * (y1 - y0 + 1) * (z1 - z0 + 1);
+        changedBlocks += result.changed();
+    }
+
+    private void finish(State finalState) {
+        releaseChunks();
+        finishedNanos = System.nanoTime();
+        state = finalState;
+    }
+
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("jobId", id);
+        json.addProperty("state", state.name().toLowerCase());
+        json.addProperty("totalBlocks", totalBlocks);
+        json.addProperty("processedBlocks", processedBlocks);
+        json.addProperty("changedBlocks", changedBlocks);
+        json.addProperty("percent", totalBlocks == 0 ? 100.0 : Math.floor(processedBlocks * 1000.0 / totalBlocks) / 10.0);
+        json.addProperty("sectionsDone", sectionsDone);
+        json.addProperty("sectionsTotal", getTotalSections());
+        CompletableFuture<?> pending = loading;
+        if (!isFinished() && pending != null && !pending.isDone() && loadingColumn == sectionsDone / Math.max(sectionsY, 1)) {
+            json.addProperty("waitingForChunks", true);
+        }
+        if (startedNanos != 0) {
+            long end = finishedNanos != 0 ? finishedNanos : System.nanoTime();
+            json.addProperty("elapsedMs", (end - startedNanos) / 1_000_000);
+        }
+        if (error != null) {
+            json.addProperty("failure", error);
+        }
+        return json;
+    }
+}
@@ -0,0 +1,146 @@
+package cuspymd.mcp.mod.server.build;
+
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Block states copied from a box, stored as 16x16x16 sections with their own palette so a
+ * clipboard costs two bytes per cell at most and nothing for all-air sections. Sections are
+ * aligned to the box's minimum corner, not to the world's chunk grid. Block entity contents are
+ * not copied.
+ */
+public final class RegionClipboard {
+    private static final BlockState AIR = Blocks.AIR.defaultBlockState();
+
+    private final int sizeX, sizeY, sizeZ;
+    private final int sectionsX, sectionsY, sectionsZ;
+    // Null for sections that are entirely air
+    private final Section[] sections;
+    private final long blockCount;
+
+    private record Section(BlockState[] palette, short[] indices) {
+    }
+
+    private RegionClipboard(int sizeX, int sizeY, int sizeZ, Section[] sections, long blockCount) {
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.sectionsX = (sizeX + 15) >> 4;
+        this.sectionsY = (sizeY + 15) >> 4;
+        this.sectionsZ = (sizeZ + 15) >> 4;
+        this.sections = sections;
+        this.blockCount = blockCount;
+    }
+
+    /** Supplies the state of each cell while a clipboard is built, in region-local coordinates. */
+    @FunctionalInterface
+    public interface CellSource {
+        BlockState get(int x, int y, int z);
+    }
+
+    /** Must run on the server thread with every chunk in the box loaded. */
+    public static RegionClipboard copy(ServerLevel level, BlockPos min, BlockPos max) {
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        // Cells are visited section by section, so the last chunk looked up is usually the next one needed
+        CellSource world = new CellSource() {
+            private LevelChunk chunk;
+            private int chunkX = Integer.MIN_VALUE, chunkZ = Integer.MIN_VALUE;
+
+            @Override
+            public BlockState get(int x, int y, int z) {
+                pos.set(min.getX() + x, min.getY() + y, min.getZ() + z);
+                if (pos.getX() >> 4 != chunkX || pos.getZ() >> 4 != chunkZ) {
+                    chunkX = pos.getX() >> 4;
+                    chunkZ = pos.getZ() >> 4;
+                    chunk = level.getChunk(chunkX, chunkZ);
+                }
+                return chunk.getBlockState(pos);
+            }
+        };
+        return build(max.getX() - min.getX() + 1, max.getY() - min.getY() + 1, max.getZ() - min.getZ() + 1, world);
+    }
+
+    /** Builds a clipboard of the given size, asking {@code source} for every cell once. */
+    public static RegionClipboard build(int sizeX, int sizeY, int sizeZ, CellSource source) {
+        int sectionsX = (sizeX + 15) >> 4, sectionsY = (sizeY + 15) >> 4, sectionsZ = (sizeZ + 15) >> 4;
+        Section[] sections = new Section[sectionsX * sectionsY * sectionsZ];
+        long blockCount = 0;
+
+        for (int sy = 0; sy < sectionsY; sy++) {
+            for (int sz = 0; sz < sectionsZ; sz++) {
+                for (int sx = 0; sx < sectionsX; sx++) {
+                    Reference2IntOpenHashMap<BlockState> paletteIndex = new Reference2IntOpenHashMap<>();
+                    paletteIndex.defaultReturnValue(-1);
+                    List<BlockState> palette = new ArrayList<>();
+                    short[] indices = new short[4096];
+                    boolean empty = true;
+
+                    for (int ly = 0; ly < 16 && (sy << 4) + ly < sizeY; ly++) {
+                        for (int lz = 0; lz < 16 && (sz << 4) + lz < sizeZ; lz++) {
+                            for (int lx = 0; lx < 16 && (sx << 4) + lx < sizeX; lx++) {
+                                BlockState state = source.get((sx << 4) + lx, (sy << 4) + ly, (sz << 4) + lz);
+                                if (state.isAir()) {
+                                    // Index 0 is left for air, which every palette starts with
+                                    continue;
+                                }
+                                int index = paletteIndex.getInt(state);
+                                if (index < 0) {
+                                    if (palette.isEmpty()) {
+                                        palette.add(AIR);
+                                    }
+                                    index = palette.size();
+                                    palette.add(state);
+                                    paletteIndex.put(state, index);
+                                }
+                                indices[(ly << 8) | (lz << 4) | lx] = (short) index;
+                                blockCount++;
+                                empty = false;
+                            }
+                        }
+                    }
+                    if (!empty) {
+                        sections[(sy * sectionsZ + sz) * sectionsX + sx] = new Section(palette.toArray(new BlockState[0]), indices);
+                    }
+                }
+            }
+        }
+        return new RegionClipboard(sizeX, sizeY, sizeZ, sections, blockCount);
+    }
+
+    /** State at a position relative to the copied box's minimum corner; air where nothing was copied. */
+    public BlockState get(int x, int y, int z) {
+        Section section = sections[((y >> 4) * sectionsZ + (z >> 4)) * sectionsX + (x >> 4)];
+        if (section == null) {
+            return AIR;
+        }
+        return section.palette()[section.indices()[((y & 15) << 8) | ((z & 15) << 4) | (x & 15)]];
+    }
+
+    public int getSizeX() { return sizeX; }
+    public int getSizeY() { return sizeY; }
+    public int getSizeZ() { return sizeZ; }
+
+    /** Non-air blocks. */
+    public long getBlockCount() { return blockCount; }
+
+    public int getStoredSections() {
+        int stored = 0;
+        for (Section section : sections) {
+            if (section != null) {
+                stored++;
+            }
+        }
+        return stored;
+    }
+
+    public int getSectionCount() {
+        return sections.length;
+    }
+}
@@ -0,0 +1,125 @@
+package cuspymd.mcp.mod.server.build;
+
+import cuspymd.mcp.mod.utils.CoordinateUtils;
+import net.minecraft.server.MinecraftServer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Orders write batches by the regions they touch. A batch may start once no batch that arrived
+ * before it, running or still waiting, overlaps its regions. Batches from different agents that
+ * build in disjoint areas therefore interleave on the server thread, while overlapping ones run
+ * one after another in arrival order. A null region list means "possibly anywhere" and overlaps
+ * every other batch. One scheduler exists per running server.
+ */
+public final class RegionScheduler {
+    // Past this many boxes a batch is treated as its bounding box, to keep overlap checks cheap
+    public static final int MAX_BOXES = 64;
+
+    private static final Map<MinecraftServer, RegionScheduler> SCHEDULERS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    // Arrival order; running and waiting tickets alike
+    private final List<Ticket> tickets = new ArrayList<>();
+
+    private RegionScheduler() {
+    }
+
+    public static RegionScheduler forServer(MinecraftServer server) {
+        return SCHEDULERS.computeIfAbsent(server, k -> new RegionScheduler());
+    }
+
+    /**
+     * Blocks until the regions are free. Must not be called on the server thread. Returns null
+     * if the timeout passed first.
+     */
+    public Ticket acquire(List<CoordinateUtils.BoundingBox> regions, long timeoutMillis) throws InterruptedException {
+        Ticket ticket = new Ticket(simplify(regions));
+        long deadline = ticket.queuedNanos + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (this) {
+            tickets.add(ticket);
+            try {
+                while (isBlocked(ticket)) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        release(ticket);
+                        return null;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+            } catch (InterruptedException e) {
+                release(ticket);
+                throw e;
+            }
+        }
+        ticket.waitedNanos = System.nanoTime() - ticket.queuedNanos;
+        return ticket;
+    }
+
+    private boolean isBlocked(Ticket ticket) {
+        for (Ticket earlier : tickets) {
+            if (earlier == ticket) {
+                return false;
+            }
+            if (overlaps(earlier.regions, ticket.regions)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized void release(Ticket ticket) {
+        if (tickets.remove(ticket)) {
+            notifyAll();
+        }
+    }
+
+    static boolean overlaps(List<CoordinateUtils.BoundingBox> a, List<CoordinateUtils.BoundingBox> b) {
+        if (a == null || b == null) {
+            // Unbounded overlaps everything except a batch that touches no region at all
+            return (a == null || !a.isEmpty()) && (b == null || !b.isEmpty());
+        }
+        for (CoordinateUtils.BoundingBox boxA : a) {
+            for (CoordinateUtils.BoundingBox boxB : b) {
+                if (boxA.intersects(boxB)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public static List<CoordinateUtils.BoundingBox> simplify(List<CoordinateUtils.BoundingBox> regions) {
+        if (regions == null || regions.size() <= MAX_BOXES) {
+            return regions;
+        }
+        CoordinateUtils.BoundingBox bounds = regions.get(0);
+        for (CoordinateUtils.BoundingBox box : regions) {
+            bounds = bounds.encompass(box);
+        }
+        return List.of(bounds);
+    }
+
+    public final class Ticket implements AutoCloseable {
+        private final List<CoordinateUtils.BoundingBox> regions;
+        private final long queuedNanos = System.nanoTime();
+        private long waitedNanos;
+
+        private Ticket(List<CoordinateUtils.BoundingBox> regions) {
+            this.regions = regions;
+        }
+
+        public long getWaitedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(waitedNanos);
+        }
+
+        @Override
+        public void close() {
+            release(this);
+        }
+    }
+}
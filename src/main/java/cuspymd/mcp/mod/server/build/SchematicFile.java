@@ -0,0 +1,129 @@
+package cuspymd.mcp.mod.server.build;
+
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import cuspymd.mcp.mod.utils.VarInts;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import net.minecraft.SharedConstants;
+import net.minecraft.commands.arguments.blocks.BlockStateParser;
+import net.minecraft.core.HolderLookup;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtAccounter;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Reads and writes clipboards as gzip-compressed Sponge schematics (version 2), the format
+ * WorldEdit and most schematic tools load. Block states are stored once in a name-to-index
+ * palette and every cell as a varint index, x fastest, then z, then y.
+ */
+public final class SchematicFile {
+    public static final String EXTENSION = ".schem";
+
+    private static final int VERSION = 2;
+    // Guards against a corrupt or hostile file claiming an enormous tag tree
+    private static final long MAX_NBT_BYTES = 512L * 1024 * 1024;
+
+    private SchematicFile() {
+    }
+
+    /** Writes {@code clipboard} to {@code file}, replacing it atomically. Returns the palette size. */
+    public static int write(RegionClipboard clipboard, Path file) throws IOException {
+        int sizeX = clipboard.getSizeX(), sizeY = clipboard.getSizeY(), sizeZ = clipboard.getSizeZ();
+        if (sizeX > 0xFFFF || sizeY > 0xFFFF || sizeZ > 0xFFFF) {
+            throw new IllegalArgumentException("A schematic is at most 65535 blocks along each axis");
+        }
+        Reference2IntOpenHashMap<BlockState> paletteIndex = new Reference2IntOpenHashMap<>();
+        paletteIndex.defaultReturnValue(-1);
+        CompoundTag palette = new CompoundTag();
+        ByteArrayOutputStream blockData = new ByteArrayOutputStream();
+        for (int y = 0; y < sizeY; y++) {
+            for (int z = 0; z < sizeZ; z++) {
+                for (int x = 0; x < sizeX; x++) {
+                    BlockState state = clipboard.get(x, y, z);
+                    int index = paletteIndex.getInt(state);
+                    if (index < 0) {
+                        index = paletteIndex.size();
+                        paletteIndex.put(state, index);
+                        palette.putInt(BlockStateParser.serialize(state), index);
+                    }
+                    VarInts.write(blockData, index);
+                }
+            }
+        }
+
+        CompoundTag root = new CompoundTag();
+        root.putInt("Version", VERSION);
+        root.putInt("DataVersion", SharedConstants.getCurrentVersion().dataVersion().version());
+        root.putShort("Width", (short) sizeX);
+        root.putShort("Height", (short) sizeY);
+        root.putShort("Length", (short) sizeZ);
+        root.putIntArray("Offset", new int[3]);
+        root.putInt("PaletteMax", paletteIndex.size());
+        root.put("Palette", palette);
+        root.putByteArray("BlockData", blockData.toByteArray());
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        NbtIo.writeCompressed(root, temp);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return paletteIndex.size();
+    }
+
+    /**
+     * Reads a schematic into a clipboard. Palette entries are parsed against {@code blocks};
+     * throws {@link IllegalArgumentException} for a malformed file, an unknown block, or a
+     * volume above {@code maxBlocks}.
+     */
+    public static RegionClipboard read(Path file, HolderLookup<Block> blocks, long maxBlocks) throws IOException {
+        CompoundTag root = NbtIo.readCompressed(file, NbtAccounter.create(MAX_NBT_BYTES));
+        // Files written by WorldEdit wrap everything in a "Schematic" compound
+        root = root.getCompound("Schematic").orElse(root);
+        int version = root.getIntOr("Version", 0);
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported schematic version " + version + "; expected " + VERSION);
+        }
+        int sizeX = Short.toUnsignedInt(root.getShortOr("Width", (short) 0));
+        int sizeY = Short.toUnsignedInt(root.getShortOr("Height", (short) 0));
+        int sizeZ = Short.toUnsignedInt(root.getShortOr("Length", (short) 0));
+        if (sizeX == 0 || sizeY == 0 || sizeZ == 0) {
+            throw new IllegalArgumentException("Schematic has an empty size");
+        }
+        long volume = (long) sizeX * sizeY * sizeZ;
+        if (volume > maxBlocks) {
+            throw new IllegalArgumentException("Schematic volume (" + volume + ") exceeds maximum allowed (" + maxBlocks + ")");
+        }
+
+        CompoundTag paletteTag = root.getCompound("Palette")
+            .orElseThrow(() -> new IllegalArgumentException("Schematic has no Palette"));
+        BlockState[] palette = new BlockState[paletteTag.size()];
+        for (String name : paletteTag.keySet()) {
+            int index = paletteTag.getIntOr(name, -1);
+            if (index < 0 || index >= palette.length) {
+                throw new IllegalArgumentException("Palette index " + index + " for '" + name + "' is out of range");
+            }
+            try {
+                palette[index] = BlockStateParser.parseForBlock(blocks, name, false).blockState();
+            } catch (CommandSyntaxException e) {
+                throw new IllegalArgumentException("Invalid palette entry '" + name + "': " + e.getMessage());
+            }
+        }
+
+        byte[] blockData = root.getByteArray("BlockData")
+            .orElseThrow(() -> new IllegalArgumentException("Schematic has no BlockData"));
+        int[] indices = VarInts.readAll(blockData, Math.toIntExact(volume));
+        for (int index : indices) {
+            if (index < 0 || index >= palette.length || palette[index] == null) {
+                throw new IllegalArgumentException("BlockData refers to missing palette index " + index);
+            }
+        }
+        return RegionClipboard.build(sizeX, sizeY, sizeZ,
+            (x, y, z) -> palette[indices[(y * sizeZ + z) * sizeX + x]]);
+    }
+}
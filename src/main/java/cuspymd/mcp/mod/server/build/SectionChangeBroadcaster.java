@@ -0,0 +1,96 @@
+package cuspymd.mcp.mod.server.build;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.network.protocol.game.ClientboundLevelChunkWithLightPacket;
+import net.minecraft.server.level.ServerChunkCache;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.chunk.LevelChunk;
+
+import java.util.List;
+
+/**
+ * Sends client updates for a batch of writes made without {@code Block.UPDATE_CLIENTS}.
+ *
+ * <p>Lightly edited chunks go through {@link ServerChunkCache#blockChanged}, which the chunk holder
+ * already folds into one section packet per section at the end of the tick. A chunk with any
+ * section rewritten past {@link #RESEND_THRESHOLD} cells is resent whole instead, which is far
+ * smaller on the wire than a section packet listing thousands of positions.</p>
+ */
+public final class SectionChangeBroadcaster {
+    static final int RESEND_THRESHOLD = 2048;
+
+    private final ServerLevel level;
+    private final Long2ObjectLinkedOpenHashMap<LongArrayList> changesByChunk = new Long2ObjectLinkedOpenHashMap<>();
+    private final Long2IntOpenHashMap changesBySection = new Long2IntOpenHashMap();
+    private final LongOpenHashSet resendChunks = new LongOpenHashSet();
+
+    public SectionChangeBroadcaster(ServerLevel level) {
+        this.level = level;
+    }
+
+    public void changed(BlockPos pos) {
+        int chunkX = SectionPos.blockToSectionCoord(pos.getX());
+        int chunkZ = SectionPos.blockToSectionCoord(pos.getZ());
+        long chunkKey = ChunkPos.asLong(chunkX, chunkZ);
+        changesByChunk.computeIfAbsent(chunkKey, k -> new LongArrayList()).add(pos.asLong());
+
+        long sectionKey = SectionPos.asLong(chunkX, SectionPos.blockToSectionCoord(pos.getY()), chunkZ);
+        if (changesBySection.addTo(sectionKey, 1) + 1 == RESEND_THRESHOLD) {
+            resendChunks.add(chunkKey);
+        }
+    }
+
+    /** Must run on the server thread after the writes. */
+    public Result broadcast() {
+        ServerChunkCache chunkSource = level.getChunkSource();
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        int resent = 0;
+        long blockUpdates = 0;
+
+        for (Long2ObjectLinkedOpenHashMap.Entry<LongArrayList> entry : changesByChunk.long2ObjectEntrySet()) {
+            long chunkKey = entry.getLongKey();
+            LongArrayList positions = entry.getValue();
+
+            if (resendChunks.contains(chunkKey) && resend(chunkSource, chunkKey)) {
+                resent++;
+                continue;
+            }
+            for (int i = 0; i < positions.size(); i++) {
+                chunkSource.blockChanged(pos.set(positions.getLong(i)));
+            }
+            blockUpdates += positions.size();
+        }
+
+        Result result = new Result(resent, blockUpdates);
+        changesByChunk.clear();
+        changesBySection.clear();
+        resendChunks.clear();
+        return result;
+    }
+
+    private boolean resend(ServerChunkCache chunkSource, long chunkKey) {
+        LevelChunk chunk = chunkSource.getChunkNow(ChunkPos.getX(chunkKey), ChunkPos.getZ(chunkKey));
+        if (chunk == null) {
+            return false;
+        }
+        List<ServerPlayer> players = chunkSource.chunkMap.getPlayers(chunk.getPos(), false);
+        if (!players.isEmpty()) {
+            ClientboundLevelChunkWithLightPacket packet =
+                new ClientboundLevelChunkWithLightPacket(chunk, level.getLightEngine(), null, null);
+            for (ServerPlayer player : players) {
+                player.connection.send(packet);
+            }
+        }
+        return true;
+    }
+
+    public record Result(int resentChunks, long blockUpdates) {
+    }
+}
@@ -0,0 +1,133 @@
+package cuspymd.mcp.mod.server.build;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Merkle tree over the content hashes of a box of chunk sections. The box is split in half
+ * along its longest axis until single sections remain, so two trees of the same box can be
+ * compared top down and every subtree whose hash matches is skipped without looking at its
+ * sections.
+ *
+ * <p>A section's content hash is the sum of {@link #cellHash} over its cells, with air counting
+ * as zero. A sum can be updated in constant time when one cell changes, and an empty section
+ * hashes to zero.</p>
+ */
+public final class SectionHashTree {
+    private final int sizeX, sizeY, sizeZ;
+    private final long[] leaves;
+    // Preorder: a node is followed by its lower half's subtree, then its upper half's
+    private final long[] nodes;
+
+    /** {@code leaves} are indexed {@code (y * sizeZ + z) * sizeX + x}, in sections relative to the box. */
+    public SectionHashTree(int sizeX, int sizeY, int sizeZ, long[] leaves) {
+        if (sizeX < 1 || sizeY < 1 || sizeZ < 1 || leaves.length != sizeX * sizeY * sizeZ) {
+            throw new IllegalArgumentException("Leaf count does not match a " + sizeX + "x" + sizeY + "x" + sizeZ + " box");
+        }
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.leaves = leaves;
+        this.nodes = new long[2 * leaves.length - 1];
+        build(0, 0, 0, sizeX, sizeY, sizeZ, new int[1]);
+    }
+
+    /** Contribution of one non-air cell; {@code index} is {@code (y << 8) | (z << 4) | x} within the section. */
+    public static long cellHash(int index, int stateId) {
+        return mix(((long) stateId << 12 | index) + 0x9E3779B97F4A7C15L);
+    }
+
+    public static String toHex(long hash) {
+        return String.format("%016x", hash);
+    }
+
+    public static long parseHex(String hex) {
+        try {
+            return Long.parseUnsignedLong(hex, 16);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a section hash: " + hex);
+        }
+    }
+
+    public int getSizeX() { return sizeX; }
+    public int getSizeY() { return sizeY; }
+    public int getSizeZ() { return sizeZ; }
+
+    public long getRoot() {
+        return nodes[0];
+    }
+
+    public long getLeaf(int x, int y, int z) {
+        return leaves[(y * sizeZ + z) * sizeX + x];
+    }
+
+    /**
+     * Sections whose hash differs from {@code other}, a tree of the same box, as
+     * {@code [x, y, z]} relative to the box. Matching subtrees are skipped whole.
+     */
+    public List<int[]> diff(SectionHashTree other) {
+        if (other.sizeX != sizeX || other.sizeY != sizeY || other.sizeZ != sizeZ) {
+            throw new IllegalArgumentException("Trees cover different boxes");
+        }
+        List<int[]> changed = new ArrayList<>();
+        diff(other, 0, 0, 0, sizeX, sizeY, sizeZ, new int[1], changed);
+        return changed;
+    }
+
+    private long build(int x0, int y0, int z0, int x1, int y1, int z1, int[] next) {
+        int self = next[0]++;
+        long hash;
+        if (x1 - x0 == 1 && y1 - y0 == 1 && z1 - z0 == 1) {
+            hash = leaves[(y0 * sizeZ + z0) * sizeX + x0];
+        } else {
+            int[] split = split(x0, y0, z0, x1, y1, z1);
+            long lower = build(x0, y0, z0, split[0], split[1], split[2], next);
+            long upper = build(split[3], split[4], split[5], x1, y1, z1, next);
+            hash = mix(lower * 31 + mix(upper));
+        }
+        nodes[self] = hash;
+        return hash;
+    }
+
+    private void diff(SectionHashTree other, int x0, int y0, int z0, int x1, int y1, int z1, int[] next, List<int[]> changed) {
+        int self = next[0];
+        int cells = (x1 - x0) * (y1 - y0) * (z1 - z0);
+        if (nodes[self] == other.nodes[self]) {
+            next[0] += 2 * cells - 1;
+            return;
+        }
+        next[0]++;
+        if (cells == 1) {
+            changed.add(new int[] {x0, y0, z0});
+            return;
+        }
+        int[] split = split(x0, y0, z0, x1, y1, z1);
+        diff(other, x0, y0, z0, split[0], split[1], split[2], next, changed);
+        diff(other, split[3], split[4], split[5], x1, y1, z1, next, changed);
+    }
+
+    // Returns the lower half's exclusive max corner followed by the upper half's min corner
+    private static int[] split(int x0, int y0, int z0, int x1, int y1, int z1) {
+        int dx = x1 - x0, dy = y1 - y0, dz = z1 - z0;
+        if (dx >= dy && dx >= dz) {
+            int mid = x0 + dx / 2;
+            return new int[] {mid, y1, z1, mid, y0, z0};
+        }
+        if (dz >= dy) {
+            int mid = z0 + dz / 2;
+            return new int[] {x1, y1, mid, x0, y0, mid};
+        }
+        int mid = y0 + dy / 2;
+        return new int[] {x1, mid, z1, x0, mid, z0};
+    }
+
+    // MurmurHash3's 64-bit finalizer
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,100 @@
+package cuspymd.mcp.mod.server.build;
+
+import com.google.gson.JsonObject;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+
+/**
+ * Content hashes of chunk sections, kept by {@code LevelChunkSectionMixin}. A section computes
+ * its hash the first time it is asked for one and then adjusts it on every block change, so
+ * reading it again costs nothing however large the section's history.
+ */
+public final class SectionHashes {
+
+    private SectionHashes() {
+    }
+
+    public static long cell(int x, int y, int z, BlockState state) {
+        return state.isAir() ? 0 : SectionHashTree.cellHash((y << 8) | (z << 4) | x, Block.getId(state));
+    }
+
+    public static long compute(LevelChunkSection section) {
+        if (section.hasOnlyAir()) {
+            return 0;
+        }
+        long hash = 0;
+        for (int y = 0; y < 16; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    hash += cell(x, y, z, section.getBlockState(x, y, z));
+                }
+            }
+        }
+        return hash;
+    }
+
+    /** Must run on the server thread; loads the chunk if needed. Zero outside the build height. */
+    public static long get(ServerLevel level, int sectionX, int sectionY, int sectionZ) {
+        int index = level.getSectionIndexFromSectionY(sectionY);
+        if (index < 0 || index >= level.getSectionsCount()) {
+            return 0;
+        }
+        return ((VersionedSection) level.getChunk(sectionX, sectionZ).getSection(index)).mcp$getContentHash();
+    }
+
+    /** Must run on the server thread. The tree over every section overlapping the block box. */
+    public static SectionHashTree tree(ServerLevel level, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        int sx0 = SectionPos.blockToSectionCoord(minX), sy0 = SectionPos.blockToSectionCoord(minY), sz0 = SectionPos.blockToSectionCoord(minZ);
+        int sizeX = SectionPos.blockToSectionCoord(maxX) - sx0 + 1;
+        int sizeY = SectionPos.blockToSectionCoord(maxY) - sy0 + 1;
+        int sizeZ = SectionPos.blockToSectionCoord(maxZ) - sz0 + 1;
+        long[] leaves = new long[sizeX * sizeY * sizeZ];
+        for (int y = 0; y < sizeY; y++) {
+            for (int z = 0; z < sizeZ; z++) {
+                for (int x = 0; x < sizeX; x++) {
+                    leaves[(y * sizeZ + z) * sizeX + x] = get(level, sx0 + x, sy0 + y, sz0 + z);
+                }
+            }
+        }
+        return new SectionHashTree(sizeX, sizeY, sizeZ, leaves);
+    }
+
+    /**
+     * Builds the tree a client holds from the {@code sectionHashes} it was given for the same
+     * box. Sections it does not list are made to differ from {@code current}.
+     */
+    public static SectionHashTree fromJson(JsonObject known, SectionHashTree current, int minX, int minY, int minZ) {
+        int sizeX = current.getSizeX(), sizeY = current.getSizeY(), sizeZ = current.getSizeZ();
+        int sx0 = SectionPos.blockToSectionCoord(minX), sy0 = SectionPos.blockToSectionCoord(minY), sz0 = SectionPos.blockToSectionCoord(minZ);
+        long[] leaves = new long[sizeX * sizeY * sizeZ];
+        for (int y = 0; y < sizeY; y++) {
+            for (int z = 0; z < sizeZ; z++) {
+                for (int x = 0; x < sizeX; x++) {
+                    String key = SectionVersions.key(sx0 + x, sy0 + y, sz0 + z);
+                    leaves[(y * sizeZ + z) * sizeX + x] = known.has(key)
+                        ? SectionHashTree.parseHex(known.get(key).getAsString())
+                        : ~current.getLeaf(x, y, z);
+                }
+            }
+        }
+        return new SectionHashTree(sizeX, sizeY, sizeZ, leaves);
+    }
+
+    /** Leaf hashes keyed like {@code sectionVersions}. */
+    public static JsonObject toJson(SectionHashTree tree, int minX, int minY, int minZ) {
+        int sizeX = tree.getSizeX(), sizeY = tree.getSizeY(), sizeZ = tree.getSizeZ();
+        int sx0 = SectionPos.blockToSectionCoord(minX), sy0 = SectionPos.blockToSectionCoord(minY), sz0 = SectionPos.blockToSectionCoord(minZ);
+        JsonObject hashes = new JsonObject();
+        for (int x = 0; x < sizeX; x++) {
+            for (int y = 0; y < sizeY; y++) {
+                for (int z = 0; z < sizeZ; z++) {
+                    hashes.addProperty(SectionVersions.key(sx0 + x, sy0 + y, sz0 + z), SectionHashTree.toHex(tree.getLeaf(x, y, z)));
+                }
+            }
+        }
+        return hashes;
+    }
+}
@@ -0,0 +1,127 @@
+package cuspymd.mcp.mod.server.build;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.chunk.LevelChunk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per chunk section version numbers for optimistic concurrency. A section's version changes
+ * whenever one of its blocks changed since the version was last read, and also when the section
+ * was unloaded and loaded again. Versions are keyed {@code "dimension:sectionX,sectionY,sectionZ"},
+ * for example {@code "minecraft:the_nether:1,4,-2"}: scans read the first player's dimension while
+ * commands run in the overworld, so a key must say which world its version came from.
+ */
+public final class SectionVersions {
+    // Seeded from the clock so versions handed out before a restart are not reused after it
+    private static final AtomicLong COUNTER = new AtomicLong(System.currentTimeMillis() * 1000);
+
+    private SectionVersions() {
+    }
+
+    static long next() {
+        return COUNTER.incrementAndGet();
+    }
+
+    /**
+     * Must run on the server thread. Returns -1 outside the build height or when the chunk is not
+     * loaded; a reload would hand out a new version anyway, so it is never loaded just to compare.
+     */
+    public static long get(ServerLevel level, int sectionX, int sectionY, int sectionZ) {
+        int index = level.getSectionIndexFromSectionY(sectionY);
+        if (index < 0 || index >= level.getSectionsCount()) {
+            return -1;
+        }
+        LevelChunk chunk = level.getChunkSource().getChunkNow(sectionX, sectionZ);
+        if (chunk == null) {
+            return -1;
+        }
+        return ((VersionedSection) chunk.getSection(index)).mcp$getVersion();
+    }
+
+    /** Must run on the server thread. Versions of every section overlapping the block box. */
+    public static JsonObject collect(ServerLevel level, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        JsonObject versions = new JsonObject();
+        for (int sx = SectionPos.blockToSectionCoord(minX); sx <= SectionPos.blockToSectionCoord(maxX); sx++) {
+            for (int sy = SectionPos.blockToSectionCoord(minY); sy <= SectionPos.blockToSectionCoord(maxY); sy++) {
+                for (int sz = SectionPos.blockToSectionCoord(minZ); sz <= SectionPos.blockToSectionCoord(maxZ); sz++) {
+                    long version = get(level, sx, sy, sz);
+                    if (version >= 0) {
+                        versions.addProperty(versionKey(level, sx, sy, sz), version);
+                    }
+                }
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * Must run on the server thread. Returns the keys whose current version differs from the
+     * expected one; empty means the precondition holds. Throws for a key from another dimension.
+     */
+    public static List<String> stale(ServerLevel level, JsonObject expected) {
+        List<String> stale = new ArrayList<>();
+        for (Map.Entry<String, JsonElement> entry : expected.entrySet()) {
+            int[] section = parseVersionKey(level, entry.getKey());
+            if (get(level, section[0], section[1], section[2]) != entry.getValue().getAsLong()) {
+                stale.add(entry.getKey());
+            }
+        }
+        return stale;
+    }
+
+    /** Re-reads the versions of the given keys, e.g. after a batch has written to them. */
+    public static JsonObject current(ServerLevel level, Iterable<String> keys) {
+        JsonObject versions = new JsonObject();
+        for (String key : keys) {
+            int[] section = parseVersionKey(level, key);
+            versions.addProperty(key, get(level, section[0], section[1], section[2]));
+        }
+        return versions;
+    }
+
+    public static String key(int sectionX, int sectionY, int sectionZ) {
+        return sectionX + "," + sectionY + "," + sectionZ;
+    }
+
+    public static String versionKey(ServerLevel level, int sectionX, int sectionY, int sectionZ) {
+        return dimension(level) + ":" + key(sectionX, sectionY, sectionZ);
+    }
+
+    private static String dimension(ServerLevel level) {
+        return level.dimension().identifier().toString();
+    }
+
+    // The coordinates never contain ':', so the dimension is everything before the last one
+    static int[] parseVersionKey(ServerLevel level, String key) {
+        int split = key.lastIndexOf(':');
+        if (split < 0) {
+            throw new IllegalArgumentException("Section version key must be \"dimension:x,y,z\" as returned by get_blocks_in_area: " + key);
+        }
+        String dimension = key.substring(0, split);
+        if (!dimension.equals(dimension(level))) {
+            throw new IllegalArgumentException("Section " + key + " is in " + dimension + ", but commands run in " + dimension(level));
+        }
+        return parseKey(key.substring(split + 1));
+    }
+
+    static int[] parseKey(String key) {
+        String[] parts = key.split(",");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Section key must be \"x,y,z\" in section coordinates: " + key);
+        }
+        try {
+            return new int[] {
+                Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()), Integer.parseInt(parts[2].trim())
+            };
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Section key must be \"x,y,z\" in section coordinates: " + key);
+        }
+    }
+}
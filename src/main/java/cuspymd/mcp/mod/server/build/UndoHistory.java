@@ -0,0 +1,54 @@
+package cuspymd.mcp.mod.server.build;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded store of {@link UndoSnapshot}s. The oldest batches are evicted once the sections they
+ * hold pre-images for exceed the configured limit.
+ */
+public final class UndoHistory {
+    static final int MAX_BATCHES = 64;
+
+    private final int maxSections;
+    private final LinkedHashMap<String, UndoSnapshot> snapshots = new LinkedHashMap<>();
+    private int retainedSections;
+    private long nextId = 1;
+
+    public UndoHistory(int maxSections) {
+        this.maxSections = maxSections;
+    }
+
+    public synchronized UndoSnapshot begin() {
+        return new UndoSnapshot("batch-" + nextId++, maxSections);
+    }
+
+    /** Returns false when the snapshot outgrew the limit and cannot be undone. */
+    public synchronized boolean commit(UndoSnapshot snapshot) {
+        if (snapshot.isOverflowed()) {
+            return false;
+        }
+        snapshots.put(snapshot.getBatchId(), snapshot);
+        retainedSections += snapshot.getSectionCount();
+
+        Iterator<Map.Entry<String, UndoSnapshot>> eldest = snapshots.entrySet().iterator();
+        while ((retainedSections > maxSections || snapshots.size() > MAX_BATCHES) && eldest.hasNext()) {
+            UndoSnapshot evicted = eldest.next().getValue();
+            if (evicted == snapshot) {
+                break;
+            }
+            retainedSections -= evicted.getSectionCount();
+            eldest.remove();
+        }
+        return true;
+    }
+
+    public synchronized UndoSnapshot take(String batchId) {
+        UndoSnapshot snapshot = snapshots.remove(batchId);
+        if (snapshot != null) {
+            retainedSections -= snapshot.getSectionCount();
+        }
+        return snapshot;
+    }
+}
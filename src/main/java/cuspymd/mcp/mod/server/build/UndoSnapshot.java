@@ -0,0 +1,131 @@
+package cuspymd.mcp.mod.server.build;
+
+import cuspymd.mcp.mod.utils.CoordinateUtils;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pre-images of the cells a batch writes to, grouped by chunk section. The first write to a cell
+ * records its original state; later writes to the same cell record nothing. Memory therefore
+ * grows with the number of distinct cells touched, not with whole sections. Restoring writes
+ * back only those cells, so unrelated edits made since are kept. Block entity data is not captured.
+ */
+public final class UndoSnapshot implements BlockChangeListener {
+    private final String batchId;
+    private final int sectionLimit;
+    private final Map<ServerLevel, Long2ObjectLinkedOpenHashMap<SectionPreImage>> sections = new IdentityHashMap<>();
+    private int sectionCount;
+    private boolean overflowed;
+
+    UndoSnapshot(String batchId, int sectionLimit) {
+        this.batchId = batchId;
+        this.sectionLimit = sectionLimit;
+    }
+
+    public String getBatchId() { return batchId; }
+    public int getSectionCount() { return sectionCount; }
+    public boolean isOverflowed() { return overflowed; }
+
+    @Override
+    public void beforeChange(ServerLevel level, BlockPos pos) {
+        if (overflowed || level.isOutsideBuildHeight(pos)) {
+            return;
+        }
+        Long2ObjectLinkedOpenHashMap<SectionPreImage> byLevel =
+            sections.computeIfAbsent(level, k -> new Long2ObjectLinkedOpenHashMap<>());
+        long sectionKey = SectionPos.asLong(pos);
+        SectionPreImage image = byLevel.get(sectionKey);
+        if (image == null) {
+            if (sectionCount >= sectionLimit) {
+                overflowed = true;
+                return;
+            }
+            image = new SectionPreImage();
+            byLevel.put(sectionKey, image);
+            sectionCount++;
+        }
+        int index = localIndex(pos.getX() & 15, pos.getY() & 15, pos.getZ() & 15);
+        if (!image.touched.get(index)) {
+            LevelChunk chunk = level.getChunkAt(pos);
+            image.add(index, chunk.getSection(chunk.getSectionIndex(pos.getY())).getBlockState(pos.getX() & 15, pos.getY() & 15, pos.getZ() & 15));
+        }
+    }
+
+    /** One box per captured section, across all levels, for {@link RegionScheduler#acquire}. */
+    public List<CoordinateUtils.BoundingBox> getRegions() {
+        LongLinkedOpenHashSet keys = new LongLinkedOpenHashSet();
+        for (Long2ObjectLinkedOpenHashMap<SectionPreImage> byLevel : sections.values()) {
+            keys.addAll(byLevel.keySet());
+        }
+        List<CoordinateUtils.BoundingBox> regions = new ArrayList<>(keys.size());
+        for (long key : keys) {
+            SectionPos sectionPos = SectionPos.of(key);
+            regions.add(new CoordinateUtils.BoundingBox(sectionPos.minBlockX(), sectionPos.minBlockY(), sectionPos.minBlockZ(),
+                sectionPos.maxBlockX(), sectionPos.maxBlockY(), sectionPos.maxBlockZ()));
+        }
+        return regions;
+    }
+
+    /** Must run on the server thread. */
+    public BulkBlockWriter.Result restore() {
+        long changed = 0;
+        long unchanged = 0;
+        int chunks = 0;
+        int resentChunks = 0;
+
+        for (Map.Entry<ServerLevel, Long2ObjectLinkedOpenHashMap<SectionPreImage>> levelEntry : sections.entrySet()) {
+            BulkBlockWriter writer = new BulkBlockWriter(levelEntry.getKey());
+            for (Long2ObjectLinkedOpenHashMap.Entry<SectionPreImage> entry : levelEntry.getValue().long2ObjectEntrySet()) {
+                SectionPos sectionPos = SectionPos.of(entry.getLongKey());
+                SectionPreImage image = entry.getValue();
+                for (int i = 0; i < image.size; i++) {
+                    int index = image.cells[i];
+                    int x = index & 15;
+                    int z = (index >> 4) & 15;
+                    int y = index >> 8;
+                    writer.set(sectionPos.minBlockX() + x, sectionPos.minBlockY() + y, sectionPos.minBlockZ() + z, image.states[i]);
+                }
+            }
+            BulkBlockWriter.Result result = writer.apply();
+            changed += result.changed();
+            unchanged += result.unchanged();
+            chunks += result.chunks();
+            resentChunks += result.resentChunks();
+        }
+        return new BulkBlockWriter.Result(changed, unchanged, chunks, 0, resentChunks);
+    }
+
+    private static int localIndex(int x, int y, int z) {
+        return (y << 8) | (z << 4) | x;
+    }
+
+    private static final class SectionPreImage {
+        private final BitSet touched = new BitSet(4096);
+        private short[] cells = new short[16];
+        private BlockState[] states = new BlockState[16];
+        private int size;
+
+        void add(int index, BlockState original) {
+            if (size == cells.length) {
+                cells = Arrays.copyOf(cells, size * 2);
+                states = Arrays.copyOf(states, size * 2);
+            }
+            touched.set(index);
+            cells[size] = (short) index;
+            states[size] = original;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package cuspymd.mcp.mod.server.build;
+
+/** Implemented on {@code LevelChunkSection} by {@code LevelChunkSectionMixin}. */
+public interface VersionedSection {
+    long mcp$getVersion();
+
+    /** See {@link SectionHashes}. */
+    long mcp$getContentHash();
+}
@@ -0,0 +1,55 @@
+package cuspymd.mcp.mod.server.tools;
+
+import com.mojang.brigadier.context.ContextChain;
+import net.minecraft.commands.CommandSourceStack;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of parsed command batches, keyed by the SHA-256 of their text. Each entry keeps
+ * one brigadier {@link ContextChain} per command, so a run only binds a new source and executes.
+ */
+public final class CompiledBatchCache {
+    private final int maxEntries;
+    private final LinkedHashMap<String, CompiledBatch> batches;
+
+    public CompiledBatchCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.batches = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompiledBatch> eldest) {
+                return size() > CompiledBatchCache.this.maxEntries;
+            }
+        };
+    }
+
+    public synchronized CompiledBatch get(String hash) {
+        return batches.get(hash);
+    }
+
+    public synchronized void put(CompiledBatch batch) {
+        batches.put(batch.hash(), batch);
+    }
+
+    public static String hash(List<String> commands) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String command : commands) {
+                digest.update(command.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public record CompiledBatch(String hash, List<String> commands, List<ContextChain<CommandSourceStack>> chains, boolean safetyValidated) {
+    }
+}
@@ -0,0 +1,266 @@
+package cuspymd.mcp.mod.server.tools;
+
+import com.google.gson.JsonObject;
+import cuspymd.mcp.mod.server.build.ChunkPreloader;
+import cuspymd.mcp.mod.utils.BlockCompressor;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.status.ChunkStatus;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+
+/**
+ * A paginated {@code get_blocks_in_area} scan, read one page at a time by {@link ScanSessionScheduler}.
+ * Like a {@code FillJob}, it visits sections column by column within a per-tick time budget and
+ * yields while an unloaded column loads. A column it loads keeps a {@link ChunkPreloader#TICKET}
+ * ticket until the session has read past it. Only the page being built is held in memory, plus
+ * the one section that did not fit on the previous page.
+ */
+final class ScanSession {
+    private final String id;
+    private final ServerLevel level;
+    private final int minX, minY, minZ, maxX, maxY, maxZ;
+    private final Predicate<BlockState> filter;
+    private final int pageLimit;
+    private final boolean failFast;
+    private final long tickBudgetNanos;
+
+    private final int minSectionX, minSectionY, minSectionZ;
+    private final int sectionsX, sectionsY, sectionsZ;
+    private final Map<Block, String> names = new IdentityHashMap<>();
+
+    private int sectionsDone;
+    private List<BlockCompressor.BlockData> carry = new ArrayList<>();
+    private boolean finished;
+
+    // The page being built and the request waiting for it; null between requests
+    private List<BlockCompressor.BlockData> page;
+    private int pageSectionsSkipped;
+    private CompletableFuture<JsonObject> pending;
+    private long lastPolledNanos = System.nanoTime();
+
+    private CompletableFuture<?> loading;
+    private int loadingColumn = -1;
+    // Columns this session put a ticket on, ascending
+    private final IntArrayList ticketed = new IntArrayList();
+
+    ScanSession(String id, ServerLevel level, int minX, int minY, int minZ, int maxX, int maxY, int maxZ,
+                Predicate<BlockState> filter, int pageLimit, boolean failFast, long tickBudgetNanos) {
+        this.id = id;
+        this.level = level;
+        this.minX = minX;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxZ = maxZ;
+        // Clip to the build height; nothing outside it can match
+        this.minY = Math.max(minY, level.getMinY());
+        this.maxY = Math.min(maxY, level.getMaxY());
+        this.filter = filter;
+        this.pageLimit = pageLimit;
+        this.failFast = failFast;
+        this.tickBudgetNanos = tickBudgetNanos;
+
+        this.minSectionX = SectionPos.blockToSectionCoord(minX);
+        this.minSectionY = SectionPos.blockToSectionCoord(this.minY);
+        this.minSectionZ = SectionPos.blockToSectionCoord(minZ);
+        this.sectionsX = SectionPos.blockToSectionCoord(maxX) - minSectionX + 1;
+        this.sectionsY = this.maxY < this.minY ? 0 : SectionPos.blockToSectionCoord(this.maxY) - minSectionY + 1;
+        this.sectionsZ = SectionPos.blockToSectionCoord(maxZ) - minSectionZ + 1;
+    }
+
+    String getId() { return id; }
+    long getTickBudgetNanos() { return tickBudgetNanos; }
+
+    private int totalSections() {
+        return sectionsX * sectionsY * sectionsZ;
+    }
+
+    /** The page after the last one delivered. Asking again before {@link #delivered} returns the same page. */
+    synchronized CompletableFuture<JsonObject> nextPage() {
+        lastPolledNanos = System.nanoTime();
+        if (pending == null) {
+            pending = new CompletableFuture<>();
+            page = carry;
+            carry = new ArrayList<>();
+            pageSectionsSkipped = 0;
+        }
+        return pending;
+    }
+
+    synchronized void delivered(CompletableFuture<JsonObject> future) {
+        lastPolledNanos = System.nanoTime();
+        if (pending == future && future.isDone()) {
+            pending = null;
+        }
+    }
+
+    /** True if no page is being built and nobody has asked for one for {@code timeoutNanos}. */
+    synchronized boolean isIdle(long nowNanos, long timeoutNanos) {
+        return !isWaitingForPage() && nowNanos - lastPolledNanos >= timeoutNanos;
+    }
+
+    /** True once the last page has been built. */
+    synchronized boolean isFinished() {
+        return finished;
+    }
+
+    synchronized boolean isWaitingForPage() {
+        return pending != null && !pending.isDone();
+    }
+
+    synchronized void cancel(String reason) {
+        finished = true;
+        if (!ticketed.isEmpty()) {
+            LongList held = ticketedChunks(ticketed.size());
+            ticketed.clear();
+            level.getServer().execute(() -> ChunkPreloader.release(level, held));
+        }
+        if (pending != null && !pending.isDone()) {
+            JsonObject error = new JsonObject();
+            error.addProperty("error", reason);
+            pending.complete(error);
+        }
+    }
+
+    /** Server thread only. Reads whole sections into the waiting page until it fills or the deadline passes. */
+    synchronized void step(long deadlineNanos) {
+        if (!isWaitingForPage()) {
+            return;
+        }
+        try {
+            SectionReader reader = new SectionReader(level);
+            while (sectionsDone < totalSections()) {
+                int column = sectionsDone / sectionsY;
+                if (!columnReady(column)) {
+                    return;
+                }
+                releaseBefore(column);
+                int sectionY = minSectionY + sectionsDone % sectionsY;
+                int sectionZ = minSectionZ + column % sectionsZ;
+                int sectionX = minSectionX + column / sectionsZ;
+                sectionsDone++;
+
+                LevelChunkSection section = reader.section(sectionX, sectionY, sectionZ);
+                if (section != null && !section.hasOnlyAir()) {
+                    if (!section.maybeHas(filter)) {
+                        pageSectionsSkipped++;
+                    } else {
+                        List<BlockCompressor.BlockData> found = new ArrayList<>();
+                        ServerBlockScanner.scanSection(section, sectionX, sectionY, sectionZ, minX, minY, minZ, maxX, maxY, maxZ,
+                            filter, names, found, Integer.MAX_VALUE);
+                        // A section never straddles two pages; it opens the next one instead
+                        if (!page.isEmpty() && page.size() + found.size() > pageLimit) {
+                            carry = found;
+                            completePage();
+                            return;
+                        }
+                        page.addAll(found);
+                        if (page.size() >= pageLimit) {
+                            completePage();
+                            return;
+                        }
+                    }
+                }
+                if (System.nanoTime() >= deadlineNanos) {
+                    return;
+                }
+            }
+            completePage();
+        } catch (RuntimeException e) {
+            cancel("Scan failed: " + e.getMessage());
+        }
+    }
+
+    private boolean columnReady(int column) {
+        if (column == loadingColumn && !loading.isDone()) {
+            return false;
+        }
+        if (column != loadingColumn && !isLoaded(column)) {
+            if (failFast) {
+                throw new IllegalStateException("chunk " + (minSectionX + column / sectionsZ) + ", " + (minSectionZ + column % sectionsZ)
+                    + " is not loaded and fail_fast is set");
+            }
+            requestLoad(column);
+            return false;
+        }
+        int columns = sectionsX * sectionsZ;
+        if (!failFast && column + 1 < columns && loadingColumn != column + 1 && !isLoaded(column + 1)) {
+            requestLoad(column + 1);
+        }
+        return true;
+    }
+
+    private boolean isLoaded(int column) {
+        return level.getChunkSource().hasChunk(minSectionX + column / sectionsZ, minSectionZ + column % sectionsZ);
+    }
+
+    private void requestLoad(int column) {
+        loadingColumn = column;
+        long chunk = columnChunk(column);
+        if (!ticketed.contains(column)) {
+            ticketed.add(column);
+            ChunkPreloader.hold(level, LongList.of(chunk));
+        }
+        loading = level.getChunkSource().getChunkFuture(ChunkPos.getX(chunk), ChunkPos.getZ(chunk), ChunkStatus.FULL, true);
+    }
+
+    private long columnChunk(int column) {
+        return ChunkPos.asLong(minSectionX + column / sectionsZ, minSectionZ + column % sectionsZ);
+    }
+
+    // Columns are read in order, so a ticket on an earlier column is no longer needed
+    private void releaseBefore(int column) {
+        int done = 0;
+        while (done < ticketed.size() && ticketed.getInt(done) < column) {
+            done++;
+        }
+        if (done > 0) {
+            ChunkPreloader.release(level, ticketedChunks(done));
+            ticketed.removeElements(0, done);
+        }
+    }
+
+    private LongList ticketedChunks(int count) {
+        LongArrayList chunks = new LongArrayList(count);
+        for (int i = 0; i < count; i++) {
+            chunks.add(columnChunk(ticketed.getInt(i)));
+        }
+        return chunks;
+    }
+
+    private void completePage() {
+        JsonObject result = BlockCompressor.compressBlocks(page);
+        JsonObject stats = new JsonObject();
+        stats.addProperty("non_air_blocks", page.size());
+        stats.addProperty("sections_skipped", pageSectionsSkipped);
+        result.add("stats", stats);
+
+        JsonObject progress = new JsonObject();
+        progress.addProperty("sectionsDone", sectionsDone);
+        progress.addProperty("sectionsTotal", totalSections());
+        progress.addProperty("percent", totalSections() == 0 ? 100.0 : Math.floor(sectionsDone * 1000.0 / totalSections()) / 10.0);
+        result.add("progress", progress);
+
+        if (sectionsDone < totalSections() || !carry.isEmpty()) {
+            result.addProperty("cursor", id);
+        } else {
+            finished = true;
+            ChunkPreloader.release(level, ticketedChunks(ticketed.size()));
+            ticketed.clear();
+        }
+        page = null;
+        pending.complete(result);
+    }
+}
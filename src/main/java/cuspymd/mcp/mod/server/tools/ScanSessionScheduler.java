@@ -0,0 +1,118 @@
+package cuspymd.mcp.mod.server.tools;
+
+import net.minecraft.server.MinecraftServer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Builds the pages of {@link ScanSession}s at the end of each server tick, first-in first-out,
+ * within the head session's per-tick time budget. Only the most recently used few sessions are
+ * kept, and a session nobody has read from for {@link #IDLE_TIMEOUT_MINUTES} is dropped so that an
+ * abandoned cursor does not hold its chunk tickets forever. A dropped session's cursor stops
+ * working. One scheduler exists per running server.
+ */
+public final class ScanSessionScheduler {
+    static final int MAX_SESSIONS = 16;
+    // Long enough for a client to think between pages
+    static final long IDLE_TIMEOUT_MINUTES = 5;
+    private static final long IDLE_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(IDLE_TIMEOUT_MINUTES);
+
+    private static final Map<MinecraftServer, ScanSessionScheduler> SCHEDULERS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final LinkedHashMap<String, ScanSession> sessions = new LinkedHashMap<>(16, 0.75f, true);
+
+    private ScanSessionScheduler() {
+    }
+
+    public static ScanSessionScheduler forServer(MinecraftServer server) {
+        return SCHEDULERS.computeIfAbsent(server, k -> new ScanSessionScheduler());
+    }
+
+    public static void onEndTick(MinecraftServer server) {
+        ScanSessionScheduler scheduler = SCHEDULERS.get(server);
+        if (scheduler != null) {
+            scheduler.tick();
+        }
+    }
+
+    public static void onServerStopping(MinecraftServer server) {
+        ScanSessionScheduler scheduler = SCHEDULERS.remove(server);
+        if (scheduler != null) {
+            scheduler.cancelAll();
+        }
+    }
+
+    String nextSessionId() {
+        return "scan-" + nextId.getAndIncrement();
+    }
+
+    synchronized void add(ScanSession session) {
+        sessions.put(session.getId(), session);
+        if (sessions.size() > MAX_SESSIONS) {
+            ScanSession eldest = sessions.values().iterator().next();
+            sessions.remove(eldest.getId());
+            eldest.cancel("Scan session " + eldest.getId() + " was evicted by newer scans");
+        }
+    }
+
+    synchronized ScanSession get(String id) {
+        return sessions.get(id);
+    }
+
+    synchronized void remove(String id) {
+        sessions.remove(id);
+    }
+
+    private void tick() {
+        expireIdleSessions(System.nanoTime());
+        List<ScanSession> waiting = waitingSessions();
+        if (waiting.isEmpty()) {
+            return;
+        }
+        long deadline = System.nanoTime() + waiting.get(0).getTickBudgetNanos();
+        for (ScanSession session : waiting) {
+            session.step(deadline);
+            if (System.nanoTime() >= deadline) {
+                break;
+            }
+        }
+    }
+
+    private synchronized void expireIdleSessions(long nowNanos) {
+        Iterator<ScanSession> it = sessions.values().iterator();
+        while (it.hasNext()) {
+            ScanSession session = it.next();
+            if (session.isIdle(nowNanos, IDLE_TIMEOUT_NANOS)) {
+                it.remove();
+                session.cancel("Scan session " + session.getId() + " expired after " + IDLE_TIMEOUT_MINUTES + " minutes without a request");
+            }
+        }
+    }
+
+    // Least recently used first; iterating the values does not reorder them
+    private synchronized List<ScanSession> waitingSessions() {
+        List<ScanSession> waiting = new ArrayList<>();
+        for (ScanSession session : sessions.values()) {
+            if (session.isWaitingForPage()) {
+                waiting.add(session);
+            }
+        }
+        return waiting;
+    }
+
+    private synchronized void cancelAll() {
+        for (ScanSession session : sessions.values()) {
+            session.cancel("Server is stopping");
+        }
+        sessions.clear();
+    }
+}
@@ -0,0 +1,35 @@
+package cuspymd.mcp.mod.server.tools;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+
+/**
+ * Chunk section lookups for a scan, each chunk fetched from the chunk source once however many
+ * boxes or pages touch it. Must be used on the server thread.
+ */
+final class SectionReader {
+    private final ServerLevel level;
+    private final Long2ObjectOpenHashMap<LevelChunk> chunks = new Long2ObjectOpenHashMap<>();
+
+    SectionReader(ServerLevel level) {
+        this.level = level;
+    }
+
+    /** Null outside the build height. */
+    LevelChunkSection section(int sectionX, int sectionY, int sectionZ) {
+        int index = level.getSectionIndexFromSectionY(sectionY);
+        if (index < 0 || index >= level.getSectionsCount()) {
+            return null;
+        }
+        long key = ChunkPos.asLong(sectionX, sectionZ);
+        LevelChunk chunk = chunks.get(key);
+        if (chunk == null) {
+            chunk = level.getChunk(sectionX, sectionZ);
+            chunks.put(key, chunk);
+        }
+        return chunk.getSection(index);
+    }
+}
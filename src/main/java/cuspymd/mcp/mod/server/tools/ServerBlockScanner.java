@@ -1,94 +1,719 @@
 package cuspymd.mcp.mod.server.tools;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import cuspymd.mcp.mod.config.MCPConfig;
+import cuspymd.mcp.mod.server.build.BlockStateFilter;
+import cuspymd.mcp.mod.server.build.ChunkPreloader;
+import cuspymd.mcp.mod.server.build.SectionHashTree;
+import cuspymd.mcp.mod.server.build.SectionHashes;
+import cuspymd.mcp.mod.server.build.SectionVersions;
+import cuspymd.mcp.mod.utils.BlockCompressor;
 import cuspymd.mcp.mod.utils.IBlockScanner;
-import net.minecraft.core.BlockPos;
+import cuspymd.mcp.mod.utils.LodGrid;
+import cuspymd.mcp.mod.utils.VoxelCodec;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.commands.arguments.blocks.BlockStateParser;
+import net.minecraft.core.HolderLookup;
+import net.minecraft.core.SectionPos;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.core.registries.Registries;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
 
 public class ServerBlockScanner implements IBlockScanner {
+    static final int MAX_RESOLUTION = 64;
+    static final int MAX_BOXES = 64;
+    private static final Predicate<BlockState> NOT_AIR = state -> !state.isAir();
+
+    private final MCPConfig config;
     private final MinecraftServer server;
 
-    public ServerBlockScanner(MinecraftServer server) {
+    public ServerBlockScanner(MCPConfig config, MinecraftServer server) {
+        this.config = config;
         this.server = server;
     }
 
     @Override
     public JsonObject scanBlocksInArea(JsonObject fromPos, JsonObject toPos, int maxAreaSize) {
-        try {
-            return server.submit(() -> {
-                if (server == null) {
-                    JsonObject error = new JsonObject();
-                    error.addProperty("error", "Server instance not available");
-                    return error;
-                }
+        return scanBlocksInArea(fromPos, toPos, maxAreaSize, false);
+    }
+
+    @Override
+    public JsonObject scanBlocksInArea(JsonObject fromPos, JsonObject toPos, int maxAreaSize, boolean failFast) {
+        JsonObject arguments = new JsonObject();
+        arguments.add("from", fromPos);
+        arguments.add("to", toPos);
+        arguments.addProperty("fail_fast", failFast);
+        return scanBlocksInArea(arguments, maxAreaSize);
+    }
+
+    @Override
+    public JsonObject scanBlocksInArea(JsonObject arguments, int maxAreaSize) {
+        if (server == null) {
+            JsonObject error = new JsonObject();
+            error.addProperty("error", "Server instance not available");
+            return error;
+        }
+        if (arguments.has("cursor")) {
+            return continueScan(arguments.get("cursor").getAsString());
+        }
+        if (arguments.has("boxes")) {
+            return scanBoxes(arguments, maxAreaSize);
+        }
 
-                ServerLevel world;
-                if (server.getPlayerList() == null || server.getPlayerList().getPlayers().isEmpty()) {
-                    // Fallback to the overworld if no players are online
-                    world = server.overworld();
+        JsonObject fromPos = arguments.getAsJsonObject("from");
+        JsonObject toPos = arguments.getAsJsonObject("to");
+        boolean failFast = arguments.has("fail_fast") && arguments.get("fail_fast").getAsBoolean();
+
+        int x1 = fromPos.get("x").getAsInt();
+        int y1 = fromPos.get("y").getAsInt();
+        int z1 = fromPos.get("z").getAsInt();
+        int x2 = toPos.get("x").getAsInt();
+        int y2 = toPos.get("y").getAsInt();
+        int z2 = toPos.get("z").getAsInt();
+
+        int minX = Math.min(x1, x2);
+        int minY = Math.min(y1, y2);
+        int minZ = Math.min(z1, z2);
+        int maxX = Math.max(x1, x2);
+        int maxY = Math.max(y1, y2);
+        int maxZ = Math.max(z1, z2);
+
+        // In long: opposite corners near the int limits would wrap an int extent
+        long dx = (long) maxX - minX + 1;
+        long dy = (long) maxY - minY + 1;
+        long dz = (long) maxZ - minZ + 1;
+
+        int resolution = arguments.has("resolution") ? arguments.get("resolution").getAsInt() : 1;
+        if (resolution < 1 || resolution > MAX_RESOLUTION) {
+            JsonObject error = new JsonObject();
+            error.addProperty("error", "resolution must be between 1 and " + MAX_RESOLUTION);
+            return error;
+        }
+        boolean paginate = arguments.has("paginate") && arguments.get("paginate").getAsBoolean();
+        if (paginate && (resolution > 1 || arguments.has("if_none_match"))) {
+            JsonObject error = new JsonObject();
+            error.addProperty("error", "paginate cannot be combined with resolution or if_none_match");
+            return error;
+        }
+        // A downsampled scan returns at most maxAreaSize cubes per axis, like a full one returns blocks.
+        // Anything larger is read a page at a time, so no single tick has to cover it; a filtered scan
+        // that outgrows the cap is paginated without being asked, as long as nothing rules that out.
+        boolean filtered = arguments.has("include") || arguments.has("exclude");
+        long maxAxis = (long) maxAreaSize * resolution;
+        boolean oversized = dx > maxAxis || dy > maxAxis || dz > maxAxis;
+        if (oversized && filtered && resolution == 1 && !arguments.has("if_none_match") && !arguments.has("encoding")) {
+            paginate = true;
+        }
+        if (oversized && !paginate) {
+            JsonObject error = new JsonObject();
+            error.addProperty("error", "Area too large. Max size is " + maxAxis + " per axis"
+                + (resolution == 1 ? "; pass 'resolution' to survey a larger area at lower detail, or 'paginate' to read it in pages." : " at resolution " + resolution + "."));
+            return error;
+        }
+        long volume = dx * dy * dz;
+        long maxVolume = config.getSafety().getMaxBlocksPerFillJob();
+        if (volume > maxVolume) {
+            JsonObject error = new JsonObject();
+            error.addProperty("error", "Area volume (" + volume + ") exceeds maximum allowed (" + maxVolume + ")");
+            return error;
+        }
+
+        // Either the root "hash" of an earlier scan or its whole "sectionHashes" map
+        Long expectedRoot = null;
+        JsonObject knownHashes = null;
+        if (arguments.has("if_none_match")) {
+            JsonElement ifNoneMatch = arguments.get("if_none_match");
+            try {
+                if (ifNoneMatch.isJsonObject()) {
+                    knownHashes = ifNoneMatch.getAsJsonObject();
+                    for (Map.Entry<String, JsonElement> entry : knownHashes.entrySet()) {
+                        SectionHashTree.parseHex(entry.getValue().getAsString());
+                    }
                 } else {
-                    // Use the first player's world
-                    ServerPlayer player = server.getPlayerList().getPlayers().get(0);
-                    world = player.createCommandSourceStack().getLevel();
+                    expectedRoot = SectionHashTree.parseHex(ifNoneMatch.getAsString());
                 }
+            } catch (IllegalArgumentException | UnsupportedOperationException | IllegalStateException e) {
+                JsonObject error = new JsonObject();
+                error.addProperty("error", "if_none_match must be a 'hash' string or a 'sectionHashes' object from an earlier scan");
+                return error;
+            }
+        }
+        Long rootToMatch = expectedRoot;
+        JsonObject hashesToMatch = knownHashes;
+        // The first hash of a section reads all its blocks, so only pay for it on request
+        boolean hashed = arguments.has("if_none_match") || isIncludeHashes(arguments);
 
-                int x1 = fromPos.get("x").getAsInt();
-                int y1 = fromPos.get("y").getAsInt();
-                int z1 = fromPos.get("z").getAsInt();
-                int x2 = toPos.get("x").getAsInt();
-                int y2 = toPos.get("y").getAsInt();
-                int z2 = toPos.get("z").getAsInt();
-
-                int minX = Math.min(x1, x2);
-                int minY = Math.min(y1, y2);
-                int minZ = Math.min(z1, z2);
-                int maxX = Math.max(x1, x2);
-                int maxY = Math.max(y1, y2);
-                int maxZ = Math.max(z1, z2);
-
-                int dx = maxX - minX + 1;
-                int dy = maxY - minY + 1;
-                int dz = maxZ - minZ + 1;
-
-                if (dx > maxAreaSize || dy > maxAreaSize || dz > maxAreaSize) {
-                    JsonObject error = new JsonObject();
-                    error.addProperty("error", "Area too large. Max size is " + maxAreaSize + " per axis.");
-                    return error;
-                }
+        String encoding = arguments.has("encoding") ? arguments.get("encoding").getAsString() : "blocks";
+        if (!encoding.equals("blocks") && !encoding.equals("voxel")) {
+            return error("encoding must be 'blocks' or 'voxel'");
+        }
+        boolean voxel = encoding.equals("voxel");
+        String order = arguments.has("order") ? arguments.get("order").getAsString() : "xzy";
+        if (voxel) {
+            if (resolution > 1 || paginate || knownHashes != null) {
+                return error("encoding 'voxel' cannot be combined with resolution, paginate or a sectionHashes if_none_match");
+            }
+            // The cell array is as large as the area, so it gets the limit a dense full scan has
+            long maxCells = (long) maxAreaSize * maxAreaSize * maxAreaSize;
+            if (volume > maxCells) {
+                return error("Area volume (" + volume + ") exceeds the " + maxCells + " cells a voxel scan may cover");
+            }
+            try {
+                VoxelCodec.strides(order, (int) dx, (int) dy, (int) dz);
+            } catch (IllegalArgumentException e) {
+                return error(e.getMessage());
+            }
+        }
 
-                java.util.List<cuspymd.mcp.mod.utils.BlockCompressor.BlockData> blocks = new java.util.ArrayList<>();
-                int count = 0;
+        try {
+            ServerLevel world = scanWorld();
 
-                for (int x = minX; x <= maxX; x++) {
-                    for (int y = minY; y <= maxY; y++) {
-                        for (int z = minZ; z <= maxZ; z++) {
-                            BlockPos pos = new BlockPos(x, y, z);
-                            net.minecraft.world.level.block.state.BlockState state = world.getBlockState(pos);
+            Predicate<BlockState> filter;
+            try {
+                filter = parseFilter(world, arguments);
+            } catch (IllegalArgumentException e) {
+                JsonObject error = new JsonObject();
+                error.addProperty("error", e.getMessage());
+                return error;
+            }
+            int maxMatches = (int) Math.min(Integer.MAX_VALUE, (long) maxAreaSize * maxAreaSize * maxAreaSize);
 
-                            if (!state.isAir()) {
-                                String name = net.minecraft.core.registries.BuiltInRegistries.BLOCK.getKey(state.getBlock()).toString();
-                                blocks.add(new cuspymd.mcp.mod.utils.BlockCompressor.BlockData(x, y, z, name));
-                                count++;
-                            }
+            if (paginate) {
+                // The session loads each chunk column as it reaches it, so nothing is preloaded here
+                ScanSessionScheduler scheduler = ScanSessionScheduler.forServer(server);
+                ScanSession session = new ScanSession(scheduler.nextSessionId(), world, minX, minY, minZ, maxX, maxY, maxZ,
+                    filter, maxMatches, failFast, config.getServer().getFillJobTickBudgetMicros() * 1_000L);
+                scheduler.add(session);
+                return nextPage(scheduler, session);
+            }
+
+            // Load missing chunks off the tick thread so the scan never waits on chunk IO or generation
+            ChunkPreloader.Loaded loaded = ChunkPreloader.ensureLoaded(server, world, ChunkPreloader.chunksIn(minX, minZ, maxX, maxZ),
+                failFast, config.getServer().getRequestTimeoutMs());
+            if (loaded.getFailure() != null) {
+                return error(loaded.getFailure());
+            }
+
+            try (loaded) {
+                return server.submit(() -> {
+                    SectionReader reader = new SectionReader(world);
+                    SectionHashTree tree = hashed ? SectionHashes.tree(world, minX, minY, minZ, maxX, maxY, maxZ) : null;
+                    String hash = hashed ? SectionHashTree.toHex(tree.getRoot()) : null;
+                    // Null scans the whole area; otherwise only these sections, relative to the area's first one
+                    List<int[]> changed = null;
+                    if (rootToMatch != null && rootToMatch == tree.getRoot()) {
+                        return unchanged(hash);
+                    }
+                    if (hashesToMatch != null) {
+                        changed = tree.diff(SectionHashes.fromJson(hashesToMatch, tree, minX, minY, minZ));
+                        if (changed.isEmpty()) {
+                            return unchanged(hash);
                         }
                     }
-                }
 
-                JsonObject result = cuspymd.mcp.mod.utils.BlockCompressor.compressBlocks(blocks);
+                    if (resolution > 1) {
+                        LodGrid<Block> grid = downsample(reader, minX, minY, minZ, maxX, maxY, maxZ, resolution, filter);
+                        JsonObject result = new JsonObject();
+                        JsonObject lod = grid.toJson(block -> BuiltInRegistries.BLOCK.getKey(block).toString());
+                        result.add("lod", lod);
+                        JsonObject stats = new JsonObject();
+                        stats.addProperty("total_scanned", volume);
+                        stats.addProperty("non_air_blocks", grid.getNonAirBlocks());
+                        stats.addProperty("non_empty_cells", lod.getAsJsonArray("cells").size());
+                        result.add("stats", stats);
+                        // Per-section maps would outweigh the overview itself
+                        if (hashed) {
+                            result.addProperty("hash", hash);
+                        }
+                        return result;
+                    }
 
-                JsonObject stats = new JsonObject();
-                stats.addProperty("total_scanned", dx * dy * dz);
-                stats.addProperty("non_air_blocks", count);
-                result.add("stats", stats);
+                    if (voxel) {
+                        JsonObject result = encodeVoxels(reader, minX, minY, minZ, maxX, maxY, maxZ, filter, order);
+                        result.add("sectionVersions", SectionVersions.collect(world, minX, minY, minZ, maxX, maxY, maxZ));
+                        if (hashed) {
+                            result.addProperty("hash", hash);
+                            result.add("sectionHashes", SectionHashes.toJson(tree, minX, minY, minZ));
+                        }
+                        return result;
+                    }
+
+                    Matches matches = new Matches(maxMatches);
+                    long scanned = 0;
+                    JsonArray changedSections = new JsonArray();
+                    if (changed == null) {
+                        scanBox(reader, minX, minY, minZ, maxX, maxY, maxZ, filter, matches);
+                        scanned = volume;
+                    } else {
+                        int sx0 = SectionPos.blockToSectionCoord(minX), sy0 = SectionPos.blockToSectionCoord(minY), sz0 = SectionPos.blockToSectionCoord(minZ);
+                        for (int[] section : changed) {
+                            int sx = sx0 + section[0], sy = sy0 + section[1], sz = sz0 + section[2];
+                            changedSections.add(SectionVersions.key(sx, sy, sz));
+                            int bx0 = Math.max(minX, SectionPos.sectionToBlockCoord(sx)), bx1 = Math.min(maxX, SectionPos.sectionToBlockCoord(sx) + 15);
+                            int by0 = Math.max(minY, SectionPos.sectionToBlockCoord(sy)), by1 = Math.min(maxY, SectionPos.sectionToBlockCoord(sy) + 15);
+                            int bz0 = Math.max(minZ, SectionPos.sectionToBlockCoord(sz)), bz1 = Math.min(maxZ, SectionPos.sectionToBlockCoord(sz) + 15);
+                            scanBox(reader, bx0, by0, bz0, bx1, by1, bz1, filter, matches);
+                            scanned += (long) (bx1 - bx0 + 1) * (by1 - by0 + 1) * (bz1 - bz0 + 1);
+                        }
+                    }
+
+                    JsonObject result = BlockCompressor.compressBlocks(matches.blocks);
+
+                    JsonObject stats = new JsonObject();
+                    stats.addProperty("total_scanned", scanned);
+                    stats.addProperty("non_air_blocks", matches.blocks.size());
+                    if (filtered) {
+                        stats.addProperty("sections_skipped", matches.sectionsSkipped);
+                    }
+                    result.add("stats", stats);
+                    if (matches.truncated) {
+                        result.addProperty("truncated", true);
+                        result.addProperty("hint", "More than " + maxMatches + " blocks matched; only the first are returned. Narrow the area or the filter.");
+                    }
+                    if (changed != null) {
+                        // Blocks outside these sections are left out; they match the earlier scan
+                        result.add("changedSections", changedSections);
+                    }
+                    // Same tick as the scan, so they describe exactly the blocks returned
+                    result.add("sectionVersions", SectionVersions.collect(world, minX, minY, minZ, maxX, maxY, maxZ));
+                    if (hashed) {
+                        result.addProperty("hash", hash);
+                        result.add("sectionHashes", SectionHashes.toJson(tree, minX, minY, minZ));
+                    }
 
-                return result;
-            }).get();
+                    return result;
+                }).get();
+            }
         } catch (Exception e) {
             JsonObject error = new JsonObject();
             error.addProperty("error", "Failed to scan blocks: " + e.getMessage());
             return error;
         }
     }
-}
\ No newline at end of file
+
+    private ServerLevel scanWorld() throws InterruptedException, ExecutionException {
+        return server.submit(() -> {
+            if (server.getPlayerList() == null || server.getPlayerList().getPlayers().isEmpty()) {
+                // Fallback to the overworld if no players are online
+                return server.overworld();
+            }
+            // Use the first player's world
+            ServerPlayer player = server.getPlayerList().getPlayers().get(0);
+            return player.createCommandSourceStack().getLevel();
+        }).get();
+    }
+
+    /**
+     * Scans several boxes in one server-thread task. Chunks are loaded for all of them up front and
+     * each chunk is looked up once however many boxes share it.
+     */
+    private JsonObject scanBoxes(JsonObject arguments, int maxAreaSize) {
+        JsonArray boxes = arguments.getAsJsonArray("boxes");
+        if (boxes.isEmpty() || boxes.size() > MAX_BOXES) {
+            return error("boxes must hold between 1 and " + MAX_BOXES + " boxes");
+        }
+        if (arguments.has("resolution") || arguments.has("if_none_match") || arguments.has("paginate") || arguments.has("encoding")) {
+            return error("boxes cannot be combined with resolution, if_none_match, paginate or encoding");
+        }
+        boolean failFast = arguments.has("fail_fast") && arguments.get("fail_fast").getAsBoolean();
+        boolean filtered = arguments.has("include") || arguments.has("exclude");
+        boolean hashed = isIncludeHashes(arguments);
+
+        // Inclusive min and max corners, one int[6] per box
+        List<int[]> corners = new ArrayList<>();
+        long volume = 0;
+        for (int i = 0; i < boxes.size(); i++) {
+            JsonObject box = boxes.get(i).isJsonObject() ? boxes.get(i).getAsJsonObject() : null;
+            if (box == null || !hasPosition(box, "from") || !hasPosition(box, "to")) {
+                return error("Box " + i + " must have 'from' and 'to' positions with x, y, z coordinates");
+            }
+            JsonObject from = box.getAsJsonObject("from"), to = box.getAsJsonObject("to");
+            int[] c = {
+                Math.min(from.get("x").getAsInt(), to.get("x").getAsInt()),
+                Math.min(from.get("y").getAsInt(), to.get("y").getAsInt()),
+                Math.min(from.get("z").getAsInt(), to.get("z").getAsInt()),
+                Math.max(from.get("x").getAsInt(), to.get("x").getAsInt()),
+                Math.max(from.get("y").getAsInt(), to.get("y").getAsInt()),
+                Math.max(from.get("z").getAsInt(), to.get("z").getAsInt())
+            };
+            // All boxes are read in one server-thread task, so a filter does not lift the per-axis cap
+            long dx = (long) c[3] - c[0] + 1, dy = (long) c[4] - c[1] + 1, dz = (long) c[5] - c[2] + 1;
+            if (dx > maxAreaSize || dy > maxAreaSize || dz > maxAreaSize) {
+                return error("Box " + i + " is too large. Max size is " + maxAreaSize + " per axis");
+            }
+            corners.add(c);
+            volume += dx * dy * dz;
+        }
+        long maxVolume = config.getSafety().getMaxBlocksPerFillJob();
+        if (volume > maxVolume) {
+            return error("Total volume of the boxes (" + volume + ") exceeds maximum allowed (" + maxVolume + ")");
+        }
+        long totalVolume = volume;
+
+        try {
+            ServerLevel world = scanWorld();
+            Predicate<BlockState> filter;
+            try {
+                filter = parseFilter(world, arguments);
+            } catch (IllegalArgumentException e) {
+                return error(e.getMessage());
+            }
+            // The limit is shared, so the whole response is no larger than one full-size scan
+            int maxMatches = (int) Math.min(Integer.MAX_VALUE, (long) maxAreaSize * maxAreaSize * maxAreaSize);
+
+            LongSet chunks = new LongLinkedOpenHashSet();
+            for (int[] c : corners) {
+                chunks.addAll(ChunkPreloader.chunksIn(c[0], c[2], c[3], c[5]));
+            }
+            ChunkPreloader.Loaded loaded = ChunkPreloader.ensureLoaded(server, world, chunks, failFast, config.getServer().getRequestTimeoutMs());
+            if (loaded.getFailure() != null) {
+                return error(loaded.getFailure());
+            }
+
+            try (loaded) {
+                return server.submit(() -> {
+                    SectionReader reader = new SectionReader(world);
+                    JsonArray results = new JsonArray();
+                    int matched = 0;
+                    boolean truncated = false;
+                    for (int i = 0; i < corners.size(); i++) {
+                        int[] c = corners.get(i);
+                        Matches matches = new Matches(maxMatches - matched);
+                        if (!truncated) {
+                            scanBox(reader, c[0], c[1], c[2], c[3], c[4], c[5], filter, matches);
+                        }
+                        matched += matches.blocks.size();
+                        truncated |= matches.truncated;
+
+                        JsonObject result = BlockCompressor.compressBlocks(matches.blocks);
+                        result.add("from", boxes.get(i).getAsJsonObject().get("from"));
+                        result.add("to", boxes.get(i).getAsJsonObject().get("to"));
+                        JsonObject stats = new JsonObject();
+                        stats.addProperty("total_scanned", ((long) c[3] - c[0] + 1) * ((long) c[4] - c[1] + 1) * ((long) c[5] - c[2] + 1));
+                        stats.addProperty("non_air_blocks", matches.blocks.size());
+                        if (filtered) {
+                            stats.addProperty("sections_skipped", matches.sectionsSkipped);
+                        }
+                        result.add("stats", stats);
+                        if (matches.truncated) {
+                            result.addProperty("truncated", true);
+                        }
+                        result.add("sectionVersions", SectionVersions.collect(world, c[0], c[1], c[2], c[3], c[4], c[5]));
+                        if (hashed) {
+                            result.addProperty("hash", SectionHashTree.toHex(SectionHashes.tree(world, c[0], c[1], c[2], c[3], c[4], c[5]).getRoot()));
+                        }
+                        results.add(result);
+                    }
+
+                    JsonObject response = new JsonObject();
+                    response.add("boxes", results);
+                    JsonObject stats = new JsonObject();
+                    stats.addProperty("total_scanned", totalVolume);
+                    stats.addProperty("non_air_blocks", matched);
+                    stats.addProperty("chunks", chunks.size());
+                    response.add("stats", stats);
+                    if (truncated) {
+                        response.addProperty("truncated", true);
+                        response.addProperty("hint", "More than " + maxMatches + " blocks matched across the boxes; boxes after the first truncated one are empty. Scan fewer or smaller boxes.");
+                    }
+                    return response;
+                }).get();
+            }
+        } catch (Exception e) {
+            return error("Failed to scan blocks: " + e.getMessage());
+        }
+    }
+
+    private static boolean isIncludeHashes(JsonObject arguments) {
+        return arguments.has("include_hashes") && arguments.get("include_hashes").getAsBoolean();
+    }
+
+    private static boolean hasPosition(JsonObject box, String key) {
+        if (!box.has(key) || !box.get(key).isJsonObject()) {
+            return false;
+        }
+        JsonObject pos = box.getAsJsonObject(key);
+        return pos.has("x") && pos.has("y") && pos.has("z");
+    }
+
+    private static JsonObject error(String message) {
+        JsonObject error = new JsonObject();
+        error.addProperty("error", message);
+        return error;
+    }
+
+    private JsonObject continueScan(String cursor) {
+        ScanSessionScheduler scheduler = ScanSessionScheduler.forServer(server);
+        ScanSession session = scheduler.get(cursor);
+        if (session == null) {
+            JsonObject error = new JsonObject();
+            error.addProperty("error", "Unknown or expired cursor: " + cursor);
+            return error;
+        }
+        return nextPage(scheduler, session);
+    }
+
+    private JsonObject nextPage(ScanSessionScheduler scheduler, ScanSession session) {
+        CompletableFuture<JsonObject> page = session.nextPage();
+        JsonObject result;
+        try {
+            result = page.get(config.getServer().getRequestTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // The page keeps building; the same cursor picks it up
+            JsonObject error = new JsonObject();
+            error.addProperty("error", "Page not ready after " + config.getServer().getRequestTimeoutMs()
+                + " ms; call again with cursor '" + session.getId() + "'");
+            return error;
+        } catch (InterruptedException | ExecutionException e) {
+            JsonObject error = new JsonObject();
+            error.addProperty("error", "Failed to scan blocks: " + e.getMessage());
+            return error;
+        }
+        session.delivered(page);
+        if (session.isFinished()) {
+            scheduler.remove(session.getId());
+        }
+        return result;
+    }
+
+    // Reads each section once; a section made of one block type is counted without visiting its cells
+    private static LodGrid<Block> downsample(SectionReader reader, int minX, int minY, int minZ, int maxX, int maxY, int maxZ,
+                                             int resolution, Predicate<BlockState> filter) {
+        LodGrid<Block> grid = new LodGrid<>(minX, minY, minZ, maxX, maxY, maxZ, resolution);
+        for (int sx = SectionPos.blockToSectionCoord(minX); sx <= SectionPos.blockToSectionCoord(maxX); sx++) {
+            for (int sz = SectionPos.blockToSectionCoord(minZ); sz <= SectionPos.blockToSectionCoord(maxZ); sz++) {
+                for (int sy = SectionPos.blockToSectionCoord(minY); sy <= SectionPos.blockToSectionCoord(maxY); sy++) {
+                    LevelChunkSection section = reader.section(sx, sy, sz);
+                    if (section == null || section.hasOnlyAir() || !section.maybeHas(filter)) {
+                        continue;
+                    }
+                    int x0 = Math.max(minX, SectionPos.sectionToBlockCoord(sx)), x1 = Math.min(maxX, SectionPos.sectionToBlockCoord(sx) + 15);
+                    int y0 = Math.max(minY, SectionPos.sectionToBlockCoord(sy)), y1 = Math.min(maxY, SectionPos.sectionToBlockCoord(sy) + 15);
+                    int z0 = Math.max(minZ, SectionPos.sectionToBlockCoord(sz)), z1 = Math.min(maxZ, SectionPos.sectionToBlockCoord(sz) + 15);
+
+                    List<BlockState> present = new ArrayList<>();
+                    section.getStates().count((state, count) -> {
+                        if (count > 0) {
+                            present.add(state);
+                        }
+                    });
+                    // maybeHas already saw that lone state match
+                    if (present.size() == 1) {
+                        grid.addBox(x0, y0, z0, x1, y1, z1, grid.typeId(present.get(0).getBlock()));
+                        continue;
+                    }
+                    for (int y = y0; y <= y1; y++) {
+                        for (int z = z0; z <= z1; z++) {
+                            for (int x = x0; x <= x1; x++) {
+                                BlockState state = section.getBlockState(x & 15, y & 15, z & 15);
+                                if (filter.test(state)) {
+                                    grid.add(x, y, z, grid.typeId(state.getBlock()));
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return grid;
+    }
+
+    private static JsonObject unchanged(String hash) {
+        JsonObject result = new JsonObject();
+        result.addProperty("unchanged", true);
+        result.addProperty("hash", hash);
+        return result;
+    }
+
+    /**
+     * The area as a voxel array: a palette of full block states and base64 run-length data as in
+     * {@link VoxelCodec}, with cells in {@code order}. Value 0 is air or a block the filter rejects.
+     */
+    private static JsonObject encodeVoxels(SectionReader reader, int minX, int minY, int minZ, int maxX, int maxY, int maxZ,
+                                           Predicate<BlockState> filter, String order) {
+        int sizeX = maxX - minX + 1, sizeY = maxY - minY + 1, sizeZ = maxZ - minZ + 1;
+        int[] strides = VoxelCodec.strides(order, sizeX, sizeY, sizeZ);
+        int[] values = new int[sizeX * sizeY * sizeZ];
+        Map<BlockState, Integer> ids = new IdentityHashMap<>();
+        JsonArray palette = new JsonArray();
+        long count = 0;
+
+        for (int sx = SectionPos.blockToSectionCoord(minX); sx <= SectionPos.blockToSectionCoord(maxX); sx++) {
+            for (int sy = SectionPos.blockToSectionCoord(minY); sy <= SectionPos.blockToSectionCoord(maxY); sy++) {
+                for (int sz = SectionPos.blockToSectionCoord(minZ); sz <= SectionPos.blockToSectionCoord(maxZ); sz++) {
+                    LevelChunkSection section = reader.section(sx, sy, sz);
+                    if (section == null || section.hasOnlyAir() || !section.maybeHas(filter)) {
+                        continue;
+                    }
+                    int x0 = Math.max(minX, SectionPos.sectionToBlockCoord(sx)), x1 = Math.min(maxX, SectionPos.sectionToBlockCoord(sx) + 15);
+                    int y0 = Math.max(minY, SectionPos.sectionToBlockCoord(sy)), y1 = Math.min(maxY, SectionPos.sectionToBlockCoord(sy) + 15);
+                    int z0 = Math.max(minZ, SectionPos.sectionToBlockCoord(sz)), z1 = Math.min(maxZ, SectionPos.sectionToBlockCoord(sz) + 15);
+                    for (int y = y0; y <= y1; y++) {
+                        for (int z = z0; z <= z1; z++) {
+                            for (int x = x0; x <= x1; x++) {
+                                BlockState state = section.getBlockState(x & 15, y & 15, z & 15);
+                                if (!filter.test(state)) {
+                                    continue;
+                                }
+                                Integer id = ids.get(state);
+                                if (id == null) {
+                                    palette.add(BlockStateParser.serialize(state));
+                                    id = palette.size();
+                                    ids.put(state, id);
+                                }
+                                values[(x - minX) * strides[0] + (y - minY) * strides[1] + (z - minZ) * strides[2]] = id;
+                                count++;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        JsonObject result = new JsonObject();
+        result.addProperty("encoding", "voxel");
+        JsonObject origin = new JsonObject();
+        origin.addProperty("x", minX);
+        origin.addProperty("y", minY);
+        origin.addProperty("z", minZ);
+        result.add("origin", origin);
+        JsonObject size = new JsonObject();
+        size.addProperty("x", sizeX);
+        size.addProperty("y", sizeY);
+        size.addProperty("z", sizeZ);
+        result.add("size", size);
+        result.addProperty("order", order);
+        result.add("palette", palette);
+        result.addProperty("data", VoxelCodec.encodeRle(values));
+        JsonObject stats = new JsonObject();
+        stats.addProperty("total_scanned", (long) values.length);
+        stats.addProperty("non_air_blocks", count);
+        result.add("stats", stats);
+        return result;
+    }
+
+    /** Blocks collected by {@link #scanBox}, up to a limit. */
+    private static final class Matches {
+        final List<BlockCompressor.BlockData> blocks = new ArrayList<>();
+        final Map<Block, String> names = new IdentityHashMap<>();
+        final int limit;
+        boolean truncated;
+        int sectionsSkipped;
+
+        Matches(int limit) {
+            this.limit = limit;
+        }
+    }
+
+    // Appends the matching blocks in the box. Sections whose palette holds no matching state are skipped unread.
+    private static void scanBox(SectionReader reader, int minX, int minY, int minZ, int maxX, int maxY, int maxZ,
+                                Predicate<BlockState> filter, Matches matches) {
+        for (int sx = SectionPos.blockToSectionCoord(minX); sx <= SectionPos.blockToSectionCoord(maxX); sx++) {
+            for (int sy = SectionPos.blockToSectionCoord(minY); sy <= SectionPos.blockToSectionCoord(maxY); sy++) {
+                for (int sz = SectionPos.blockToSectionCoord(minZ); sz <= SectionPos.blockToSectionCoord(maxZ); sz++) {
+                    LevelChunkSection section = reader.section(sx, sy, sz);
+                    if (section == null || section.hasOnlyAir()) {
+                        continue;
+                    }
+                    if (!section.maybeHas(filter)) {
+                        matches.sectionsSkipped++;
+                        continue;
+                    }
+                    if (!scanSection(section, sx, sy, sz, minX, minY, minZ, maxX, maxY, maxZ, filter, matches.names, matches.blocks, matches.limit)) {
+                        matches.truncated = true;
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends the blocks of one section that lie in the box and pass the filter, naming them through
+     * {@code names}. Returns false, leaving the section half read, once {@code out} would exceed {@code limit}.
+     */
+    static boolean scanSection(LevelChunkSection section, int sx, int sy, int sz,
+                               int minX, int minY, int minZ, int maxX, int maxY, int maxZ, Predicate<BlockState> filter,
+                               Map<Block, String> names, List<BlockCompressor.BlockData> out, int limit) {
+        int x0 = Math.max(minX, SectionPos.sectionToBlockCoord(sx)), x1 = Math.min(maxX, SectionPos.sectionToBlockCoord(sx) + 15);
+        int y0 = Math.max(minY, SectionPos.sectionToBlockCoord(sy)), y1 = Math.min(maxY, SectionPos.sectionToBlockCoord(sy) + 15);
+        int z0 = Math.max(minZ, SectionPos.sectionToBlockCoord(sz)), z1 = Math.min(maxZ, SectionPos.sectionToBlockCoord(sz) + 15);
+        for (int x = x0; x <= x1; x++) {
+            for (int y = y0; y <= y1; y++) {
+                for (int z = z0; z <= z1; z++) {
+                    BlockState state = section.getBlockState(x & 15, y & 15, z & 15);
+                    if (!filter.test(state)) {
+                        continue;
+                    }
+                    if (out.size() >= limit) {
+                        return false;
+                    }
+                    String name = names.computeIfAbsent(state.getBlock(), block -> BuiltInRegistries.BLOCK.getKey(block).toString());
+                    out.add(new BlockCompressor.BlockData(x, y, z, name));
+                }
+            }
+        }
+        return true;
+    }
+
+    /** Non-air blocks, narrowed by any {@code include} and {@code exclude} filters in command syntax. */
+    static Predicate<BlockState> parseFilter(ServerLevel world, JsonObject arguments) {
+        HolderLookup<Block> blocks = world.registryAccess().lookupOrThrow(Registries.BLOCK);
+        Predicate<BlockState> include = parseAnyOf(blocks, arguments, "include");
+        Predicate<BlockState> exclude = parseAnyOf(blocks, arguments, "exclude");
+        Predicate<BlockState> filter = NOT_AIR;
+        if (include != null) {
+            filter = filter.and(include);
+        }
+        if (exclude != null) {
+            filter = filter.and(exclude.negate());
+        }
+        return filter;
+    }
+
+    // A single filter string or an array of them, matching when any one does; null when absent or empty
+    private static Predicate<BlockState> parseAnyOf(HolderLookup<Block> blocks, JsonObject arguments, String name) {
+        if (!arguments.has(name)) {
+            return null;
+        }
+        JsonElement element = arguments.get(name);
+        List<String> texts = new ArrayList<>();
+        if (element.isJsonArray()) {
+            for (JsonElement text : element.getAsJsonArray()) {
+                texts.add(text.getAsString());
+            }
+        } else {
+            texts.add(element.getAsString());
+        }
+        Predicate<BlockState> any = null;
+        for (String text : texts) {
+            Predicate<BlockState> predicate;
+            try {
+                predicate = BlockStateFilter.parse(blocks, text);
+            } catch (CommandSyntaxException e) {
+                throw new IllegalArgumentException("Invalid " + name + " filter '" + text + "': " + e.getMessage());
+            }
+            any = any == null ? predicate : any.or(predicate);
+        }
+        return any;
+    }
+}
@@ -3,27 +3,64 @@ package cuspymd.mcp.mod.server.tools;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.mojang.brigadier.ParseResults;
+import com.mojang.brigadier.context.ContextChain;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import cuspymd.mcp.mod.command.CommandBatchOptimizer;
+import cuspymd.mcp.mod.command.CommandRegionResolver;
+import cuspymd.mcp.mod.command.CommandTemplate;
 import cuspymd.mcp.mod.command.ICommandExecutor;
 import cuspymd.mcp.mod.command.SafetyValidator;
 import cuspymd.mcp.mod.config.MCPConfig;
 import cuspymd.mcp.mod.server.MCPProtocol;
+import cuspymd.mcp.mod.utils.BlockCompressor;
+import cuspymd.mcp.mod.utils.CoordinateUtils;
+import cuspymd.mcp.mod.server.build.BlockChangeCounter;
+import cuspymd.mcp.mod.server.build.BlockChangeHooks;
+import cuspymd.mcp.mod.server.build.BuildSession;
+import cuspymd.mcp.mod.server.build.DryRunSimulator;
+import cuspymd.mcp.mod.server.build.RegionScheduler;
+import cuspymd.mcp.mod.server.build.SectionVersions;
+import cuspymd.mcp.mod.server.build.UndoHistory;
+import cuspymd.mcp.mod.server.build.UndoSnapshot;
 import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.core.BlockPos;
 import net.minecraft.network.chat.Component;
 import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.phys.Vec3;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
 
 public class ServerCommandExecutor implements ICommandExecutor {
     private static final Logger LOGGER = LoggerFactory.getLogger(ServerCommandExecutor.class);
+    private static final String REGION_TIMEOUT_MESSAGE =
+        "Timed out waiting for another batch editing an overlapping region to finish";
+    // Failed expansions reported per template; the rest are only counted
+    private static final int MAX_TEMPLATE_FAILURES = 5;
     private final MinecraftServer server;
+    private final MCPConfig config;
+    private final UndoHistory undoHistory;
+    private final CompiledBatchCache compiledBatches;
 
     private final SafetyValidator safetyValidator;
 
     public ServerCommandExecutor(MCPConfig config, MinecraftServer server) {
+        this(config, server, new UndoHistory(config.getSafety().getMaxUndoSections()));
+    }
+
+    public ServerCommandExecutor(MCPConfig config, MinecraftServer server, UndoHistory undoHistory) {
         this.server = server;
+        this.config = config;
+        this.undoHistory = undoHistory;
+        this.compiledBatches = new CompiledBatchCache(config.getServer().getMaxCompiledBatches());
         this.safetyValidator = new SafetyValidator(config);
     }
 
@@ -34,24 +71,83 @@ public class ServerCommandExecutor implements ICommandExecutor {
         }
 
         JsonArray commandsArray = arguments.getAsJsonArray("commands");
-        int totalCommands = commandsArray.size();
 
-        JsonArray results = new JsonArray();
-        int acceptedCount = 0;
-        int appliedCount = 0;
-        int failedCount = 0;
+        boolean validateSafety = !arguments.has("validate_safety") || arguments.get("validate_safety").getAsBoolean();
+        boolean optimize = arguments.has("optimize") && arguments.get("optimize").getAsBoolean();
+        boolean dryRun = arguments.has("dry_run") && arguments.get("dry_run").getAsBoolean();
+        List<CommandTemplate> templates;
+        try {
+            templates = CommandTemplate.parseAll(commandsArray, config.getSafety().getMaxExpandedCommands());
+        } catch (IllegalArgumentException e) {
+            return MCPProtocol.createErrorResponse("Invalid command template: " + e.getMessage(), null);
+        }
+        boolean hasTemplates = templates.stream().anyMatch(Objects::nonNull);
+        if (hasTemplates && (optimize || dryRun)) {
+            // Both need the whole batch up front, which is what templates avoid building
+            return MCPProtocol.createErrorResponse("Command templates cannot be combined with optimize or dry_run", null);
+        }
+        if (dryRun) {
+            return executeDryRun(commandsArray, validateSafety);
+        }
 
-        List<String> allMessages = new ArrayList<>();
+        RegionScheduler.Ticket ticket;
+        try {
+            // Templates are expanded once here to find their regions and again as they run
+            ticket = acquireRegions(CommandTemplate.expandAll(commandsArray, templates), null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return MCPProtocol.createErrorResponse("Interrupted while waiting for an overlapping batch", null);
+        } catch (ExecutionException e) {
+            return MCPProtocol.createErrorResponse("Failed to resolve command regions: " + e.getCause().getMessage(), null);
+        } catch (IllegalArgumentException e) {
+            // A template expression that fails only for some values, e.g. a division by zero,
+            // surfaces here before anything has run
+            return MCPProtocol.createErrorResponse("Invalid command template: " + e.getMessage(), null);
+        }
+        if (ticket == null) {
+            return MCPProtocol.createErrorResponse(REGION_TIMEOUT_MESSAGE, null);
+        }
 
-        boolean validateSafety = !arguments.has("validate_safety") || arguments.get("validate_safety").getAsBoolean();
+        try (ticket) {
+            JsonObject preconditionFailure = checkVersions(arguments);
+            if (preconditionFailure != null) {
+                return preconditionFailure;
+            }
+            BatchScope scope = new BatchScope(arguments, ticket);
+            if (optimize) {
+                return executeOptimized(commandsArray, validateSafety, scope);
+            }
+            return executeSequential(commandsArray, templates, validateSafety, scope);
+        }
+    }
+
+    private JsonObject executeSequential(JsonArray commandsArray, List<CommandTemplate> templates, boolean validateSafety, BatchScope scope) {
+        int totalCommands = commandsArray.size();
+        JsonArray results = new JsonArray();
+        List<String> allMessages = new ArrayList<>();
+        long expandedCommands = 0;
+        boolean hasTemplates = false;
 
         for (int i = 0; i < totalCommands; i++) {
             JsonElement elem = commandsArray.get(i);
+            CommandTemplate template = templates.get(i);
+            if (template != null) {
+                hasTemplates = true;
+                JsonObject resultObj = new JsonObject();
+                boolean passedSafety = runTemplate(resultObj, i, template, validateSafety, allMessages, scope);
+                expandedCommands += resultObj.get("expandedCommands").getAsLong();
+                results.add(resultObj);
+                if (!passedSafety) {
+                    skipRemaining(results, commandsArray, templates, i + 1);
+                    break;
+                }
+                continue;
+            }
             if (!elem.isJsonPrimitive() || !elem.getAsJsonPrimitive().isString()) {
                 continue;
             }
             final String originalCommand = elem.getAsString();
-            final String command = originalCommand.startsWith("/") ? originalCommand.substring(1) : originalCommand;
+            final String command = stripSlash(originalCommand);
 
             JsonObject resultObj = new JsonObject();
             resultObj.addProperty("index", i);
@@ -60,114 +156,639 @@ public class ServerCommandExecutor implements ICommandExecutor {
             if (validateSafety) {
                 SafetyValidator.ValidationResult validationResult = safetyValidator.validate(command);
                 if (!validationResult.isValid()) {
-                    failedCount++;
-                    resultObj.addProperty("status", "rejected_by_safety");
-                    resultObj.addProperty("accepted", false);
-                    resultObj.addProperty("applied", false);
-                    resultObj.addProperty("summary", "Safety validation failed: " + validationResult.getErrorMessage());
-                    resultObj.add("chatMessages", new JsonArray());
+                    markRejectedBySafety(resultObj, validationResult);
                     results.add(resultObj);
 
                     // Fail fast: Stop executing further commands
-                    for (int j = i + 1; j < totalCommands; j++) {
-                        JsonElement remainingElem = commandsArray.get(j);
-                        if (!remainingElem.isJsonPrimitive() || !remainingElem.getAsJsonPrimitive().isString()) continue;
-                        JsonObject skippedObj = new JsonObject();
-                        skippedObj.addProperty("index", j);
-                        skippedObj.addProperty("command", remainingElem.getAsString());
-                        skippedObj.addProperty("status", "skipped");
-                        skippedObj.addProperty("accepted", false);
-                        skippedObj.addProperty("applied", false);
-                        skippedObj.addProperty("summary", "Skipped due to previous command failing safety validation.");
-                        skippedObj.add("chatMessages", new JsonArray());
-                        results.add(skippedObj);
-                    }
+                    skipRemaining(results, commandsArray, templates, i + 1);
                     break; // stop processing
                 }
             }
 
-            try {
-                // Execute on main server thread
-                JsonObject executionData = server.submit(() -> {
-                    List<String> messages = new ArrayList<>();
-
-                    // Create a capturing command source based on the server source
-                    CommandSourceStack originalSource = server.createCommandSourceStack();
-                    CommandSourceStack capturingSource = originalSource.withSource(new net.minecraft.commands.CommandSource() {
-                        @Override
-                        public void sendSystemMessage(Component message) {
-                            messages.add(message.getString());
-                        }
+            expandedCommands++;
+            runCommand(resultObj, command, allMessages, scope);
+            results.add(resultObj);
+        }
 
-                        @Override
-                        public boolean acceptsSuccess() {
-                            return true;
-                        }
+        JsonObject responseJson = buildResponse(totalCommands, results, allMessages);
+        if (hasTemplates) {
+            responseJson.addProperty("expandedCommands", expandedCommands);
+        }
+        scope.finish(responseJson);
+        return MCPProtocol.createSuccessResponse(responseJson.toString());
+    }
 
-                        @Override
-                        public boolean acceptsFailure() {
-                            return true;
-                        }
+    /**
+     * Validates and runs a template's commands one at a time as they are expanded, folding them
+     * into a single result. Returns false if an expanded command failed safety validation.
+     */
+    private boolean runTemplate(JsonObject resultObj, int index, CommandTemplate template, boolean validateSafety,
+                                List<String> allMessages, BatchScope scope) {
+        resultObj.addProperty("index", index);
+        resultObj.addProperty("command", template.getText());
+        long expanded = 0;
+        long applied = 0;
+        long changedBlocks = 0;
+        JsonObject changedBounds = null;
+        JsonArray failures = new JsonArray();
+        JsonArray chatMessages = new JsonArray();
+
+        for (String generated : template) {
+            String command = stripSlash(generated);
+            if (validateSafety) {
+                SafetyValidator.ValidationResult validationResult = safetyValidator.validate(command);
+                if (!validationResult.isValid()) {
+                    markRejectedBySafety(resultObj, validationResult);
+                    resultObj.addProperty("summary", "Expanded command " + expanded + " (" + generated + ") failed safety validation: "
+                        + validationResult.getErrorMessage() + ". The " + expanded + " commands before it were run.");
+                    resultObj.addProperty("expandedCommands", expanded);
+                    resultObj.addProperty("appliedCommands", applied);
+                    resultObj.addProperty("changedBlocks", changedBlocks);
+                    return false;
+                }
+            }
+
+            JsonObject single = new JsonObject();
+            List<String> messages = new ArrayList<>();
+            runCommand(single, command, messages, scope);
+            if (single.has("changedBlocks")) {
+                changedBlocks += single.get("changedBlocks").getAsLong();
+            }
+            if (single.has("changedBounds")) {
+                changedBounds = union(changedBounds, single.getAsJsonObject("changedBounds"));
+            }
+            if (single.get("applied").getAsBoolean()) {
+                applied++;
+            } else if (failures.size() < MAX_TEMPLATE_FAILURES) {
+                // Only failures keep their chat output; success feedback would repeat once per expansion
+                JsonObject failure = new JsonObject();
+                failure.addProperty("expandedIndex", expanded);
+                failure.addProperty("command", generated);
+                failure.add("status", single.get("status"));
+                failure.add("summary", single.get("summary"));
+                failures.add(failure);
+                for (String message : messages) {
+                    chatMessages.add(message);
+                    allMessages.add(message);
+                }
+            }
+            expanded++;
+        }
+
+        long failed = expanded - applied;
+        resultObj.addProperty("status", failed == 0 ? "success" : applied == 0 ? "failed" : "partial");
+        resultObj.addProperty("accepted", true);
+        resultObj.addProperty("applied", applied > 0);
+        resultObj.addProperty("summary", "Template expanded to " + expanded + " commands: " + applied + " applied, " + failed + " failed.");
+        resultObj.addProperty("expandedCommands", expanded);
+        resultObj.addProperty("appliedCommands", applied);
+        resultObj.addProperty("failedCommands", failed);
+        if (!failures.isEmpty()) {
+            resultObj.add("failures", failures);
+        }
+        resultObj.add("chatMessages", chatMessages);
+        resultObj.addProperty("changedBlocks", changedBlocks);
+        if (changedBounds != null) {
+            resultObj.add("changedBounds", changedBounds);
+        }
+        return true;
+    }
 
-                        @Override
-                        public boolean shouldInformAdmins() {
-                            return false;
+    private static void skipRemaining(JsonArray results, JsonArray commandsArray, List<CommandTemplate> templates, int from) {
+        for (int j = from; j < commandsArray.size(); j++) {
+            JsonElement remainingElem = commandsArray.get(j);
+            if (templates.get(j) != null) {
+                results.add(buildSkipped(j, templates.get(j).getText()));
+            } else if (remainingElem.isJsonPrimitive() && remainingElem.getAsJsonPrimitive().isString()) {
+                results.add(buildSkipped(j, remainingElem.getAsString()));
+            }
+        }
+    }
+
+    private static JsonObject union(JsonObject bounds, JsonObject other) {
+        if (bounds == null) {
+            return other.deepCopy();
+        }
+        JsonObject from = bounds.getAsJsonObject("from");
+        JsonObject to = bounds.getAsJsonObject("to");
+        for (String axis : new String[] {"x", "y", "z"}) {
+            from.addProperty(axis, Math.min(from.get(axis).getAsInt(), other.getAsJsonObject("from").get(axis).getAsInt()));
+            to.addProperty(axis, Math.max(to.get(axis).getAsInt(), other.getAsJsonObject("to").get(axis).getAsInt()));
+        }
+        return bounds;
+    }
+
+    private JsonObject executeOptimized(JsonArray commandsArray, boolean validateSafety, BatchScope scope) {
+        List<String> commands = new ArrayList<>();
+        for (JsonElement elem : commandsArray) {
+            if (!elem.isJsonPrimitive() || !elem.getAsJsonPrimitive().isString()) {
+                return MCPProtocol.createErrorResponse("All commands must be strings when optimize is enabled", null);
+            }
+            commands.add(elem.getAsString());
+        }
+
+        // Validate the batch as written before anything is merged or reordered
+        if (validateSafety) {
+            for (int i = 0; i < commands.size(); i++) {
+                SafetyValidator.ValidationResult validationResult = safetyValidator.validate(stripSlash(commands.get(i)));
+                if (!validationResult.isValid()) {
+                    JsonArray results = new JsonArray();
+                    for (int j = 0; j < commands.size(); j++) {
+                        if (j == i) {
+                            JsonObject rejected = new JsonObject();
+                            rejected.addProperty("index", j);
+                            rejected.addProperty("command", commands.get(j));
+                            markRejectedBySafety(rejected, validationResult);
+                            results.add(rejected);
+                        } else {
+                            results.add(buildSkipped(j, commands.get(j)));
                         }
-                    });
-
-                    int successCount = 0;
-                    try {
-                        // The actual execute method for commands in this mappings version for parsing and execution
-                        successCount = server.getCommands().getDispatcher().execute(command, capturingSource);
-                    } catch (Exception ex) {
-                        messages.add("Execution failed: " + ex.getMessage());
                     }
+                    return MCPProtocol.createSuccessResponse(buildResponse(commands.size(), results, List.of()).toString());
+                }
+            }
+        }
+
+        CommandBatchOptimizer.Result optimized =
+            CommandBatchOptimizer.optimize(commands, config.getSafety().getMaxBlocksPerCommand());
+
+        JsonArray results = new JsonArray();
+        List<String> allMessages = new ArrayList<>();
+        List<String> optimizedCommands = optimized.getCommands();
+        for (int i = 0; i < optimizedCommands.size(); i++) {
+            JsonObject resultObj = new JsonObject();
+            resultObj.addProperty("index", i);
+            resultObj.addProperty("command", optimizedCommands.get(i));
+            runCommand(resultObj, stripSlash(optimizedCommands.get(i)), allMessages, scope);
+            results.add(resultObj);
+        }
+
+        JsonObject responseJson = buildResponse(optimizedCommands.size(), results, allMessages);
+        optimized.annotate(responseJson);
+        scope.finish(responseJson);
+        return MCPProtocol.createSuccessResponse(responseJson.toString());
+    }
 
-                    JsonObject partial = new JsonObject();
-                    partial.addProperty("successCount", successCount);
-                    JsonArray messagesArray = new JsonArray();
-                    for(String m : messages) messagesArray.add(m);
-                    partial.add("messages", messagesArray);
+    @Override
+    public JsonObject compileBatch(JsonObject arguments) {
+        if (!arguments.has("commands")) {
+            return MCPProtocol.createErrorResponse("Missing required parameter: commands", null);
+        }
+        List<String> commands = new ArrayList<>();
+        for (JsonElement elem : arguments.getAsJsonArray("commands")) {
+            if (!elem.isJsonPrimitive() || !elem.getAsJsonPrimitive().isString()) {
+                return MCPProtocol.createErrorResponse("All commands must be strings", null);
+            }
+            commands.add(elem.getAsString());
+        }
+        boolean validateSafety = !arguments.has("validate_safety") || arguments.get("validate_safety").getAsBoolean();
 
-                    return partial;
-                }).get();
+        String hash = CompiledBatchCache.hash(commands);
+        CompiledBatchCache.CompiledBatch cached = compiledBatches.get(hash);
+        if (cached != null && (cached.safetyValidated() || !validateSafety)) {
+            return MCPProtocol.createSuccessResponse(buildCompileResponse(cached, true).toString());
+        }
 
-                int successCount = executionData.get("successCount").getAsInt();
-                JsonArray msgs = executionData.getAsJsonArray("messages");
+        if (validateSafety) {
+            for (int i = 0; i < commands.size(); i++) {
+                SafetyValidator.ValidationResult validationResult = safetyValidator.validate(stripSlash(commands.get(i)));
+                if (!validationResult.isValid()) {
+                    return MCPProtocol.createErrorResponse("Command " + i + " failed safety validation: " + validationResult.getErrorMessage(), null);
+                }
+            }
+        }
 
-                JsonArray perCommandMessages = new JsonArray();
-                for (JsonElement m : msgs) {
-                    perCommandMessages.add(m.getAsString());
-                    allMessages.add(m.getAsString());
+        try {
+            List<ContextChain<CommandSourceStack>> chains = cached != null ? cached.chains() : server.submit(() -> {
+                // Parsed against the server source; coordinates stay unresolved until a run binds its origin
+                CommandSourceStack source = server.createCommandSourceStack();
+                List<ContextChain<CommandSourceStack>> parsed = new ArrayList<>();
+                for (int i = 0; i < commands.size(); i++) {
+                    String command = stripSlash(commands.get(i));
+                    ParseResults<CommandSourceStack> parse = server.getCommands().getDispatcher().parse(command, source);
+                    CommandSyntaxException parseError = Commands.getParseException(parse);
+                    if (parseError != null) {
+                        throw new IllegalArgumentException("Command " + i + " does not parse: " + parseError.getMessage());
+                    }
+                    int index = i;
+                    parsed.add(ContextChain.tryFlatten(parse.getContext().build(command))
+                        .orElseThrow(() -> new IllegalArgumentException("Command " + index + " is not executable")));
                 }
+                return parsed;
+            }).get();
 
-                resultObj.add("chatMessages", perCommandMessages);
+            CompiledBatchCache.CompiledBatch batch =
+                new CompiledBatchCache.CompiledBatch(hash, List.copyOf(commands), List.copyOf(chains), validateSafety);
+            compiledBatches.put(batch);
+            return MCPProtocol.createSuccessResponse(buildCompileResponse(batch, false).toString());
+        } catch (ExecutionException e) {
+            return MCPProtocol.createErrorResponse("Failed to compile batch: " + e.getCause().getMessage(), null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return MCPProtocol.createErrorResponse("Interrupted while compiling batch", null);
+        }
+    }
 
-                if (successCount > 0) {
-                    acceptedCount++;
-                    appliedCount++;
-                    resultObj.addProperty("status", "success");
-                    resultObj.addProperty("accepted", true);
-                    resultObj.addProperty("applied", true);
-                    resultObj.addProperty("summary", "Command executed successfully. Feedback: " + (msgs.size() > 0 ? msgs.get(0).getAsString() : ""));
-                } else {
-                    acceptedCount++;
-                    failedCount++;
-                    resultObj.addProperty("status", "failed");
-                    resultObj.addProperty("accepted", true);
+    @Override
+    public JsonObject runCompiledBatch(JsonObject arguments) {
+        if (!arguments.has("batch_hash")) {
+            return MCPProtocol.createErrorResponse("Missing required parameter: batch_hash", null);
+        }
+        CompiledBatchCache.CompiledBatch batch = compiledBatches.get(arguments.get("batch_hash").getAsString());
+        if (batch == null) {
+            return MCPProtocol.createErrorResponse("Unknown or evicted batch_hash; compile the batch again with compile_batch", null);
+        }
+
+        Vec3 origin = Vec3.ZERO;
+        if (arguments.has("origin")) {
+            JsonObject originObj = arguments.getAsJsonObject("origin");
+            if (!originObj.has("x") || !originObj.has("y") || !originObj.has("z")) {
+                return MCPProtocol.createErrorResponse("origin must contain x, y, z coordinates", null);
+            }
+            origin = new Vec3(originObj.get("x").getAsInt(), originObj.get("y").getAsInt(), originObj.get("z").getAsInt());
+        }
+        Vec3 position = origin;
+
+        RegionScheduler.Ticket ticket;
+        try {
+            ticket = acquireRegions(batch.commands().stream().map(ServerCommandExecutor::stripSlash).toList(), BlockPos.containing(origin));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return MCPProtocol.createErrorResponse("Interrupted while waiting for an overlapping batch", null);
+        } catch (ExecutionException e) {
+            return MCPProtocol.createErrorResponse("Failed to resolve command regions: " + e.getCause().getMessage(), null);
+        }
+        if (ticket == null) {
+            return MCPProtocol.createErrorResponse(REGION_TIMEOUT_MESSAGE, null);
+        }
+
+        try (ticket) {
+            JsonObject preconditionFailure = checkVersions(arguments);
+            if (preconditionFailure != null) {
+                return preconditionFailure;
+            }
+            return runCompiledLocked(batch, position, new BatchScope(arguments, ticket));
+        }
+    }
+
+    private JsonObject runCompiledLocked(CompiledBatchCache.CompiledBatch batch, Vec3 position, BatchScope scope) {
+        JsonArray results = new JsonArray();
+        List<String> allMessages = new ArrayList<>();
+        for (int i = 0; i < batch.chains().size(); i++) {
+            ContextChain<CommandSourceStack> chain = batch.chains().get(i);
+            JsonObject resultObj = new JsonObject();
+            resultObj.addProperty("index", i);
+            resultObj.addProperty("command", batch.commands().get(i));
+            runCommand(resultObj, batch.commands().get(i),
+                source -> chain.executeAll(source.withPosition(position), (context, success, result) -> { }),
+                allMessages, scope);
+            results.add(resultObj);
+        }
+
+        JsonObject responseJson = buildResponse(batch.chains().size(), results, allMessages);
+        responseJson.addProperty("batchHash", batch.hash());
+        scope.finish(responseJson);
+        return MCPProtocol.createSuccessResponse(responseJson.toString());
+    }
+
+    /**
+     * Waits until no earlier batch overlaps the blocks these commands can change. Returns null on
+     * timeout. Relative coordinates resolve against the origin, or the server source if null.
+     */
+    private RegionScheduler.Ticket acquireRegions(Iterable<String> commands, BlockPos origin)
+            throws InterruptedException, ExecutionException {
+        BlockPos resolvedOrigin = origin != null ? origin
+            : server.submit(() -> BlockPos.containing(server.createCommandSourceStack().getPosition())).get();
+        List<CoordinateUtils.BoundingBox> regions = new ArrayList<>();
+        for (String command : commands) {
+            List<CoordinateUtils.BoundingBox> commandRegions = CommandRegionResolver.resolve(command, resolvedOrigin);
+            if (commandRegions == null) {
+                regions = null;
+                break;
+            }
+            regions.addAll(commandRegions);
+            if (regions.size() > RegionScheduler.MAX_BOXES) {
+                // Collapse as we go so a long template never holds one box per expanded command
+                regions = new ArrayList<>(RegionScheduler.simplify(regions));
+            }
+        }
+        return RegionScheduler.forServer(server).acquire(regions, config.getServer().getRequestTimeoutMs());
+    }
+
+    /**
+     * Rejects the batch when any section listed in if_versions changed since it was read. Runs
+     * after the region ticket is held, so no overlapping batch can slip in between.
+     */
+    private JsonObject checkVersions(JsonObject arguments) {
+        if (!arguments.has("if_versions")) {
+            return null;
+        }
+        JsonObject expected = arguments.getAsJsonObject("if_versions");
+        try {
+            JsonObject current = server.submit(() -> {
+                ServerLevel level = server.createCommandSourceStack().getLevel();
+                List<String> stale = SectionVersions.stale(level, expected);
+                return stale.isEmpty() ? null : SectionVersions.current(level, stale);
+            }).get();
+            if (current == null) {
+                return null;
+            }
+            JsonObject meta = new JsonObject();
+            meta.add("staleSections", current);
+            return MCPProtocol.createErrorResponse("Precondition failed: " + current.size()
+                + " section(s) changed since they were read " + current.keySet()
+                + ". Nothing was executed; rescan with get_blocks_in_area and retry.", meta);
+        } catch (IllegalArgumentException e) {
+            return MCPProtocol.createErrorResponse("Invalid if_versions: " + e.getMessage(), null);
+        } catch (ExecutionException e) {
+            return MCPProtocol.createErrorResponse("Invalid if_versions: " + e.getCause().getMessage(), null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return MCPProtocol.createErrorResponse("Interrupted while checking if_versions", null);
+        }
+    }
+
+    private static JsonObject buildCompileResponse(CompiledBatchCache.CompiledBatch batch, boolean cached) {
+        JsonObject responseJson = new JsonObject();
+        responseJson.addProperty("batchHash", batch.hash());
+        responseJson.addProperty("commandCount", batch.commands().size());
+        responseJson.addProperty("cached", cached);
+        responseJson.addProperty("hint", "Run it with run_compiled_batch; '~' coordinates resolve against the given origin.");
+        return responseJson;
+    }
+
+    private JsonObject executeDryRun(JsonArray commandsArray, boolean validateSafety) {
+        List<Integer> indices = new ArrayList<>();
+        List<String> commands = new ArrayList<>();
+        JsonObject rejected = null;
+        for (int i = 0; i < commandsArray.size(); i++) {
+            JsonElement elem = commandsArray.get(i);
+            if (!elem.isJsonPrimitive() || !elem.getAsJsonPrimitive().isString()) {
+                continue;
+            }
+            if (validateSafety) {
+                SafetyValidator.ValidationResult validationResult = safetyValidator.validate(stripSlash(elem.getAsString()));
+                if (!validationResult.isValid()) {
+                    rejected = new JsonObject();
+                    rejected.addProperty("index", i);
+                    rejected.addProperty("command", elem.getAsString());
+                    markRejectedBySafety(rejected, validationResult);
+                    break;
+                }
+            }
+            indices.add(i);
+            commands.add(elem.getAsString());
+        }
+
+        try {
+            // The whole batch is interpreted in one task so it sees a consistent snapshot of the level
+            JsonObject simulation = server.submit(() -> {
+                DryRunSimulator simulator = new DryRunSimulator(server);
+                CommandSourceStack source = server.createCommandSourceStack();
+                JsonArray simulated = new JsonArray();
+                for (int i = 0; i < commands.size(); i++) {
+                    JsonObject resultObj = simulator.simulate(stripSlash(commands.get(i)), source);
+                    resultObj.addProperty("index", indices.get(i));
+                    resultObj.addProperty("command", commands.get(i));
+                    resultObj.addProperty("accepted", !"skipped".equals(resultObj.get("status").getAsString()));
                     resultObj.addProperty("applied", false);
-                    resultObj.addProperty("summary", "Command failed to execute. Feedback: " + (msgs.size() > 0 ? msgs.get(0).getAsString() : ""));
+                    resultObj.add("chatMessages", new JsonArray());
+                    simulated.add(resultObj);
                 }
-            } catch (Exception e) {
-                LOGGER.error("Error executing server command: {}", command, e);
-                failedCount++;
-                resultObj.addProperty("status", "error");
-                resultObj.addProperty("accepted", false);
+
+                JsonObject partial = new JsonObject();
+                partial.add("results", simulated);
+                partial.addProperty("sectionsTouched", simulator.getOverlay() == null ? 0 : simulator.getOverlay().getSectionCount());
+                List<BlockCompressor.BlockData> deltas = simulator.getOverlay() == null ? List.of() : simulator.getOverlay().getDeltas();
+                partial.addProperty("changedBlocks", deltas.size());
+                partial.add("deltas", BlockCompressor.compressBlocks(deltas).get("blocks"));
+                return partial;
+            }).get();
+
+            JsonArray results = simulation.getAsJsonArray("results");
+            if (rejected != null) {
+                // Fail fast like a real run: everything after the rejected command is skipped
+                results.add(rejected);
+                for (int j = rejected.get("index").getAsInt() + 1; j < commandsArray.size(); j++) {
+                    JsonElement remainingElem = commandsArray.get(j);
+                    if (!remainingElem.isJsonPrimitive() || !remainingElem.getAsJsonPrimitive().isString()) continue;
+                    results.add(buildSkipped(j, remainingElem.getAsString()));
+                }
+            }
+
+            JsonObject responseJson = buildResponse(commandsArray.size(), results, List.of());
+            responseJson.addProperty("dryRun", true);
+            responseJson.addProperty("changedBlocks", simulation.get("changedBlocks").getAsInt());
+            responseJson.addProperty("sectionsTouched", simulation.get("sectionsTouched").getAsInt());
+            responseJson.add("deltas", simulation.get("deltas"));
+            responseJson.addProperty("hint", "Nothing was changed. deltas can be passed to place_blocks as 'blocks' to apply the previewed result.");
+            return MCPProtocol.createSuccessResponse(responseJson.toString());
+        } catch (Exception e) {
+            LOGGER.error("Error simulating command batch", e);
+            return MCPProtocol.createErrorResponse("Failed to simulate commands: " + e.getMessage(), null);
+        }
+    }
+
+    private void runCommand(JsonObject resultObj, String command, List<String> allMessages, BatchScope scope) {
+        runCommand(resultObj, command, source -> server.getCommands().getDispatcher().execute(command, source), allMessages, scope);
+    }
+
+    private void runCommand(JsonObject resultObj, String command, CommandInvocation invocation, List<String> allMessages, BatchScope scope) {
+        try {
+            // Execute on main server thread
+            JsonObject executionData = server.submit(() -> {
+                List<String> messages = new ArrayList<>();
+
+                // Create a capturing command source based on the server source
+                CommandSourceStack originalSource = server.createCommandSourceStack();
+                CommandSourceStack capturingSource = originalSource.withSource(new net.minecraft.commands.CommandSource() {
+                    @Override
+                    public void sendSystemMessage(Component message) {
+                        messages.add(message.getString());
+                    }
+
+                    @Override
+                    public boolean acceptsSuccess() {
+                        return true;
+                    }
+
+                    @Override
+                    public boolean acceptsFailure() {
+                        return true;
+                    }
+
+                    @Override
+                    public boolean shouldInformAdmins() {
+                        return false;
+                    }
+                });
+
+                int successCount = 0;
+                BlockChangeCounter changes = new BlockChangeCounter();
+                try {
+                    // The actual execute method for commands in this mappings version for parsing and execution
+                    successCount = scope.execute(invocation, capturingSource, changes);
+                } catch (Exception ex) {
+                    messages.add("Execution failed: " + ex.getMessage());
+                }
+
+                JsonObject partial = new JsonObject();
+                partial.addProperty("successCount", successCount);
+                changes.addTo(partial);
+                JsonArray messagesArray = new JsonArray();
+                for(String m : messages) messagesArray.add(m);
+                partial.add("messages", messagesArray);
+
+                return partial;
+            }).get();
+
+            int successCount = executionData.get("successCount").getAsInt();
+            JsonArray msgs = executionData.getAsJsonArray("messages");
+
+            JsonArray perCommandMessages = new JsonArray();
+            for (JsonElement m : msgs) {
+                perCommandMessages.add(m.getAsString());
+                allMessages.add(m.getAsString());
+            }
+
+            resultObj.add("chatMessages", perCommandMessages);
+            resultObj.add("changedBlocks", executionData.get("changedBlocks"));
+            if (executionData.has("changedBounds")) {
+                resultObj.add("changedBounds", executionData.get("changedBounds"));
+            }
+
+            if (successCount > 0) {
+                resultObj.addProperty("status", "success");
+                resultObj.addProperty("accepted", true);
+                resultObj.addProperty("applied", true);
+                resultObj.addProperty("summary", "Command executed successfully. Feedback: " + (msgs.size() > 0 ? msgs.get(0).getAsString() : ""));
+            } else {
+                resultObj.addProperty("status", "failed");
+                resultObj.addProperty("accepted", true);
                 resultObj.addProperty("applied", false);
-                resultObj.addProperty("summary", "Error: " + e.getMessage());
+                resultObj.addProperty("summary", "Command failed to execute. Feedback: " + (msgs.size() > 0 ? msgs.get(0).getAsString() : ""));
             }
+        } catch (Exception e) {
+            LOGGER.error("Error executing server command: {}", command, e);
+            resultObj.addProperty("status", "error");
+            resultObj.addProperty("accepted", false);
+            resultObj.addProperty("applied", false);
+            resultObj.addProperty("summary", "Error: " + e.getMessage());
+        }
+    }
 
-            results.add(resultObj);
+    @FunctionalInterface
+    private interface CommandInvocation {
+        int run(CommandSourceStack source) throws CommandSyntaxException;
+    }
+
+    // Per-batch execution options that wrap every command on the server thread
+    private final class BatchScope {
+        private final BuildSession session;
+        private final UndoSnapshot undo;
+        private final RegionScheduler.Ticket ticket;
+        private final JsonObject expectedVersions;
+
+        BatchScope(JsonObject arguments, RegionScheduler.Ticket ticket) {
+            this.ticket = ticket;
+            this.expectedVersions = arguments.has("if_versions") ? arguments.getAsJsonObject("if_versions") : null;
+            this.session = arguments.has("suppress_updates") && arguments.get("suppress_updates").getAsBoolean()
+                ? new BuildSession() : null;
+            this.undo = arguments.has("record_undo") && arguments.get("record_undo").getAsBoolean()
+                ? undoHistory.begin() : null;
+        }
+
+        int execute(CommandInvocation invocation, CommandSourceStack source, BlockChangeCounter changes) {
+            Supplier<Integer> work = () -> BlockChangeHooks.withListener(changes, () -> executeUnchecked(invocation, source));
+            if (undo != null) {
+                Supplier<Integer> inner = work;
+                work = () -> BlockChangeHooks.withListener(undo, inner);
+            }
+            if (session != null) {
+                Supplier<Integer> inner = work;
+                work = () -> session.run(inner);
+            }
+            return work.get();
+        }
+
+        void finish(JsonObject responseJson) {
+            if (ticket != null && ticket.getWaitedMillis() > 0) {
+                responseJson.addProperty("regionWaitMs", ticket.getWaitedMillis());
+            }
+            if (expectedVersions != null) {
+                // New versions of the guarded sections, ready to be passed as the next if_versions
+                try {
+                    responseJson.add("sectionVersions", server.submit(() -> SectionVersions.current(
+                        server.createCommandSourceStack().getLevel(), expectedVersions.keySet())).get());
+                } catch (Exception e) {
+                    LOGGER.error("Error reading section versions", e);
+                }
+            }
+            if (session != null) {
+                try {
+                    responseJson.add("updateSuppression", server.submit(session::flush).get().toJson());
+                } catch (Exception e) {
+                    LOGGER.error("Error flushing deferred block updates", e);
+                    responseJson.addProperty("updateSuppressionError", "Failed to flush deferred updates: " + e.getMessage());
+                }
+            }
+            if (undo != null) {
+                if (undoHistory.commit(undo)) {
+                    responseJson.addProperty("batchId", undo.getBatchId());
+                } else {
+                    responseJson.addProperty("undoUnavailable", "Batch touched more than " + config.getSafety().getMaxUndoSections() + " chunk sections; no undo snapshot was kept.");
+                }
+            }
+        }
+
+        private int executeUnchecked(CommandInvocation invocation, CommandSourceStack source) {
+            try {
+                return invocation.run(source);
+            } catch (CommandSyntaxException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }
+    }
+
+    private static void markRejectedBySafety(JsonObject resultObj, SafetyValidator.ValidationResult validationResult) {
+        resultObj.addProperty("status", "rejected_by_safety");
+        resultObj.addProperty("accepted", false);
+        resultObj.addProperty("applied", false);
+        resultObj.addProperty("summary", "Safety validation failed: " + validationResult.getErrorMessage());
+        resultObj.add("chatMessages", new JsonArray());
+    }
+
+    private static JsonObject buildSkipped(int index, String command) {
+        JsonObject skippedObj = new JsonObject();
+        skippedObj.addProperty("index", index);
+        skippedObj.addProperty("command", command);
+        skippedObj.addProperty("status", "skipped");
+        skippedObj.addProperty("accepted", false);
+        skippedObj.addProperty("applied", false);
+        skippedObj.addProperty("summary", "Skipped due to previous command failing safety validation.");
+        skippedObj.add("chatMessages", new JsonArray());
+        return skippedObj;
+    }
+
+    private static JsonObject buildResponse(int totalCommands, JsonArray results, List<String> allMessages) {
+        int acceptedCount = 0;
+        int appliedCount = 0;
+        int failedCount = 0;
+        long changedBlocks = 0;
+        for (JsonElement element : results) {
+            JsonObject result = element.getAsJsonObject();
+            if (result.has("changedBlocks")) {
+                changedBlocks += result.get("changedBlocks").getAsLong();
+            }
+            if (result.get("accepted").getAsBoolean()) {
+                acceptedCount++;
+            }
+            if (result.get("applied").getAsBoolean()) {
+                appliedCount++;
+            } else if (!"skipped".equals(result.get("status").getAsString())
+                && !"simulated".equals(result.get("status").getAsString())) {
+                failedCount++;
+            }
         }
 
         JsonObject responseJson = new JsonObject();
@@ -175,14 +796,18 @@ public class ServerCommandExecutor implements ICommandExecutor {
         responseJson.addProperty("acceptedCount", acceptedCount);
         responseJson.addProperty("appliedCount", appliedCount);
         responseJson.addProperty("failedCount", failedCount);
+        responseJson.addProperty("changedBlocks", changedBlocks);
         responseJson.add("results", results);
         JsonArray allMessagesArray = new JsonArray();
         for (String msg : allMessages) {
             allMessagesArray.add(msg);
         }
         responseJson.add("chatMessages", allMessagesArray);
-        responseJson.addProperty("hint", "Use get_blocks_in_area to verify the built structure and fix any issues.");
+        responseJson.addProperty("hint", "changedBlocks and changedBounds are exact per command; only rescan with get_blocks_in_area where they differ from what you expected.");
+        return responseJson;
+    }
 
-        return MCPProtocol.createSuccessResponse(responseJson.toString());
+    private static String stripSlash(String command) {
+        return command.startsWith("/") ? command.substring(1) : command;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,671 @@
+package cuspymd.mcp.mod.server.tools;
+
+import com.google.gson.JsonObject;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import cuspymd.mcp.mod.command.SafetyValidator;
+import cuspymd.mcp.mod.config.MCPConfig;
+import cuspymd.mcp.mod.server.build.BlockChangeHooks;
+import cuspymd.mcp.mod.server.build.BlockStateFilter;
+import cuspymd.mcp.mod.server.build.BuildJobScheduler;
+import cuspymd.mcp.mod.server.build.BuildSession;
+import cuspymd.mcp.mod.server.build.BulkBlockWriter;
+import cuspymd.mcp.mod.server.build.ChunkPreloader;
+import cuspymd.mcp.mod.server.build.ClipboardStore;
+import cuspymd.mcp.mod.server.build.FillJob;
+import cuspymd.mcp.mod.server.build.RegionClipboard;
+import cuspymd.mcp.mod.server.build.RegionScheduler;
+import cuspymd.mcp.mod.server.build.SchematicFile;
+import cuspymd.mcp.mod.server.build.UndoHistory;
+import cuspymd.mcp.mod.server.build.UndoSnapshot;
+import cuspymd.mcp.mod.utils.BlockPlacementInput;
+import cuspymd.mcp.mod.utils.CoordinateUtils;
+import cuspymd.mcp.mod.utils.IWorldEditor;
+import cuspymd.mcp.mod.utils.RegionTransform;
+import cuspymd.mcp.mod.utils.ShapeRasterizer;
+import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.commands.arguments.blocks.BlockStateParser;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.HolderLookup;
+import net.minecraft.core.SectionPos;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Mirror;
+import net.minecraft.world.level.block.Rotation;
+import net.minecraft.world.level.block.state.BlockState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.function.Supplier;
+
+public class ServerWorldEditor implements IWorldEditor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ServerWorldEditor.class);
+    // Handles become file names, so nothing that could leave the structure directory
+    private static final Pattern HANDLE = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    private final MCPConfig config;
+    private final MinecraftServer server;
+    private final UndoHistory undoHistory;
+    private final SafetyValidator safetyValidator;
+
+    public ServerWorldEditor(MCPConfig config, MinecraftServer server) {
+        this(config, server, new UndoHistory(config.getSafety().getMaxUndoSections()));
+    }
+
+    public ServerWorldEditor(MCPConfig config, MinecraftServer server, UndoHistory undoHistory) {
+        this.config = config;
+        this.server = server;
+        this.undoHistory = undoHistory;
+        this.safetyValidator = new SafetyValidator(config);
+    }
+
+    @Override
+    public JsonObject placeBlocks(JsonObject arguments) {
+        BlockPlacementInput input;
+        try {
+            input = BlockPlacementInput.parse(arguments, config.getSafety().getMaxBlocksPerEdit());
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return error(e.getMessage());
+        }
+        JsonObject rejected = checkSafety("setblock", input.getBlockCount(), true);
+        if (rejected != null) {
+            return rejected;
+        }
+
+        try {
+            ServerLevel level = server.submit(this::resolveLevel).get();
+            if (input.getBlockCount() > 0 && (input.getMinY() < level.getMinY() || input.getMaxY() > level.getMaxY())) {
+                return error("Blocks from y=" + input.getMinY() + " to y=" + input.getMaxY() + " fall outside the build height ("
+                    + level.getMinY() + " to " + level.getMaxY() + ")");
+            }
+
+            // Palette lookup and chunk grouping stay off the server thread; only the writes run on it
+            BlockState[] states = resolvePalette(level, input.getPalette());
+            BulkBlockWriter writer = new BulkBlockWriter(level);
+            input.forEach((x, y, z, paletteIndex) -> writer.set(x, y, z, states[paletteIndex - 1]));
+            return placeWritten(arguments, level, writer, input.getBlockCount());
+        } catch (IllegalArgumentException e) {
+            return error(e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return error("Interrupted while placing blocks");
+        } catch (ExecutionException e) {
+            LOGGER.error("Error placing blocks", e.getCause());
+            return error("Failed to place blocks: " + e.getCause().getMessage());
+        }
+    }
+
+    @Override
+    public JsonObject placeShape(JsonObject arguments) {
+        ShapeRasterizer shape;
+        try {
+            shape = ShapeRasterizer.parse(arguments, config.getSafety().getMaxBlocksPerEdit(),
+                config.getSafety().getMaxBlocksPerFillJob());
+        } catch (IllegalArgumentException | IllegalStateException | ArithmeticException e) {
+            return error(e.getMessage());
+        }
+        if (!arguments.has("block")) {
+            return error("Missing required parameter: block");
+        }
+        JsonObject rejected = checkSafety("fill", shape.getBlockCount(), true);
+        if (rejected != null) {
+            return rejected;
+        }
+
+        try {
+            ServerLevel level = server.submit(this::resolveLevel).get();
+            BlockState block = resolvePalette(level, List.of(arguments.get("block").getAsString()))[0];
+            BulkBlockWriter writer = new BulkBlockWriter(level);
+            shape.forEach((x, y, z) -> writer.set(x, y, z, block));
+            JsonObject result = placeWritten(arguments, level, writer, shape.getBlockCount());
+            if (!result.has("error")) {
+                result.addProperty("shape", shape.getShape().name().toLowerCase(Locale.ROOT));
+            }
+            return result;
+        } catch (IllegalArgumentException e) {
+            return error(e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return error("Interrupted while placing shape");
+        } catch (ExecutionException e) {
+            LOGGER.error("Error placing shape", e.getCause());
+            return error("Failed to place shape: " + e.getCause().getMessage());
+        }
+    }
+
+    @Override
+    public JsonObject copyRegion(JsonObject arguments) {
+        BlockPos from;
+        BlockPos to;
+        try {
+            from = readBlockPos(arguments, "from");
+            to = readBlockPos(arguments, "to");
+        } catch (IllegalArgumentException e) {
+            return error(e.getMessage());
+        }
+        BlockPos min = new BlockPos(Math.min(from.getX(), to.getX()), Math.min(from.getY(), to.getY()), Math.min(from.getZ(), to.getZ()));
+        BlockPos max = new BlockPos(Math.max(from.getX(), to.getX()), Math.max(from.getY(), to.getY()), Math.max(from.getZ(), to.getZ()));
+        long volume = FillJob.volume(min, max);
+        long maxBlocks = config.getSafety().getMaxBlocksPerEdit();
+        if (volume > maxBlocks) {
+            return error("Copy volume (" + volume + ") exceeds maximum allowed (" + maxBlocks + ")");
+        }
+        // A clipboard is only good for paste_region, so refuse one that it would refuse
+        JsonObject rejected = checkSafety("clone", volume, true);
+        if (rejected != null) {
+            return rejected;
+        }
+        String name = clipboardName(arguments);
+
+        try {
+            ServerLevel level = server.submit(this::resolveLevel).get();
+            ChunkPreloader.Loaded loaded = ChunkPreloader.ensureLoaded(server, level,
+                ChunkPreloader.chunksIn(min.getX(), min.getZ(), max.getX(), max.getZ()),
+                isFailFast(arguments), config.getServer().getRequestTimeoutMs());
+            if (loaded.getFailure() != null) {
+                return error(loaded.getFailure());
+            }
+
+            long start = System.nanoTime();
+            RegionClipboard clipboard;
+            try (loaded) {
+                clipboard = server.submit(() -> RegionClipboard.copy(level, min, max)).get();
+            }
+            ClipboardStore.forServer(server).put(name, clipboard);
+
+            JsonObject result = new JsonObject();
+            result.addProperty("clipboard", name);
+            result.add("size", sizeJson(clipboard.getSizeX(), clipboard.getSizeY(), clipboard.getSizeZ()));
+            result.addProperty("blocks", clipboard.getBlockCount());
+            result.addProperty("sections", clipboard.getSectionCount());
+            result.addProperty("storedSections", clipboard.getStoredSections());
+            result.addProperty("elapsedMs", (System.nanoTime() - start) / 1_000_000);
+            result.addProperty("hint", "Paste it with paste_region; the clipboard is kept in server memory until it is replaced or the server stops.");
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return error("Interrupted while copying region");
+        } catch (ExecutionException e) {
+            LOGGER.error("Error copying region", e.getCause());
+            return error("Failed to copy region: " + e.getCause().getMessage());
+        }
+    }
+
+    @Override
+    public JsonObject pasteRegion(JsonObject arguments) {
+        String name = clipboardName(arguments);
+        RegionClipboard clipboard = ClipboardStore.forServer(server).get(name);
+        if (clipboard == null) {
+            return error("Unknown clipboard '" + name + "'; copy a region with copy_region first");
+        }
+        BlockPos origin;
+        RegionTransform transform;
+        try {
+            origin = readBlockPos(arguments, "origin");
+            transform = RegionTransform.parse(arguments, clipboard.getSizeX(), clipboard.getSizeZ());
+        } catch (IllegalArgumentException e) {
+            return error(e.getMessage());
+        }
+        JsonObject rejected = checkSafety("clone", (long) clipboard.getSizeX() * clipboard.getSizeY() * clipboard.getSizeZ(), true);
+        if (rejected != null) {
+            return rejected;
+        }
+        boolean skipAir = arguments.has("skip_air") && arguments.get("skip_air").getAsBoolean();
+        Rotation rotation = switch (transform.getQuarterTurns()) {
+            case 1 -> Rotation.CLOCKWISE_90;
+            case 2 -> Rotation.CLOCKWISE_180;
+            case 3 -> Rotation.COUNTERCLOCKWISE_90;
+            default -> Rotation.NONE;
+        };
+        Mirror mirror = switch (transform.getMirror()) {
+            case X -> Mirror.FRONT_BACK;
+            case Z -> Mirror.LEFT_RIGHT;
+            case NONE -> Mirror.NONE;
+        };
+
+        try {
+            ServerLevel level = server.submit(this::resolveLevel).get();
+            // Same order as vanilla structures: mirror first, then rotate; stairs, logs and doors turn with the blocks
+            Map<BlockState, BlockState> transformed = new IdentityHashMap<>();
+            BulkBlockWriter writer = new BulkBlockWriter(level);
+            int[] local = new int[2];
+            long requested = 0;
+            for (int y = 0; y < clipboard.getSizeY(); y++) {
+                for (int z = 0; z < clipboard.getSizeZ(); z++) {
+                    for (int x = 0; x < clipboard.getSizeX(); x++) {
+                        BlockState state = clipboard.get(x, y, z);
+                        if (skipAir && state.isAir()) {
+                            continue;
+                        }
+                        BlockState placed = transformed.computeIfAbsent(state, s -> s.mirror(mirror).rotate(rotation));
+                        transform.apply(x, z, local);
+                        writer.set(origin.getX() + local[0], origin.getY() + y, origin.getZ() + local[1], placed);
+                        requested++;
+                    }
+                }
+            }
+
+            JsonObject result = placeWritten(arguments, level, writer, requested);
+            if (!result.has("error")) {
+                result.addProperty("clipboard", name);
+                result.add("size", sizeJson(transform.getResultSizeX(), clipboard.getSizeY(), transform.getResultSizeZ()));
+            }
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return error("Interrupted while pasting region");
+        } catch (ExecutionException e) {
+            LOGGER.error("Error pasting region", e.getCause());
+            return error("Failed to paste region: " + e.getCause().getMessage());
+        }
+    }
+
+    @Override
+    public JsonObject exportStructure(JsonObject arguments) {
+        BlockPos from;
+        BlockPos to;
+        try {
+            from = readBlockPos(arguments, "from");
+            to = readBlockPos(arguments, "to");
+        } catch (IllegalArgumentException e) {
+            return error(e.getMessage());
+        }
+        String handle = arguments.has("name") ? arguments.get("name").getAsString() : "structure-" + System.currentTimeMillis();
+        if (!HANDLE.matcher(handle).matches()) {
+            return error("name must be 1-64 letters, digits, '_' or '-'");
+        }
+        BlockPos min = new BlockPos(Math.min(from.getX(), to.getX()), Math.min(from.getY(), to.getY()), Math.min(from.getZ(), to.getZ()));
+        BlockPos max = new BlockPos(Math.max(from.getX(), to.getX()), Math.max(from.getY(), to.getY()), Math.max(from.getZ(), to.getZ()));
+        long volume = FillJob.volume(min, max);
+        long maxBlocks = config.getSafety().getMaxBlocksPerEdit();
+        if (volume > maxBlocks) {
+            return error("Export volume (" + volume + ") exceeds maximum allowed (" + maxBlocks + ")");
+        }
+
+        try {
+            ServerLevel level = server.submit(this::resolveLevel).get();
+            ChunkPreloader.Loaded loaded = ChunkPreloader.ensureLoaded(server, level,
+                ChunkPreloader.chunksIn(min.getX(), min.getZ(), max.getX(), max.getZ()),
+                isFailFast(arguments), config.getServer().getRequestTimeoutMs());
+            if (loaded.getFailure() != null) {
+                return error(loaded.getFailure());
+            }
+
+            long start = System.nanoTime();
+            // Only the copy needs the server thread; encoding and compressing happen on this one
+            RegionClipboard clipboard;
+            try (loaded) {
+                clipboard = server.submit(() -> RegionClipboard.copy(level, min, max)).get();
+            }
+            Path file = structureFile(handle);
+            int paletteSize = SchematicFile.write(clipboard, file);
+
+            JsonObject result = new JsonObject();
+            result.addProperty("handle", handle);
+            result.addProperty("file", file.toString());
+            result.add("size", sizeJson(clipboard.getSizeX(), clipboard.getSizeY(), clipboard.getSizeZ()));
+            result.addProperty("blocks", clipboard.getBlockCount());
+            result.addProperty("paletteSize", paletteSize);
+            result.addProperty("bytes", Files.size(file));
+            result.addProperty("elapsedMs", (System.nanoTime() - start) / 1_000_000);
+            result.addProperty("hint", "Paste it with import_structure using this handle.");
+            return result;
+        } catch (IOException e) {
+            LOGGER.error("Error writing structure file", e);
+            return error("Failed to write structure file: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return error("Interrupted while exporting structure");
+        } catch (ExecutionException e) {
+            LOGGER.error("Error exporting structure", e.getCause());
+            return error("Failed to export structure: " + e.getCause().getMessage());
+        }
+    }
+
+    @Override
+    public JsonObject importStructure(JsonObject arguments) {
+        if (!arguments.has("handle")) {
+            return error("Missing required parameter: handle");
+        }
+        String handle = arguments.get("handle").getAsString();
+        if (!HANDLE.matcher(handle).matches()) {
+            return error("Invalid handle '" + handle + "'");
+        }
+        BlockPos origin;
+        try {
+            origin = readBlockPos(arguments, "origin");
+        } catch (IllegalArgumentException e) {
+            return error(e.getMessage());
+        }
+        Path file = structureFile(handle);
+        if (!Files.isRegularFile(file)) {
+            return error("Unknown structure handle '" + handle + "'; export one with export_structure first");
+        }
+        boolean skipAir = arguments.has("skip_air") && arguments.get("skip_air").getAsBoolean();
+
+        try {
+            ServerLevel level = server.submit(this::resolveLevel).get();
+            RegionClipboard clipboard = SchematicFile.read(file, level.registryAccess().lookupOrThrow(Registries.BLOCK),
+                config.getSafety().getMaxBlocksPerFillJob());
+            // Pasted a few sections per tick, so only the command itself has to be allowed
+            JsonObject rejected = checkSafety("clone", (long) clipboard.getSizeX() * clipboard.getSizeY() * clipboard.getSizeZ(), false);
+            if (rejected != null) {
+                return rejected;
+            }
+            BlockPos to = origin.offset(clipboard.getSizeX() - 1, clipboard.getSizeY() - 1, clipboard.getSizeZ() - 1);
+
+            BuildJobScheduler scheduler = BuildJobScheduler.forServer(server);
+            FillJob job = new FillJob(scheduler.nextJobId(), level, origin, to, (x, y, z) -> {
+                BlockState state = clipboard.get(x - origin.getX(), y - origin.getY(), z - origin.getZ());
+                return skipAir && state.isAir() ? null : state;
+            }, null, config.getServer().getFillJobTickBudgetMicros() * 1_000L);
+            scheduler.submit(job);
+
+            JsonObject result = job.toJson();
+            result.addProperty("handle", handle);
+            result.add("size", sizeJson(clipboard.getSizeX(), clipboard.getSizeY(), clipboard.getSizeZ()));
+            result.addProperty("hint", "The structure is pasted in the background a few sections per tick. Poll get_job_status with this jobId.");
+            return result;
+        } catch (IllegalArgumentException e) {
+            return error(e.getMessage());
+        } catch (IOException e) {
+            LOGGER.error("Error reading structure file", e);
+            return error("Failed to read structure file: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return error("Interrupted while importing structure");
+        } catch (ExecutionException e) {
+            return error("Failed to import structure: " + e.getCause().getMessage());
+        }
+    }
+
+    private Path structureFile(String handle) {
+        return FabricLoader.getInstance().getGameDir()
+            .resolve(config.getServer().getStructureDirectory())
+            .resolve(handle + SchematicFile.EXTENSION);
+    }
+
+    private static String clipboardName(JsonObject arguments) {
+        return arguments.has("clipboard") ? arguments.get("clipboard").getAsString() : "default";
+    }
+
+    private static JsonObject sizeJson(int x, int y, int z) {
+        JsonObject size = new JsonObject();
+        size.addProperty("x", x);
+        size.addProperty("y", y);
+        size.addProperty("z", z);
+        return size;
+    }
+
+    // Shared by the placing tools once the writer holds every position to set
+    private JsonObject placeWritten(JsonObject arguments, ServerLevel level, BulkBlockWriter writer, long requestedBlocks)
+            throws InterruptedException, ExecutionException {
+        ChunkPreloader.Loaded loaded = ChunkPreloader.ensureLoaded(server, level, writer.getChunkKeys(),
+            isFailFast(arguments), config.getServer().getRequestTimeoutMs());
+        if (loaded.getFailure() != null) {
+            return error(loaded.getFailure());
+        }
+
+        // Chunk columns are coarse but cheap, and they are what the writer works in anyway
+        List<CoordinateUtils.BoundingBox> regions = new ArrayList<>();
+        for (long chunk : writer.getChunkKeys()) {
+            int blockX = SectionPos.sectionToBlockCoord(ChunkPos.getX(chunk));
+            int blockZ = SectionPos.sectionToBlockCoord(ChunkPos.getZ(chunk));
+            regions.add(new CoordinateUtils.BoundingBox(blockX, level.getMinY(), blockZ, blockX + 15, level.getMaxY(), blockZ + 15));
+        }
+        RegionScheduler.Ticket ticket = RegionScheduler.forServer(server).acquire(regions, config.getServer().getRequestTimeoutMs());
+        if (ticket == null) {
+            loaded.close();
+            return error("Timed out waiting for another batch editing an overlapping region to finish");
+        }
+        try (loaded; ticket) {
+            return applyPlacement(arguments, requestedBlocks, writer, ticket);
+        }
+    }
+
+    private JsonObject applyPlacement(JsonObject arguments, long requestedBlocks, BulkBlockWriter writer, RegionScheduler.Ticket ticket)
+            throws InterruptedException, ExecutionException {
+        BuildSession session = arguments.has("suppress_updates") && arguments.get("suppress_updates").getAsBoolean()
+            ? new BuildSession() : null;
+        UndoSnapshot undo = arguments.has("record_undo") && arguments.get("record_undo").getAsBoolean()
+            ? undoHistory.begin() : null;
+
+        long start = System.nanoTime();
+        BulkBlockWriter.Result written = server.submit(() -> {
+            Supplier<BulkBlockWriter.Result> work = writer::apply;
+            if (undo != null) {
+                Supplier<BulkBlockWriter.Result> inner = work;
+                work = () -> BlockChangeHooks.withListener(undo, inner);
+            }
+            return session == null ? work.get() : session.run(work);
+        }).get();
+        BuildSession.FlushResult flushed = session == null ? null : server.submit(session::flush).get();
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        JsonObject result = new JsonObject();
+        result.addProperty("requestedBlocks", requestedBlocks);
+        result.addProperty("changedBlocks", written.changed());
+        result.addProperty("unchangedBlocks", written.unchanged());
+        result.addProperty("outsideBuildHeight", written.outsideBuildHeight());
+        result.addProperty("chunks", written.chunks());
+        result.addProperty("resentChunks", written.resentChunks());
+        result.addProperty("elapsedMs", elapsedMillis);
+        if (ticket.getWaitedMillis() > 0) {
+            result.addProperty("regionWaitMs", ticket.getWaitedMillis());
+        }
+        if (flushed != null) {
+            result.add("updateSuppression", flushed.toJson());
+        }
+        if (undo != null) {
+            if (undoHistory.commit(undo)) {
+                result.addProperty("batchId", undo.getBatchId());
+            } else {
+                result.addProperty("undoUnavailable", "Edit touched more than " + config.getSafety().getMaxUndoSections() + " chunk sections; no undo snapshot was kept.");
+            }
+        }
+        result.addProperty("hint", "Use get_blocks_in_area to verify the placed blocks.");
+        return result;
+    }
+
+    @Override
+    public JsonObject undoBatch(JsonObject arguments) {
+        if (!arguments.has("batch_id")) {
+            return error("Missing required parameter: batch_id");
+        }
+        String batchId = arguments.get("batch_id").getAsString();
+        UndoSnapshot snapshot = undoHistory.take(batchId);
+        if (snapshot == null) {
+            return error("Unknown or expired batch_id: " + batchId);
+        }
+
+        try {
+            // Ordered like any other write, so a batch still editing these sections finishes first
+            RegionScheduler.Ticket ticket = RegionScheduler.forServer(server).acquire(snapshot.getRegions(), config.getServer().getRequestTimeoutMs());
+            if (ticket == null) {
+                undoHistory.commit(snapshot);
+                return error("Timed out waiting for another batch editing an overlapping region to finish");
+            }
+            BulkBlockWriter.Result restored;
+            try (ticket) {
+                restored = server.submit(snapshot::restore).get();
+            }
+            JsonObject result = new JsonObject();
+            result.addProperty("batchId", batchId);
+            result.addProperty("restoredBlocks", restored.changed());
+            result.addProperty("unchangedBlocks", restored.unchanged());
+            result.addProperty("sections", snapshot.getSectionCount());
+            result.addProperty("chunks", restored.chunks());
+            result.addProperty("resentChunks", restored.resentChunks());
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return error("Interrupted while restoring batch");
+        } catch (ExecutionException e) {
+            LOGGER.error("Error restoring batch {}", batchId, e.getCause());
+            return error("Failed to restore batch: " + e.getCause().getMessage());
+        }
+    }
+
+    @Override
+    public JsonObject startFillJob(JsonObject arguments) {
+        BlockPos from;
+        BlockPos to;
+        try {
+            from = readBlockPos(arguments, "from");
+            to = readBlockPos(arguments, "to");
+        } catch (IllegalArgumentException e) {
+            return error(e.getMessage());
+        }
+        if (!arguments.has("block")) {
+            return error("Missing required parameter: block");
+        }
+        long volume = FillJob.volume(from, to);
+        long maxBlocks = config.getSafety().getMaxBlocksPerFillJob();
+        if (volume > maxBlocks) {
+            return error("Fill volume (" + volume + ") exceeds maximum allowed (" + maxBlocks + ")");
+        }
+        // A fill job exists to spread large fills over many ticks, so only the command has to be allowed
+        JsonObject rejected = checkSafety("fill", volume, false);
+        if (rejected != null) {
+            return rejected;
+        }
+
+        try {
+            ServerLevel level = server.submit(this::resolveLevel).get();
+            HolderLookup<Block> blocks = level.registryAccess().lookupOrThrow(Registries.BLOCK);
+            String blockText = arguments.get("block").getAsString();
+            BlockState block = resolvePalette(level, List.of(blockText))[0];
+            Predicate<BlockState> replaceFilter = null;
+            if (arguments.has("replace")) {
+                String filterText = arguments.get("replace").getAsString();
+                try {
+                    replaceFilter = BlockStateFilter.parse(blocks, filterText);
+                } catch (CommandSyntaxException e) {
+                    return error("Invalid replace filter '" + filterText + "': " + e.getMessage());
+                }
+            }
+
+            // Without fail_fast the job loads each chunk column asynchronously as it reaches it
+            if (isFailFast(arguments)) {
+                try (ChunkPreloader.Loaded loaded = ChunkPreloader.ensureLoaded(server, level,
+                        ChunkPreloader.chunksIn(Math.min(from.getX(), to.getX()), Math.min(from.getZ(), to.getZ()),
+                            Math.max(from.getX(), to.getX()), Math.max(from.getZ(), to.getZ())), true, 0)) {
+                    if (loaded.getFailure() != null) {
+                        return error(loaded.getFailure());
+                    }
+                }
+            }
+
+            BuildJobScheduler scheduler = BuildJobScheduler.forServer(server);
+            FillJob job = new FillJob(scheduler.nextJobId(), level, from, to, block, replaceFilter,
+                config.getServer().getFillJobTickBudgetMicros() * 1_000L);
+            scheduler.submit(job);
+
+            JsonObject result = job.toJson();
+            result.addProperty("hint", "The fill runs in the background a few sections per tick. Poll get_job_status with this jobId.");
+            return result;
+        } catch (IllegalArgumentException e) {
+            return error(e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return error("Interrupted while starting fill job");
+        } catch (ExecutionException e) {
+            return error("Failed to start fill job: " + e.getCause().getMessage());
+        }
+    }
+
+    @Override
+    public JsonObject getJobStatus(JsonObject arguments) {
+        FillJob job = findJob(arguments);
+        return job == null ? unknownJob(arguments) : job.toJson();
+    }
+
+    @Override
+    public JsonObject cancelJob(JsonObject arguments) {
+        FillJob job = findJob(arguments);
+        if (job == null) {
+            return unknownJob(arguments);
+        }
+        job.cancel();
+        JsonObject result = job.toJson();
+        result.addProperty("cancelRequested", true);
+        return result;
+    }
+
+    private FillJob findJob(JsonObject arguments) {
+        if (!arguments.has("job_id")) {
+            return null;
+        }
+        return BuildJobScheduler.forServer(server).get(arguments.get("job_id").getAsString());
+    }
+
+    private static JsonObject unknownJob(JsonObject arguments) {
+        if (!arguments.has("job_id")) {
+            return error("Missing required parameter: job_id");
+        }
+        return error("Unknown or expired job_id: " + arguments.get("job_id").getAsString());
+    }
+
+    // Same switch and allowed commands as execute_commands, applied to the command this edit stands in for
+    private JsonObject checkSafety(String equivalentCommand, long blocks, boolean singleTick) {
+        SafetyValidator.ValidationResult result = safetyValidator.validateEdit(equivalentCommand, blocks, singleTick);
+        return result.isValid() ? null : error(result.getErrorMessage());
+    }
+
+    private static boolean isFailFast(JsonObject arguments) {
+        return arguments.has("fail_fast") && arguments.get("fail_fast").getAsBoolean();
+    }
+
+    private static BlockPos readBlockPos(JsonObject arguments, String name) {
+        if (!arguments.has(name)) {
+            throw new IllegalArgumentException("Missing required parameter: " + name);
+        }
+        JsonObject position = arguments.getAsJsonObject(name);
+        if (!position.has("x") || !position.has("y") || !position.has("z")) {
+            throw new IllegalArgumentException("'" + name + "' must contain x, y, z");
+        }
+        return new BlockPos(position.get("x").getAsInt(), position.get("y").getAsInt(), position.get("z").getAsInt());
+    }
+
+    private ServerLevel resolveLevel() {
+        if (server.getPlayerList() == null || server.getPlayerList().getPlayers().isEmpty()) {
+            // Fallback to the overworld if no players are online
+            return server.overworld();
+        }
+        // Use the first player's world
+        ServerPlayer player = server.getPlayerList().getPlayers().get(0);
+        return player.createCommandSourceStack().getLevel();
+    }
+
+    private static BlockState[] resolvePalette(ServerLevel level, List<String> palette) {
+        HolderLookup<Block> blocks = level.registryAccess().lookupOrThrow(Registries.BLOCK);
+        BlockState[] states = new BlockState[palette.size()];
+        for (int i = 0; i < states.length; i++) {
+            try {
+                states[i] = BlockStateParser.parseForBlock(blocks, palette.get(i), false).blockState();
+            } catch (CommandSyntaxException e) {
+                throw new IllegalArgumentException("Invalid palette entry '" + palette.get(i) + "': " + e.getMessage());
+            }
+        }
+        return states;
+    }
+
+    private static JsonObject error(String message) {
+        JsonObject error = new JsonObject();
+        error.addProperty("error", message);
+        return error;
+    }
+}
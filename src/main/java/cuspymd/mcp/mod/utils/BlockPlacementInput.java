@@ -0,0 +1,229 @@
+package cuspymd.mcp.mod.utils;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parsed {@code place_blocks} arguments. Accepts either a packed voxel array
+ * ({@code origin}, {@code size}, {@code palette}, {@code data}; see {@link VoxelCodec}) or the
+ * {@code blocks} layout produced by {@link BlockCompressor}, so scans can be pasted back.
+ */
+public final class BlockPlacementInput {
+    // Level.MAX_LEVEL_SIZE horizontally and the widest build height a dimension type allows
+    static final int MAX_HORIZONTAL = 30_000_000;
+    static final int MIN_Y = -2032;
+    static final int MAX_Y = 2031;
+
+    @FunctionalInterface
+    public interface BlockSink {
+        void accept(int x, int y, int z, int paletteIndex);
+    }
+
+    private final List<String> palette;
+    private final long blockCount;
+    // Voxel layout
+    private final int originX, originY, originZ;
+    private final int sizeX, sizeY, sizeZ;
+    private final int[] values;
+    // BlockCompressor layout: minX, minY, minZ, maxX, maxY, maxZ, paletteIndex per box
+    private final List<int[]> boxes;
+    // Inclusive min and max corners of everything placed
+    private final int[] bounds;
+
+    private BlockPlacementInput(List<String> palette, long blockCount, int[] bounds, int[] origin, int[] size, int[] values, List<int[]> boxes) {
+        this.palette = List.copyOf(palette);
+        this.blockCount = blockCount;
+        this.bounds = bounds;
+        this.originX = origin[0];
+        this.originY = origin[1];
+        this.originZ = origin[2];
+        this.sizeX = size[0];
+        this.sizeY = size[1];
+        this.sizeZ = size[2];
+        this.values = values;
+        this.boxes = boxes;
+    }
+
+    public static BlockPlacementInput parse(JsonObject arguments, long maxBlocks) {
+        if (arguments == null) {
+            throw new IllegalArgumentException("Missing arguments");
+        }
+        if (arguments.has("data")) {
+            return parseVoxels(arguments, maxBlocks);
+        }
+        if (arguments.has("blocks")) {
+            return parseCompressed(arguments, maxBlocks);
+        }
+        throw new IllegalArgumentException("Provide either 'origin', 'size', 'palette' and 'data', or a 'blocks' array");
+    }
+
+    private static BlockPlacementInput parseVoxels(JsonObject arguments, long maxBlocks) {
+        if (!arguments.has("origin") || !arguments.has("size") || !arguments.has("palette")) {
+            throw new IllegalArgumentException("Voxel input requires 'origin', 'size', 'palette' and 'data'");
+        }
+        int[] origin = readPosition(arguments.getAsJsonObject("origin"), "origin");
+        int[] size = readPosition(arguments.getAsJsonObject("size"), "size");
+        if (size[0] <= 0 || size[1] <= 0 || size[2] <= 0) {
+            throw new IllegalArgumentException("Size must be positive on every axis");
+        }
+        long volume = volume(size[0], size[1], size[2]);
+        if (volume > maxBlocks) {
+            throw new IllegalArgumentException("Voxel volume (" + (volume == Long.MAX_VALUE ? "too large" : volume) + ") exceeds maximum allowed (" + maxBlocks + ")");
+        }
+        int[] bounds = checkBounds(origin[0], origin[1], origin[2],
+            (long) origin[0] + size[0] - 1, (long) origin[1] + size[1] - 1, (long) origin[2] + size[2] - 1);
+
+        List<String> palette = new ArrayList<>();
+        for (JsonElement entry : arguments.getAsJsonArray("palette")) {
+            palette.add(entry.getAsString());
+        }
+
+        int[] values = VoxelCodec.decodeRle(arguments.get("data").getAsString(), (int) volume);
+        long count = 0;
+        for (int value : values) {
+            if (value < 0 || value > palette.size()) {
+                throw new IllegalArgumentException("Palette index " + value + " is out of range (palette has " + palette.size() + " entries)");
+            }
+            if (value != 0) {
+                count++;
+            }
+        }
+        return new BlockPlacementInput(palette, count, bounds, origin, size, values, List.of());
+    }
+
+    private static BlockPlacementInput parseCompressed(JsonObject arguments, long maxBlocks) {
+        int[] offset = arguments.has("offset") ? readPosition(arguments.getAsJsonObject("offset"), "offset") : new int[3];
+        Map<String, Integer> paletteIndex = new LinkedHashMap<>();
+        List<int[]> boxes = new ArrayList<>();
+        long count = 0;
+        int[] bounds = null;
+
+        for (JsonElement element : arguments.getAsJsonArray("blocks")) {
+            JsonObject group = element.getAsJsonObject();
+            if (!group.has("blockType")) {
+                throw new IllegalArgumentException("Each blocks entry requires 'blockType'");
+            }
+            int index = paletteIndex.computeIfAbsent(group.get("blockType").getAsString(), k -> paletteIndex.size() + 1);
+
+            if (group.has("singleBlocks")) {
+                for (JsonElement single : group.getAsJsonArray("singleBlocks")) {
+                    int[] pos = readPosition(single.getAsJsonObject(), "singleBlocks entry");
+                    int[] box = box(pos, pos, offset, index);
+                    boxes.add(box);
+                    bounds = union(bounds, box);
+                    count++;
+                }
+            }
+            if (group.has("regions")) {
+                for (JsonElement regionElement : group.getAsJsonArray("regions")) {
+                    JsonObject region = regionElement.getAsJsonObject();
+                    int[] box = box(
+                        readPosition(region.getAsJsonObject("start"), "region start"),
+                        readPosition(region.getAsJsonObject("end"), "region end"),
+                        offset,
+                        index
+                    );
+                    boxes.add(box);
+                    bounds = union(bounds, box);
+                    long volume = volume((long) box[3] - box[0] + 1, (long) box[4] - box[1] + 1, (long) box[5] - box[2] + 1);
+                    if (volume > maxBlocks) {
+                        throw new IllegalArgumentException("Region volume (" + volume + ") exceeds maximum allowed (" + maxBlocks + ")");
+                    }
+                    count += volume;
+                }
+            }
+            if (count > maxBlocks) {
+                throw new IllegalArgumentException("Block count (" + count + ") exceeds maximum allowed (" + maxBlocks + ")");
+            }
+        }
+
+        return new BlockPlacementInput(new ArrayList<>(paletteIndex.keySet()), count, bounds == null ? new int[6] : bounds,
+            new int[3], new int[3], null, boxes);
+    }
+
+    private static int[] box(int[] start, int[] end, int[] offset, int paletteIndex) {
+        int[] corners = checkBounds(
+            (long) Math.min(start[0], end[0]) + offset[0],
+            (long) Math.min(start[1], end[1]) + offset[1],
+            (long) Math.min(start[2], end[2]) + offset[2],
+            (long) Math.max(start[0], end[0]) + offset[0],
+            (long) Math.max(start[1], end[1]) + offset[1],
+            (long) Math.max(start[2], end[2]) + offset[2]);
+        return new int[] {corners[0], corners[1], corners[2], corners[3], corners[4], corners[5], paletteIndex};
+    }
+
+    // Corners as ints, once they are known to lie where blocks can exist; shared with ShapeRasterizer
+    static int[] checkBounds(long minX, long minY, long minZ, long maxX, long maxY, long maxZ) {
+        if (minX < -MAX_HORIZONTAL || maxX >= MAX_HORIZONTAL || minZ < -MAX_HORIZONTAL || maxZ >= MAX_HORIZONTAL
+            || minY < MIN_Y || maxY > MAX_Y) {
+            throw new IllegalArgumentException("Blocks from " + minX + ", " + minY + ", " + minZ + " to " + maxX + ", " + maxY + ", " + maxZ
+                + " fall outside the world's build limits");
+        }
+        return new int[] {(int) minX, (int) minY, (int) minZ, (int) maxX, (int) maxY, (int) maxZ};
+    }
+
+    private static int[] union(int[] bounds, int[] box) {
+        if (bounds == null) {
+            return new int[] {box[0], box[1], box[2], box[3], box[4], box[5]};
+        }
+        for (int i = 0; i < 3; i++) {
+            bounds[i] = Math.min(bounds[i], box[i]);
+            bounds[i + 3] = Math.max(bounds[i + 3], box[i + 3]);
+        }
+        return bounds;
+    }
+
+    // Long.MAX_VALUE when the product does not fit
+    private static long volume(long dx, long dy, long dz) {
+        try {
+            return Math.multiplyExact(Math.multiplyExact(dx, dy), dz);
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static int[] readPosition(JsonObject position, String name) {
+        if (position == null || !position.has("x") || !position.has("y") || !position.has("z")) {
+            throw new IllegalArgumentException("'" + name + "' must contain x, y, z");
+        }
+        return new int[] {position.get("x").getAsInt(), position.get("y").getAsInt(), position.get("z").getAsInt()};
+    }
+
+    public List<String> getPalette() { return palette; }
+    public long getBlockCount() { return blockCount; }
+    public int getMinY() { return bounds[1]; }
+    public int getMaxY() { return bounds[4]; }
+
+    /** Visits every placement with a 1-based palette index, in y-z-x order for voxel input. */
+    public void forEach(BlockSink sink) {
+        if (values != null) {
+            int i = 0;
+            for (int y = 0; y < sizeY; y++) {
+                for (int z = 0; z < sizeZ; z++) {
+                    for (int x = 0; x < sizeX; x++) {
+                        int value = values[i++];
+                        if (value != 0) {
+                            sink.accept(originX + x, originY + y, originZ + z, value);
+                        }
+                    }
+                }
+            }
+            return;
+        }
+
+        for (int[] box : boxes) {
+            for (int y = box[1]; y <= box[4]; y++) {
+                for (int z = box[2]; z <= box[5]; z++) {
+                    for (int x = box[0]; x <= box[3]; x++) {
+                        sink.accept(x, y, z, box[6]);
+                    }
+                }
+            }
+        }
+    }
+}
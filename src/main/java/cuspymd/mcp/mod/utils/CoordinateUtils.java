@@ -24,6 +24,24 @@ public class CoordinateUtils {
         public int getWidth() { return maxX - minX + 1; }
         public int getHeight() { return maxY - minY + 1; }
         public int getDepth() { return maxZ - minZ + 1; }
+
+        public boolean intersects(BoundingBox other) {
+            return minX <= other.maxX && maxX >= other.minX
+                && minY <= other.maxY && maxY >= other.minY
+                && minZ <= other.maxZ && maxZ >= other.minZ;
+        }
+
+        public BoundingBox encompass(BoundingBox other) {
+            return new BoundingBox(
+                Math.min(minX, other.minX), Math.min(minY, other.minY), Math.min(minZ, other.minZ),
+                Math.max(maxX, other.maxX), Math.max(maxY, other.maxY), Math.max(maxZ, other.maxZ)
+            );
+        }
+
+        @Override
+        public String toString() {
+            return "[" + minX + " " + minY + " " + minZ + " .. " + maxX + " " + maxY + " " + maxZ + "]";
+        }
     }
     
     public static BoundingBox parseBoundingBox(String x1, String y1, String z1, String x2, String y2, String z2) {
@@ -46,14 +64,36 @@ public class CoordinateUtils {
     }
     
     public static BlockPos parseBlockPos(String x, String y, String z) {
+        return parseBlockPos(x, y, z, BlockPos.ZERO);
+    }
+
+    /**
+     * Resolves absolute and {@code ~} relative coordinates the way vanilla block position arguments
+     * do: the origin plus the offset, floored. Local {@code ^} coordinates depend on the source's
+     * rotation and are rejected.
+     */
+    public static BlockPos parseBlockPos(String x, String y, String z, BlockPos origin) {
+        return new BlockPos(
+            resolveCoordinate(x, origin.getX()),
+            resolveCoordinate(y, origin.getY()),
+            resolveCoordinate(z, origin.getZ())
+        );
+    }
+
+    public static int resolveCoordinate(String coord, int origin) {
+        if (coord.startsWith("^")) {
+            throw new IllegalArgumentException("Local coordinates (^) cannot be resolved without a rotation: " + coord);
+        }
+        boolean relative = coord.startsWith("~");
+        String number = relative ? coord.substring(1) : coord;
         try {
-            return new BlockPos(
-                Integer.parseInt(x.replace("~", "0")),
-                Integer.parseInt(y.replace("~", "0")),
-                Integer.parseInt(z.replace("~", "0"))
-            );
+            double value = number.isEmpty() && relative ? 0.0 : Double.parseDouble(number);
+            if (!Double.isFinite(value)) {
+                throw new NumberFormatException(coord);
+            }
+            return (int) Math.floor(relative ? origin + value : value);
         } catch (NumberFormatException e) {
-            throw new IllegalArgumentException("Invalid block position format", e);
+            throw new IllegalArgumentException("Invalid block position format: " + coord, e);
         }
     }
     
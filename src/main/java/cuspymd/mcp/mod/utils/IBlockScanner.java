@@ -2,6 +2,38 @@ package cuspymd.mcp.mod.utils;
 
 import com.google.gson.JsonObject;
 
+import java.util.List;
+
 public interface IBlockScanner {
     JsonObject scanBlocksInArea(JsonObject fromPos, JsonObject toPos, int maxAreaSize);
+
+    // Scanners that cannot load chunks only ever see loaded ones, so failFast changes nothing for them
+    default JsonObject scanBlocksInArea(JsonObject fromPos, JsonObject toPos, int maxAreaSize, boolean failFast) {
+        return scanBlocksInArea(fromPos, toPos, maxAreaSize);
+    }
+
+    /** Options only a dedicated server's scanner implements. */
+    List<String> SERVER_ONLY_OPTIONS = List.of("cursor", "boxes", "paginate", "include", "exclude", "resolution",
+        "if_none_match", "include_hashes", "encoding", "order");
+
+    /**
+     * Takes the raw get_blocks_in_area arguments. This default only handles from, to and fail_fast,
+     * and rejects the call rather than ignoring an option that would change what comes back.
+     */
+    default JsonObject scanBlocksInArea(JsonObject arguments, int maxAreaSize) {
+        for (String option : SERVER_ONLY_OPTIONS) {
+            if (arguments.has(option)) {
+                JsonObject error = new JsonObject();
+                error.addProperty("error", "'" + option + "' is only supported on a dedicated server");
+                return error;
+            }
+        }
+        if (!arguments.has("from") || !arguments.has("to")) {
+            JsonObject error = new JsonObject();
+            error.addProperty("error", "Missing required parameters: from, to");
+            return error;
+        }
+        boolean failFast = arguments.has("fail_fast") && arguments.get("fail_fast").getAsBoolean();
+        return scanBlocksInArea(arguments.getAsJsonObject("from"), arguments.getAsJsonObject("to"), maxAreaSize, failFast);
+    }
 }
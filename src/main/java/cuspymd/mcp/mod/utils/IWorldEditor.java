@@ -0,0 +1,25 @@
+package cuspymd.mcp.mod.utils;
+
+import com.google.gson.JsonObject;
+
+public interface IWorldEditor {
+    JsonObject placeBlocks(JsonObject arguments);
+
+    JsonObject placeShape(JsonObject arguments);
+
+    JsonObject copyRegion(JsonObject arguments);
+
+    JsonObject pasteRegion(JsonObject arguments);
+
+    JsonObject exportStructure(JsonObject arguments);
+
+    JsonObject importStructure(JsonObject arguments);
+
+    JsonObject undoBatch(JsonObject arguments);
+
+    JsonObject startFillJob(JsonObject arguments);
+
+    JsonObject getJobStatus(JsonObject arguments);
+
+    JsonObject cancelJob(JsonObject arguments);
+}
@@ -0,0 +1,164 @@
+package cuspymd.mcp.mod.utils;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Downsamples a block area into cubes of {@code resolution}^3 blocks, each summarized by its
+ * most common non-air type and the fraction of its blocks that are not air. Cubes are aligned
+ * to the area's minimum corner; those at the far edges are clipped to the area.
+ */
+public final class LodGrid<T> {
+    private final int minX, minY, minZ, maxX, maxY, maxZ;
+    private final int resolution;
+    private final int cellsX, cellsY, cellsZ;
+    private final List<T> types = new ArrayList<>();
+    private final Map<T, Integer> typeIds = new HashMap<>();
+    // Per cube, non-air block counts indexed by type id; null while the cube is all air
+    private final int[][] counts;
+    private long nonAirBlocks;
+
+    public LodGrid(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, int resolution) {
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.maxZ = maxZ;
+        this.resolution = resolution;
+        this.cellsX = (maxX - minX) / resolution + 1;
+        this.cellsY = (maxY - minY) / resolution + 1;
+        this.cellsZ = (maxZ - minZ) / resolution + 1;
+        this.counts = new int[cellsX * cellsY * cellsZ][];
+    }
+
+    public int typeId(T type) {
+        return typeIds.computeIfAbsent(type, t -> {
+            types.add(t);
+            return types.size() - 1;
+        });
+    }
+
+    /** Counts one non-air block inside the area. */
+    public void add(int x, int y, int z, int typeId) {
+        int cell = ((y - minY) / resolution * cellsZ + (z - minZ) / resolution) * cellsX + (x - minX) / resolution;
+        countsFor(cell, typeId)[typeId]++;
+        nonAirBlocks++;
+    }
+
+    /** Counts every block of an inclusive box, clipped to the area, as {@code typeId}. */
+    public void addBox(int x0, int y0, int z0, int x1, int y1, int z1, int typeId) {
+        x0 = Math.max(x0, minX);
+        y0 = Math.max(y0, minY);
+        z0 = Math.max(z0, minZ);
+        x1 = Math.min(x1, maxX);
+        y1 = Math.min(y1, maxY);
+        z1 = Math.min(z1, maxZ);
+        if (x0 > x1 || y0 > y1 || z0 > z1) {
+            return;
+        }
+        nonAirBlocks += (long) (x1 - x0 + 1) * (y1 - y0 + 1) * (z1 - z0 + 1);
+        for (int cy = (y0 - minY) / resolution; cy <= (y1 - minY) / resolution; cy++) {
+            int spanY = overlap(y0, y1, minY + cy * resolution);
+            for (int cz = (z0 - minZ) / resolution; cz <= (z1 - minZ) / resolution; cz++) {
+                int spanZ = overlap(z0, z1, minZ + cz * resolution);
+                for (int cx = (x0 - minX) / resolution; cx <= (x1 - minX) / resolution; cx++) {
+                    int spanX = overlap(x0, x1, minX + cx * resolution);
+                    countsFor((cy * cellsZ + cz) * cellsX + cx, typeId)[typeId] += spanX * spanY * spanZ;
+                }
+            }
+        }
+    }
+
+    private int overlap(int from, int to, int cellMin) {
+        return Math.min(to, cellMin + resolution - 1) - Math.max(from, cellMin) + 1;
+    }
+
+    private int[] countsFor(int cell, int typeId) {
+        int[] cellCounts = counts[cell];
+        if (cellCounts == null || cellCounts.length <= typeId) {
+            cellCounts = cellCounts == null ? new int[typeId + 1] : Arrays.copyOf(cellCounts, typeId + 1);
+            counts[cell] = cellCounts;
+        }
+        return cellCounts;
+    }
+
+    /**
+     * {@code {resolution, origin, size, palette, cells}}, where {@code size} is in cubes and each
+     * entry of {@code cells} is {@code [cx, cy, cz, paletteIndex, fill]} for a cube that is not all
+     * air, {@code fill} rounded to two decimals. Ties go to the type seen first.
+     */
+    public JsonObject toJson(Function<T, String> names) {
+        JsonArray palette = new JsonArray();
+        int[] paletteIndex = new int[types.size()];
+        Arrays.fill(paletteIndex, -1);
+        JsonArray cells = new JsonArray();
+
+        for (int cy = 0; cy < cellsY; cy++) {
+            for (int cz = 0; cz < cellsZ; cz++) {
+                for (int cx = 0; cx < cellsX; cx++) {
+                    int[] cellCounts = counts[(cy * cellsZ + cz) * cellsX + cx];
+                    if (cellCounts == null) {
+                        continue;
+                    }
+                    int dominant = 0;
+                    long filled = 0;
+                    for (int type = 0; type < cellCounts.length; type++) {
+                        filled += cellCounts[type];
+                        if (cellCounts[type] > cellCounts[dominant]) {
+                            dominant = type;
+                        }
+                    }
+                    if (filled == 0) {
+                        continue;
+                    }
+                    if (paletteIndex[dominant] < 0) {
+                        paletteIndex[dominant] = palette.size();
+                        palette.add(names.apply(types.get(dominant)));
+                    }
+                    long volume = (long) span(cx, minX, maxX) * span(cy, minY, maxY) * span(cz, minZ, maxZ);
+
+                    JsonArray cell = new JsonArray();
+                    cell.add(cx);
+                    cell.add(cy);
+                    cell.add(cz);
+                    cell.add(paletteIndex[dominant]);
+                    cell.add(Math.round(filled * 100.0 / volume) / 100.0);
+                    cells.add(cell);
+                }
+            }
+        }
+
+        JsonObject json = new JsonObject();
+        json.addProperty("resolution", resolution);
+        JsonObject origin = new JsonObject();
+        origin.addProperty("x", minX);
+        origin.addProperty("y", minY);
+        origin.addProperty("z", minZ);
+        json.add("origin", origin);
+        JsonObject size = new JsonObject();
+        size.addProperty("x", cellsX);
+        size.addProperty("y", cellsY);
+        size.addProperty("z", cellsZ);
+        json.add("size", size);
+        json.add("palette", palette);
+        json.add("cells", cells);
+        return json;
+    }
+
+    private int span(int cell, int min, int max) {
+        int from = min + cell * resolution;
+        return Math.min(max, from + resolution - 1) - from + 1;
+    }
+
+    public long getNonAirBlocks() {
+        return nonAirBlocks;
+    }
+}
@@ -0,0 +1,89 @@
+package cuspymd.mcp.mod.utils;
+
+import com.google.gson.JsonObject;
+
+import java.util.Locale;
+
+/**
+ * Horizontal transform applied when pasting a copied region: an optional mirror followed by a
+ * clockwise rotation about the vertical axis, in the same order vanilla structures use. Works on
+ * region-local coordinates and keeps the result inside {@code [0, size)}, so the pasted box's
+ * minimum corner stays at the paste origin.
+ */
+public final class RegionTransform {
+    public enum Mirror {
+        NONE,
+        // Flips east and west
+        X,
+        // Flips north and south
+        Z
+    }
+
+    private final int quarterTurns;
+    private final Mirror mirror;
+    private final int sizeX, sizeZ;
+
+    public RegionTransform(int quarterTurns, Mirror mirror, int sizeX, int sizeZ) {
+        this.quarterTurns = Math.floorMod(quarterTurns, 4);
+        this.mirror = mirror;
+        this.sizeX = sizeX;
+        this.sizeZ = sizeZ;
+    }
+
+    /** Reads {@code rotate} (degrees clockwise, a multiple of 90) and {@code mirror} (none, x or z). */
+    public static RegionTransform parse(JsonObject arguments, int sizeX, int sizeZ) {
+        int degrees = arguments.has("rotate") ? arguments.get("rotate").getAsInt() : 0;
+        if (degrees % 90 != 0) {
+            throw new IllegalArgumentException("rotate must be a multiple of 90 degrees");
+        }
+        Mirror mirror = Mirror.NONE;
+        if (arguments.has("mirror")) {
+            try {
+                mirror = Mirror.valueOf(arguments.get("mirror").getAsString().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("mirror must be none, x or z");
+            }
+        }
+        return new RegionTransform(degrees / 90, mirror, sizeX, sizeZ);
+    }
+
+    /** Clockwise quarter turns, 0 to 3. */
+    public int getQuarterTurns() { return quarterTurns; }
+    public Mirror getMirror() { return mirror; }
+
+    public int getResultSizeX() {
+        return quarterTurns % 2 == 0 ? sizeX : sizeZ;
+    }
+
+    public int getResultSizeZ() {
+        return quarterTurns % 2 == 0 ? sizeZ : sizeX;
+    }
+
+    /** Maps a local (x, z) to its local position in the pasted box; {@code out} receives x and z. */
+    public void apply(int x, int z, int[] out) {
+        if (mirror == Mirror.X) {
+            x = sizeX - 1 - x;
+        } else if (mirror == Mirror.Z) {
+            z = sizeZ - 1 - z;
+        }
+        switch (quarterTurns) {
+            // Clockwise seen from above: east goes to south, i.e. (x, z) -> (-z, x)
+            case 1 -> {
+                out[0] = sizeZ - 1 - z;
+                out[1] = x;
+            }
+            case 2 -> {
+                out[0] = sizeX - 1 - x;
+                out[1] = sizeZ - 1 - z;
+            }
+            case 3 -> {
+                out[0] = z;
+                out[1] = sizeX - 1 - x;
+            }
+            default -> {
+                out[0] = x;
+                out[1] = z;
+            }
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package cuspymd.mcp.mod.utils;
+
+import com.google.gson.JsonObject;
+
+import java.util.Locale;
+
+/**
+ * Parsed {@code place_shape} arguments. Rasterizes a sphere, cylinder, line or box into block
+ * positions. Spheres and cylinders include every cell whose center lies within
+ * {@code radius + 0.5} of the center, so radius 0 is a single block. Hollow shapes keep the
+ * cells of the solid shape that have a face neighbor outside it; cylinder caps stay open.
+ */
+public final class ShapeRasterizer {
+
+    @FunctionalInterface
+    public interface PositionSink {
+        void accept(int x, int y, int z);
+    }
+
+    public enum Shape {
+        SPHERE, CYLINDER, LINE, BOX
+    }
+
+    private final Shape shape;
+    private final boolean hollow;
+    // Sphere and cylinder: center (cylinder: base center), squared radius and axis; the bounds limit the height
+    private final int centerX, centerY, centerZ;
+    private final double radiusSquared;
+    private final int axis;
+    // Line endpoints, or box corners
+    private final int fromX, fromY, fromZ, toX, toY, toZ;
+    // Inclusive bounds of every cell the shape can touch
+    private final int minX, minY, minZ, maxX, maxY, maxZ;
+    private final long blockCount;
+
+    private ShapeRasterizer(Shape shape, boolean hollow, int[] center, double radius, int axis,
+                            int[] from, int[] to, int[] bounds) {
+        this.shape = shape;
+        this.hollow = hollow;
+        this.centerX = center[0];
+        this.centerY = center[1];
+        this.centerZ = center[2];
+        this.radiusSquared = (radius + 0.5) * (radius + 0.5);
+        this.axis = axis;
+        this.fromX = from[0];
+        this.fromY = from[1];
+        this.fromZ = from[2];
+        this.toX = to[0];
+        this.toY = to[1];
+        this.toZ = to[2];
+        this.minX = bounds[0];
+        this.minY = bounds[1];
+        this.minZ = bounds[2];
+        this.maxX = bounds[3];
+        this.maxY = bounds[4];
+        this.maxZ = bounds[5];
+        if (shape == Shape.LINE) {
+            // One cell per step along the longest axis; counted without walking it
+            this.blockCount = Math.max(maxX - minX, Math.max(maxY - minY, maxZ - minZ)) + 1L;
+        } else {
+            long[] count = new long[1];
+            forEach((x, y, z) -> count[0]++);
+            this.blockCount = count[0];
+        }
+    }
+
+    /**
+     * Parses and counts a shape. {@code maxBounds} caps the bounding box, which is what
+     * rasterizing costs; {@code maxBlocks} caps the cells actually placed.
+     */
+    public static ShapeRasterizer parse(JsonObject arguments, long maxBlocks, long maxBounds) {
+        if (arguments == null || !arguments.has("shape")) {
+            throw new IllegalArgumentException("Missing required parameter: shape");
+        }
+        Shape shape;
+        try {
+            shape = Shape.valueOf(arguments.get("shape").getAsString().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown shape '" + arguments.get("shape").getAsString() + "'; expected sphere, cylinder, line or box");
+        }
+        boolean hollow = arguments.has("hollow") && arguments.get("hollow").getAsBoolean();
+        int[] none = new int[3];
+
+        ShapeRasterizer rasterizer = switch (shape) {
+            case SPHERE -> {
+                int[] center = readPosition(arguments, "center");
+                double radius = readRadius(arguments);
+                long r = (long) Math.floor(radius + 0.5);
+                yield new ShapeRasterizer(shape, hollow, center, radius, 1, none, none, checkBounds(new long[] {
+                    center[0] - r, center[1] - r, center[2] - r, center[0] + r, center[1] + r, center[2] + r
+                }, maxBounds));
+            }
+            case CYLINDER -> {
+                int[] center = readPosition(arguments, "center");
+                double radius = readRadius(arguments);
+                if (!arguments.has("height") || arguments.get("height").getAsInt() < 1) {
+                    throw new IllegalArgumentException("Cylinder requires 'height' of at least 1");
+                }
+                int height = arguments.get("height").getAsInt();
+                String axisName = arguments.has("axis") ? arguments.get("axis").getAsString() : "y";
+                int axis = switch (axisName.toLowerCase(Locale.ROOT)) {
+                    case "x" -> 0;
+                    case "y" -> 1;
+                    case "z" -> 2;
+                    default -> throw new IllegalArgumentException("axis must be x, y or z");
+                };
+                long r = (long) Math.floor(radius + 0.5);
+                long[] bounds = {center[0] - r, center[1] - r, center[2] - r, center[0] + r, center[1] + r, center[2] + r};
+                bounds[axis] = center[axis];
+                bounds[axis + 3] = (long) center[axis] + height - 1;
+                yield new ShapeRasterizer(shape, hollow, center, radius, axis, none, none, checkBounds(bounds, maxBounds));
+            }
+            case LINE, BOX -> {
+                int[] from = readPosition(arguments, "from");
+                int[] to = readPosition(arguments, "to");
+                yield new ShapeRasterizer(shape, hollow, none, 0, 1, from, to, checkBounds(new long[] {
+                    Math.min(from[0], to[0]), Math.min(from[1], to[1]), Math.min(from[2], to[2]),
+                    Math.max(from[0], to[0]), Math.max(from[1], to[1]), Math.max(from[2], to[2])
+                }, shape == Shape.LINE ? Long.MAX_VALUE : maxBounds));
+            }
+        };
+        if (rasterizer.blockCount > maxBlocks) {
+            throw new IllegalArgumentException("Shape has " + rasterizer.blockCount + " blocks, more than the maximum allowed (" + maxBlocks + ")");
+        }
+        return rasterizer;
+    }
+
+    // In long until the box is known to lie in the world, so no extent can wrap around
+    private static int[] checkBounds(long[] bounds, long maxBounds) {
+        int[] corners = BlockPlacementInput.checkBounds(bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5]);
+        long volume = (bounds[3] - bounds[0] + 1) * (bounds[4] - bounds[1] + 1) * (bounds[5] - bounds[2] + 1);
+        if (volume > maxBounds) {
+            throw new IllegalArgumentException("Shape bounding box (" + volume + " blocks) exceeds maximum allowed (" + maxBounds + ")");
+        }
+        return corners;
+    }
+
+    private static double readRadius(JsonObject arguments) {
+        if (!arguments.has("radius")) {
+            throw new IllegalArgumentException("Missing required parameter: radius");
+        }
+        double radius = arguments.get("radius").getAsDouble();
+        if (!(radius >= 0) || Double.isInfinite(radius)) {
+            throw new IllegalArgumentException("radius must be a non-negative number");
+        }
+        // Wider than the world either way; keeps the rounded radius far from overflowing
+        if (radius > 2.0 * BlockPlacementInput.MAX_HORIZONTAL) {
+            throw new IllegalArgumentException("radius must be at most " + 2 * BlockPlacementInput.MAX_HORIZONTAL);
+        }
+        return radius;
+    }
+
+    private static int[] readPosition(JsonObject arguments, String name) {
+        if (!arguments.has(name)) {
+            throw new IllegalArgumentException("Missing required parameter: " + name);
+        }
+        JsonObject position = arguments.getAsJsonObject(name);
+        if (!position.has("x") || !position.has("y") || !position.has("z")) {
+            throw new IllegalArgumentException("'" + name + "' must contain x, y, z");
+        }
+        return new int[] {position.get("x").getAsInt(), position.get("y").getAsInt(), position.get("z").getAsInt()};
+    }
+
+    public Shape getShape() { return shape; }
+    public long getBlockCount() { return blockCount; }
+
+    /** Visits every cell of the shape once, in y-z-x order except for lines, which go from start to end. */
+    public void forEach(PositionSink sink) {
+        if (shape == Shape.LINE) {
+            forEachOnLine(sink);
+            return;
+        }
+        for (int y = minY; y <= maxY; y++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                for (int x = minX; x <= maxX; x++) {
+                    if (contains(x, y, z) && (!hollow || isSurface(x, y, z))) {
+                        sink.accept(x, y, z);
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean contains(int x, int y, int z) {
+        if (x < minX || x > maxX || y < minY || y > maxY || z < minZ || z > maxZ) {
+            return false;
+        }
+        return switch (shape) {
+            case SPHERE -> {
+                double dx = x - centerX, dy = y - centerY, dz = z - centerZ;
+                yield dx * dx + dy * dy + dz * dz <= radiusSquared;
+            }
+            case CYLINDER -> {
+                // Distance in the plane across the axis; the bounds already limit the height
+                double du = axis == 0 ? y - centerY : x - centerX;
+                double dv = axis == 2 ? y - centerY : z - centerZ;
+                yield du * du + dv * dv <= radiusSquared;
+            }
+            default -> true;
+        };
+    }
+
+    private boolean isSurface(int x, int y, int z) {
+        // Open caps: a cylinder only counts neighbors across its axis
+        boolean checkX = shape != Shape.CYLINDER || axis != 0;
+        boolean checkY = shape != Shape.CYLINDER || axis != 1;
+        boolean checkZ = shape != Shape.CYLINDER || axis != 2;
+        return (checkX && (!contains(x - 1, y, z) || !contains(x + 1, y, z)))
+            || (checkY && (!contains(x, y - 1, z) || !contains(x, y + 1, z)))
+            || (checkZ && (!contains(x, y, z - 1) || !contains(x, y, z + 1)));
+    }
+
+    // 3D Bresenham: steps along the dominant axis, so consecutive cells always share a face, edge or corner
+    private void forEachOnLine(PositionSink sink) {
+        int dx = Math.abs(toX - fromX), dy = Math.abs(toY - fromY), dz = Math.abs(toZ - fromZ);
+        int sx = Integer.signum(toX - fromX), sy = Integer.signum(toY - fromY), sz = Integer.signum(toZ - fromZ);
+        int steps = Math.max(dx, Math.max(dy, dz));
+        int x = fromX, y = fromY, z = fromZ;
+        int errX = steps / 2, errY = steps / 2, errZ = steps / 2;
+        sink.accept(x, y, z);
+        for (int i = 0; i < steps; i++) {
+            errX -= dx;
+            if (errX < 0) {
+                errX += steps;
+                x += sx;
+            }
+            errY -= dy;
+            if (errY < 0) {
+                errY += steps;
+                y += sy;
+            }
+            errZ -= dz;
+            if (errZ < 0) {
+                errZ += steps;
+                z += sz;
+            }
+            sink.accept(x, y, z);
+        }
+    }
+}
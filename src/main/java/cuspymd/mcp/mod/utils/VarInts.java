@@ -0,0 +1,54 @@
+package cuspymd.mcp.mod.utils;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Unsigned LEB128 varints, seven bits per byte with the high bit set on every byte but the last,
+ * as used by the Sponge schematic {@code BlockData} array and {@link VoxelCodec}.
+ */
+public final class VarInts {
+
+    private VarInts() {
+    }
+
+    public static void write(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /** Reads one varint at {@code cursor[0]} and advances it past the varint. */
+    public static int read(byte[] bytes, int[] cursor) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (cursor[0] >= bytes.length) {
+                throw new IllegalArgumentException("Truncated varint at offset " + cursor[0]);
+            }
+            byte b = bytes[cursor[0]++];
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint longer than 5 bytes before offset " + cursor[0]);
+    }
+
+    /**
+     * Reads exactly {@code count} varints, the whole of {@code bytes}, into a new array. Throws
+     * {@link IllegalArgumentException} if the data ends early, has bytes left over, or holds a
+     * value longer than five bytes.
+     */
+    public static int[] readAll(byte[] bytes, int count) {
+        int[] values = new int[count];
+        int[] cursor = {0};
+        for (int i = 0; i < count; i++) {
+            values[i] = read(bytes, cursor);
+        }
+        if (cursor[0] != bytes.length) {
+            throw new IllegalArgumentException("Varint data has " + (bytes.length - cursor[0]) + " trailing bytes");
+        }
+        return values;
+    }
+}
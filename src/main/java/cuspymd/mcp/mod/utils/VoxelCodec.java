@@ -0,0 +1,84 @@
+package cuspymd.mcp.mod.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Palette-index voxel arrays packed as base64 run-length pairs.
+ *
+ * <p>The byte stream is a sequence of {@code (runLength, value)} pairs, both unsigned LEB128
+ * varints. Value {@code 0} means "no block" and value {@code k} refers to {@code palette[k - 1]}.
+ * Cells are ordered x fastest, then z, then y.</p>
+ */
+public final class VoxelCodec {
+
+    private VoxelCodec() {
+    }
+
+    public static int index(int x, int y, int z, int sizeX, int sizeZ) {
+        return (y * sizeZ + z) * sizeX + x;
+    }
+
+    /**
+     * Index strides {@code {x, y, z}} for cells ordered by {@code order}, which names the three axes
+     * fastest first. {@code "xzy"} is the order used everywhere else and matches {@link #index}.
+     */
+    public static int[] strides(String order, int sizeX, int sizeY, int sizeZ) {
+        if (order.length() != 3 || order.indexOf('x') < 0 || order.indexOf('y') < 0 || order.indexOf('z') < 0) {
+            throw new IllegalArgumentException("Cell order must name x, y and z once each, fastest first, e.g. \"xzy\"");
+        }
+        int[] strides = new int[3];
+        int stride = 1;
+        for (int i = 0; i < 3; i++) {
+            int axis = order.charAt(i) - 'x';
+            strides[axis] = stride;
+            stride *= axis == 0 ? sizeX : axis == 1 ? sizeY : sizeZ;
+        }
+        return strides;
+    }
+
+    public static String encodeRle(int[] values) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int i = 0;
+        while (i < values.length) {
+            int value = values[i];
+            int run = 1;
+            while (i + run < values.length && values[i + run] == value) {
+                run++;
+            }
+            VarInts.write(out, run);
+            VarInts.write(out, value);
+            i += run;
+        }
+        return Base64.getEncoder().encodeToString(out.toByteArray());
+    }
+
+    public static int[] decodeRle(String base64, int length) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getDecoder().decode(base64);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Voxel data is not valid base64", e);
+        }
+
+        int[] values = new int[length];
+        int[] cursor = {0};
+        int filled = 0;
+        while (cursor[0] < bytes.length) {
+            int run = VarInts.read(bytes, cursor);
+            int value = VarInts.read(bytes, cursor);
+            if (run <= 0 || run > length - filled) {
+                throw new IllegalArgumentException("Voxel data runs past the declared size of " + length + " cells");
+            }
+            if (value != 0) {
+                Arrays.fill(values, filled, filled + run, value);
+            }
+            filled += run;
+        }
+        if (filled != length) {
+            throw new IllegalArgumentException("Voxel data covers " + filled + " cells but the declared size has " + length);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,168 @@
+package cuspymd.mcp.mod.command;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CommandBatchOptimizerTest {
+
+    @Test
+    public void mergesContiguousSetblocksIntoFill() {
+        List<String> commands = new ArrayList<>();
+        for (int y = 64; y <= 65; y++) {
+            for (int x = 0; x <= 2; x++) {
+                commands.add("setblock " + x + " " + y + " 5 stone");
+            }
+        }
+
+        CommandBatchOptimizer.Result result = CommandBatchOptimizer.optimize(commands, 125000);
+
+        assertEquals(List.of("fill 0 64 5 2 65 5 stone"), result.getCommands());
+        assertArrayEquals(new int[] {0, 1, 2, 3, 4, 5}, result.getSourceIndices(0));
+        assertEquals(List.of(), result.getEliminatedIndices());
+    }
+
+    @Test
+    public void keepsDifferentStatesApart() {
+        List<String> commands = List.of(
+            "setblock 0 64 0 stone",
+            "setblock 1 64 0 minecraft:stone",
+            "setblock 2 64 0 oak_planks"
+        );
+
+        CommandBatchOptimizer.Result result = CommandBatchOptimizer.optimize(commands, 125000);
+
+        assertEquals(List.of("fill 0 64 0 1 64 0 stone", "setblock 2 64 0 oak_planks"), result.getCommands());
+        assertArrayEquals(new int[] {0, 1}, result.getSourceIndices(0));
+        assertArrayEquals(new int[] {2}, result.getSourceIndices(1));
+    }
+
+    @Test
+    public void keepsWritesOfDifferentStatesInOrder() {
+        // The second air write removes the torch's support; moving it before the torch would keep the torch
+        List<String> commands = List.of(
+            "setblock 0 64 0 air",
+            "setblock 5 65 5 torch",
+            "setblock 1 64 0 air",
+            "setblock 5 64 5 air"
+        );
+
+        CommandBatchOptimizer.Result result = CommandBatchOptimizer.optimize(commands, 125000);
+
+        assertEquals(List.of(
+            "setblock 0 64 0 air",
+            "setblock 5 65 5 torch",
+            "setblock 1 64 0 air",
+            "setblock 5 64 5 air"
+        ), result.getCommands());
+    }
+
+    @Test
+    public void keepsWritesWhoseYDiffersByAFullPackedRange() {
+        // 4096 apart in y: a 12-bit y key would make them one cell
+        List<String> commands = List.of(
+            "setblock 0 64 0 stone",
+            "setblock 0 4160 0 stone"
+        );
+
+        CommandBatchOptimizer.Result result = CommandBatchOptimizer.optimize(commands, 125000);
+
+        assertEquals(commands, result.getCommands());
+        assertArrayEquals(new int[] {0}, result.getSourceIndices(0));
+        assertArrayEquals(new int[] {1}, result.getSourceIndices(1));
+    }
+
+    @Test
+    public void dropsWritesShadowedByLaterWrites() {
+        List<String> commands = List.of(
+            "fill 0 64 0 1 64 1 dirt",
+            "setblock 5 64 5 glass",
+            "fill 0 64 0 3 64 3 stone",
+            "setblock 0 64 0 air",
+            "setblock 1 64 0 air",
+            "setblock 0 64 1 air",
+            "setblock 1 64 1 air",
+            "setblock 5 64 5 glowstone"
+        );
+
+        CommandBatchOptimizer.Result result = CommandBatchOptimizer.optimize(commands, 125000);
+
+        assertEquals(List.of(0, 1), result.getEliminatedIndices());
+        assertEquals(List.of(
+            "fill 0 64 0 3 64 3 stone",
+            "fill 0 64 0 1 64 1 air",
+            "setblock 5 64 5 glowstone"
+        ), result.getCommands());
+        assertArrayEquals(new int[] {3, 4, 5, 6}, result.getSourceIndices(1));
+    }
+
+    @Test
+    public void otherCommandsAreBarriers() {
+        List<String> commands = List.of(
+            "setblock 0 64 0 stone",
+            "clone 0 64 0 0 64 0 10 64 10",
+            "setblock 1 64 0 stone",
+            "setblock 0 64 0 dirt"
+        );
+
+        CommandBatchOptimizer.Result result = CommandBatchOptimizer.optimize(commands, 125000);
+
+        assertEquals(commands.subList(0, 2), result.getCommands().subList(0, 2));
+        assertEquals(List.of(), result.getEliminatedIndices());
+        assertEquals(4, result.getCommands().size());
+    }
+
+    @Test
+    public void conditionalAndRelativeWritesAreNotOptimized() {
+        List<String> commands = List.of(
+            "setblock ~ ~ ~ stone",
+            "fill 0 0 0 1 1 1 stone hollow",
+            "fill 0 0 0 1 1 1 stone replace dirt",
+            "setblock 0 0 0 stone keep"
+        );
+
+        CommandBatchOptimizer.Result result = CommandBatchOptimizer.optimize(commands, 125000);
+
+        assertEquals(commands, result.getCommands());
+    }
+
+    @Test
+    public void mergedFillsRespectVolumeLimit() {
+        List<String> commands = new ArrayList<>();
+        for (int x = 0; x < 10; x++) {
+            commands.add("setblock " + x + " 64 0 stone");
+        }
+
+        CommandBatchOptimizer.Result result = CommandBatchOptimizer.optimize(commands, 4);
+
+        assertEquals(List.of(
+            "fill 0 64 0 3 64 0 stone",
+            "fill 4 64 0 7 64 0 stone",
+            "fill 8 64 0 9 64 0 stone"
+        ), result.getCommands());
+    }
+
+    @Test
+    public void annotateAddsSourceIndicesAndSummary() {
+        CommandBatchOptimizer.Result result = CommandBatchOptimizer.optimize(
+            List.of("setblock 0 0 0 stone", "setblock 0 0 0 dirt"), 125000);
+        JsonObject response = new JsonObject();
+        JsonArray results = new JsonArray();
+        results.add(new JsonObject());
+        response.add("results", results);
+
+        result.annotate(response);
+
+        assertEquals(1, results.get(0).getAsJsonObject().getAsJsonArray("sourceIndices").get(0).getAsInt());
+        JsonObject optimization = response.getAsJsonObject("optimization");
+        assertEquals(2, optimization.get("originalCommands").getAsInt());
+        assertEquals(1, optimization.get("optimizedCommands").getAsInt());
+        assertEquals(0, optimization.getAsJsonArray("eliminatedIndices").get(0).getAsInt());
+    }
+}
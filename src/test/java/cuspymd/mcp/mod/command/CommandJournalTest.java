@@ -0,0 +1,228 @@
+package cuspymd.mcp.mod.command;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import cuspymd.mcp.mod.server.MCPProtocol;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CommandJournalTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    public void recordsRoundTripInOrder() throws IOException {
+        Path path = dir.resolve("journal.bin");
+        try (CommandJournal journal = CommandJournal.open(path, 10)) {
+            journal.append(CommandJournal.Kind.EXECUTE, 1000L, 25L, "{\"commands\":[\"say a\"]}", "{\"isError\":false}");
+            journal.append(CommandJournal.Kind.COMPILE, 2000L, 7L, "{}", "x".repeat(100_000));
+        }
+
+        try (CommandJournal.Reader reader = new CommandJournal.Reader(path)) {
+            CommandJournal.Entry first = reader.next();
+            assertEquals(CommandJournal.Kind.EXECUTE, first.kind());
+            assertEquals(1000L, first.timestampMillis());
+            assertEquals(25L, first.durationMicros());
+            assertEquals("{\"commands\":[\"say a\"]}", first.arguments());
+            CommandJournal.Entry second = reader.next();
+            assertEquals(CommandJournal.Kind.COMPILE, second.kind());
+            assertEquals(100_000, second.result().length());
+            assertNull(reader.next());
+            assertFalse(reader.isTruncated());
+        }
+    }
+
+    @Test
+    public void tornTailIsCutOffOnReopen() throws IOException {
+        Path path = dir.resolve("journal.bin");
+        try (CommandJournal journal = CommandJournal.open(path, 10)) {
+            journal.append(CommandJournal.Kind.EXECUTE, 1L, 1L, "{\"n\":1}", "{}");
+            journal.append(CommandJournal.Kind.EXECUTE, 2L, 1L, "{\"n\":2}", "{}");
+        }
+        // Simulate a crash halfway through writing the second record
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+        assertEquals(1, readAll(path).size());
+
+        try (CommandJournal journal = CommandJournal.open(path, 10)) {
+            journal.append(CommandJournal.Kind.EXECUTE, 3L, 1L, "{\"n\":3}", "{}");
+        }
+        List<CommandJournal.Entry> entries = readAll(path);
+        assertEquals(2, entries.size());
+        assertEquals("{\"n\":3}", entries.get(1).arguments());
+    }
+
+    @Test
+    public void corruptRecordStopsReading() throws IOException {
+        Path path = dir.resolve("journal.bin");
+        try (CommandJournal journal = CommandJournal.open(path, 10)) {
+            journal.append(CommandJournal.Kind.EXECUTE, 1L, 1L, "{\"n\":1}", "{}");
+        }
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length - 1] ^= 0x55;
+        Files.write(path, bytes);
+
+        try (CommandJournal.Reader reader = new CommandJournal.Reader(path)) {
+            assertNull(reader.next());
+            assertTrue(reader.isTruncated());
+        }
+    }
+
+    @Test
+    public void replayRunsRecordedBatchesThroughDelegate() throws IOException {
+        Path path = dir.resolve("journal.bin");
+        RecordingExecutor delegate = new RecordingExecutor();
+        try (CommandJournal journal = CommandJournal.open(path, 10)) {
+            JournalingCommandExecutor executor = new JournalingCommandExecutor(delegate, journal);
+            executor.executeCommands(commands("say one", "say two"));
+            JsonObject dryRun = commands("fill 0 0 0 1 1 1 stone");
+            dryRun.addProperty("dry_run", true);
+            executor.executeCommands(dryRun);
+            executor.compileBatch(commands("setblock ~ ~ ~ stone", "setblock ~1 ~ ~ stone", "setblock ~2 ~ ~ stone"));
+            JsonObject run = new JsonObject();
+            run.addProperty("batch_hash", "abc");
+            executor.runCompiledBatch(run);
+        }
+        assertEquals(4, delegate.calls.size());
+
+        RecordingExecutor replayTarget = new RecordingExecutor();
+        try (CommandJournal journal = CommandJournal.open(path, 10)) {
+            JsonObject result = new JournalingCommandExecutor(replayTarget, journal).replayJournal(new JsonObject());
+            JsonObject payload = JsonParser.parseString(
+                result.getAsJsonArray("content").get(0).getAsJsonObject().get("text").getAsString()).getAsJsonObject();
+
+            assertEquals(List.of("execute", "compile", "run"), replayTarget.calls);
+            assertEquals(2, payload.get("batches").getAsInt());
+            assertEquals(5, payload.get("commands").getAsLong());
+            assertEquals(0, payload.get("divergedBatches").getAsInt());
+            assertFalse(payload.get("truncated").getAsBoolean());
+            // The replay itself is not journaled
+            assertEquals(0, journal.getRecordsWritten());
+        }
+    }
+
+    @Test
+    public void replayUndoesTheReplayedBatch() throws IOException {
+        Path path = dir.resolve("journal.bin");
+        List<String> undone = new ArrayList<>();
+        UnaryOperator<JsonObject> undo = arguments -> {
+            undone.add(arguments.get("batch_id").getAsString());
+            return new JsonObject();
+        };
+        try (CommandJournal journal = CommandJournal.open(path, 10)) {
+            JournalingCommandExecutor executor = new JournalingCommandExecutor(new UndoRecordingExecutor(1), undo, journal);
+            executor.executeCommands(commands("setblock 0 64 0 stone"));
+            executor.undoBatch(batchId("batch-1"));
+            // Recorded by a tool the journal does not cover
+            executor.undoBatch(batchId("batch-7"));
+        }
+        assertEquals(List.of("batch-1", "batch-7"), undone);
+        undone.clear();
+
+        try (CommandJournal journal = CommandJournal.open(path, 10)) {
+            JsonObject result = new JournalingCommandExecutor(new UndoRecordingExecutor(5), undo, journal).replayJournal(new JsonObject());
+            JsonObject payload = JsonParser.parseString(
+                result.getAsJsonArray("content").get(0).getAsJsonObject().get("text").getAsString()).getAsJsonObject();
+
+            assertEquals(List.of("batch-5"), undone);
+            assertEquals(2, payload.get("batches").getAsInt());
+            assertEquals(1, payload.get("skippedUndos").getAsInt());
+            assertEquals(0, payload.get("divergedBatches").getAsInt());
+        }
+    }
+
+    @Test
+    public void replayRejectsPathsOutsideJournalDirectory() throws IOException {
+        try (CommandJournal journal = CommandJournal.open(dir.resolve("journal.bin"), 10)) {
+            JsonObject arguments = new JsonObject();
+            arguments.addProperty("file", "../etc/passwd");
+
+            JsonObject result = new JournalingCommandExecutor(new RecordingExecutor(), journal).replayJournal(arguments);
+
+            assertTrue(result.get("isError").getAsBoolean());
+        }
+    }
+
+    private static List<CommandJournal.Entry> readAll(Path path) throws IOException {
+        List<CommandJournal.Entry> entries = new ArrayList<>();
+        try (CommandJournal.Reader reader = new CommandJournal.Reader(path)) {
+            CommandJournal.Entry entry;
+            while ((entry = reader.next()) != null) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    private static JsonObject commands(String... commands) {
+        JsonArray array = new JsonArray();
+        for (String command : commands) {
+            array.add(command);
+        }
+        JsonObject arguments = new JsonObject();
+        arguments.add("commands", array);
+        return arguments;
+    }
+
+    private static JsonObject batchId(String id) {
+        JsonObject arguments = new JsonObject();
+        arguments.addProperty("batch_id", id);
+        return arguments;
+    }
+
+    private static final class UndoRecordingExecutor implements ICommandExecutor {
+        private int nextId;
+
+        UndoRecordingExecutor(int firstId) {
+            this.nextId = firstId;
+        }
+
+        @Override
+        public JsonObject executeCommands(JsonObject arguments) {
+            JsonObject payload = new JsonObject();
+            payload.addProperty("batchId", "batch-" + nextId++);
+            return MCPProtocol.createSuccessResponse(payload.toString());
+        }
+    }
+
+    private static final class RecordingExecutor implements ICommandExecutor {
+        final List<String> calls = new ArrayList<>();
+
+        @Override
+        public JsonObject executeCommands(JsonObject arguments) {
+            calls.add("execute");
+            return MCPProtocol.createSuccessResponse("{}");
+        }
+
+        @Override
+        public JsonObject compileBatch(JsonObject arguments) {
+            calls.add("compile");
+            JsonObject payload = new JsonObject();
+            payload.addProperty("batchHash", "abc");
+            payload.addProperty("commandCount", arguments.getAsJsonArray("commands").size());
+            return MCPProtocol.createSuccessResponse(payload.toString());
+        }
+
+        @Override
+        public JsonObject runCompiledBatch(JsonObject arguments) {
+            calls.add("run");
+            return MCPProtocol.createSuccessResponse("{}");
+        }
+    }
+}
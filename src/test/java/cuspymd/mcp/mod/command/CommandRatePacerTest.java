@@ -0,0 +1,107 @@
+package cuspymd.mcp.mod.command;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CommandRatePacerTest {
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    public void burstIsSentWithoutWaitingThenPacedAtRate() {
+        AtomicLong now = new AtomicLong();
+        CommandRatePacer pacer = new CommandRatePacer(2.0, 0.5, 20.0, 3, now::get);
+
+        assertEquals(0, pacer.reserve());
+        assertEquals(0, pacer.reserve());
+        assertEquals(0, pacer.reserve());
+        assertEquals(SECOND / 2, pacer.reserve());
+        assertEquals(SECOND, pacer.reserve());
+
+        now.addAndGet(SECOND);
+        assertEquals(SECOND / 2, pacer.reserve());
+    }
+
+    @Test
+    public void acceptedCommandsRaiseRateUpToMaximum() {
+        CommandRatePacer pacer = new CommandRatePacer(4.0, 0.5, 5.0, 1, () -> 0L);
+
+        pacer.onAccepted();
+        assertEquals(4.25, pacer.getRate(), 1e-9);
+
+        for (int i = 0; i < 100; i++) {
+            pacer.onAccepted();
+        }
+        assertEquals(5.0, pacer.getRate(), 1e-9);
+    }
+
+    @Test
+    public void throttleHalvesRateAndSlowsProbingAboveIt() {
+        CommandRatePacer pacer = new CommandRatePacer(8.0, 0.5, 20.0, 4, () -> 0L);
+
+        pacer.onThrottled();
+        assertEquals(4.0, pacer.getRate(), 1e-9);
+        assertEquals(1, pacer.getThrottleEvents());
+
+        while (pacer.getRate() < 8.0) {
+            pacer.onAccepted();
+        }
+        double atCeiling = pacer.getRate();
+        pacer.onAccepted();
+        assertEquals(atCeiling + 0.1 / atCeiling, pacer.getRate(), 1e-9);
+    }
+
+    @Test
+    public void throttleSpendsRemainingBurst() {
+        CommandRatePacer pacer = new CommandRatePacer(2.0, 0.5, 20.0, 5, () -> 0L);
+
+        pacer.onThrottled();
+
+        assertEquals(SECOND, pacer.reserve());
+    }
+
+    @Test
+    public void rateNeverDropsBelowMinimum() {
+        CommandRatePacer pacer = new CommandRatePacer(1.0, 0.5, 20.0, 1, () -> 0L);
+
+        pacer.onThrottled();
+        pacer.onThrottled();
+        pacer.onThrottled();
+
+        assertEquals(0.5, pacer.getRate(), 1e-9);
+    }
+
+    @Test
+    public void recognisesThrottleMessages() {
+        assertTrue(CommandRatePacer.isThrottleMessage("You are sending commands too fast!"));
+        assertTrue(CommandRatePacer.isThrottleMessage("Please slow down"));
+        assertTrue(CommandRatePacer.isThrottleMessage("Kicked for spamming"));
+        assertFalse(CommandRatePacer.isThrottleMessage("Successfully filled 4 block(s)"));
+        assertFalse(CommandRatePacer.isThrottleMessage(null));
+    }
+
+    @Test
+    public void playerChatIsNotAThrottleSignal() {
+        CommandResult accepted = CommandResult.builder()
+            .accepted(true)
+            .applied(true)
+            .status("applied")
+            .summary("ok")
+            .originalCommand("setblock 0 0 0 stone")
+            .executionTimeMs(1L)
+            .build();
+
+        assertFalse(CommandExecutor.isThrottleSignal(accepted, List.of(
+            new ChatMessageCapture.CapturedMessage("stop spamming lol", 1L, ChatMessageCapture.MessageSource.PLAYER_CHAT)
+        ), false));
+        assertTrue(CommandExecutor.isThrottleSignal(accepted, List.of(
+            new ChatMessageCapture.CapturedMessage("You are sending commands too fast", 1L, ChatMessageCapture.MessageSource.SYSTEM)
+        ), false));
+        assertTrue(CommandExecutor.isThrottleSignal(accepted, List.of(), true));
+    }
+}
@@ -0,0 +1,78 @@
+package cuspymd.mcp.mod.command;
+
+import cuspymd.mcp.mod.utils.CoordinateUtils;
+import net.minecraft.core.BlockPos;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CommandRegionResolverTest {
+    private static final BlockPos ORIGIN = new BlockPos(100, 64, -20);
+
+    @Test
+    public void fillResolvesAbsoluteCoordinates() {
+        List<CoordinateUtils.BoundingBox> regions = CommandRegionResolver.resolve("/fill 10 60 5 0 70 -5 stone", ORIGIN);
+
+        assertEquals(1, regions.size());
+        assertBox(regions.get(0), 0, 60, -5, 10, 70, 5);
+    }
+
+    @Test
+    public void relativeCoordinatesResolveAgainstOrigin() {
+        List<CoordinateUtils.BoundingBox> regions = CommandRegionResolver.resolve("setblock ~ ~-3 ~2.5 stone", ORIGIN);
+
+        assertBox(regions.get(0), 100, 61, -18, 100, 61, -18);
+    }
+
+    @Test
+    public void cloneCoversSourceAndDestination() {
+        List<CoordinateUtils.BoundingBox> regions = CommandRegionResolver.resolve("clone 0 0 0 3 1 2 50 10 50 replace", ORIGIN);
+
+        assertEquals(2, regions.size());
+        assertBox(regions.get(0), 0, 0, 0, 3, 1, 2);
+        assertBox(regions.get(1), 50, 10, 50, 53, 11, 52);
+    }
+
+    @Test
+    public void summonWithoutPositionUsesOrigin() {
+        List<CoordinateUtils.BoundingBox> regions = CommandRegionResolver.resolve("summon minecraft:zombie", ORIGIN);
+
+        assertBox(regions.get(0), 100, 64, -20, 100, 64, -20);
+    }
+
+    @Test
+    public void regionlessCommandsTouchNothing() {
+        assertTrue(CommandRegionResolver.resolve("say hello", ORIGIN).isEmpty());
+        assertTrue(CommandRegionResolver.resolve("time set day", ORIGIN).isEmpty());
+    }
+
+    @Test
+    public void unboundedCommandsResolveToNull() {
+        assertNull(CommandRegionResolver.resolve("execute as @a run fill ~ ~ ~ ~1 ~1 ~1 stone", ORIGIN));
+        assertNull(CommandRegionResolver.resolve("fill ^ ^ ^1 ^2 ^2 ^2 stone", ORIGIN));
+        assertNull(CommandRegionResolver.resolve("clone from minecraft:the_nether 0 0 0 1 1 1 5 5 5", ORIGIN));
+        assertNull(CommandRegionResolver.resolve("fill 0 0 stone", ORIGIN));
+    }
+
+    @Test
+    public void parseBlockPosHandlesNegativeRelativeOffsets() {
+        BlockPos pos = CoordinateUtils.parseBlockPos("~-3", "~", "5", new BlockPos(10, 20, 30));
+
+        assertEquals(7, pos.getX());
+        assertEquals(20, pos.getY());
+        assertEquals(5, pos.getZ());
+    }
+
+    private static void assertBox(CoordinateUtils.BoundingBox box, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        assertEquals(minX, box.minX);
+        assertEquals(minY, box.minY);
+        assertEquals(minZ, box.minZ);
+        assertEquals(maxX, box.maxX);
+        assertEquals(maxY, box.maxY);
+        assertEquals(maxZ, box.maxZ);
+    }
+}
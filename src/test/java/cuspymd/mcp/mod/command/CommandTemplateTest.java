@@ -0,0 +1,85 @@
+package cuspymd.mcp.mod.command;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CommandTemplateTest {
+
+    @Test
+    public void rangeExpandsWithArithmetic() {
+        CommandTemplate template = parse("{\"template\": \"setblock ${10 + i} ${64 + i*2} 5 stone\", \"vars\": {\"i\": {\"from\": 0, \"to\": 2}}}");
+
+        assertEquals(3, template.size());
+        assertEquals(List.of("setblock 10 64 5 stone", "setblock 11 66 5 stone", "setblock 12 68 5 stone"), expand(template));
+    }
+
+    @Test
+    public void firstVariableIsOutermostLoop() {
+        CommandTemplate template = parse("{\"template\": \"setblock ${x} 0 ${z} ${b}\", \"vars\": {"
+            + "\"x\": {\"from\": 0, \"to\": 1}, \"z\": {\"from\": 5, \"to\": 1, \"step\": -4}, \"b\": [\"stone\", \"dirt\"]}}");
+
+        assertEquals(List.of(
+            "setblock 0 0 5 stone", "setblock 0 0 5 dirt", "setblock 0 0 1 stone", "setblock 0 0 1 dirt",
+            "setblock 1 0 5 stone", "setblock 1 0 5 dirt", "setblock 1 0 1 stone", "setblock 1 0 1 dirt"
+        ), expand(template));
+    }
+
+    @Test
+    public void divisionRoundsDown() {
+        CommandTemplate template = parse("{\"template\": \"${i / 2} ${i % 2} ${-(i)}\", \"vars\": {\"i\": {\"from\": -1, \"to\": -1}}}");
+
+        assertEquals(List.of("-1 1 1"), expand(template));
+    }
+
+    @Test
+    public void bracesWithoutDollarAreLiteral() {
+        CommandTemplate template = parse("{\"template\": \"summon zombie ${i} 64 0 {NoAI:1b}\", \"vars\": {\"i\": [3]}}");
+
+        assertEquals(List.of("summon zombie 3 64 0 {NoAI:1b}"), expand(template));
+    }
+
+    @Test
+    public void malformedTemplatesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> parse("{\"template\": \"${j}\", \"vars\": {\"i\": [1]}}"));
+        assertThrows(IllegalArgumentException.class, () -> parse("{\"template\": \"${i +}\", \"vars\": {\"i\": [1]}}"));
+        assertThrows(IllegalArgumentException.class, () -> parse("{\"template\": \"${i\", \"vars\": {\"i\": [1]}}"));
+        assertThrows(IllegalArgumentException.class, () -> parse("{\"template\": \"${b * 2}\", \"vars\": {\"b\": [\"stone\"]}}"));
+        assertThrows(IllegalArgumentException.class, () -> parse("{\"template\": \"x\", \"vars\": {\"i\": {\"from\": 0, \"to\": 5, \"step\": -1}}}"));
+    }
+
+    @Test
+    public void batchExpandsLazilyAndEnforcesLimit() {
+        JsonArray batch = JsonParser.parseString("[\"say start\", {\"template\": \"say ${i}\", \"vars\": {\"i\": {\"from\": 1, \"to\": 3}}}, \"say end\"]")
+            .getAsJsonArray();
+
+        List<CommandTemplate> templates = CommandTemplate.parseAll(batch, 10);
+        assertNull(templates.get(0));
+        List<String> expanded = new ArrayList<>();
+        CommandTemplate.expandAll(batch, templates).forEach(expanded::add);
+        assertEquals(List.of("say start", "say 1", "say 2", "say 3", "say end"), expanded);
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> CommandTemplate.parseAll(batch, 3));
+        assertTrue(error.getMessage().contains("more than 3"));
+    }
+
+    private static CommandTemplate parse(String json) {
+        JsonObject spec = JsonParser.parseString(json).getAsJsonObject();
+        return CommandTemplate.parse(spec);
+    }
+
+    private static List<String> expand(CommandTemplate template) {
+        List<String> commands = new ArrayList<>();
+        template.forEach(commands::add);
+        return commands;
+    }
+}
@@ -0,0 +1,90 @@
+package cuspymd.mcp.mod.command;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CommandTokenizerTest {
+
+    private static List<String> tokens(CommandTokenizer tokenizer) {
+        List<String> result = new ArrayList<>();
+        while (tokenizer.next()) {
+            result.add(tokenizer.text());
+        }
+        return result;
+    }
+
+    @Test
+    public void splitsOnWhitespaceAndSkipsLeadingSlash() {
+        CommandTokenizer tokenizer = new CommandTokenizer("  /fill 1\t2  3\n4 5 6 stone ").skipLeadingSlash();
+
+        assertEquals(List.of("fill", "1", "2", "3", "4", "5", "6", "stone"), tokens(tokenizer));
+    }
+
+    @Test
+    public void quotedTokensSpanTheTextBetweenQuotes() {
+        CommandTokenizer tokenizer = new CommandTokenizer("say \"hello world\" 'a b' \"unterminated x");
+
+        assertEquals(List.of("say", "hello world", "a b", "\"unterminated", "x"), tokens(tokenizer));
+    }
+
+    @Test
+    public void quotesAreLiteralWhenRecognitionIsDisabled() {
+        CommandTokenizer tokenizer = new CommandTokenizer("say \"hello world\"", false);
+
+        assertEquals(List.of("say", "\"hello", "world\""), tokens(tokenizer));
+    }
+
+    @Test
+    public void spansPointIntoOriginalInput() {
+        String command = "setblock -12 64 7 stone";
+        CommandTokenizer tokenizer = new CommandTokenizer(command);
+
+        assertTrue(tokenizer.next());
+        assertTrue(tokenizer.equalsIgnoreCase("setblock"));
+        assertTrue(tokenizer.next());
+        assertEquals(9, tokenizer.start());
+        assertEquals(12, tokenizer.end());
+        assertTrue(tokenizer.isInteger());
+        assertEquals(-12, tokenizer.intValue());
+    }
+
+    @Test
+    public void caseInsensitiveComparisons() {
+        CommandTokenizer tokenizer = new CommandTokenizer("Minecraft:KILL @E[type=zombie]");
+
+        assertTrue(tokenizer.next());
+        assertTrue(tokenizer.endsWithIgnoreCase("kill"));
+        assertFalse(tokenizer.equalsIgnoreCase("kill"));
+        assertTrue(tokenizer.next());
+        assertTrue(tokenizer.startsWithIgnoreCase("@e"));
+    }
+
+    @Test
+    public void integerParsingRejectsNonIntegers() {
+        assertTrue(CommandTokenizer.isInteger("2147483647", 0, 10));
+        assertTrue(CommandTokenizer.isInteger("-2147483648", 0, 11));
+        assertEquals(Integer.MIN_VALUE, CommandTokenizer.parseInt("-2147483648", 0, 11));
+        assertFalse(CommandTokenizer.isInteger("2147483648", 0, 10));
+        assertFalse(CommandTokenizer.isInteger("~1", 0, 2));
+        assertFalse(CommandTokenizer.isInteger("-", 0, 1));
+        assertFalse(CommandTokenizer.isInteger("1.5", 0, 3));
+        assertThrows(NumberFormatException.class, () -> CommandTokenizer.parseInt("abc", 0, 3));
+    }
+
+    @Test
+    public void coordinateRecognition() {
+        for (String coordinate : List.of("10", "-3", "~5", "~-5", "^2", "^-1.5", "1.25")) {
+            assertTrue(CommandTokenizer.isCoordinate(coordinate, 0, coordinate.length()), coordinate);
+        }
+        for (String other : List.of("~", "^", "stone", "1.", "~~1", "@p", "")) {
+            assertFalse(CommandTokenizer.isCoordinate(other, 0, other.length()), other);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package cuspymd.mcp.mod.command;
+
+import com.google.gson.Gson;
+import cuspymd.mcp.mod.config.MCPConfig;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SafetyValidatorTest {
+    private final SafetyValidator validator = new SafetyValidator(new MCPConfig());
+
+    @Test
+    public void allowsConfiguredCommands() {
+        assertTrue(validator.validate("setblock 1 2 3 stone").isValid());
+        assertTrue(validator.validate("/FILL 0 0 0 9 9 9 stone").isValid());
+    }
+
+    @Test
+    public void rejectsUnknownAndEmptyCommands() {
+        SafetyValidator.ValidationResult unknown = validator.validate("op someone");
+        assertFalse(unknown.isValid());
+        assertEquals("Command 'op' is not allowed", unknown.getErrorMessage());
+
+        assertFalse(validator.validate("   ").isValid());
+    }
+
+    @Test
+    public void rejectsMassKillAnywhereInCommand() {
+        MCPConfig config = new Gson().fromJson(
+            "{\"server\":{\"allowedCommands\":[\"kill\",\"say\"]}}", MCPConfig.class);
+        SafetyValidator permissive = new SafetyValidator(config);
+
+        assertFalse(permissive.validate("kill @e[type=zombie]").isValid());
+        assertFalse(permissive.validate("kill   @A").isValid());
+        assertTrue(permissive.validate("kill @p").isValid());
+        assertFalse(permissive.validate("say {x:\"kill @a\"}").isValid());
+    }
+
+    @Test
+    public void rejectsCreativeForAll() {
+        assertFalse(validator.validate("gamemode creative @a").isValid());
+        assertTrue(validator.validate("gamemode creative @p").isValid());
+    }
+
+    @Test
+    public void rejectsLargeItemCounts() {
+        assertFalse(validator.validate("give @p diamond{Count:64}").isValid());
+        assertTrue(validator.validate("give @p diamond{Count:5}").isValid());
+        assertFalse(validator.validate("give @p diamond{Count:99999999999999999999999}").isValid());
+    }
+
+    @Test
+    public void editsFollowTheCommandPolicy() {
+        MCPConfig config = new Gson().fromJson(
+            "{\"server\":{\"allowedCommands\":[\"setblock\"]}}", MCPConfig.class);
+        SafetyValidator restricted = new SafetyValidator(config);
+
+        assertTrue(restricted.validateEdit("setblock", 125000, true).isValid());
+        assertFalse(restricted.validateEdit("setblock", 125001, true).isValid());
+        assertTrue(restricted.validateEdit("setblock", 1000000, false).isValid());
+        assertEquals("Command 'fill' is not allowed, so neither is this edit",
+            restricted.validateEdit("fill", 1, false).getErrorMessage());
+
+        MCPConfig unsafe = new Gson().fromJson(
+            "{\"server\":{\"enableSafety\":false,\"allowedCommands\":[]}}", MCPConfig.class);
+        assertTrue(new SafetyValidator(unsafe).validateEdit("fill", Long.MAX_VALUE, true).isValid());
+    }
+
+    @Test
+    public void rejectsOversizedFillRegardlessOfCornerOrder() {
+        assertTrue(validator.validate("fill 0 0 0 49 49 49 stone").isValid());
+        assertFalse(validator.validate("fill 0 0 0 50 50 50 stone").isValid());
+        assertFalse(validator.validate("fill 50 50 50 0 0 0 stone").isValid());
+        assertTrue(validator.validate("fill ~ ~ ~ ~100 ~100 ~100 stone").isValid());
+    }
+}
@@ -0,0 +1,79 @@
+package cuspymd.mcp.mod.server.build;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SectionHashTreeTest {
+
+    private static long[] leaves(int count) {
+        long[] leaves = new long[count];
+        for (int i = 0; i < count; i++) {
+            leaves[i] = SectionHashTree.cellHash(i, i + 1);
+        }
+        return leaves;
+    }
+
+    @Test
+    public void identicalLeavesGiveIdenticalRootsAndNoDiff() {
+        SectionHashTree a = new SectionHashTree(3, 2, 5, leaves(30));
+        SectionHashTree b = new SectionHashTree(3, 2, 5, leaves(30));
+
+        assertEquals(a.getRoot(), b.getRoot());
+        assertTrue(a.diff(b).isEmpty());
+    }
+
+    @Test
+    public void diffFindsExactlyTheChangedSections() {
+        long[] changed = leaves(30);
+        // x=1, y=0, z=2 and x=2, y=1, z=4
+        changed[(0 * 5 + 2) * 3 + 1] += 1;
+        changed[(1 * 5 + 4) * 3 + 2] ^= 0xFF;
+        SectionHashTree before = new SectionHashTree(3, 2, 5, leaves(30));
+        SectionHashTree after = new SectionHashTree(3, 2, 5, changed);
+
+        assertNotEquals(before.getRoot(), after.getRoot());
+        List<int[]> diff = after.diff(before);
+        assertEquals(2, diff.size());
+        assertTrue(diff.stream().anyMatch(s -> s[0] == 1 && s[1] == 0 && s[2] == 2));
+        assertTrue(diff.stream().anyMatch(s -> s[0] == 2 && s[1] == 1 && s[2] == 4));
+    }
+
+    @Test
+    public void rootDependsOnWhereContentIs() {
+        long[] swapped = leaves(2);
+        long first = swapped[0];
+        swapped[0] = swapped[1];
+        swapped[1] = first;
+
+        assertNotEquals(new SectionHashTree(2, 1, 1, leaves(2)).getRoot(), new SectionHashTree(2, 1, 1, swapped).getRoot());
+    }
+
+    @Test
+    public void cellSumsUpdateIncrementally() {
+        // A section's hash is a sum, so replacing one cell is a subtraction and an addition
+        long full = SectionHashTree.cellHash(0, 7) + SectionHashTree.cellHash(1, 9);
+        long updated = full - SectionHashTree.cellHash(1, 9) + SectionHashTree.cellHash(1, 4);
+
+        assertEquals(SectionHashTree.cellHash(0, 7) + SectionHashTree.cellHash(1, 4), updated);
+        assertNotEquals(SectionHashTree.cellHash(0, 7), SectionHashTree.cellHash(1, 7));
+    }
+
+    @Test
+    public void hexRoundTripsAndSingleLeafIsItsOwnRoot() {
+        long hash = SectionHashTree.cellHash(4095, 123456);
+
+        assertEquals(16, SectionHashTree.toHex(hash).length());
+        assertEquals(hash, SectionHashTree.parseHex(SectionHashTree.toHex(hash)));
+        assertEquals(hash, new SectionHashTree(1, 1, 1, new long[] {hash}).getRoot());
+        assertArrayEquals(new int[] {0, 0, 0}, new SectionHashTree(1, 1, 1, new long[] {1}).diff(new SectionHashTree(1, 1, 1, new long[] {2})).get(0));
+        assertThrows(IllegalArgumentException.class, () -> SectionHashTree.parseHex("xyz"));
+        assertThrows(IllegalArgumentException.class, () -> new SectionHashTree(2, 2, 2, new long[7]));
+    }
+}
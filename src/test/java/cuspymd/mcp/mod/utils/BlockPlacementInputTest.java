@@ -0,0 +1,106 @@
+package cuspymd.mcp.mod.utils;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class BlockPlacementInputTest {
+
+    private static List<String> collect(BlockPlacementInput input) {
+        List<String> placements = new ArrayList<>();
+        input.forEach((x, y, z, index) -> placements.add(x + "," + y + "," + z + "=" + input.getPalette().get(index - 1)));
+        return placements;
+    }
+
+    @Test
+    public void parsesVoxelInputAndSkipsZeroCells() {
+        JsonObject arguments = JsonParser.parseString("""
+            {"origin": {"x": 10, "y": 64, "z": -5}, "size": {"x": 2, "y": 1, "z": 2},
+             "palette": ["minecraft:stone", "minecraft:glass"]}
+            """).getAsJsonObject();
+        arguments.addProperty("data", VoxelCodec.encodeRle(new int[] {1, 0, 2, 2}));
+
+        BlockPlacementInput input = BlockPlacementInput.parse(arguments, 1000);
+
+        assertEquals(3, input.getBlockCount());
+        assertEquals(List.of("10,64,-5=minecraft:stone", "10,64,-4=minecraft:glass", "11,64,-4=minecraft:glass"), collect(input));
+    }
+
+    @Test
+    public void parsesBlockCompressorOutputWithOffset() {
+        List<BlockCompressor.BlockData> scanned = List.of(
+            new BlockCompressor.BlockData(0, 0, 0, "minecraft:stone"),
+            new BlockCompressor.BlockData(1, 0, 0, "minecraft:stone"),
+            new BlockCompressor.BlockData(5, 5, 5, "minecraft:glass")
+        );
+        JsonObject arguments = BlockCompressor.compressBlocks(scanned);
+        arguments.add("offset", JsonParser.parseString("{\"x\": 100, \"y\": 0, \"z\": 0}"));
+
+        BlockPlacementInput input = BlockPlacementInput.parse(arguments, 1000);
+
+        assertEquals(3, input.getBlockCount());
+        List<String> placements = collect(input);
+        assertEquals(3, placements.size());
+        assertEquals(true, placements.contains("100,0,0=minecraft:stone"));
+        assertEquals(true, placements.contains("101,0,0=minecraft:stone"));
+        assertEquals(true, placements.contains("105,5,5=minecraft:glass"));
+    }
+
+    @Test
+    public void enforcesBlockLimitBeforeDecoding() {
+        JsonObject arguments = JsonParser.parseString("""
+            {"origin": {"x": 0, "y": 0, "z": 0}, "size": {"x": 100, "y": 100, "z": 100},
+             "palette": ["minecraft:stone"], "data": ""}
+            """).getAsJsonObject();
+
+        assertThrows(IllegalArgumentException.class, () -> BlockPlacementInput.parse(arguments, 1000));
+    }
+
+    @Test
+    public void rejectsOutOfRangePaletteIndex() {
+        JsonObject arguments = JsonParser.parseString("""
+            {"origin": {"x": 0, "y": 0, "z": 0}, "size": {"x": 1, "y": 1, "z": 1},
+             "palette": ["minecraft:stone"]}
+            """).getAsJsonObject();
+        arguments.addProperty("data", VoxelCodec.encodeRle(new int[] {2}));
+
+        assertThrows(IllegalArgumentException.class, () -> BlockPlacementInput.parse(arguments, 1000));
+    }
+
+    @Test
+    public void rejectsRegionsWhoseSizeOverflowsAnInt() {
+        JsonObject arguments = JsonParser.parseString("""
+            {"blocks": [{"blockType": "minecraft:stone",
+              "regions": [{"start": {"x": -2000000000, "y": 0, "z": 0}, "end": {"x": 2000000000, "y": 0, "z": 0}}]}]}
+            """).getAsJsonObject();
+
+        assertThrows(IllegalArgumentException.class, () -> BlockPlacementInput.parse(arguments, 1000));
+    }
+
+    @Test
+    public void rejectsBlocksOutsideTheWorld() {
+        JsonObject region = JsonParser.parseString("""
+            {"blocks": [{"blockType": "minecraft:stone",
+              "regions": [{"start": {"x": 2147483640, "y": 0, "z": 0}, "end": {"x": 2147483647, "y": 0, "z": 0}}]}]}
+            """).getAsJsonObject();
+        JsonObject offset = JsonParser.parseString("""
+            {"blocks": [{"blockType": "minecraft:stone", "singleBlocks": [{"x": 0, "y": 64, "z": 0}]}],
+             "offset": {"x": 0, "y": 5000, "z": 0}}
+            """).getAsJsonObject();
+        JsonObject voxels = JsonParser.parseString("""
+            {"origin": {"x": 29999999, "y": 0, "z": 0}, "size": {"x": 2, "y": 1, "z": 1},
+             "palette": ["minecraft:stone"]}
+            """).getAsJsonObject();
+        voxels.addProperty("data", VoxelCodec.encodeRle(new int[] {1, 1}));
+
+        assertThrows(IllegalArgumentException.class, () -> BlockPlacementInput.parse(region, 1000));
+        assertThrows(IllegalArgumentException.class, () -> BlockPlacementInput.parse(offset, 1000));
+        assertThrows(IllegalArgumentException.class, () -> BlockPlacementInput.parse(voxels, 1000));
+    }
+}
@@ -0,0 +1,65 @@
+package cuspymd.mcp.mod.utils;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LodGridTest {
+
+    @Test
+    public void dominantTypeAndFillPerCube() {
+        LodGrid<String> grid = new LodGrid<>(0, 0, 0, 3, 3, 3, 2);
+        int stone = grid.typeId("minecraft:stone");
+        int dirt = grid.typeId("minecraft:dirt");
+        // Cube (0,0,0): 3 dirt and 2 stone out of 8
+        grid.add(0, 0, 0, dirt);
+        grid.add(1, 0, 0, dirt);
+        grid.add(0, 1, 0, dirt);
+        grid.add(1, 1, 1, stone);
+        grid.add(0, 1, 1, stone);
+
+        JsonObject lod = grid.toJson(Function.identity());
+
+        assertEquals(2, lod.getAsJsonObject("size").get("x").getAsInt());
+        JsonArray cells = lod.getAsJsonArray("cells");
+        assertEquals(1, cells.size());
+        JsonArray cell = cells.get(0).getAsJsonArray();
+        assertEquals("minecraft:dirt", lod.getAsJsonArray("palette").get(cell.get(3).getAsInt()).getAsString());
+        assertEquals(0.63, cell.get(4).getAsDouble());
+        assertEquals(5, grid.getNonAirBlocks());
+    }
+
+    @Test
+    public void boxesSplitAcrossCubesAndEdgesAreClipped() {
+        // 5 wide in x, so the second cube in x is only 2 blocks wide
+        LodGrid<String> grid = new LodGrid<>(10, 0, 0, 14, 2, 2, 3);
+        grid.addBox(-100, 0, 0, 100, 2, 2, grid.typeId("minecraft:water"));
+
+        JsonArray cells = grid.toJson(Function.identity()).getAsJsonArray("cells");
+
+        assertEquals(2, cells.size());
+        assertEquals(1, cells.get(1).getAsJsonArray().get(0).getAsInt());
+        assertEquals(1.0, cells.get(0).getAsJsonArray().get(4).getAsDouble());
+        assertEquals(1.0, cells.get(1).getAsJsonArray().get(4).getAsDouble());
+        assertEquals(45, grid.getNonAirBlocks());
+    }
+
+    @Test
+    public void emptyCubesAndUnusedTypesAreLeftOut() {
+        LodGrid<String> grid = new LodGrid<>(0, 0, 0, 7, 0, 0, 4);
+        grid.typeId("minecraft:unused");
+        grid.add(5, 0, 0, grid.typeId("minecraft:glass"));
+        grid.addBox(20, 0, 0, 30, 0, 0, 0);
+
+        JsonObject lod = grid.toJson(Function.identity());
+
+        assertEquals(1, lod.getAsJsonArray("palette").size());
+        assertEquals("minecraft:glass", lod.getAsJsonArray("palette").get(0).getAsString());
+        assertEquals(1, lod.getAsJsonArray("cells").size());
+        assertEquals(0.25, lod.getAsJsonArray("cells").get(0).getAsJsonArray().get(4).getAsDouble());
+    }
+}
@@ -0,0 +1,88 @@
+package cuspymd.mcp.mod.utils;
+
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RegionTransformTest {
+
+    private static int[] apply(RegionTransform transform, int x, int z) {
+        int[] out = new int[2];
+        transform.apply(x, z, out);
+        return out;
+    }
+
+    @Test
+    public void clockwiseQuarterTurnSendsEastToSouth() {
+        // 3 wide (x) by 2 deep (z)
+        RegionTransform transform = new RegionTransform(1, RegionTransform.Mirror.NONE, 3, 2);
+
+        assertEquals(2, transform.getResultSizeX());
+        assertEquals(3, transform.getResultSizeZ());
+        // The north-west corner ends up north-east, the east end of the north row ends up south-east
+        assertArrayEquals(new int[] {1, 0}, apply(transform, 0, 0));
+        assertArrayEquals(new int[] {1, 2}, apply(transform, 2, 0));
+        assertArrayEquals(new int[] {0, 0}, apply(transform, 0, 1));
+    }
+
+    @Test
+    public void fourQuarterTurnsAreIdentity() {
+        RegionTransform quarter = new RegionTransform(1, RegionTransform.Mirror.NONE, 5, 3);
+        RegionTransform half = new RegionTransform(2, RegionTransform.Mirror.NONE, 5, 3);
+        RegionTransform full = new RegionTransform(4, RegionTransform.Mirror.NONE, 5, 3);
+
+        assertEquals(0, full.getQuarterTurns());
+        for (int x = 0; x < 5; x++) {
+            for (int z = 0; z < 3; z++) {
+                int[] once = apply(quarter, x, z);
+                int[] twice = apply(new RegionTransform(1, RegionTransform.Mirror.NONE, 3, 5), once[0], once[1]);
+                assertArrayEquals(apply(half, x, z), twice);
+                assertArrayEquals(new int[] {x, z}, apply(full, x, z));
+            }
+        }
+    }
+
+    @Test
+    public void everyTransformIsABijectionOntoTheResultBox() {
+        for (RegionTransform.Mirror mirror : RegionTransform.Mirror.values()) {
+            for (int turns = 0; turns < 4; turns++) {
+                RegionTransform transform = new RegionTransform(turns, mirror, 4, 7);
+                Set<Integer> seen = new HashSet<>();
+                for (int x = 0; x < 4; x++) {
+                    for (int z = 0; z < 7; z++) {
+                        int[] out = apply(transform, x, z);
+                        assertTrue(out[0] >= 0 && out[0] < transform.getResultSizeX());
+                        assertTrue(out[1] >= 0 && out[1] < transform.getResultSizeZ());
+                        seen.add(out[0] * 100 + out[1]);
+                    }
+                }
+                assertEquals(28, seen.size());
+            }
+        }
+    }
+
+    @Test
+    public void mirrorAppliesBeforeRotation() {
+        RegionTransform transform = RegionTransform.parse(
+            JsonParser.parseString("{\"rotate\": 90, \"mirror\": \"x\"}").getAsJsonObject(), 3, 2);
+
+        // (0, 0) mirrors to (2, 0), which the quarter turn sends to (1, 2)
+        assertArrayEquals(new int[] {1, 2}, apply(transform, 0, 0));
+    }
+
+    @Test
+    public void parseRejectsBadArguments() {
+        assertEquals(3, RegionTransform.parse(JsonParser.parseString("{\"rotate\": -90}").getAsJsonObject(), 1, 1).getQuarterTurns());
+        assertThrows(IllegalArgumentException.class,
+            () -> RegionTransform.parse(JsonParser.parseString("{\"rotate\": 45}").getAsJsonObject(), 1, 1));
+        assertThrows(IllegalArgumentException.class,
+            () -> RegionTransform.parse(JsonParser.parseString("{\"mirror\": \"y\"}").getAsJsonObject(), 1, 1));
+    }
+}
@@ -0,0 +1,98 @@
+package cuspymd.mcp.mod.utils;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShapeRasterizerTest {
+
+    private static ShapeRasterizer parse(String json) {
+        return ShapeRasterizer.parse(JsonParser.parseString(json).getAsJsonObject(), 1_000_000, 16_777_216);
+    }
+
+    private static List<String> collect(ShapeRasterizer shape) {
+        List<String> cells = new ArrayList<>();
+        shape.forEach((x, y, z) -> cells.add(x + "," + y + "," + z));
+        return cells;
+    }
+
+    @Test
+    public void sphereRadiusZeroIsOneBlock() {
+        ShapeRasterizer shape = parse("{\"shape\": \"sphere\", \"center\": {\"x\": 5, \"y\": 64, \"z\": -3}, \"radius\": 0}");
+
+        assertEquals(List.of("5,64,-3"), collect(shape));
+    }
+
+    @Test
+    public void hollowSphereDropsInterior() {
+        ShapeRasterizer solid = parse("{\"shape\": \"sphere\", \"center\": {\"x\": 0, \"y\": 0, \"z\": 0}, \"radius\": 1}");
+        ShapeRasterizer hollow = parse("{\"shape\": \"sphere\", \"center\": {\"x\": 0, \"y\": 0, \"z\": 0}, \"radius\": 1, \"hollow\": true}");
+
+        // Center, 6 faces and 12 edges; corners are sqrt(3) away
+        assertEquals(19, solid.getBlockCount());
+        assertEquals(18, hollow.getBlockCount());
+        assertFalse(collect(hollow).contains("0,0,0"));
+    }
+
+    @Test
+    public void cylinderFollowsAxisAndHollowLeavesEndsOpen() {
+        ShapeRasterizer solid = parse("{\"shape\": \"cylinder\", \"center\": {\"x\": 0, \"y\": 10, \"z\": 0}, \"radius\": 1, \"height\": 3, \"axis\": \"x\"}");
+        ShapeRasterizer tube = parse("{\"shape\": \"cylinder\", \"center\": {\"x\": 0, \"y\": 10, \"z\": 0}, \"radius\": 1, \"height\": 3, \"hollow\": true}");
+
+        assertEquals(27, solid.getBlockCount());
+        assertTrue(collect(solid).contains("2,10,0"));
+        assertFalse(collect(solid).contains("3,10,0"));
+        assertEquals(24, tube.getBlockCount());
+        assertFalse(collect(tube).contains("0,11,0"));
+    }
+
+    @Test
+    public void lineIncludesBothEndsWithConnectedSteps() {
+        List<String> cells = collect(parse("{\"shape\": \"line\", \"from\": {\"x\": 0, \"y\": 0, \"z\": 0}, \"to\": {\"x\": 5, \"y\": 2, \"z\": -1}}"));
+
+        assertEquals(6, cells.size());
+        assertEquals("0,0,0", cells.get(0));
+        assertEquals("5,2,-1", cells.get(5));
+        for (int i = 1; i < cells.size(); i++) {
+            String[] a = cells.get(i - 1).split(",");
+            String[] b = cells.get(i).split(",");
+            for (int axis = 0; axis < 3; axis++) {
+                assertTrue(Math.abs(Integer.parseInt(a[axis]) - Integer.parseInt(b[axis])) <= 1);
+            }
+        }
+    }
+
+    @Test
+    public void hollowBoxIsShell() {
+        ShapeRasterizer shape = parse("{\"shape\": \"box\", \"from\": {\"x\": 2, \"y\": 2, \"z\": 2}, \"to\": {\"x\": 0, \"y\": 0, \"z\": 0}, \"hollow\": true}");
+
+        assertEquals(26, shape.getBlockCount());
+        assertFalse(collect(shape).contains("1,1,1"));
+    }
+
+    @Test
+    public void limitsAreEnforced() {
+        JsonObject box = JsonParser.parseString("{\"shape\": \"box\", \"from\": {\"x\": 0, \"y\": 0, \"z\": 0}, \"to\": {\"x\": 9, \"y\": 9, \"z\": 9}}").getAsJsonObject();
+        assertThrows(IllegalArgumentException.class, () -> ShapeRasterizer.parse(box, 999, 16_777_216));
+        assertThrows(IllegalArgumentException.class, () -> ShapeRasterizer.parse(box, 1_000_000, 999));
+        assertThrows(IllegalArgumentException.class, () -> parse("{\"shape\": \"cone\"}"));
+        assertThrows(IllegalArgumentException.class, () -> parse("{\"shape\": \"sphere\", \"center\": {\"x\": 0, \"y\": 0, \"z\": 0}, \"radius\": -1}"));
+    }
+
+    @Test
+    public void hugeShapesAreRejectedWithoutOverflow() {
+        // A radius whose box would wrap an int, and heights and lines running out of the world
+        assertThrows(IllegalArgumentException.class, () -> parse("{\"shape\": \"sphere\", \"center\": {\"x\": 0, \"y\": 0, \"z\": 0}, \"radius\": 3000000000}"));
+        assertThrows(IllegalArgumentException.class, () -> parse("{\"shape\": \"sphere\", \"center\": {\"x\": 0, \"y\": 0, \"z\": 0}, \"radius\": 1100000000}"));
+        assertThrows(IllegalArgumentException.class, () -> parse("{\"shape\": \"cylinder\", \"center\": {\"x\": 0, \"y\": 0, \"z\": 0}, \"radius\": 1, \"height\": 2147483647}"));
+        assertThrows(IllegalArgumentException.class, () -> parse("{\"shape\": \"line\", \"from\": {\"x\": -2147483648, \"y\": 0, \"z\": 0}, \"to\": {\"x\": 2147483647, \"y\": 0, \"z\": 0}}"));
+    }
+}
@@ -0,0 +1,39 @@
+package cuspymd.mcp.mod.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class VarIntsTest {
+
+    @Test
+    public void roundTripsAcrossByteLengths() {
+        int[] values = {0, 1, 127, 128, 300, 16383, 16384, 2_097_151, Integer.MAX_VALUE, -1};
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int value : values) {
+            VarInts.write(out, value);
+        }
+
+        assertArrayEquals(values, VarInts.readAll(out.toByteArray(), values.length));
+    }
+
+    @Test
+    public void usesSevenBitGroupsLowestFirst() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        VarInts.write(out, 300);
+
+        assertArrayEquals(new byte[] {(byte) 0xAC, 0x02}, out.toByteArray());
+    }
+
+    @Test
+    public void rejectsShortLongAndOversizedData() {
+        assertThrows(IllegalArgumentException.class, () -> VarInts.readAll(new byte[] {1}, 2));
+        assertThrows(IllegalArgumentException.class, () -> VarInts.readAll(new byte[] {1, 2}, 1));
+        assertThrows(IllegalArgumentException.class, () -> VarInts.readAll(new byte[] {(byte) 0x80}, 1));
+        byte[] sixBytes = {(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01};
+        assertThrows(IllegalArgumentException.class, () -> VarInts.readAll(sixBytes, 1));
+    }
+}
@@ -0,0 +1,64 @@
+package cuspymd.mcp.mod.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class VoxelCodecTest {
+
+    @Test
+    public void roundTripsRuns() {
+        int[] values = {0, 0, 0, 1, 1, 2, 0, 300, 300, 300};
+
+        String encoded = VoxelCodec.encodeRle(values);
+
+        assertArrayEquals(values, VoxelCodec.decodeRle(encoded, values.length));
+    }
+
+    @Test
+    public void encodesRunsAsVarintPairs() {
+        int[] values = new int[200];
+        Arrays.fill(values, 1);
+
+        byte[] bytes = Base64.getDecoder().decode(VoxelCodec.encodeRle(values));
+
+        // 200 = 0xC8 -> varint C8 01, followed by value 1
+        assertArrayEquals(new byte[] {(byte) 0xC8, 0x01, 0x01}, bytes);
+    }
+
+    @Test
+    public void rejectsDataThatDoesNotMatchDeclaredSize() {
+        String encoded = VoxelCodec.encodeRle(new int[] {1, 1, 1});
+
+        assertThrows(IllegalArgumentException.class, () -> VoxelCodec.decodeRle(encoded, 2));
+        assertThrows(IllegalArgumentException.class, () -> VoxelCodec.decodeRle(encoded, 4));
+        assertThrows(IllegalArgumentException.class, () -> VoxelCodec.decodeRle("not base64!", 4));
+    }
+
+    @Test
+    public void indexIsXFastestThenZThenY() {
+        assertEquals(0, VoxelCodec.index(0, 0, 0, 4, 3));
+        assertEquals(1, VoxelCodec.index(1, 0, 0, 4, 3));
+        assertEquals(4, VoxelCodec.index(0, 0, 1, 4, 3));
+        assertEquals(12, VoxelCodec.index(0, 1, 0, 4, 3));
+    }
+
+    @Test
+    public void stridesFollowTheNamedOrder() {
+        assertArrayEquals(new int[] {1, 12, 4}, VoxelCodec.strides("xzy", 4, 5, 3));
+        assertArrayEquals(new int[] {5, 1, 20}, VoxelCodec.strides("yxz", 4, 5, 3));
+        assertArrayEquals(new int[] {15, 3, 1}, VoxelCodec.strides("zyx", 4, 5, 3));
+    }
+
+    @Test
+    public void rejectsOrdersThatAreNotPermutations() {
+        assertThrows(IllegalArgumentException.class, () -> VoxelCodec.strides("xxy", 2, 2, 2));
+        assertThrows(IllegalArgumentException.class, () -> VoxelCodec.strides("xy", 2, 2, 2));
+        assertThrows(IllegalArgumentException.class, () -> VoxelCodec.strides("xyzw", 2, 2, 2));
+    }
+}